@@ -0,0 +1,88 @@
+package uv.poo.Benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uv.poo.Filter.RasterPool;
+import uv.poo.IO.ImageDecoder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DecoderBenchmark: compara los decodificadores de ImageDecoder sobre imágenes de prueba
+ * codificadas en memoria (sin red ni disco).
+ *
+ * Las imágenes se generan con SyntheticImages y se codifican una vez en el formato pedido. Cada
+ * operación decodifica y devuelve la imagen a la reserva de rasters, como hace el pipeline al
+ * liberar la fuente; así "imageio" reutiliza el mismo destino en cada iteración mientras que
+ * "imageio-basic" reserva uno nuevo (la diferencia se ve con -prof gc).
+ *
+ * - full: decodificación completa.
+ * - boxed: con la caja de 800x800, es decir, con submuestreo en la fuente.
+ *
+ * Uso:
+ *   mvn -Pjmh package
+ *   java -jar target/benchmarks.jar DecoderBenchmark -prof gc
+ *   java -jar target/benchmarks.jar DecoderBenchmark.full -p format=jpg -p size=1920x1080
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecoderBenchmark {
+
+    @Param({"640x480", "1920x1080", "5000x3333"})
+    public String size;
+
+    @Param({"jpg", "png"})
+    public String format;
+
+    @Param({"imageio", "imageio-basic"})
+    public String decoder;
+
+    private byte[] data;
+    private ImageDecoder imageDecoder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BufferedImage img = SyntheticImages.create(size, "INT_RGB");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(img, format, out)) {
+            throw new IOException("Sin escritor para " + format);
+        }
+        data = out.toByteArray();
+        imageDecoder = ImageDecoder.named(decoder);
+    }
+
+    @Benchmark
+    public int full() throws IOException {
+        return decodeAndRelease(0, 0);
+    }
+
+    @Benchmark
+    public int boxed() throws IOException {
+        return decodeAndRelease(800, 800);
+    }
+
+    private int decodeAndRelease(int maxWidth, int maxHeight) throws IOException {
+        BufferedImage img = imageDecoder.decode(data, maxWidth, maxHeight);
+        int width = img.getWidth();
+        RasterPool.shared().release(img);
+        return width;
+    }
+}
@@ -0,0 +1,114 @@
+package uv.poo.Benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uv.poo.Filter.BlackAndWhiteFilter;
+import uv.poo.Filter.BlurFilter;
+import uv.poo.Filter.EdgeDetectFilter;
+import uv.poo.Filter.FusedFilterEngine;
+import uv.poo.Filter.ImageFilter;
+import uv.poo.Filter.RasterPool;
+import uv.poo.Filter.SepiaFilter;
+import uv.poo.Filter.SharpenFilter;
+import uv.poo.Filter.SourceImage;
+import uv.poo.Filter.TiledFilterExecutor;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FilterBenchmark: rendimiento de cada filtro sobre imágenes sintéticas de varios tamaños y tipos
+ * de raster, sin red ni disco.
+ *
+ * - sequential: filter.apply(src) en un solo hilo (la línea base de cada filtro; blur y edges
+ *   usan el motor de convolución, separable y general respectivamente).
+ * - tiled: el mismo filtro repartido en bandas con TiledFilterExecutor.
+ * - fusedAll: los tres filtros en un solo recorrido con FusedFilterEngine (ignora el parámetro filter).
+ * - normalizedFusedAll: lo mismo tras normalizar la fuente con SourceImage, como hace el pipeline
+ *   (los tipos sin camino rápido en Pixels, p.ej. BYTE_INDEXED, se convierten una vez antes de filtrar).
+ *
+ * Uso (ops/s por filtro y, con -prof gc, bytes asignados por operación y tasa de asignación):
+ *   mvn -Pjmh package
+ *   java -jar target/benchmarks.jar FilterBenchmark -prof gc
+ *   java -jar target/benchmarks.jar FilterBenchmark.sequential -p filter=sepia -p type=INT_RGB
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+
+    @Param({"640x480", "1920x1080", "5000x3333"})
+    public String size;
+
+    @Param({"INT_RGB", "3BYTE_BGR", "BYTE_GRAY"})
+    public String type;
+
+    @Param({"sepia", "bw", "sharpen", "blur", "edges"})
+    public String filter;
+
+    private BufferedImage src;
+    private ImageFilter imageFilter;
+    private List<ImageFilter> allFilters;
+    private TiledFilterExecutor tiled;
+    private FusedFilterEngine fused;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        src = SyntheticImages.create(size, type);
+        imageFilter = create(filter);
+        allFilters = List.of(new SepiaFilter(), new BlackAndWhiteFilter(), new SharpenFilter());
+        tiled = TiledFilterExecutor.shared();
+        fused = FusedFilterEngine.shared();
+    }
+
+    @Benchmark
+    public BufferedImage sequential() {
+        return imageFilter.apply(src);
+    }
+
+    @Benchmark
+    public BufferedImage tiled() {
+        return tiled.apply(imageFilter, src);
+    }
+
+    @Benchmark
+    public List<BufferedImage> fusedAll() {
+        return fused.apply(allFilters, src);
+    }
+
+    @Benchmark
+    public List<BufferedImage> normalizedFusedAll() {
+        return fused.apply(allFilters, SourceImage.normalize(src, RasterPool.shared()).image());
+    }
+
+    private static ImageFilter create(String name) {
+        switch (name) {
+            case "sepia":
+                return new SepiaFilter();
+            case "bw":
+                return new BlackAndWhiteFilter();
+            case "sharpen":
+                return new SharpenFilter();
+            case "blur":
+                return new BlurFilter();
+            case "edges":
+                return new EdgeDetectFilter();
+            default:
+                throw new IllegalArgumentException("Filtro desconocido: " + name);
+        }
+    }
+}
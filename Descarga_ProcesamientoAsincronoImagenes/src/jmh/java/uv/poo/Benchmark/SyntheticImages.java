@@ -0,0 +1,73 @@
+package uv.poo.Benchmark;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * SyntheticImages: imágenes de prueba deterministas para los benchmarks.
+ *
+ * Mezcla degradados suaves, bordes y algo de ruido, como una fotografía, para que ni los filtros
+ * ni los compresores vean datos triviales (todo igual) o imposibles (ruido puro).
+ */
+public final class SyntheticImages {
+
+    private SyntheticImages() {
+    }
+
+    /**
+     * Crea una imagen sintética.
+     *
+     * @param size tamaño "ANCHOxALTO" (p.ej. "1920x1080")
+     * @param type tipo de BufferedImage: "INT_RGB", "INT_ARGB", "3BYTE_BGR", "4BYTE_ABGR", "BYTE_GRAY" o
+     *             "BYTE_INDEXED" (paleta, como muchos PNG de 8 bits)
+     * @return imagen generada siempre con la misma semilla
+     */
+    public static BufferedImage create(String size, String type) {
+        String[] dims = size.toLowerCase().split("x");
+        int width = Integer.parseInt(dims[0]);
+        int height = Integer.parseInt(dims[1]);
+        BufferedImage img = new BufferedImage(width, height, imageType(type));
+
+        Random random = new Random(42);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double v = 128 + 60 * Math.sin(x / 90.0) * Math.cos(y / 70.0) + 40 * Math.sin((x + y) / 25.0);
+                int noise = random.nextInt(9) - 4;
+                int r = clamp((int) v + noise);
+                int g = clamp((int) (v * 0.8) + noise + 20);
+                int b = clamp((int) (255 - v) + noise);
+                row[x] = 0xff000000 | (r << 16) | (g << 8) | b;
+            }
+            // setRGB hace la conversión de color que corresponda a cada tipo
+            img.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return img;
+    }
+
+    /**
+     * Traduce el nombre corto del tipo a la constante de BufferedImage.
+     */
+    public static int imageType(String type) {
+        switch (type) {
+            case "INT_RGB":
+                return BufferedImage.TYPE_INT_RGB;
+            case "INT_ARGB":
+                return BufferedImage.TYPE_INT_ARGB;
+            case "3BYTE_BGR":
+                return BufferedImage.TYPE_3BYTE_BGR;
+            case "4BYTE_ABGR":
+                return BufferedImage.TYPE_4BYTE_ABGR;
+            case "BYTE_GRAY":
+                return BufferedImage.TYPE_BYTE_GRAY;
+            case "BYTE_INDEXED":
+                return BufferedImage.TYPE_BYTE_INDEXED;
+            default:
+                throw new IllegalArgumentException("Tipo de imagen desconocido: " + type);
+        }
+    }
+
+    private static int clamp(int v) {
+        return Math.max(0, Math.min(255, v));
+    }
+}
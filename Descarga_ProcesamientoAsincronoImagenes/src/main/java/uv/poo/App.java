@@ -1,85 +1,133 @@
 package uv.poo;
 
 import uv.poo.Config.ExecutorConfig;
-import uv.poo.IO.UrlReader;
-import uv.poo.Download.ImageDownloader;
-import uv.poo.Filter.ImageFilter;
-import uv.poo.Filter.SepiaFilter;
-import uv.poo.Filter.BlackAndWhiteFilter;
-import uv.poo.Filter.SharpenFilter;
-import uv.poo.Task.FilterTask;
+import uv.poo.IO.EncodingProfile;
+import uv.poo.IO.JobJournal;
+import uv.poo.IO.UrlSource;
+import uv.poo.Metrics.InMemoryMetrics;
+import uv.poo.Metrics.Metrics;
+import uv.poo.Metrics.MetricsReporter;
+import uv.poo.Filter.SourceImage;
+import uv.poo.Pipeline.FilterGraph;
+import uv.poo.Pipeline.ImagePipeline;
+import uv.poo.Pipeline.RunReport;
 
-import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
 
 /**
  * App: Main de la aplicación.
  * Fases:
- * 1. Configuración de pools de hilos para descarga, filtrado y I/O.
- * 2. Lectura de URLs desde un archivo urls.txt.
- * 3. Envío de tareas de descarga al pool downloadPool.
- *    - Dentro de cada tarea de descarga:
- *      a) Descargar la imagen.
- *      b) Extraer un nombre base para el archivo.
- *      c) Crear las instancias de filtros.
- *      d) Enviar para cada filtro una FilterTask al pool filterPool.
- * 4. Al finalizar el envío de todas las tareas, apagar ordenadamente todos los pools.
+ * 1. Configuración de pools acotados para cada etapa: descarga, decodificación, filtrado,
+ *    codificación y escritura (ver ExecutorConfig / PipelineSettings), dimensionados según los
+ *    núcleos de la máquina y ajustados durante la ejecución (-Dpipeline.adaptive=false lo desactiva).
+ * 2. Lectura de las salidas a generar desde filtros.conf (-Dpipeline.filters; ver FilterGraph):
+ *    cadenas de filtros con ramas y formato propio, compiladas una vez en un plan que comparte los
+ *    prefijos comunes y fusiona los filtros punto a punto. Sin el archivo: sepia, bw y sharpen.
+ *    Después, lectura perezosa de URLs desde un archivo urls.txt (sin repetidas).
+ * 3. Envío de cada URL al ImagePipeline, que encadena las etapas:
+ *      a) Descargar los bytes de la imagen, con tiempo límite, reintentos con espera exponencial,
+ *         petición de respaldo si tarda más que el p95 y cortocircuito por host (ver DownloadPolicy).
+ *      b) Decodificarla (como máximo maxImagesInFlight imágenes en memoria a la vez) con el
+ *         decodificador de -Dpipeline.decoder (por defecto "imageio", ver ImageDecoder).
+ *         Las que superan -Dpipeline.streaming.pixels (100 MP por defecto) no se decodifican
+ *         enteras: se decodifican, filtran y codifican en PNG por franjas (ver StripTask).
+ *      c) Ejecutar el plan de filtros en filterPool y, con -Dpipeline.pyramid=1024x1024,256x256, reducir
+ *         cada resultado en memoria a esos tamaños (ver PyramidGenerator).
+ *      d) Codificar cada resultado en encodePool y escribirlo en ioPool: un archivo por salida o,
+ *         con -Dpipeline.output=archive, segmentos grandes escritos por lotes (ver SegmentArchiveSink).
+ *    Si una etapa se satura, su cola acotada frena a la anterior y, al final, a este bucle.
+ *    Las descargas pasan por una caché en disco (cache_descargas) que evita repetir descargas
+ *    entre ejecuciones.
+ * 4. Al finalizar el envío, esperar a que todas las salidas estén escritas (o hayan fallado) y
+ *    sólo entonces apagar ordenadamente todos los pools, sin perder trabajo.
+ *    En modo incremental (-Dpipeline.incremental=true) sólo se regeneran las salidas que no están
+ *    al día según el manifiesto de imagenes_filtradas, y se borran las huérfanas.
+ *    Con -Dpipeline.journal=DIR cada URL y cada salida terminadas quedan en una cola de trabajos
+ *    persistente (ver JobJournal): si el proceso muere, la siguiente ejecución sigue donde quedó,
+ *    y varios procesos lanzados a la vez sobre la misma lista se la reparten.
+ * 5. Mostrar el resultado de cada URL que falló y el tiempo total (el detalle de todas las URLs
+ *    queda en informe_ejecucion.tsv), los reintentos y respaldos de las descargas, el resumen de
+ *    la caché de descargas y las métricas de cada etapa (latencias, errores, bytes e imágenes/s;
+ *    -Dpipeline.metrics=false las desactiva).
  */
 public class App {
     public static void main(String[] args) throws IOException {
-        // 1. Inicializar los pools de hilos: descarga, filtrado, y escritura en disco.
+        // 1. Inicializar los pools de hilos de cada etapa del pipeline.
         var executors = ExecutorConfig.createExecutors();
 
-        // 2. Leer el archivo de URLs (una URL por línea).
-        List<String> urls = null;
-        try {
-            // Path.of("urls.txt") busca el archivo en el directorio de trabajo
-            urls = UrlReader.readUrls(Path.of("urls.txt"));
-        } catch (IOException e) {
-            // Si falla la lectura, envolvemos en RuntimeException para parar la ejecución
-            throw new RuntimeException("No se pudo leer urls.txt", e);
+        // 1.a) Métricas por etapa, con informes periódicos cada pipeline.metrics.interval segundos
+        MetricsReporter reporter = null;
+        if (executors.settings.metrics) {
+            InMemoryMetrics metrics = new InMemoryMetrics();
+            Metrics.set(metrics);
+            reporter = MetricsReporter.start(metrics, executors, executors.settings.metricsIntervalSeconds);
         }
 
-        // 3. Para cada URL, crear y enviar una tarea al pool de descargas
-        for (String url : urls) {
-            executors.downloadPool.submit(() -> {
-                try {
-                    // 3.a) Descargar la imagen desde la URL
-                    BufferedImage original = ImageDownloader.download(url);
-                    // 3.b) Extraer un nombre base para el archivo filtrado
-                    String baseName = ImageDownloader.extractBaseName(url);
-
-                    // 3.c) Definir los filtros a aplicar
-                    ImageFilter[] filters = {
-                            new SepiaFilter(),         // tono sepia
-                            new BlackAndWhiteFilter(), // escala de grises
-                            new SharpenFilter()        // enfoque
-                    };
+        // 2. Leer las salidas del grafo de filtros: cadena, tamaño y formato de cada una. Los filtros
+        //    no guardan estado, así que se comparten entre imágenes. Una salida reducida, p.ej.
+        //    "mini = resize(640x480) | sepia", se decodifica submuestreada y nunca carga la imagen a
+        //    resolución completa.
+        Path graphFile = Path.of(executors.settings.filterGraph);
+        FilterGraph graph;
+        if (Files.exists(graphFile)) {
+            graph = FilterGraph.load(graphFile);
+        } else {
+            System.out.println("Sin " + graphFile + ": se generan las salidas predeterminadas (sepia, bw, sharpen)");
+            graph = FilterGraph.defaults();
+        }
+        // Formato de las salidas sin formato propio según -Dpipeline.encoding (por defecto PNG)
+        EncodingProfile profile = EncodingProfile.named(executors.settings.encoding);
+        ImagePipeline pipeline = new ImagePipeline(executors, graph.outputs(), profile);
+        System.out.println(pipeline.describePlan());
 
-                    // 3.d) Para cada filtro, enviar una FilterTask al pool filterPool
-                    for (ImageFilter filter : filters) {
-                        // FilterTask aplica el filtro y delega la escritura en ioPool
-                        executors.filterPool.submit(
-                                new FilterTask(
-                                        original,
-                                        baseName,
-                                        "png",     // extensión de salida
-                                        filter,
-                                        executors.ioPool
-                                )
-                        );
-                    }
-                } catch (Exception e) {
-                    // Captura cualquier error en la fase de descarga o filtrado inicial
-                    System.err.println("Error procesando URL " + url + ": " + e.getMessage());
+        // 3. Leer el archivo de URLs (una URL por línea) de forma perezosa y enviar cada URL a la
+        //    etapa de descargas, que bloquea si el pipeline está lleno: la siguiente línea sólo se lee
+        //    cuando hay hueco, así que la memoria no depende del tamaño de la lista y la primera
+        //    descarga empieza de inmediato. Las URLs repetidas se descartan y, con cola de trabajos
+        //    (-Dpipeline.journal=DIR), también las ya terminadas o tomadas por otro proceso; sus
+        //    salidas siguen siendo de la lista, así que el modo incremental no debe borrarlas.
+        //    Path.of("urls.txt") busca el archivo en el directorio de trabajo
+        JobJournal journal = pipeline.journal();
+        try (UrlSource urls = UrlSource.open(Path.of("urls.txt"))) {
+            while (urls.hasNext()) {
+                String url = urls.next();
+                pipeline.expect(url);
+                if (journal == null || journal.tryLease(url)) {
+                    pipeline.submit(url);
                 }
-            });
+            }
+            if (urls.duplicates() > 0) {
+                System.out.println("URLs repetidas descartadas: " + urls.duplicates());
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // Si falla la lectura, envolvemos en RuntimeException para parar la ejecución
+            throw new RuntimeException("No se pudo leer urls.txt o la cola de trabajos", e);
         }
 
-        // 4. Después de enviar todas las tareas, solicitar un apagado ordenado de los pools
-        //    Esto espera a que todas las tareas pendientes terminen, con timeouts y shutdownNow.
+        // 4. Esperar a que cada URL enviada termine (todas sus salidas escritas o fallidas) y, con
+        //    los pools ya vacíos, apagarlos en el orden del pipeline.
+        RunReport report = pipeline.drain();
         ExecutorConfig.shutdownAll(executors);
+        pipeline.finish();
+
+        // 5. Resultado por URL y tiempo total; reintentos y respaldos de las descargas; resumen de
+        //    la caché de descargas (aciertos, revalidaciones y bytes ahorrados), de la reserva de rasters
+        //    y de las fuentes compartidas
+        System.out.println(report.summary());
+        System.out.println(pipeline.downloader().stats());
+        if (journal != null) {
+            System.out.println(journal.stats());
+        }
+        if (pipeline.cache() != null) {
+            System.out.println(pipeline.cache().stats());
+        }
+        System.out.println(pipeline.rasterPool().stats());
+        System.out.println(SourceImage.stats());
+        if (reporter != null) {
+            reporter.close();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,254 @@
+package uv.poo.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AdaptivePoolController: ajusta en caliente el número de hilos de cada etapa según el rendimiento
+ * que mide, para mantener saturada la etapa que hace de cuello de botella en cualquier máquina.
+ *
+ * Cada intervalo toma de cada pool las tareas terminadas y el tiempo ocupado, y con ello calcula:
+ *  - rendimiento (tareas/s) y uso medio de los hilos;
+ *  - concurrencia realmente necesaria por la ley de Little (L = λ·W = tiempo ocupado / intervalo).
+ *
+ * El control es de aumento aditivo con prueba, al estilo de TCP Vegas: si la etapa está saturada
+ * (tiene cola y sus hilos ocupados) se añade un hilo; en el intervalo siguiente se comprueba que el
+ * rendimiento subió en proporción. Si no subió (la etapa compite por CPU o disco con otras) se
+ * deshace el cambio y se espera unos intervalos antes de volver a probar. Las etapas ociosas ceden
+ * hilos hasta lo que indica la ley de Little. Cada decisión se imprime por consola.
+ *
+ * Las etapas cuyo número de hilos se fijó con una propiedad del sistema no se ajustan
+ * (ver {@link PipelineSettings#pinnedStages}).
+ */
+public class AdaptivePoolController implements AutoCloseable {
+
+    /** Uso mínimo de los hilos para considerar saturada una etapa con cola. */
+    static final double SATURATED = 0.85;
+    /** Uso por debajo del cual una etapa sin cola se considera ociosa. */
+    static final double IDLE = 0.5;
+    /** Fracción de la mejora lineal que debe conseguir un hilo más para conservarlo. */
+    static final double MIN_GAIN = 0.25;
+    /** Intervalos sin volver a crecer tras una prueba fallida. */
+    static final int HOLD_TICKS = 5;
+    /** Intervalos ociosos seguidos antes de ceder hilos. */
+    static final int IDLE_TICKS = 2;
+
+    private final List<Tuned> stages = new ArrayList<>();
+    private final ScheduledExecutorService timer;
+
+    /**
+     * @param executors pools a ajustar
+     */
+    private AdaptivePoolController(ExecutorConfig executors) {
+        PipelineSettings s = executors.settings;
+        if (!s.pinnedStages.contains("download")) {
+            stages.add(new Tuned((BoundedVirtualExecutor) executors.downloadPool,
+                    new Limit("download", s.downloadConcurrency, 1, s.maxDownloadConcurrency)));
+        }
+        addStagePool(executors.decodePool, s);
+        addStagePool(executors.filterPool, s);
+        addStagePool(executors.encodePool, s);
+        addStagePool(executors.ioPool, s);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pool-controller");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(this::tick, s.adaptiveIntervalMillis, s.adaptiveIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void addStagePool(ExecutorService pool, PipelineSettings s) {
+        StagePool stagePool = (StagePool) pool;
+        if (!s.pinnedStages.contains(stagePool.stage())) {
+            stages.add(new Tuned(stagePool,
+                    new Limit(stagePool.stage(), stagePool.getMaximumPoolSize(), 1, s.maxStageThreads)));
+        }
+    }
+
+    /**
+     * Arranca el control adaptativo de los pools indicados.
+     *
+     * @param executors pools a ajustar
+     * @return controlador en marcha; {@link #close()} lo detiene
+     */
+    public static AdaptivePoolController start(ExecutorConfig executors) {
+        return new AdaptivePoolController(executors);
+    }
+
+    /**
+     * Un intervalo de control: muestrea cada etapa, decide y aplica el nuevo tamaño.
+     */
+    private void tick() {
+        try {
+            for (Tuned stage : stages) {
+                stage.tick();
+            }
+        } catch (RuntimeException e) {
+            // Un fallo del controlador no debe parar el pipeline ni los ajustes siguientes
+            System.err.println("Error en el ajuste de pools: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Detiene los ajustes; los pools se quedan con el tamaño que tengan.
+     */
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Etapa ajustada: lee los contadores del pool y le aplica las decisiones de su {@link Limit}.
+     */
+    private static class Tuned {
+        private final StagePool pool;
+        private final BoundedVirtualExecutor downloads;
+        private final Limit limit;
+        private long lastBusy;
+        private long lastCompleted;
+        private long lastNanos = System.nanoTime();
+
+        Tuned(StagePool pool, Limit limit) {
+            this.pool = pool;
+            this.downloads = null;
+            this.limit = limit;
+        }
+
+        Tuned(BoundedVirtualExecutor downloads, Limit limit) {
+            this.pool = null;
+            this.downloads = downloads;
+            this.limit = limit;
+        }
+
+        void tick() {
+            long now       = System.nanoTime();
+            long elapsed   = Math.max(1, now - lastNanos);
+            long busy      = pool != null ? pool.busyNanos() : downloads.busyNanos();
+            long completed = pool != null ? pool.completedTasks() : downloads.completedTasks();
+            // Descargas: la "cola" son los llamadores esperando turno en el semáforo
+            int backlog    = pool != null ? pool.getQueue().size() : downloads.waiting();
+            double throughput  = (completed - lastCompleted) / (elapsed / 1e9);
+            double busyAverage = (busy - lastBusy) / (double) elapsed;
+            lastNanos = now;
+            lastBusy = busy;
+            lastCompleted = completed;
+
+            int before = limit.current();
+            int after = limit.update(throughput, busyAverage, backlog);
+            if (after != before) {
+                if (pool != null) {
+                    pool.resize(after);
+                } else {
+                    downloads.setMaxConcurrent(after);
+                }
+                System.out.println("Ajuste de pools: " + limit.name + " " + before + " -> " + after
+                        + " (" + limit.reason() + ")");
+            }
+        }
+    }
+
+    /**
+     * Decisión de tamaño de una etapa, sin tocar ningún pool (se prueba de forma aislada).
+     */
+    static final class Limit {
+        final String name;
+        private final int min;
+        private final int max;
+        private int current;
+
+        private boolean probing;
+        private double throughputBeforeProbe;
+        private int hold;
+        private int idle;
+        private String reason = "";
+
+        /**
+         * @param name    nombre de la etapa
+         * @param initial tamaño inicial
+         * @param min     tamaño mínimo
+         * @param max     tamaño máximo (si el inicial es mayor, manda el inicial)
+         */
+        Limit(String name, int initial, int min, int max) {
+            this.name = name;
+            this.min = Math.max(1, min);
+            this.current = Math.max(this.min, initial);
+            this.max = Math.max(this.current, max);
+        }
+
+        /**
+         * Decide el tamaño para el siguiente intervalo.
+         *
+         * @param throughput  tareas terminadas por segundo en el último intervalo
+         * @param busyAverage media de tareas en ejecución (tiempo ocupado / intervalo), la L de Little
+         * @param backlog     tareas esperando en la cola de la etapa
+         * @return nuevo tamaño (puede ser el mismo)
+         */
+        int update(double throughput, double busyAverage, int backlog) {
+            // El tiempo ocupado se anota al terminar cada tarea: una tarea larga puede aportar más de
+            // un intervalo, así que el uso se recorta al 100%
+            double utilization = Math.min(1.0, busyAverage / current);
+            if (hold > 0) {
+                hold--;
+            }
+
+            // Paso 1: evaluar la prueba anterior; un hilo más debe aportar parte de la mejora lineal
+            if (probing) {
+                probing = false;
+                double expected = throughputBeforeProbe * (1 + MIN_GAIN / (current - 1));
+                if (throughput < expected) {
+                    reason = String.format(Locale.ROOT, "sin mejora: %.1f -> %.1f tareas/s",
+                            throughputBeforeProbe, throughput);
+                    hold = HOLD_TICKS;
+                    return current = Math.max(min, current - 1);
+                }
+            }
+
+            // Paso 2: saturada (cola y hilos ocupados): probar con un hilo más
+            if (backlog > 0 && utilization >= SATURATED) {
+                idle = 0;
+                if (hold == 0 && current < max) {
+                    reason = String.format(Locale.ROOT, "cola %d, uso %.0f%%, %.1f tareas/s",
+                            backlog, utilization * 100, throughput);
+                    probing = true;
+                    throughputBeforeProbe = throughput;
+                    return ++current;
+                }
+                return current;
+            }
+
+            // Paso 3: ociosa durante varios intervalos: bajar hacia la concurrencia que pide Little.
+            //         Sin tareas terminadas no hay muestra (p.ej. al arrancar, antes de recibir trabajo)
+            if (backlog == 0 && utilization < IDLE && throughput > 0) {
+                int needed = Math.max(min, (int) Math.ceil(busyAverage * 1.25));
+                if (++idle >= IDLE_TICKS && needed < current) {
+                    idle = 0;
+                    reason = String.format(Locale.ROOT, "ociosa: uso %.0f%%, necesarios %d",
+                            utilization * 100, needed);
+                    return --current;
+                }
+                return current;
+            }
+            idle = 0;
+            return current;
+        }
+
+        /**
+         * @return tamaño actual
+         */
+        int current() {
+            return current;
+        }
+
+        /**
+         * @return motivo de la última decisión que cambió el tamaño
+         */
+        String reason() {
+            return reason;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package uv.poo.Config;
+
+/**
+ * Backpressure: política que aplica una etapa del pipeline cuando su cola acotada está llena.
+ *  - BLOCK: el hilo que envía la tarea se bloquea hasta que haya espacio en la cola.
+ *  - CALLER_RUNS: el hilo que envía la tarea la ejecuta él mismo (frena a la etapa anterior).
+ */
+public enum Backpressure {
+    BLOCK,
+    CALLER_RUNS
+}
@@ -0,0 +1,171 @@
+package uv.poo.Config;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BoundedVirtualExecutor: ejecuta cada tarea en su propio hilo virtual, pero con un máximo de
+ * tareas simultáneas.
+ *
+ * Pensado para etapas que pasan casi todo el tiempo bloqueadas en I/O (descargas): pueden tener
+ * cientos de tareas en curso sin gastar hilos de plataforma. Cuando se alcanza el límite, se
+ * aplica la misma {@link Backpressure} que en las demás etapas: bloquear al llamador o ejecutar
+ * la tarea en su hilo.
+ *
+ * El límite puede cambiarse en caliente con {@link #setMaxConcurrent(int)} (lo usa
+ * {@link AdaptivePoolController}); igual que {@link StagePool}, mide el tiempo en curso de las
+ * tareas y cuántas terminan.
+ */
+public class BoundedVirtualExecutor extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+    private final ResizableSemaphore permits;
+    private volatile int maxConcurrent;
+    private final Backpressure backpressure;
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * @param name          prefijo del nombre de los hilos virtuales
+     * @param maxConcurrent tareas simultáneas permitidas
+     * @param backpressure  política cuando se alcanza el límite
+     */
+    public BoundedVirtualExecutor(String name, int maxConcurrent, Backpressure backpressure) {
+        this.delegate = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory());
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.permits = new ResizableSemaphore(this.maxConcurrent);
+        this.backpressure = backpressure;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (delegate.isShutdown()) {
+            throw new RejectedExecutionException("El pool está apagado");
+        }
+        if (!permits.tryAcquire()) {
+            if (backpressure == Backpressure.CALLER_RUNS) {
+                command.run();
+                return;
+            }
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrumpido esperando turno", e);
+            }
+        }
+        try {
+            delegate.execute(() -> {
+                long start = System.nanoTime();
+                try {
+                    command.run();
+                } finally {
+                    busyNanos.add(System.nanoTime() - start);
+                    completed.increment();
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return tareas en curso en este momento
+     */
+    public int inFlight() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * @return llamadores esperando turno (sólo con la política BLOCK)
+     */
+    public int waiting() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * @return tareas simultáneas permitidas
+     */
+    public int maxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Cambia el límite de tareas simultáneas. Al reducirlo no se interrumpe ninguna tarea: las
+     * nuevas esperan hasta que las que sobran terminan.
+     *
+     * @param limit nuevo límite (al menos 1)
+     */
+    public synchronized void setMaxConcurrent(int limit) {
+        int n = Math.max(1, limit);
+        int delta = n - maxConcurrent;
+        if (delta > 0) {
+            permits.release(delta);
+        } else if (delta < 0) {
+            permits.reduce(-delta);
+        }
+        maxConcurrent = n;
+    }
+
+    /**
+     * @return nanosegundos acumulados por las tareas terminadas
+     */
+    public long busyNanos() {
+        return busyNanos.sum();
+    }
+
+    /**
+     * @return tareas terminadas
+     */
+    public long completedTasks() {
+        return completed.sum();
+    }
+
+    /**
+     * Semáforo que deja reducir permisos sin esperar a que estén libres (pueden quedar negativos).
+     */
+    private static class ResizableSemaphore extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        ResizableSemaphore(int permits) {
+            super(permits);
+        }
+
+        void reduce(int n) {
+            reducePermits(n);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -1,68 +1,175 @@
 package uv.poo.Config;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * ExecutorConfig: configura y gestiona tres pools de hilos para distintas fases del flujo:
- *  - downloadPool: descarga de imágenes (I/O de red)
+ * ExecutorConfig: configura y gestiona un pool de hilos por cada etapa del pipeline:
+ *  - downloadPool: descarga de los bytes de cada imagen (I/O de red, en hilos virtuales)
+ *  - decodePool: decodificación de los bytes a BufferedImage (CPU)
  *  - filterPool: aplicación de filtros a las imágenes (procesamiento en CPU)
- *  - ioPool: escritura de imágenes en disco (I/O de archivos)
+ *  - encodePool: codificación de las imágenes filtradas a bytes (CPU)
+ *  - ioPool: escritura de los bytes codificados en disco (I/O de archivos)
+ *
+ * Todas las colas son acotadas: cuando una etapa se llena, la política de {@link Backpressure}
+ * frena a la etapa anterior en lugar de acumular imágenes en memoria.
+ *
+ * Con settings.adaptive, un {@link AdaptivePoolController} ajusta el tamaño de cada pool durante
+ * la ejecución según el rendimiento medido de su etapa.
  *
  * Proporciona métodos para crear estos pools y apagarlos correctamente al finalizar.
  */
 public class ExecutorConfig {
 
     /**
-     * Pool de hilos para descargas: permite hasta 4 descargas concurrentes,
-     * suficiente para un throughput moderado sin saturar la red.
+     * Pool de descargas: cada descarga corre en un hilo virtual, con un máximo de
+     * settings.downloadConcurrency descargas simultáneas (el límite por host lo aplica el
+     * HttpDownloader).
      */
     public final ExecutorService downloadPool;
 
     /**
-     * Pool de hilos para el filtrado de imágenes: 4 hilos para procesar varias imágenes en paralelo,
+     * Pool de hilos para decodificar los bytes descargados a BufferedImage.
+     */
+    public final ExecutorService decodePool;
+
+    /**
+     * Pool de hilos para el filtrado de imágenes: varios hilos para procesar imágenes en paralelo,
      * aprovechando múltiples núcleos de CPU.
      */
     public final ExecutorService filterPool;
 
     /**
-     * Pool de hilos para operaciones de escritura en disco: 2 hilos para evitar exceso de I/O de archivos,
+     * Pool de hilos para codificar (PNG, etc.) las imágenes filtradas antes de escribirlas.
+     */
+    public final ExecutorService encodePool;
+
+    /**
+     * Pool de hilos para operaciones de escritura en disco: pocos hilos para evitar exceso de I/O de archivos,
      * equilibrando concurrencia y rendimiento de disco.
      */
     public final ExecutorService ioPool;
 
     /**
-     * Constructor privado: inicializa los tres pools con tamaños de hilo fijos.
-     * Usamos Executors.newFixedThreadPool para un número limitado y controlado de hilos.
+     * Configuración con la que se crearon los pools.
+     */
+    public final PipelineSettings settings;
+
+    /**
+     * Control adaptativo del tamaño de los pools; null si está desactivado.
+     */
+    private AdaptivePoolController controller;
+
+    /**
+     * Constructor privado: inicializa los pools de CPU y disco con tamaños de hilo fijos y colas
+     * acotadas, y el de descargas sobre hilos virtuales.
      *
+     * @param settings número de hilos, capacidad de cola y política de cada etapa.
      */
-    private ExecutorConfig() {
-        this.downloadPool = Executors.newFixedThreadPool(4);
-        this.filterPool   = Executors.newFixedThreadPool(4);
-        this.ioPool       = Executors.newFixedThreadPool(2);
+    private ExecutorConfig(PipelineSettings settings) {
+        this.settings     = settings;
+        this.downloadPool = new BoundedVirtualExecutor("download", settings.downloadConcurrency, settings.backpressure);
+        this.decodePool   = newStagePool("decode", settings.decodeThreads, settings);
+        this.filterPool   = newStagePool("filter", settings.filterThreads, settings);
+        this.encodePool   = newStagePool("encode", settings.encodeThreads, settings);
+        this.ioPool       = newStagePool("io", settings.ioThreads, settings);
     }
 
     /**
      * Crea y devuelve una nueva instancia de ExecutorConfig,
-     * con los pools ya inicializados.
+     * con los pools ya inicializados según las propiedades del sistema.
      *
      * @return instancia de configuración de ejecutores.
      */
     public static ExecutorConfig createExecutors() {
-        return new ExecutorConfig();
+        return createExecutors(PipelineSettings.fromSystemProperties());
     }
 
     /**
-     * Apaga todos los pools de hilos en orden:
+     * Crea una instancia de ExecutorConfig con la configuración indicada.
+     *
+     * @param settings configuración de las etapas.
+     * @return instancia de configuración de ejecutores.
+     */
+    public static ExecutorConfig createExecutors(PipelineSettings settings) {
+        ExecutorConfig cfg = new ExecutorConfig(settings);
+        if (settings.adaptive && settings.adaptiveIntervalMillis > 0) {
+            cfg.controller = AdaptivePoolController.start(cfg);
+        }
+        return cfg;
+    }
+
+    /**
+     * Crea el pool de una etapa: número fijo de hilos, cola acotada y política de backpressure.
+     *
+     * @param stage    nombre de la etapa (se usa en el nombre de los hilos).
+     * @param threads  número de hilos.
+     * @param settings configuración con la capacidad de cola y la política.
+     * @return pool de la etapa.
+     */
+    private static StagePool newStagePool(String stage, int threads, PipelineSettings settings) {
+        RejectedExecutionHandler handler = settings.backpressure == Backpressure.CALLER_RUNS
+                ? new ThreadPoolExecutor.CallerRunsPolicy()
+                : new BlockWhenFull();
+        return new StagePool(
+                stage, threads,
+                new ArrayBlockingQueue<>(settings.queueCapacity),
+                namedThreads(stage),
+                handler);
+    }
+
+    /**
+     * Fábrica de hilos con nombre "stage-N" para identificar la etapa en volcados y logs.
+     */
+    private static ThreadFactory namedThreads(String stage) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> new Thread(r, stage + "-" + counter.incrementAndGet());
+    }
+
+    /**
+     * Política BLOCK: en lugar de rechazar la tarea, espera a que haya espacio en la cola.
+     * Si el pool ya está apagado, la tarea se rechaza como lo haría la política por defecto.
+     */
+    private static class BlockWhenFull implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("El pool está apagado");
+            }
+            try {
+                executor.getQueue().put(r);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrumpido esperando espacio en la cola", e);
+            }
+        }
+    }
+
+    /**
+     * Detiene el control adaptativo y apaga todos los pools de hilos en el orden del pipeline, de
+     * modo que cada etapa termina de enviar trabajo a la siguiente antes de que ésta deje de aceptarlo:
      * 1. Intenta un apagado amable (shutdown), esperando un tiempo límite.
      * 2. Si no finaliza tras el timeout, fuerza un apagado inmediato (shutdownNow).
      *
+     * Debe llamarse después de ImagePipeline.drain(): entonces los pools ya están vacíos y el
+     * tiempo límite sólo protege de tareas colgadas, no decide cuánto trabajo se completa.
+     *
      * @param cfg configuración que contiene los pools a cerrar.
      */
     public static void shutdownAll(ExecutorConfig cfg) {
+        if (cfg.controller != null) {
+            cfg.controller.close();
+        }
         shutdownPool(cfg.downloadPool);
+        shutdownPool(cfg.decodePool);
         shutdownPool(cfg.filterPool);
+        shutdownPool(cfg.encodePool);
         shutdownPool(cfg.ioPool);
     }
 
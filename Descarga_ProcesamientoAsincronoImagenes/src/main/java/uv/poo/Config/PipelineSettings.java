@@ -0,0 +1,262 @@
+package uv.poo.Config;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * PipelineSettings: parámetros de las etapas del pipeline de imágenes
+ * (descarga → decodificación → filtrado → codificación → escritura).
+ *
+ * Cada etapa de CPU o disco tiene un número de hilos y una capacidad de cola acotada; las
+ * descargas usan hilos virtuales con un máximo de descargas simultáneas. Además se limita
+ * el número de imágenes a resolución completa que pueden estar en memoria al mismo tiempo.
+ *
+ * Los valores por defecto pueden sobrescribirse con propiedades del sistema, por ejemplo:
+ * -Dpipeline.filter.threads=8 -Dpipeline.maxImagesInFlight=2 -Dpipeline.backpressure=CALLER_RUNS
+ *
+ * {@link #fromSystemProperties()} parte de {@link #forProcessors(int)}: el tamaño inicial de cada
+ * etapa depende de los núcleos de la máquina, y con {@link #adaptive} se ajusta después según el
+ * rendimiento medido. Fijar los hilos de una etapa con su propiedad la excluye del ajuste.
+ */
+public class PipelineSettings {
+
+    /** Descargas simultáneas (cada una en un hilo virtual). */
+    public int downloadConcurrency = 32;
+    /** Descargas simultáneas por host (host:puerto). */
+    public int downloadPerHost = 8;
+    /** Milisegundos máximos de cada intento de descarga (cabeceras y cuerpo). */
+    public long downloadTimeoutMillis = 30_000;
+    /** Milisegundos para establecer cada conexión. */
+    public long downloadConnectTimeoutMillis = 5_000;
+    /** Intentos por descarga ante fallos transitorios (red, tiempo agotado, 408, 429, 5xx). */
+    public int downloadAttempts = 3;
+    /** Milisegundos antes de lanzar una petición de respaldo; 0 la desactiva, -1 usa el p95 observado. */
+    public long downloadHedgeMillis = -1;
+    /** Fallos seguidos que abren el circuito de un host; 0 lo desactiva. */
+    public int downloadBreakerFailures = 5;
+    /** Hilos de la etapa de decodificación (CPU). */
+    public int decodeThreads = 2;
+    /** Hilos de la etapa de filtrado (CPU). */
+    public int filterThreads = 4;
+    /** Hilos de la etapa de codificación (CPU). */
+    public int encodeThreads = 2;
+    /** Hilos de la etapa de escritura en disco (I/O de archivos). */
+    public int ioThreads = 2;
+
+    /** Capacidad de la cola de cada etapa. */
+    public int queueCapacity = 16;
+
+    /** Máximo de imágenes decodificadas (y sus salidas filtradas) residentes a la vez. */
+    public int maxImagesInFlight = 4;
+
+    /** Ajustar el tamaño de los pools durante la ejecución (ver AdaptivePoolController). */
+    public boolean adaptive = true;
+    /** Milisegundos entre ajustes de los pools. */
+    public long adaptiveIntervalMillis = 2000;
+    /** Hilos máximos que el ajuste puede dar a una etapa de CPU o disco. */
+    public int maxStageThreads = 8;
+    /** Descargas simultáneas máximas que el ajuste puede permitir. */
+    public int maxDownloadConcurrency = 256;
+    /** Etapas cuyo número de hilos se fijó explícitamente y no se ajustan ("download", "filter"...). */
+    public final Set<String> pinnedStages = new HashSet<>();
+
+    /** Política a aplicar cuando la cola de una etapa está llena. */
+    public Backpressure backpressure = Backpressure.BLOCK;
+
+    /** Bytes máximos de imágenes de destino retenidas para reutilizarlas (ver uv.poo.Filter.RasterPool). */
+    public long rasterPoolMaxBytes = 256L * 1024 * 1024;
+
+    /**
+     * Modo incremental: sólo se procesan las fuentes nuevas o cambiadas y los filtros cuya versión
+     * cambió, y al final se borran las salidas huérfanas (ver OutputManifest).
+     */
+    public boolean incremental = false;
+
+    /** Medir las etapas e imprimir un resumen al terminar (ver uv.poo.Metrics). */
+    public boolean metrics = true;
+    /** Segundos entre informes de métricas durante la ejecución; 0 sólo informa al terminar. */
+    public long metricsIntervalSeconds = 30;
+
+    /**
+     * Archivo con las salidas a generar (ver uv.poo.Pipeline.FilterGraph); si no existe se generan
+     * las de siempre: sepia, bw y sharpen a tamaño completo.
+     */
+    public String filterGraph = "filtros.conf";
+
+    /**
+     * Perfil de codificación de las salidas: png-fast, png, png-small, png-imageio, jpeg o jpeg-fast
+     * (ver uv.poo.IO.EncodingProfile).
+     */
+    public String encoding = "png";
+
+    /**
+     * Decodificador de las imágenes descargadas: imageio (lectores reutilizados y destinos de la
+     * reserva), imageio-basic o el nombre de uno registrado (ver uv.poo.IO.ImageDecoder).
+     */
+    public String decoder = "imageio";
+
+    /**
+     * Destino de las salidas: "dir" (un archivo por salida en imagenes_filtradas) o "archive"
+     * (segmentos grandes con índice en imagenes_filtradas, ver uv.poo.IO.SegmentArchiveSink).
+     */
+    public String output = "dir";
+    /** Bytes de salidas que se escriben y sincronizan juntos en modo "archive". */
+    public long archiveBatchBytes = 8L * 1024 * 1024;
+    /** Milisegundos máximos que una salida espera a que se escriba su lote en modo "archive". */
+    public long archiveLingerMillis = 100;
+    /** Tamaño a partir del cual se empieza un segmento nuevo en modo "archive". */
+    public long archiveSegmentBytes = 1024L * 1024 * 1024;
+
+    /**
+     * Niveles reducidos que se generan de cada salida, como cajas de tamaño máximo separadas por
+     * comas (p.ej. "1024x1024,256x256"); vacío no genera ninguno (ver uv.poo.Filter.PyramidGenerator).
+     */
+    public String pyramid = "";
+
+    /**
+     * Píxeles a partir de los cuales una imagen a tamaño completo se procesa por franjas, sin
+     * decodificarla entera (ver uv.poo.Task.StripTask); 0 lo desactiva.
+     */
+    public long streamingPixels = 100_000_000L;
+    /** Filas de cada franja en el modo por franjas. */
+    public int streamingStripRows = 256;
+
+    /**
+     * Directorio de la cola de trabajos persistente (ver uv.poo.IO.JobJournal): con ella una
+     * ejecución interrumpida se reanuda donde quedó y varios procesos pueden repartirse la misma
+     * lista de URLs. Null o vacío la desactiva.
+     */
+    public String journalDir = "";
+    /** Milisegundos sin señales tras los que se recupera una URL tomada por otro proceso. */
+    public long journalLeaseMillis = 60_000;
+    /** Ejecuciones que puede fallar una URL antes de que la cola deje de ofrecerla. */
+    public int journalAttempts = 3;
+
+    /** Archivo con el resultado de cada URL (ver uv.poo.Pipeline.RunReport); null o vacío no lo escribe. */
+    public String reportFile = "informe_ejecucion.tsv";
+
+    /** Directorio de la caché de descargas; null o vacío la desactiva. */
+    public String cacheDir = "cache_descargas";
+    /** Tamaño máximo de la caché de descargas en bytes. */
+    public long cacheMaxBytes = 2L * 1024 * 1024 * 1024;
+    /** Segundos durante los que una entrada de caché se usa sin revalidar con el servidor. */
+    public long cacheMinFreshSeconds = 0;
+
+    /**
+     * Configuración inicial para una máquina con el número de núcleos indicado:
+     *  - filtrado: la mitad de los núcleos (cada imagen ya se reparte por bandas en el ForkJoinPool);
+     *  - codificación: la mitad de los núcleos (cada imagen se comprime en un solo hilo);
+     *  - decodificación: un cuarto de los núcleos;
+     *  - escritura: 2 hilos, que bastan para un disco;
+     *  - máximo por etapa para el ajuste adaptativo: el doble de núcleos.
+     *
+     * @param cores núcleos disponibles
+     * @return configuración sin aplicar propiedades del sistema
+     */
+    public static PipelineSettings forProcessors(int cores) {
+        PipelineSettings s = new PipelineSettings();
+        int n = Math.max(1, cores);
+        s.decodeThreads                = Math.max(1, n / 4);
+        s.filterThreads                = Math.max(2, n / 2);
+        s.encodeThreads                = Math.max(2, n / 2);
+        s.ioThreads                    = 2;
+        s.maxStageThreads              = Math.max(4, 2 * n);
+        return s;
+    }
+
+    /**
+     * Crea la configuración para esta máquina aplicando las propiedades del sistema "pipeline.*" que existan.
+     *
+     * @return configuración del pipeline.
+     */
+    public static PipelineSettings fromSystemProperties() {
+        PipelineSettings s = forProcessors(Runtime.getRuntime().availableProcessors());
+        s.downloadConcurrency          = s.threadsProperty("download", "pipeline.download.concurrency", s.downloadConcurrency);
+        s.downloadPerHost              = intProperty("pipeline.download.perHost", s.downloadPerHost);
+        s.downloadTimeoutMillis        = longProperty("pipeline.download.timeoutMillis", s.downloadTimeoutMillis);
+        s.downloadConnectTimeoutMillis = longProperty("pipeline.download.connectTimeoutMillis", s.downloadConnectTimeoutMillis);
+        s.downloadAttempts             = intProperty("pipeline.download.attempts", s.downloadAttempts);
+        s.downloadHedgeMillis          = longProperty("pipeline.download.hedgeMillis", s.downloadHedgeMillis);
+        s.downloadBreakerFailures      = (int) longProperty("pipeline.download.breakerFailures", s.downloadBreakerFailures);
+        s.decodeThreads                = s.threadsProperty("decode", "pipeline.decode.threads", s.decodeThreads);
+        s.filterThreads                = s.threadsProperty("filter", "pipeline.filter.threads", s.filterThreads);
+        s.encodeThreads                = s.threadsProperty("encode", "pipeline.encode.threads", s.encodeThreads);
+        s.ioThreads                    = s.threadsProperty("io", "pipeline.io.threads", s.ioThreads);
+        s.adaptive                     = Boolean.parseBoolean(System.getProperty("pipeline.adaptive", Boolean.toString(s.adaptive)));
+        s.adaptiveIntervalMillis       = longProperty("pipeline.adaptive.intervalMillis", s.adaptiveIntervalMillis);
+        s.maxStageThreads              = intProperty("pipeline.adaptive.maxThreads", s.maxStageThreads);
+        s.maxDownloadConcurrency       = intProperty("pipeline.adaptive.maxDownloads", s.maxDownloadConcurrency);
+        s.queueCapacity                = intProperty("pipeline.queueCapacity", s.queueCapacity);
+        s.maxImagesInFlight            = intProperty("pipeline.maxImagesInFlight", s.maxImagesInFlight);
+        s.rasterPoolMaxBytes           = longProperty("pipeline.rasterPool.maxBytes", s.rasterPoolMaxBytes);
+        s.filterGraph                  = System.getProperty("pipeline.filters", s.filterGraph);
+        s.encoding                     = System.getProperty("pipeline.encoding", s.encoding);
+        s.pyramid                      = System.getProperty("pipeline.pyramid", s.pyramid);
+        s.streamingPixels              = longProperty("pipeline.streaming.pixels", s.streamingPixels);
+        s.streamingStripRows           = intProperty("pipeline.streaming.stripRows", s.streamingStripRows);
+        s.decoder                      = System.getProperty("pipeline.decoder", s.decoder);
+        s.output                       = System.getProperty("pipeline.output", s.output);
+        s.archiveBatchBytes            = longProperty("pipeline.archive.batchBytes", s.archiveBatchBytes);
+        s.archiveLingerMillis          = longProperty("pipeline.archive.lingerMillis", s.archiveLingerMillis);
+        s.archiveSegmentBytes          = longProperty("pipeline.archive.segmentBytes", s.archiveSegmentBytes);
+        s.reportFile                   = System.getProperty("pipeline.report", s.reportFile);
+        s.journalDir                   = System.getProperty("pipeline.journal", s.journalDir);
+        s.journalLeaseMillis           = longProperty("pipeline.journal.leaseMillis", s.journalLeaseMillis);
+        s.journalAttempts              = intProperty("pipeline.journal.attempts", s.journalAttempts);
+        s.cacheDir                     = System.getProperty("pipeline.cache.dir", s.cacheDir);
+        s.cacheMaxBytes                = longProperty("pipeline.cache.maxBytes", s.cacheMaxBytes);
+        s.cacheMinFreshSeconds         = longProperty("pipeline.cache.minFreshSeconds", s.cacheMinFreshSeconds);
+        s.metrics                      = Boolean.parseBoolean(System.getProperty("pipeline.metrics", Boolean.toString(s.metrics)));
+        s.metricsIntervalSeconds       = longProperty("pipeline.metrics.interval", s.metricsIntervalSeconds);
+        s.incremental                  = Boolean.parseBoolean(System.getProperty("pipeline.incremental", Boolean.toString(s.incremental)));
+        String policy = System.getProperty("pipeline.backpressure");
+        if (policy != null) {
+            s.backpressure               = Backpressure.valueOf(policy.trim().toUpperCase());
+        }
+        return s;
+    }
+
+    /**
+     * Lee el número de hilos de una etapa; si la propiedad existe, la etapa queda fuera del ajuste adaptativo.
+     */
+    private int threadsProperty(String stage, String key, int defaultValue) {
+        if (System.getProperty(key) != null) {
+            pinnedStages.add(stage);
+        }
+        return intProperty(key, defaultValue);
+    }
+
+    /**
+     * Lee una propiedad long no negativa; si no existe o no es válida, devuelve el valor por defecto.
+     */
+    static long longProperty(String key, long defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            long parsed = Long.parseLong(value.trim());
+            return parsed >= 0 ? parsed : defaultValue;
+        } catch (NumberFormatException e) {
+            System.err.println("Aviso: valor inválido para " + key + ": '" + value + "'");
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Lee una propiedad entera positiva; si no existe o no es válida, devuelve el valor por defecto.
+     */
+    static int intProperty(String key, int defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed > 0 ? parsed : defaultValue;
+        } catch (NumberFormatException e) {
+            System.err.println("Aviso: valor inválido para " + key + ": '" + value + "'");
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package uv.poo.Config;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * StagePool: pool de hilos de una etapa del pipeline que, además, mide cuánto trabajo hace.
+ *
+ * Acumula el tiempo que sus hilos pasan ejecutando tareas y el número de tareas terminadas, que es
+ * lo que necesita {@link AdaptivePoolController} para estimar el rendimiento y el uso de la etapa.
+ * El número de hilos se puede cambiar en caliente con {@link #resize(int)}.
+ */
+public class StagePool extends ThreadPoolExecutor {
+
+    private final String stage;
+    private final ThreadLocal<Long> startNanos = new ThreadLocal<>();
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * @param stage   nombre de la etapa
+     * @param threads número inicial de hilos
+     * @param queue   cola acotada de la etapa
+     * @param factory fábrica de hilos
+     * @param handler política cuando la cola está llena
+     */
+    public StagePool(String stage, int threads, BlockingQueue<Runnable> queue,
+                     ThreadFactory factory, RejectedExecutionHandler handler) {
+        super(threads, threads, 0L, TimeUnit.MILLISECONDS, queue, factory, handler);
+        this.stage = stage;
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        startNanos.set(System.nanoTime());
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        Long start = startNanos.get();
+        if (start != null) {
+            busyNanos.add(System.nanoTime() - start);
+        }
+        completed.increment();
+    }
+
+    /**
+     * Cambia el número de hilos del pool. Al crecer se sube antes el máximo y al reducir antes el
+     * núcleo, para que en ningún momento core > max; los hilos sobrantes terminan al acabar su tarea.
+     *
+     * @param threads nuevo número de hilos (al menos 1)
+     */
+    public void resize(int threads) {
+        int n = Math.max(1, threads);
+        if (n > getMaximumPoolSize()) {
+            setMaximumPoolSize(n);
+            setCorePoolSize(n);
+        } else {
+            setCorePoolSize(n);
+            setMaximumPoolSize(n);
+        }
+    }
+
+    /**
+     * @return nombre de la etapa
+     */
+    public String stage() {
+        return stage;
+    }
+
+    /**
+     * @return nanosegundos acumulados ejecutando tareas
+     */
+    public long busyNanos() {
+        return busyNanos.sum();
+    }
+
+    /**
+     * @return tareas terminadas desde que se creó el pool
+     */
+    public long completedTasks() {
+        return completed.sum();
+    }
+}
@@ -0,0 +1,82 @@
+package uv.poo.Download;
+
+/**
+ * CircuitBreaker: cortocircuito de un host.
+ *
+ *  - Cerrado: las peticiones pasan; cada fallo seguido suma, un éxito pone la cuenta a 0.
+ *  - Abierto: tras {@code threshold} fallos seguidos; las peticiones se rechazan sin tocar la red
+ *    durante {@code openMillis}.
+ *  - Semiabierto: pasado ese tiempo se deja pasar una única petición de prueba; si va bien se
+ *    cierra y si falla se vuelve a abrir.
+ *
+ * Así un host caído no consume intentos, tiempos límite ni permisos de descarga del resto.
+ */
+public class CircuitBreaker {
+
+    /**
+     * Estado del circuito.
+     */
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int threshold;
+    private final long openNanos;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    /**
+     * @param threshold  fallos seguidos que abren el circuito
+     * @param openMillis milisegundos que permanece abierto
+     */
+    public CircuitBreaker(int threshold, long openMillis) {
+        this.threshold = Math.max(1, threshold);
+        this.openNanos = openMillis * 1_000_000L;
+    }
+
+    /**
+     * Pide paso para una petición.
+     *
+     * @return true si la petición puede hacerse
+     */
+    public synchronized boolean allow() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt >= openNanos) {
+                    // Una sola petición de prueba: las demás siguen rechazadas hasta saber el resultado
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Registra una petición que el host respondió (aunque sea con un error del cliente, 4xx).
+     */
+    public synchronized void onSuccess() {
+        failures = 0;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Registra un fallo del host (error de red, tiempo agotado o 5xx).
+     */
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= threshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * @return estado actual
+     */
+    public synchronized State state() {
+        return state;
+    }
+}
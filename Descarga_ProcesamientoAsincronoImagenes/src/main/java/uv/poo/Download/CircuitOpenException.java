@@ -0,0 +1,18 @@
+package uv.poo.Download;
+
+import java.io.IOException;
+
+/**
+ * Descarga rechazada sin tocar la red porque el circuito de su host está abierto.
+ */
+public class CircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param host host (host:puerto) con el circuito abierto
+     */
+    public CircuitOpenException(String host) {
+        super("Circuito abierto para " + host + ": demasiados fallos seguidos");
+    }
+}
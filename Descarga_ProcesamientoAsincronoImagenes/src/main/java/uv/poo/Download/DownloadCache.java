@@ -0,0 +1,384 @@
+package uv.poo.Download;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DownloadCache: caché en disco de los bytes codificados descargados, delante de {@link HttpDownloader}.
+ *
+ * Cada URL se guarda en dos archivos con el mismo nombre (SHA-256 de la URL):
+ *  - "clave.bin": el cuerpo de la respuesta tal como llegó.
+ *  - "clave.meta": URL, ETag, Last-Modified, max-age del servidor, fecha de guardado y SHA-256 del cuerpo.
+ *
+ * Una entrada "fresca" (dentro del max-age del servidor o de {@code minFreshSeconds}) se sirve sin
+ * tocar la red; si no, se revalida con If-None-Match / If-Modified-Since y un 304 reutiliza los bytes.
+ * El tamaño total se limita a {@code maxBytes} expulsando las entradas menos usadas (LRU).
+ */
+public class DownloadCache {
+
+    private final Path dir;
+    private final long maxBytes;
+    private final long minFreshSeconds;
+
+    /**
+     * Índice en memoria en orden de acceso (el primero es el menos usado recientemente).
+     */
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidated = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesFromCache = new AtomicLong();
+    private final AtomicLong bytesFromNetwork = new AtomicLong();
+
+    /**
+     * Metadatos de una entrada de la caché.
+     */
+    public static class Entry {
+        final String key;
+        final String url;
+        final String etag;
+        final String lastModified;
+        final long maxAgeSeconds;
+        final long storedAtMillis;
+        final long size;
+        final String contentHash;
+
+        Entry(String key, String url, String etag, String lastModified,
+              long maxAgeSeconds, long storedAtMillis, long size, String contentHash) {
+            this.key = key;
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.maxAgeSeconds = maxAgeSeconds;
+            this.storedAtMillis = storedAtMillis;
+            this.size = size;
+            this.contentHash = contentHash;
+        }
+
+        /** ETag del servidor, o null. */
+        public String etag() {
+            return etag;
+        }
+
+        /** Cabecera Last-Modified del servidor, o null. */
+        public String lastModified() {
+            return lastModified;
+        }
+
+        /** SHA-256 (hex) de los bytes guardados. */
+        public String contentHash() {
+            return contentHash;
+        }
+    }
+
+    /**
+     * Abre (o crea) la caché en el directorio indicado y carga su índice.
+     *
+     * @param dir             directorio de la caché
+     * @param maxBytes        tamaño máximo total de los cuerpos guardados
+     * @param minFreshSeconds segundos durante los que una entrada se sirve sin revalidar,
+     *                        aunque el servidor no indique max-age (0 = siempre revalidar)
+     * @throws IOException si no se puede crear o leer el directorio
+     */
+    public DownloadCache(Path dir, long maxBytes, long minFreshSeconds) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.minFreshSeconds = minFreshSeconds;
+        Files.createDirectories(dir);
+        load();
+    }
+
+    /**
+     * Busca la entrada de una URL.
+     *
+     * @param url URL descargada
+     * @return entrada o null si no está en caché
+     */
+    public synchronized Entry lookup(String url) {
+        return index.get(keyOf(url));
+    }
+
+    /**
+     * Indica si la entrada puede servirse sin consultar al servidor.
+     */
+    public boolean isFresh(Entry entry) {
+        long freshSeconds = Math.max(entry.maxAgeSeconds, minFreshSeconds);
+        return System.currentTimeMillis() - entry.storedAtMillis < freshSeconds * 1000;
+    }
+
+    /**
+     * Lee los bytes de una entrada y cuenta el acierto. Si el archivo desapareció o está
+     * corrupto, elimina la entrada y devuelve null.
+     *
+     * @param entry       entrada a leer
+     * @param revalidated true si se acaba de confirmar con un 304
+     * @return bytes guardados o null
+     */
+    public byte[] read(Entry entry, boolean revalidated) {
+        try {
+            byte[] data = Files.readAllBytes(bodyPath(entry.key));
+            if (data.length != entry.size || !entry.contentHash.equals(sha256(data))) {
+                throw new IOException("contenido dañado");
+            }
+            (revalidated ? this.revalidated : hits).incrementAndGet();
+            bytesFromCache.addAndGet(data.length);
+            touch(entry);
+            return data;
+        } catch (IOException e) {
+            System.err.println("Aviso: entrada de caché inválida para " + entry.url + ": " + e.getMessage());
+            remove(entry);
+            return null;
+        }
+    }
+
+    /**
+     * Renueva la fecha de una entrada tras un 304 (vuelve a ser fresca durante max-age).
+     *
+     * Si entre la consulta y el 304 la entrada fue expulsada (o sustituida por otro contenido), no
+     * se resucita: su cuerpo ya no está en disco y su tamaño ya no cuenta en el total.
+     *
+     * @param entry         entrada revalidada
+     * @param maxAgeSeconds max-age de la nueva respuesta (0 si no tiene)
+     * @return entrada actualizada, o null si ya no está en la caché (hay que descargar sin condiciones)
+     */
+    public Entry refresh(Entry entry, long maxAgeSeconds) {
+        Entry updated = new Entry(entry.key, entry.url, entry.etag, entry.lastModified,
+                maxAgeSeconds, System.currentTimeMillis(), entry.size, entry.contentHash);
+        synchronized (this) {
+            Entry current = index.get(entry.key);
+            if (current == null || !current.contentHash.equals(entry.contentHash)) {
+                return null;
+            }
+            try {
+                writeMeta(updated);
+            } catch (IOException e) {
+                System.err.println("Aviso: no se pudo actualizar la caché de " + entry.url + ": " + e.getMessage());
+                return current;
+            }
+            index.put(updated.key, updated);
+        }
+        return updated;
+    }
+
+    /**
+     * Guarda una respuesta completa descargada de la red y aplica la expulsión LRU.
+     *
+     * @param url           URL descargada
+     * @param data          cuerpo de la respuesta
+     * @param etag          cabecera ETag o null
+     * @param lastModified  cabecera Last-Modified o null
+     * @param maxAgeSeconds max-age de Cache-Control (0 si no tiene)
+     */
+    public void store(String url, byte[] data, String etag, String lastModified, long maxAgeSeconds) {
+        misses.incrementAndGet();
+        bytesFromNetwork.addAndGet(data.length);
+        if (data.length > maxBytes) {
+            return;
+        }
+        String key = keyOf(url);
+        Entry entry = new Entry(key, url, etag, lastModified, maxAgeSeconds,
+                System.currentTimeMillis(), data.length, sha256(data));
+        Path tmp = null;
+        try {
+            // Escribir a un temporal y moverlo: un lector nunca ve un archivo a medias
+            tmp = Files.createTempFile(dir, key, ".tmp");
+            Files.write(tmp, data);
+            // Los archivos de una clave sólo cambian con el cerrojo tomado: así una expulsión o un
+            // borrado de otro hilo no se lleva el cuerpo recién guardado
+            synchronized (this) {
+                Files.move(tmp, bodyPath(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                writeMeta(entry);
+                Entry previous = index.put(key, entry);
+                totalBytes += entry.size - (previous == null ? 0 : previous.size);
+                Iterator<Map.Entry<String, Entry>> it = index.entrySet().iterator();
+                while (totalBytes > maxBytes && it.hasNext()) {
+                    Entry eldest = it.next().getValue();
+                    if (eldest.key.equals(key)) {
+                        continue;
+                    }
+                    it.remove();
+                    totalBytes -= eldest.size;
+                    deleteFiles(eldest.key);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Aviso: no se pudo guardar en caché " + url + ": " + e.getMessage());
+            try {
+                if (tmp != null) {
+                    Files.deleteIfExists(tmp);
+                }
+            } catch (IOException ignored) {
+                // Queda un .tmp huérfano en el directorio de la caché
+            }
+        }
+    }
+
+    /**
+     * Resumen de los contadores de la caché.
+     */
+    public String stats() {
+        return String.format("Caché: %d aciertos, %d revalidados (304), %d fallos, %d bytes servidos de caché, %d bytes de red, %d bytes en disco",
+                hits.get(), revalidated.get(), misses.get(), bytesFromCache.get(), bytesFromNetwork.get(), sizeBytes());
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long revalidated() {
+        return revalidated.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long bytesFromCache() {
+        return bytesFromCache.get();
+    }
+
+    public long bytesFromNetwork() {
+        return bytesFromNetwork.get();
+    }
+
+    public synchronized long sizeBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Carga el índice desde los archivos .meta, ordenados por su última modificación
+     * (que se actualiza en cada acierto) para reconstruir el orden LRU.
+     */
+    private void load() throws IOException {
+        Map<Entry, FileTime> lastUse = new HashMap<>();
+        try (DirectoryStream<Path> metas = Files.newDirectoryStream(dir, "*.meta")) {
+            for (Path meta : metas) {
+                Entry entry = readMeta(meta);
+                if (entry != null && Files.exists(bodyPath(entry.key))) {
+                    lastUse.put(entry, Files.getLastModifiedTime(meta));
+                }
+            }
+        }
+        List<Entry> entries = new ArrayList<>(lastUse.keySet());
+        entries.sort(Comparator.comparing(lastUse::get));
+        for (Entry entry : entries) {
+            index.put(entry.key, entry);
+            totalBytes += entry.size;
+        }
+    }
+
+    private Entry readMeta(Path meta) {
+        Properties p = new Properties();
+        try (InputStream in = Files.newInputStream(meta)) {
+            p.load(in);
+            String name = meta.getFileName().toString();
+            return new Entry(name.substring(0, name.length() - ".meta".length()),
+                    p.getProperty("url"),
+                    p.getProperty("etag"),
+                    p.getProperty("lastModified"),
+                    Long.parseLong(p.getProperty("maxAge", "0")),
+                    Long.parseLong(p.getProperty("storedAt")),
+                    Long.parseLong(p.getProperty("size")),
+                    p.getProperty("sha256"));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Aviso: metadatos de caché ilegibles " + meta + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeMeta(Entry entry) throws IOException {
+        Properties p = new Properties();
+        p.setProperty("url", entry.url);
+        if (entry.etag != null) {
+            p.setProperty("etag", entry.etag);
+        }
+        if (entry.lastModified != null) {
+            p.setProperty("lastModified", entry.lastModified);
+        }
+        p.setProperty("maxAge", Long.toString(entry.maxAgeSeconds));
+        p.setProperty("storedAt", Long.toString(entry.storedAtMillis));
+        p.setProperty("size", Long.toString(entry.size));
+        p.setProperty("sha256", entry.contentHash);
+        Path tmp = Files.createTempFile(dir, entry.key, ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            p.store(out, null);
+        }
+        Files.move(tmp, dir.resolve(entry.key + ".meta"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Marca la entrada como usada: orden LRU en memoria y fecha del .meta en disco.
+     */
+    private void touch(Entry entry) {
+        synchronized (this) {
+            index.get(entry.key);
+        }
+        try {
+            Files.setLastModifiedTime(dir.resolve(entry.key + ".meta"), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // Sólo afecta al orden LRU tras reiniciar
+        }
+    }
+
+    /**
+     * Elimina una entrada inválida, sólo si sigue siendo la del índice: si otro hilo la guardó o
+     * revalidó mientras tanto, sus archivos y su registro son los nuevos y se conservan.
+     */
+    private synchronized void remove(Entry entry) {
+        if (index.get(entry.key) != entry) {
+            return;
+        }
+        index.remove(entry.key);
+        totalBytes -= entry.size;
+        deleteFiles(entry.key);
+    }
+
+    private void deleteFiles(String key) {
+        try {
+            Files.deleteIfExists(dir.resolve(key + ".meta"));
+            Files.deleteIfExists(bodyPath(key));
+        } catch (IOException e) {
+            System.err.println("Aviso: no se pudo borrar la entrada de caché " + key + ": " + e.getMessage());
+        }
+    }
+
+    private Path bodyPath(String key) {
+        return dir.resolve(key + ".bin");
+    }
+
+    /**
+     * Clave de una URL: SHA-256 en hexadecimal, válido como nombre de archivo.
+     */
+    static String keyOf(String url) {
+        return sha256(url.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
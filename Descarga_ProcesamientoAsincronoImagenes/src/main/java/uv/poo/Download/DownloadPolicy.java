@@ -0,0 +1,72 @@
+package uv.poo.Download;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * DownloadPolicy: tiempos límite, reintentos, peticiones de respaldo (hedging) y cortocircuito de
+ * las descargas de {@link HttpDownloader}.
+ *
+ *  - Cada intento tiene un tiempo límite total (cabeceras y cuerpo), así un host lento no retiene
+ *    una descarga indefinidamente.
+ *  - Los fallos transitorios (errores de red, tiempo agotado, HTTP 408, 429 y 5xx) se reintentan
+ *    con espera exponencial y jitter completo: espera aleatoria en [0, min(max, base · 2^intento)).
+ *  - Si un intento tarda más que hedgeDelayMillis se lanza una segunda petición igual y se usa la
+ *    primera que responda; hedgeDelayMillis negativo usa el p95 de las descargas observadas.
+ *    Como mucho hedgeBudget de las peticiones pueden llevar respaldo, para no duplicar la carga
+ *    precisamente cuando los servidores van lentos.
+ *  - Tras breakerFailures fallos seguidos de un host, su circuito se abre y las descargas a ese host
+ *    fallan de inmediato durante breakerOpenMillis (ver {@link CircuitBreaker}).
+ */
+public class DownloadPolicy {
+
+    /** Milisegundos para establecer la conexión. */
+    public long connectTimeoutMillis = 5_000;
+    /** Milisegundos máximos de cada intento, hasta recibir el cuerpo completo. */
+    public long requestTimeoutMillis = 30_000;
+    /** Intentos por descarga (1 = sin reintentos). */
+    public int maxAttempts = 3;
+    /** Espera base entre reintentos. */
+    public long backoffBaseMillis = 200;
+    /** Espera máxima entre reintentos. */
+    public long backoffMaxMillis = 5_000;
+    /** Milisegundos antes de lanzar la petición de respaldo; 0 la desactiva, negativo usa el p95 observado. */
+    public long hedgeDelayMillis = -1;
+    /** Fracción máxima de peticiones con respaldo. */
+    public double hedgeBudget = 0.1;
+    /** Fallos seguidos de un host que abren su circuito; 0 lo desactiva. */
+    public int breakerFailures = 5;
+    /** Milisegundos que el circuito permanece abierto antes de dejar pasar una prueba. */
+    public long breakerOpenMillis = 30_000;
+
+    /**
+     * Política sin reintentos, respaldo ni cortocircuito: sólo tiempos límite.
+     *
+     * @return política mínima
+     */
+    public static DownloadPolicy noRetries() {
+        DownloadPolicy p = new DownloadPolicy();
+        p.maxAttempts = 1;
+        p.hedgeDelayMillis = 0;
+        p.breakerFailures = 0;
+        return p;
+    }
+
+    /**
+     * Espera antes del reintento indicado (jitter completo).
+     *
+     * @param retry número de reintento (1 = primer reintento)
+     * @return milisegundos a esperar
+     */
+    public long backoffMillis(int retry) {
+        long ceiling = Math.min(backoffMaxMillis, backoffBaseMillis << Math.min(20, retry - 1));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling);
+    }
+
+    /**
+     * @param status código HTTP
+     * @return true si merece la pena reintentar la petición
+     */
+    public static boolean isRetryable(int status) {
+        return status == 408 || status == 429 || status >= 500;
+    }
+}
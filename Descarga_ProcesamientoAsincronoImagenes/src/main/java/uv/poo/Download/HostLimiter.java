@@ -0,0 +1,64 @@
+package uv.poo.Download;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * HostLimiter: limita cuántas peticiones concurrentes se hacen a un mismo host (host:puerto),
+ * con un semáforo por host creado bajo demanda.
+ *
+ * Con hilos virtuales pueden lanzarse cientos de descargas a la vez; este límite evita
+ * saturar (o ser bloqueados por) un único servidor.
+ */
+public class HostLimiter {
+
+    private final int maxPerHost;
+    private final ConcurrentMap<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxPerHost peticiones concurrentes permitidas por host
+     */
+    public HostLimiter(int maxPerHost) {
+        this.maxPerHost = Math.max(1, maxPerHost);
+    }
+
+    /**
+     * Bloquea hasta obtener un permiso para el host de la URI.
+     *
+     * @param uri URI de la petición
+     * @return semáforo del que se tomó el permiso (hay que llamar a release() al terminar)
+     * @throws InterruptedException si se interrumpe la espera
+     */
+    public Semaphore acquire(URI uri) throws InterruptedException {
+        Semaphore semaphore = permits.computeIfAbsent(key(uri), k -> new Semaphore(maxPerHost));
+        semaphore.acquire();
+        return semaphore;
+    }
+
+    /**
+     * Toma un permiso para el host de la URI sólo si hay uno libre.
+     *
+     * @param uri URI de la petición
+     * @return semáforo del que se tomó el permiso, o null si no había ninguno libre
+     */
+    public Semaphore tryAcquire(URI uri) {
+        Semaphore semaphore = permits.computeIfAbsent(key(uri), k -> new Semaphore(maxPerHost));
+        return semaphore.tryAcquire() ? semaphore : null;
+    }
+
+    /**
+     * Máximo de peticiones concurrentes por host.
+     */
+    public int maxPerHost() {
+        return maxPerHost;
+    }
+
+    /**
+     * Clave de un host: "host:puerto".
+     */
+    static String key(URI uri) {
+        return uri.getHost() + ":" + uri.getPort();
+    }
+}
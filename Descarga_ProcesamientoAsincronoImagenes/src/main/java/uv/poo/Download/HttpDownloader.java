@@ -0,0 +1,425 @@
+package uv.poo.Download;
+
+import uv.poo.Metrics.LatencyHistogram;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * HttpDownloader: motor de descarga sobre java.net.http.HttpClient.
+ *
+ * Un único HttpClient (HTTP/2 cuando el servidor lo soporta, HTTP/1.1 si no) reutiliza las
+ * conexiones entre descargas en lugar de abrir una nueva por imagen. Sus métodos son bloqueantes
+ * y están pensados para ejecutarse en hilos virtuales: un hilo bloqueado en la red no ocupa un
+ * hilo de plataforma. Un {@link HostLimiter} limita las peticiones simultáneas a cada host.
+ *
+ * Opcionalmente, una {@link DownloadCache} en disco evita volver a descargar imágenes ya vistas:
+ * las entradas frescas no tocan la red y el resto se revalidan con peticiones condicionales.
+ *
+ * Cada petición sigue una {@link DownloadPolicy}: tiempo límite por intento, reintentos con espera
+ * exponencial y jitter, petición de respaldo cuando un intento tarda más de lo habitual y un
+ * {@link CircuitBreaker} por host que corta las descargas a hosts caídos. Así el tiempo total de
+ * una ejecución no lo marca el peor host.
+ */
+public class HttpDownloader {
+
+    private static final Pattern MAX_AGE = Pattern.compile("max-age=(\\d+)");
+
+    /** Muestras necesarias antes de usar el p95 observado como retardo de respaldo. */
+    private static final int HEDGE_MIN_SAMPLES = 20;
+
+    private final HttpClient client;
+    private final HostLimiter limiter;
+    private final DownloadPolicy policy;
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+    private volatile DownloadCache cache;
+
+    /**
+     * @param maxPerHost peticiones concurrentes permitidas por host
+     */
+    public HttpDownloader(int maxPerHost) {
+        this(maxPerHost, new DownloadPolicy());
+    }
+
+    /**
+     * @param maxPerHost peticiones concurrentes permitidas por host
+     * @param policy     tiempos límite, reintentos, respaldo y cortocircuito
+     */
+    public HttpDownloader(int maxPerHost, DownloadPolicy policy) {
+        this(HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_2)
+                        .followRedirects(HttpClient.Redirect.NORMAL)
+                        .connectTimeout(Duration.ofMillis(policy.connectTimeoutMillis))
+                        .build(),
+                new HostLimiter(maxPerHost), policy);
+    }
+
+    /**
+     * @param client  cliente HTTP a usar (compartido: mantiene el pool de conexiones)
+     * @param limiter límite de peticiones por host
+     */
+    public HttpDownloader(HttpClient client, HostLimiter limiter) {
+        this(client, limiter, new DownloadPolicy());
+    }
+
+    /**
+     * @param client  cliente HTTP a usar (compartido: mantiene el pool de conexiones)
+     * @param limiter límite de peticiones por host
+     * @param policy  tiempos límite, reintentos, respaldo y cortocircuito
+     */
+    public HttpDownloader(HttpClient client, HostLimiter limiter, DownloadPolicy policy) {
+        this.client = client;
+        this.limiter = limiter;
+        this.policy = policy;
+    }
+
+    /**
+     * Activa (o desactiva con null) la caché en disco para {@link #fetch(String)}.
+     *
+     * @param cache caché a usar
+     */
+    public void setCache(DownloadCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Caché en uso, o null.
+     */
+    public DownloadCache cache() {
+        return cache;
+    }
+
+    /**
+     * Descarga los bytes codificados de la imagen, pasando por la caché si está activa:
+     * 1. Entrada fresca: se devuelve sin tocar la red.
+     * 2. Entrada caducada: petición condicional; con 304 se reutilizan los bytes guardados.
+     * 3. Sin entrada (o con 200): se descarga el cuerpo y se guarda en la caché.
+     *
+     * @param urlStr URL de la imagen
+     * @return cuerpo de la respuesta
+     * @throws IOException si falla la petición o el servidor no responde 2xx
+     */
+    public byte[] fetch(String urlStr) throws IOException {
+        DownloadCache cache = this.cache;
+        DownloadCache.Entry entry = cache == null ? null : cache.lookup(urlStr);
+        if (entry != null && cache.isFresh(entry)) {
+            byte[] cached = cache.read(entry, false);
+            if (cached != null) {
+                return cached;
+            }
+            entry = null;
+        }
+
+        HttpRequest.Builder request = newRequest(URI.create(urlStr));
+        if (entry != null) {
+            if (entry.etag() != null) {
+                request.header("If-None-Match", entry.etag());
+            }
+            if (entry.lastModified() != null) {
+                request.header("If-Modified-Since", entry.lastModified());
+            }
+        }
+        HttpResponse<byte[]> response = send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        if (response.statusCode() == 304 && entry != null) {
+            DownloadCache.Entry refreshed = cache.refresh(entry, maxAge(response));
+            byte[] cached = refreshed != null ? cache.read(refreshed, true) : null;
+            if (cached != null) {
+                return cached;
+            }
+            // La entrada se perdió entre la consulta y el 304, o al leerla: descargar sin condiciones
+            response = send(newRequest(URI.create(urlStr)).build(), HttpResponse.BodyHandlers.ofByteArray());
+        }
+        checkStatus(urlStr, response.statusCode());
+        if (cache != null) {
+            cache.store(urlStr, response.body(),
+                    response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null),
+                    maxAge(response));
+        }
+        return response.body();
+    }
+
+    /**
+     * Descarga y decodifica la imagen pasando el cuerpo de la respuesta directamente al
+     * decodificador, sin acumularlo antes en memoria. La petición sigue la misma política que
+     * {@link #fetch(String)} (circuito, tiempo límite hasta las cabeceras, respaldo y reintentos);
+     * el cuerpo se lee después, mientras se decodifica, sin tiempo límite propio.
+     *
+     * @param urlStr URL de la imagen
+     * @return imagen decodificada
+     * @throws IOException si falla la petición, la respuesta no es 2xx o el formato no es soportado
+     */
+    public BufferedImage download(String urlStr) throws IOException {
+        if (cache != null) {
+            // Con caché hacen falta los bytes completos para guardarlos
+            BufferedImage img = ImageIO.read(new ByteArrayInputStream(fetch(urlStr)));
+            if (img == null) {
+                throw new IOException("Formato de imagen no soportado: " + urlStr);
+            }
+            return img;
+        }
+        HttpResponse<InputStream> response = send(newRequest(URI.create(urlStr)).build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            checkStatus(urlStr, response.statusCode());
+            BufferedImage img = ImageIO.read(body);
+            if (img == null) {
+                throw new IOException("Formato de imagen no soportado: " + urlStr);
+            }
+            return img;
+        }
+    }
+
+    /**
+     * max-age de la cabecera Cache-Control (0 si no hay o incluye no-cache / no-store).
+     */
+    private static long maxAge(HttpResponse<?> response) {
+        String cacheControl = response.headers().firstValue("Cache-Control").orElse("");
+        if (cacheControl.contains("no-cache") || cacheControl.contains("no-store")) {
+            return 0;
+        }
+        Matcher m = MAX_AGE.matcher(cacheControl);
+        return m.find() ? Long.parseLong(m.group(1)) : 0;
+    }
+
+    /**
+     * Petición GET con el tiempo límite de la política (hasta recibir las cabeceras; el límite del
+     * cuerpo lo aplica {@link #attempt}).
+     */
+    private HttpRequest.Builder newRequest(URI uri) {
+        return HttpRequest.newBuilder(uri).GET().timeout(Duration.ofMillis(policy.requestTimeoutMillis));
+    }
+
+    /**
+     * Envía la petición aplicando la política: cortocircuito del host, intentos con tiempo límite y
+     * respaldo, y reintentos con espera exponencial para los fallos transitorios. Las respuestas
+     * 4xx (salvo 408 y 429) se devuelven sin reintentar: el host funciona, la URL no.
+     */
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        String host = HostLimiter.key(request.uri());
+        CircuitBreaker breaker = policy.breakerFailures > 0
+                ? breakers.computeIfAbsent(host, h -> new CircuitBreaker(policy.breakerFailures, policy.breakerOpenMillis))
+                : null;
+        int maxAttempts = Math.max(1, policy.maxAttempts);
+        for (int attempt = 1; ; attempt++) {
+            // Paso 1: con el circuito abierto se falla sin tocar la red
+            if (breaker != null && !breaker.allow()) {
+                shortCircuited.increment();
+                throw new CircuitOpenException(host);
+            }
+
+            // Paso 2: un intento (con su respaldo, si tarda); cada intento permitido informa al circuito
+            HttpResponse<T> response;
+            try {
+                response = attempt(request, handler);
+            } catch (IOException e) {
+                if (breaker != null) {
+                    breaker.onFailure();
+                }
+                if (e instanceof InterruptedIOException || attempt >= maxAttempts) {
+                    throw e;
+                }
+                backoff(attempt, request.uri(), e.getMessage());
+                continue;
+            } catch (RuntimeException e) {
+                // P.ej. una cancelación en el respaldo: también cuenta como fallo, o una petición de
+                // prueba del circuito semiabierto quedaría sin resolver y el host cortado para siempre
+                if (breaker != null) {
+                    breaker.onFailure();
+                }
+                throw e;
+            }
+            boolean retryable = DownloadPolicy.isRetryable(response.statusCode());
+            if (breaker != null) {
+                if (retryable) {
+                    breaker.onFailure();
+                } else {
+                    breaker.onSuccess();
+                }
+            }
+
+            // Paso 3: reintentar los errores transitorios del servidor mientras queden intentos
+            if (!retryable || attempt >= maxAttempts) {
+                return response;
+            }
+            // La respuesta descartada no se lee: si su cuerpo es un flujo, cerrarlo libera la conexión
+            if (response.body() instanceof Closeable) {
+                ((Closeable) response.body()).close();
+            }
+            backoff(attempt, request.uri(), "HTTP " + response.statusCode());
+        }
+    }
+
+    /**
+     * Espera antes del siguiente intento.
+     */
+    private void backoff(int attempt, URI uri, String reason) throws IOException {
+        retries.increment();
+        long millis = policy.backoffMillis(attempt);
+        System.err.println("Reintentando " + uri + " en " + millis + " ms (" + reason + ")");
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido esperando para reintentar " + uri);
+        }
+    }
+
+    /**
+     * Un intento con tiempo límite total. Si no ha respondido tras el retardo de respaldo y queda
+     * presupuesto (y un permiso libre para el host), lanza una segunda petición igual y se queda con
+     * la primera que responda; la otra se cancela.
+     */
+    private <T> HttpResponse<T> attempt(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        URI uri = request.uri();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(policy.requestTimeoutMillis);
+        long hedgeNanos = hedgeDelayNanos();
+        Semaphore permit = acquire(uri);
+        Semaphore backupPermit = null;
+        CompletableFuture<HttpResponse<T>> primary = null;
+        CompletableFuture<HttpResponse<T>> backup = null;
+        long start = System.nanoTime();
+        requests.increment();
+        try {
+            primary = client.sendAsync(request, handler);
+            HttpResponse<T> response;
+            if (hedgeNanos > 0 && hedgeNanos < timeoutNanos) {
+                try {
+                    response = primary.get(hedgeNanos, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException slow) {
+                    backupPermit = hedges.sum() < policy.hedgeBudget * requests.sum() ? limiter.tryAcquire(uri) : null;
+                    if (backupPermit == null) {
+                        response = primary.get(timeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+                    } else {
+                        hedges.increment();
+                        backup = client.sendAsync(request, handler);
+                        response = firstSuccess(primary, backup)
+                                .get(timeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+                        if (backup.isDone() && !backup.isCompletedExceptionally() && backup.join() == response) {
+                            hedgeWins.increment();
+                        }
+                    }
+                }
+            } else {
+                response = primary.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+            latencies.record(System.nanoTime() - start);
+            return response;
+        } catch (TimeoutException e) {
+            throw new HttpTimeoutException("Tiempo agotado (" + policy.requestTimeoutMillis + " ms) descargando " + uri);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Descarga interrumpida: " + uri);
+        } finally {
+            // Cancelar la petición perdedora (o la que agotó el tiempo) cierra su intercambio
+            if (primary != null) {
+                primary.cancel(true);
+            }
+            if (backup != null) {
+                backup.cancel(true);
+            }
+            permit.release();
+            if (backupPermit != null) {
+                backupPermit.release();
+            }
+        }
+    }
+
+    /**
+     * Futuro que se completa con la primera respuesta correcta de los dos, o con el error del último
+     * en fallar si fallan ambos.
+     */
+    private static <T> CompletableFuture<T> firstSuccess(CompletableFuture<T> a, CompletableFuture<T> b) {
+        CompletableFuture<T> first = new CompletableFuture<>();
+        CompletableFuture.allOf(a, b).whenComplete((v, e) -> {
+            if (e != null) {
+                first.completeExceptionally(e);
+            }
+        });
+        a.thenAccept(first::complete);
+        b.thenAccept(first::complete);
+        return first;
+    }
+
+    /**
+     * Retardo de la petición de respaldo: el fijo de la política o, si es negativo, el p95 de las
+     * descargas observadas (0 mientras no haya bastantes muestras).
+     */
+    private long hedgeDelayNanos() {
+        if (policy.hedgeDelayMillis >= 0) {
+            return TimeUnit.MILLISECONDS.toNanos(policy.hedgeDelayMillis);
+        }
+        if (latencies.count() < HEDGE_MIN_SAMPLES) {
+            return 0;
+        }
+        return (long) (latencies.percentileMillis(0.95) * 1_000_000);
+    }
+
+    /**
+     * Estado del circuito de un host (host:puerto), o null si nunca se le hizo una petición.
+     *
+     * @param host host y puerto, como en HostLimiter
+     * @return estado del circuito
+     */
+    public CircuitBreaker.State circuitState(String host) {
+        CircuitBreaker breaker = breakers.get(host);
+        return breaker == null ? null : breaker.state();
+    }
+
+    /**
+     * Resumen de la capa de resiliencia: peticiones, reintentos, respaldos y rechazos por circuito abierto.
+     *
+     * @return resumen en una línea
+     */
+    public String stats() {
+        return "Descargas: " + requests.sum() + " peticiones, " + retries.sum() + " reintentos, "
+                + hedges.sum() + " respaldos (" + hedgeWins.sum() + " ganaron), "
+                + shortCircuited.sum() + " rechazadas por circuito abierto";
+    }
+
+    private Semaphore acquire(URI uri) throws IOException {
+        try {
+            return limiter.acquire(uri);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido esperando turno para " + uri.getHost());
+        }
+    }
+
+    private static void checkStatus(String urlStr, int status) throws IOException {
+        if (status < 200 || status >= 300) {
+            throw new IOException("HTTP " + status + " al descargar " + urlStr);
+        }
+    }
+}
@@ -1,27 +1,163 @@
 package uv.poo.Download;
 
-import javax.imageio.ImageIO;
+import uv.poo.Filter.Pixels;
+import uv.poo.Filter.RasterPool;
+import uv.poo.IO.ImageDecoder;
+import uv.poo.IO.ImageIODecoder;
+import uv.poo.Metrics.Metrics;
+import uv.poo.Metrics.Stage;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URL;
 
 /**
- * Encargada de descargar imágenes desde una URL y extraer un nombre base para el archivo.
+ * Encargada de descargar imágenes desde una URL, decodificarlas y extraer un nombre base para el archivo.
+ *
+ * Las descargas se delegan en un {@link HttpDownloader} (HttpClient con conexiones reutilizadas y
+ * límite de peticiones por host) y la decodificación en un {@link ImageDecoder}; las imágenes
+ * intermedias vuelven a la {@link RasterPool} indicada. Cada pipeline crea la suya con su
+ * configuración, así que dos pipelines en el mismo proceso no se pisan.
  */
 public class ImageDownloader {
 
+    private final HttpDownloader downloader;
+    private final ImageDecoder decoder;
+    private final RasterPool pool;
+
     /**
-     * Descarga una imagen desde la URL proporcionada.
+     * @param downloader motor de descarga
+     * @param decoder    decodificador (ver {@link ImageDecoder#named(String, RasterPool)})
+     * @param pool       reserva adonde vuelven las imágenes intermedias de la decodificación
+     */
+    public ImageDownloader(HttpDownloader downloader, ImageDecoder decoder, RasterPool pool) {
+        this.downloader = downloader;
+        this.decoder    = decoder;
+        this.pool       = pool;
+    }
+
+    /**
+     * @return decodificador en uso
+     */
+    public ImageDecoder decoder() {
+        return decoder;
+    }
+
+    /**
+     * Descarga una imagen desde la URL proporcionada, decodificándola a medida que llega.
      *
      * @param urlStr URL de la imagen
      * @return BufferedImage descargada
      * @throws IOException si ocurre un error de lectura
      */
-    public static BufferedImage download(String urlStr) throws IOException {
-        URL url = new URL(urlStr);
-        return ImageIO.read(url);
+    public BufferedImage download(String urlStr) throws IOException {
+        return downloader.download(urlStr);
+    }
+
+    /**
+     * Descarga los bytes codificados (JPEG, PNG...) de la imagen sin decodificarlos.
+     * Separar la descarga de la decodificación permite que la etapa de red no retenga
+     * imágenes a resolución completa en memoria.
+     *
+     * @param urlStr URL de la imagen
+     * @return bytes de la imagen tal como los sirve el servidor
+     * @throws IOException si ocurre un error de lectura
+     */
+    public byte[] fetch(String urlStr) throws IOException {
+        long start = System.nanoTime();
+        try {
+            byte[] data = downloader.fetch(urlStr);
+            Metrics.get().recordLatency(Stage.DOWNLOAD, System.nanoTime() - start);
+            Metrics.get().addBytesIn(data.length);
+            return data;
+        } catch (IOException | RuntimeException e) {
+            Metrics.get().recordError(Stage.DOWNLOAD);
+            throw e;
+        }
+    }
+
+    /**
+     * Huella de los bytes de una imagen (SHA-256 en hexadecimal), para saber si la fuente cambió
+     * entre ejecuciones.
+     *
+     * @param data bytes codificados de la imagen
+     * @return huella en hexadecimal
+     */
+    public static String fingerprint(byte[] data) {
+        return DownloadCache.sha256(data);
+    }
+
+    /**
+     * Decodifica los bytes de una imagen previamente descargada con {@link #fetch(String)}.
+     *
+     * @param data bytes codificados de la imagen
+     * @return BufferedImage decodificada
+     * @throws IOException si los bytes no corresponden a un formato de imagen soportado
+     */
+    public BufferedImage decode(byte[] data) throws IOException {
+        return decode(data, 0, 0);
+    }
+
+    /**
+     * Decodifica los bytes de una imagen reduciéndola para que quepa en maxWidth x maxHeight.
+     *
+     * El decodificador (normalmente {@link ImageIODecoder}) sólo entrega una de cada N filas y
+     * columnas (submuestreo de la fuente), de modo que nunca se crea el raster a resolución
+     * completa; después, si hace falta, se ajusta al tamaño exacto con una interpolación bilineal
+     * sobre la imagen ya pequeña.
+     *
+     * @param data      bytes codificados de la imagen
+     * @param maxWidth  ancho máximo; 0 para no limitar el tamaño
+     * @param maxHeight alto máximo; 0 para no limitar el tamaño
+     * @return BufferedImage decodificada (conserva la proporción)
+     * @throws IOException si los bytes no corresponden a un formato de imagen soportado
+     */
+    public BufferedImage decode(byte[] data, int maxWidth, int maxHeight) throws IOException {
+        long start = System.nanoTime();
+        try {
+            BufferedImage decoded = decoder.decode(data, maxWidth, maxHeight);
+            BufferedImage img = fit(decoded, maxWidth, maxHeight);
+            if (img != decoded) {
+                // La imagen submuestreada sólo era un paso intermedio
+                pool.release(decoded);
+            }
+            Metrics.get().recordLatency(Stage.DECODE, System.nanoTime() - start);
+            return img;
+        } catch (IOException | RuntimeException e) {
+            Metrics.get().recordError(Stage.DECODE);
+            throw e;
+        }
+    }
+
+    /**
+     * Paso de submuestreo para una caja de tamaño máximo (ver {@link ImageIODecoder#subsampling}).
+     */
+    static int subsampling(int width, int height, int maxWidth, int maxHeight) {
+        return ImageIODecoder.subsampling(width, height, maxWidth, maxHeight);
+    }
+
+    /**
+     * Reduce la imagen, conservando la proporción, si no cabe en maxWidth x maxHeight.
+     */
+    private static BufferedImage fit(BufferedImage img, int maxWidth, int maxHeight) {
+        if (maxWidth <= 0 || maxHeight <= 0 || (img.getWidth() <= maxWidth && img.getHeight() <= maxHeight)) {
+            return img;
+        }
+        double scale = Math.min((double) maxWidth / img.getWidth(), (double) maxHeight / img.getHeight());
+        int w = Math.max(1, (int) Math.round(img.getWidth() * scale));
+        int h = Math.max(1, (int) Math.round(img.getHeight() * scale));
+        BufferedImage out = new BufferedImage(w, h, Pixels.compatibleType(img));
+        Graphics2D g = out.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(img, 0, 0, w, h, null);
+        } finally {
+            g.dispose();
+        }
+        return out;
     }
 
     /**
@@ -1,28 +1,22 @@
 package uv.poo.Filter;
 
-import java.awt.Graphics;
-import java.awt.image.BufferedImage;
-
 /**
  * Filtro que convierte una imagen a blanco y negro (escala de grises).
+ *
+ * Es un {@link PointFilter} cuya matriz replica en los tres canales la luminancia con la misma
+ * fórmula entera que usa Java2D al dibujar sobre una imagen TYPE_BYTE_GRAY
+ * ((77 r + 150 g + 29 b + 128) &gt;&gt; 8, ver {@link Pixels#luma(int)}); la salida es TYPE_BYTE_GRAY.
  */
-public class BlackAndWhiteFilter implements ImageFilter {
+public class BlackAndWhiteFilter extends PointFilter {
 
-    @Override
-    public String name() {
-        return "bw";
-    }
+    private static final float KR = 77 / 256f;
+    private static final float KG = 150 / 256f;
+    private static final float KB = 29 / 256f;
 
-    @Override
-    public BufferedImage apply(BufferedImage src) {
-        BufferedImage gray = new BufferedImage(
-                src.getWidth(),
-                src.getHeight(),
-                BufferedImage.TYPE_BYTE_GRAY
-        );
-        Graphics g = gray.getGraphics();
-        g.drawImage(src, 0, 0, null);
-        g.dispose();
-        return gray;
+    public BlackAndWhiteFilter() {
+        super("bw", true, Stage.matrix(
+                KR, KG, KB,
+                KR, KG, KB,
+                KR, KG, KB));
     }
 }
@@ -0,0 +1,26 @@
+package uv.poo.Filter;
+
+/**
+ * Filtro de desenfoque gaussiano.
+ *
+ * El kernel gaussiano es separable, por lo que {@link ConvolutionFilter} lo aplica en dos pasadas
+ * de 2 * radius + 1 pesos. Los bordes repiten el píxel más cercano para no dejar un marco sin
+ * desenfocar.
+ */
+public class BlurFilter extends ConvolutionFilter {
+
+    /**
+     * Desenfoque de radio 2 (kernel 5x5, sigma 1).
+     */
+    public BlurFilter() {
+        this(2, 1.0);
+    }
+
+    /**
+     * @param radius radio en píxeles
+     * @param sigma  desviación típica de la gaussiana
+     */
+    public BlurFilter(int radius, double sigma) {
+        super("blur", ConvolutionKernel.gaussian(radius, sigma), EdgeMode.CLAMP);
+    }
+}
@@ -0,0 +1,205 @@
+package uv.poo.Filter;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * ConvolutionFilter: aplica un {@link ConvolutionKernel} arbitrario a cada canal de la imagen.
+ *
+ * Es un {@link RowWindowFilter} con halo kernel.height() / 2, así que se procesa por bandas en
+ * paralelo y fusionado con otros filtros. Cada fila se calcula por canal sobre arreglos float,
+ * con el bucle sobre x en el nivel más interno y sin comprobaciones de borde (los extremos de la
+ * fila se tratan aparte), lo que permite al JIT vectorizarlo. Los kernels separables se aplican en
+ * dos pasadas: vertical (sobre la ventana de filas) y horizontal (sobre la fila resultante).
+ *
+ * El canal alfa se convoluciona sólo si el kernel está normalizado (suma 1, p.ej. enfoque o
+ * desenfoque); en los demás (p.ej. detección de bordes, suma 0) se conserva el de la fuente.
+ */
+public class ConvolutionFilter implements RowWindowFilter {
+
+    private final String name;
+    private final ConvolutionKernel kernel;
+    private final EdgeMode edgeMode;
+    private final int kx;
+    private final int ky;
+    private final int channels;
+    private final float[] horizontal;
+    private final float[] vertical;
+
+    /**
+     * Búferes de trabajo por hilo: el filtro se comparte entre hilos y bandas.
+     */
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * @param name     nombre del filtro (sufijo del archivo de salida)
+     * @param kernel   matriz de convolución
+     * @param edgeMode tratamiento de los bordes
+     */
+    public ConvolutionFilter(String name, ConvolutionKernel kernel, EdgeMode edgeMode) {
+        this.name = name;
+        this.kernel = kernel;
+        this.edgeMode = edgeMode;
+        this.kx = kernel.width() / 2;
+        this.ky = kernel.height() / 2;
+        this.channels = kernel.isNormalized() ? 4 : 3;
+        this.horizontal = kernel.isSeparable() ? kernel.horizontal() : null;
+        this.vertical = kernel.isSeparable() ? kernel.vertical() : null;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return kernel que aplica el filtro
+     */
+    public ConvolutionKernel kernel() {
+        return kernel;
+    }
+
+    @Override
+    public int haloRows() {
+        return ky;
+    }
+
+    /**
+     * Destino del tipo compatible con la fuente, tomado de la reserva.
+     */
+    @Override
+    public BufferedImage createDestination(BufferedImage src, RasterPool pool) {
+        return pool.acquire(src.getWidth(), src.getHeight(), Pixels.compatibleType(src));
+    }
+
+    @Override
+    public void filterRow(int[][] window, int y, int height, int[] out) {
+        int width = out.length;
+        int[] center = window[ky];
+        boolean rowOutside = y < ky || y >= height - ky;
+        if (edgeMode != EdgeMode.CLAMP && (rowOutside || width < kernel.width())) {
+            fillEdge(center, out, 0, width);
+            return;
+        }
+
+        Scratch s = scratch.get();
+        s.ensure(width + 2 * kx);
+        if (channels == 3) {
+            // El alfa no se convoluciona: se conserva el de la fuente
+            for (int x = 0; x < width; x++) {
+                out[x] = center[x] & 0xff000000;
+            }
+        } else {
+            Arrays.fill(out, 0, width, 0);
+        }
+
+        for (int c = 0; c < channels; c++) {
+            int shift = 8 * c;
+            if (horizontal != null) {
+                separable(window, shift, width, s);
+            } else {
+                direct(window, shift, width, s);
+            }
+            float[] acc = s.acc;
+            for (int x = 0; x < width; x++) {
+                int v = (int) (acc[x] + 0.5f);
+                out[x] |= (v < 0 ? 0 : Math.min(v, 255)) << shift;
+            }
+        }
+
+        if (edgeMode != EdgeMode.CLAMP) {
+            fillEdge(center, out, 0, kx);
+            fillEdge(center, out, width - kx, width);
+        }
+    }
+
+    /**
+     * Kernel separable: pasada vertical sobre la ventana de filas hacia s.line (con kx píxeles de
+     * relleno a cada lado, repitiendo el borde) y pasada horizontal sobre s.line hacia s.acc.
+     */
+    private void separable(int[][] window, int shift, int width, Scratch s) {
+        float[] line = s.line;
+        Arrays.fill(line, 0, width + 2 * kx, 0f);
+        for (int r = 0; r < vertical.length; r++) {
+            float w = vertical[r];
+            if (w == 0f) {
+                continue;
+            }
+            int[] row = window[r];
+            for (int x = 0; x < width; x++) {
+                line[x + kx] += w * ((row[x] >>> shift) & 0xff);
+            }
+        }
+        for (int i = 0; i < kx; i++) {
+            line[i] = line[kx];
+            line[width + kx + i] = line[width + kx - 1];
+        }
+
+        float[] acc = s.acc;
+        Arrays.fill(acc, 0, width, 0f);
+        for (int c = 0; c < horizontal.length; c++) {
+            float w = horizontal[c];
+            if (w == 0f) {
+                continue;
+            }
+            for (int x = 0; x < width; x++) {
+                acc[x] += w * line[x + c];
+            }
+        }
+    }
+
+    /**
+     * Kernel general: para cada peso distinto de cero, suma la fila desplazada correspondiente.
+     * Cada fila de la ventana se desempaqueta una vez al canal en s.line (con relleno de borde).
+     */
+    private void direct(int[][] window, int shift, int width, Scratch s) {
+        float[] line = s.line;
+        float[] acc = s.acc;
+        Arrays.fill(acc, 0, width, 0f);
+        for (int r = 0; r < kernel.height(); r++) {
+            int[] row = window[r];
+            for (int x = 0; x < width; x++) {
+                line[x + kx] = (row[x] >>> shift) & 0xff;
+            }
+            for (int i = 0; i < kx; i++) {
+                line[i] = line[kx];
+                line[width + kx + i] = line[width + kx - 1];
+            }
+            for (int c = 0; c < kernel.width(); c++) {
+                float w = kernel.weight(r, c);
+                if (w == 0f) {
+                    continue;
+                }
+                for (int x = 0; x < width; x++) {
+                    acc[x] += w * line[x + c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Píxeles [from, to) donde el kernel no cabe: copia de la fuente (NO_OP) o cero (ZERO_FILL).
+     */
+    private void fillEdge(int[] center, int[] out, int from, int to) {
+        if (edgeMode == EdgeMode.NO_OP) {
+            System.arraycopy(center, from, out, from, to - from);
+        } else {
+            Arrays.fill(out, from, to, 0);
+        }
+    }
+
+    /**
+     * Arreglos de trabajo de un hilo, ampliados a medida que aparecen filas más anchas.
+     */
+    private static class Scratch {
+        float[] line = new float[0];
+        float[] acc = new float[0];
+
+        void ensure(int paddedWidth) {
+            if (line.length < paddedWidth) {
+                line = new float[paddedWidth];
+                acc = new float[paddedWidth];
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package uv.poo.Filter;
+
+import java.util.Arrays;
+
+/**
+ * ConvolutionKernel: matriz de convolución de tamaño impar (ancho x alto) con pesos float.
+ *
+ * Al crearla se comprueba si es separable, es decir, si es el producto de una columna por una fila
+ * (rango 1, como los desenfoques de caja o gaussianos y Sobel). Una matriz separable de k x k se
+ * aplica con dos pasadas de k pesos (2k operaciones por píxel) en lugar de k².
+ */
+public class ConvolutionKernel {
+
+    private static final float EPSILON = 1e-5f;
+
+    private final int width;
+    private final int height;
+    private final float[] weights;
+    private final float[] horizontal;
+    private final float[] vertical;
+
+    /**
+     * @param width   ancho (impar)
+     * @param height  alto (impar)
+     * @param weights pesos por filas (width * height)
+     */
+    public ConvolutionKernel(int width, int height, float... weights) {
+        if (width % 2 == 0 || height % 2 == 0 || width < 1 || height < 1) {
+            throw new IllegalArgumentException("El kernel debe tener dimensiones impares: " + width + "x" + height);
+        }
+        if (weights.length != width * height) {
+            throw new IllegalArgumentException("Se esperaban " + width * height + " pesos y hay " + weights.length);
+        }
+        this.width = width;
+        this.height = height;
+        this.weights = weights.clone();
+
+        // Descomposición de rango 1: fila y columna del peso de mayor magnitud
+        int pivot = 0;
+        for (int i = 1; i < weights.length; i++) {
+            if (Math.abs(weights[i]) > Math.abs(weights[pivot])) {
+                pivot = i;
+            }
+        }
+        float[] h = null;
+        float[] v = null;
+        if (weights[pivot] != 0f) {
+            int pr = pivot / width;
+            int pc = pivot % width;
+            h = Arrays.copyOfRange(weights, pr * width, pr * width + width);
+            v = new float[height];
+            for (int r = 0; r < height; r++) {
+                v[r] = weights[r * width + pc] / weights[pivot];
+            }
+            float tolerance = EPSILON * Math.max(1f, Math.abs(weights[pivot]));
+            for (int r = 0; r < height && h != null; r++) {
+                for (int c = 0; c < width; c++) {
+                    if (Math.abs(v[r] * h[c] - weights[r * width + c]) > tolerance) {
+                        h = null;
+                        v = null;
+                        break;
+                    }
+                }
+            }
+        }
+        this.horizontal = h;
+        this.vertical = v;
+    }
+
+    /**
+     * Desenfoque de caja (media) de (2 * radius + 1)².
+     *
+     * @param radius radio en píxeles
+     * @return kernel normalizado y separable
+     */
+    public static ConvolutionKernel box(int radius) {
+        int size = 2 * radius + 1;
+        float[] w = new float[size * size];
+        Arrays.fill(w, 1f / (size * size));
+        return new ConvolutionKernel(size, size, w);
+    }
+
+    /**
+     * Desenfoque gaussiano.
+     *
+     * @param radius radio en píxeles (el kernel mide 2 * radius + 1)
+     * @param sigma  desviación típica
+     * @return kernel normalizado y separable
+     */
+    public static ConvolutionKernel gaussian(int radius, double sigma) {
+        int size = 2 * radius + 1;
+        double[] g = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            int d = i - radius;
+            g[i] = Math.exp(-(d * d) / (2 * sigma * sigma));
+            sum += g[i];
+        }
+        float[] w = new float[size * size];
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                w[r * size + c] = (float) (g[r] * g[c] / (sum * sum));
+            }
+        }
+        return new ConvolutionKernel(size, size, w);
+    }
+
+    /**
+     * Enfoque 3x3 clásico (centro 5, vecinos en cruz -1).
+     */
+    public static ConvolutionKernel sharpen() {
+        return new ConvolutionKernel(3, 3,
+                0f, -1f, 0f,
+                -1f, 5f, -1f,
+                0f, -1f, 0f);
+    }
+
+    /**
+     * Laplaciano 3x3 con diagonales: realza bordes en todas las direcciones (suma 0).
+     */
+    public static ConvolutionKernel laplacian() {
+        return new ConvolutionKernel(3, 3,
+                -1f, -1f, -1f,
+                -1f, 8f, -1f,
+                -1f, -1f, -1f);
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Peso de la fila r y columna c.
+     */
+    public float weight(int r, int c) {
+        return weights[r * width + c];
+    }
+
+    /**
+     * @return true si la suma de los pesos es 1 (el kernel conserva el brillo medio)
+     */
+    public boolean isNormalized() {
+        float sum = 0f;
+        for (float w : weights) {
+            sum += w;
+        }
+        return Math.abs(sum - 1f) < 1e-4f;
+    }
+
+    /**
+     * @return true si el kernel es el producto de {@link #vertical()} por {@link #horizontal()}
+     */
+    public boolean isSeparable() {
+        return horizontal != null;
+    }
+
+    /**
+     * Factor horizontal (fila) de un kernel separable.
+     */
+    public float[] horizontal() {
+        return horizontal.clone();
+    }
+
+    /**
+     * Factor vertical (columna) de un kernel separable.
+     */
+    public float[] vertical() {
+        return vertical.clone();
+    }
+}
@@ -0,0 +1,14 @@
+package uv.poo.Filter;
+
+/**
+ * Filtro de detección de bordes: laplaciano 3x3 ({@link ConvolutionKernel#laplacian()}).
+ *
+ * Las zonas uniformes quedan en negro y los bordes en claro. Como el kernel suma 0, el canal
+ * alfa no se convoluciona y se conserva el de la fuente.
+ */
+public class EdgeDetectFilter extends ConvolutionFilter {
+
+    public EdgeDetectFilter() {
+        super("edges", ConvolutionKernel.laplacian(), EdgeMode.CLAMP);
+    }
+}
@@ -0,0 +1,13 @@
+package uv.poo.Filter;
+
+/**
+ * Tratamiento de los píxeles del borde, donde el kernel de convolución no cabe entero.
+ */
+public enum EdgeMode {
+    /** Se copian los píxeles de la fuente sin filtrar (como ConvolveOp.EDGE_NO_OP). */
+    NO_OP,
+    /** Se escriben a cero (como ConvolveOp.EDGE_ZERO_FILL). */
+    ZERO_FILL,
+    /** Se filtran suponiendo que los píxeles fuera de la imagen repiten el más cercano del borde. */
+    CLAMP
+}
@@ -0,0 +1,61 @@
+package uv.poo.Filter;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * FilterChain: una salida formada por varios filtros aplicados uno detrás de otro
+ * (p.ej. sharpen → sepia), con su propio nombre.
+ *
+ * La cadena sólo describe los pasos; quien la ejecuta es {@link FilterPlan}, que comparte los
+ * prefijos comunes entre cadenas y fusiona los pasos punto a punto consecutivos. Los pasos son
+ * instancias compartidas y sin estado: varias cadenas pueden contener la misma.
+ */
+public class FilterChain implements ImageFilter {
+
+    private final String name;
+    private final String version;
+    private final List<ImageFilter> steps;
+
+    /**
+     * @param name    nombre de la salida (sufijo del archivo)
+     * @param version versión de la cadena; debe cambiar si cambia algún paso o sus parámetros
+     * @param steps   filtros en orden de aplicación (puede estar vacía: la salida es la fuente)
+     */
+    public FilterChain(String name, String version, List<? extends ImageFilter> steps) {
+        this.name    = name;
+        this.version = version;
+        this.steps   = List.copyOf(steps);
+    }
+
+    /**
+     * @return filtros de la cadena, en orden de aplicación
+     */
+    public List<ImageFilter> steps() {
+        return steps;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String version() {
+        return version;
+    }
+
+    /**
+     * Aplica la cadena sola. El pipeline no la usa: compila todas sus salidas juntas en un
+     * {@link FilterPlan}.
+     */
+    @Override
+    public BufferedImage apply(BufferedImage src) {
+        return FilterPlan.compile(List.of(this)).apply(src).get(0);
+    }
+
+    @Override
+    public BufferedImage apply(BufferedImage src, RasterPool pool) {
+        return FilterPlan.compile(List.of(this)).apply(src, pool).get(0);
+    }
+}
@@ -0,0 +1,341 @@
+package uv.poo.Filter;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FilterPlan: plan de ejecución compilado de un conjunto de salidas que parten de la misma imagen.
+ *
+ * Al compilar:
+ * 1. Las salidas (cada una un filtro o una {@link FilterChain}) se insertan en un árbol de prefijos
+ *    por sus pasos, de modo que un prefijo común (p.ej. sharpen en sharpen → sepia y sharpen → bw)
+ *    se calcula una sola vez y sus ramas parten de ese resultado.
+ * 2. Los tramos sin bifurcaciones se juntan en un solo nodo.
+ * 3. Dentro de cada nodo, los {@link PointFilter} consecutivos se componen con
+ *    {@link PointFilter#andThen(PointFilter)}, y un PointFilter detrás de un {@link RowWindowFilter}
+ *    se aplica a cada fila que éste produce, sin imagen intermedia.
+ *
+ * Al ejecutar, los hijos de cada nodo se aplican juntos con {@link FusedFilterEngine}: un solo
+ * recorrido de la imagen del nodo para todas sus ramas. Las imágenes intermedias salen de la
+ * {@link RasterPool} que recibe {@link #apply(BufferedImage, RasterPool)} y vuelven a ella en cuanto
+ * sus ramas terminan.
+ *
+ * El plan no guarda estado entre ejecuciones: se compila una vez y se comparte entre hilos.
+ */
+public class FilterPlan {
+
+    private final List<ImageFilter> outputs;
+    private final Node root;
+    private final FusedFilterEngine engine;
+
+    private FilterPlan(List<ImageFilter> outputs, Node root, FusedFilterEngine engine) {
+        this.outputs = outputs;
+        this.root    = root;
+        this.engine  = engine;
+    }
+
+    /**
+     * Compila el plan de un conjunto de salidas.
+     *
+     * @param outputs salidas; las que no son FilterChain se tratan como cadenas de un paso
+     * @return plan que produce una imagen por salida, en el mismo orden
+     */
+    public static FilterPlan compile(List<? extends ImageFilter> outputs) {
+        // Paso 1: árbol de prefijos por identidad de los pasos (las instancias se comparten)
+        Node root = new Node();
+        for (int i = 0; i < outputs.size(); i++) {
+            Node node = root;
+            for (ImageFilter step : steps(outputs.get(i))) {
+                node = node.children.computeIfAbsent(step, s -> new Node(s));
+            }
+            node.outputs.add(i);
+        }
+        // Pasos 2 y 3: juntar los tramos lineales y fusionar sus filtros
+        for (Node child : root.children.values()) {
+            collapse(child);
+        }
+        return new FilterPlan(List.copyOf(outputs), root, FusedFilterEngine.shared());
+    }
+
+    private static List<ImageFilter> steps(ImageFilter output) {
+        return output instanceof FilterChain ? ((FilterChain) output).steps() : List.of(output);
+    }
+
+    /**
+     * Une el nodo con su único hijo mientras no sea una salida ni se bifurque, y compila su filtro.
+     */
+    private static void collapse(Node node) {
+        while (node.outputs.isEmpty() && node.children.size() == 1) {
+            Node only = node.children.values().iterator().next();
+            node.steps.addAll(only.steps);
+            node.outputs.addAll(only.outputs);
+            node.children = only.children;
+        }
+        node.op = fuse(node.steps);
+        for (Node child : node.children.values()) {
+            collapse(child);
+        }
+    }
+
+    /**
+     * Filtro equivalente a aplicar los pasos en orden, con los punto a punto fusionados.
+     */
+    static ImageFilter fuse(List<ImageFilter> steps) {
+        List<ImageFilter> fused = new ArrayList<>();
+        for (ImageFilter step : steps) {
+            int last = fused.size() - 1;
+            ImageFilter previous = last >= 0 ? fused.get(last) : null;
+            if (step instanceof PointFilter && previous instanceof WindowPointFilter) {
+                WindowPointFilter tail = (WindowPointFilter) previous;
+                fused.set(last, new WindowPointFilter(tail.window, tail.point.andThen((PointFilter) step)));
+            } else if (step instanceof PointFilter && previous instanceof PointFilter) {
+                fused.set(last, ((PointFilter) previous).andThen((PointFilter) step));
+            } else if (step instanceof PointFilter && previous instanceof RowWindowFilter) {
+                fused.set(last, new WindowPointFilter((RowWindowFilter) previous, (PointFilter) step));
+            } else {
+                fused.add(step);
+            }
+        }
+        return fused.size() == 1 ? fused.get(0) : new Sequence(fused);
+    }
+
+    /**
+     * @return salidas del plan, en el orden de {@link #apply(BufferedImage, RasterPool)}
+     */
+    public List<ImageFilter> outputs() {
+        return outputs;
+    }
+
+    /**
+     * Indica si el plan puede aplicarse por franjas horizontales (ver {@link #haloRows()}): todos
+     * sus pasos son {@link TileFilter}, que sólo leen filas cercanas a la que escriben.
+     */
+    public boolean supportsStrips() {
+        for (ImageFilter output : outputs) {
+            for (ImageFilter step : steps(output)) {
+                if (!(step instanceof TileFilter)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Filas de contexto que necesita una franja por encima y por debajo para que sus filas salgan
+     * igual que al filtrar la imagen entera: en cada salida, la suma de los halos de sus pasos
+     * (el error del borde de la franja avanza un halo por paso).
+     *
+     * @return máximo entre todas las salidas
+     */
+    public int haloRows() {
+        int max = 0;
+        for (ImageFilter output : outputs) {
+            int sum = 0;
+            for (ImageFilter step : steps(output)) {
+                sum += step instanceof TileFilter ? ((TileFilter) step).haloRows() : 0;
+            }
+            max = Math.max(max, sum);
+        }
+        return max;
+    }
+
+    /**
+     * Ejecuta el plan con la reserva por defecto.
+     *
+     * @param src imagen fuente (sólo lectura)
+     * @return una imagen por salida, en el orden de {@link #outputs()}; pertenecen a quien llama
+     */
+    public List<BufferedImage> apply(BufferedImage src) {
+        return apply(src, RasterPool.shared());
+    }
+
+    /**
+     * Ejecuta el plan.
+     *
+     * @param src  imagen fuente (sólo lectura)
+     * @param pool reserva de donde salen las imágenes intermedias y las salidas
+     * @return una imagen por salida, en el orden de {@link #outputs()}; pertenecen a quien llama
+     */
+    public List<BufferedImage> apply(BufferedImage src, RasterPool pool) {
+        BufferedImage[] results = new BufferedImage[outputs.size()];
+        deliver(root, src, false, results, pool);
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Entrega la imagen de un nodo a sus salidas y la usa como fuente de sus hijos.
+     *
+     * @param owned true si la imagen es un intermedio del plan (puede entregarse o liberarse)
+     */
+    private void deliver(Node node, BufferedImage img, boolean owned, BufferedImage[] results, RasterPool pool) {
+        boolean kept = false;
+        for (int index : node.outputs) {
+            if (owned && !kept) {
+                results[index] = img;
+                kept = true;
+            } else {
+                // La fuente, o una segunda salida idéntica (p.ej. en otro formato): copia propia
+                results[index] = copy(img, pool);
+            }
+        }
+        if (!node.children.isEmpty()) {
+            List<Node> children = new ArrayList<>(node.children.values());
+            List<ImageFilter> ops = new ArrayList<>(children.size());
+            for (Node child : children) {
+                ops.add(child.op);
+            }
+            List<BufferedImage> filtered = engine.apply(ops, img, pool);
+            for (int i = 0; i < children.size(); i++) {
+                deliver(children.get(i), filtered.get(i), true, results, pool);
+            }
+        }
+        if (owned && !kept) {
+            pool.release(img);
+        }
+    }
+
+    private static BufferedImage copy(BufferedImage img, RasterPool pool) {
+        int type = img.getType() == BufferedImage.TYPE_CUSTOM ? Pixels.compatibleType(img) : img.getType();
+        BufferedImage dst = pool.acquire(img.getWidth(), img.getHeight(), type);
+        if (type == img.getType()) {
+            img.copyData(dst.getRaster());
+        } else {
+            Graphics2D g = dst.createGraphics();
+            g.drawImage(img, 0, 0, null);
+            g.dispose();
+        }
+        return dst;
+    }
+
+    /**
+     * Describe el plan compilado, un nodo por línea con la sangría de su profundidad: el filtro
+     * que aplica (los fusionados unidos con "+", los encadenados con " > ") y las salidas que
+     * produce. Los hermanos se calculan en el mismo recorrido.
+     */
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        if (!root.outputs.isEmpty()) {
+            sb.append("(fuente)").append(outputNames(root)).append('\n');
+        }
+        for (Node child : root.children.values()) {
+            describe(child, 0, sb);
+        }
+        return sb.toString();
+    }
+
+    private void describe(Node node, int depth, StringBuilder sb) {
+        sb.append("  ".repeat(depth)).append(node.op.name()).append(outputNames(node)).append('\n');
+        for (Node child : node.children.values()) {
+            describe(child, depth + 1, sb);
+        }
+    }
+
+    private String outputNames(Node node) {
+        if (node.outputs.isEmpty()) {
+            return "";
+        }
+        List<String> names = new ArrayList<>();
+        for (int index : node.outputs) {
+            names.add(outputs.get(index).name());
+        }
+        return " => " + String.join(", ", names);
+    }
+
+    /**
+     * Nodo del árbol de prefijos: pasos desde el padre, salidas que terminan aquí y ramas.
+     */
+    private static final class Node {
+        final List<ImageFilter> steps = new ArrayList<>();
+        final List<Integer> outputs = new ArrayList<>();
+        Map<ImageFilter, Node> children = new LinkedHashMap<>();
+        ImageFilter op;
+
+        Node() {
+        }
+
+        Node(ImageFilter step) {
+            steps.add(step);
+        }
+    }
+
+    /**
+     * Filtro de vecindad seguido de uno punto a punto: las etapas del segundo se aplican a cada
+     * fila que produce el primero, así que ambos se calculan en una pasada.
+     */
+    private static final class WindowPointFilter implements RowWindowFilter {
+        final RowWindowFilter window;
+        final PointFilter point;
+
+        WindowPointFilter(RowWindowFilter window, PointFilter point) {
+            this.window = window;
+            this.point  = point;
+        }
+
+        @Override
+        public String name() {
+            return window.name() + "+" + point.name();
+        }
+
+        @Override
+        public int haloRows() {
+            return window.haloRows();
+        }
+
+        @Override
+        public BufferedImage createDestination(BufferedImage src, RasterPool pool) {
+            return point.createDestination(src, pool);
+        }
+
+        @Override
+        public void filterRow(int[][] rows, int y, int height, int[] out) {
+            window.filterRow(rows, y, height, out);
+            point.applyRow(out, 0, out.length);
+        }
+    }
+
+    /**
+     * Pasos que no se pueden fusionar, aplicados uno tras otro (cada uno repartido en bandas);
+     * los intermedios vuelven a la reserva en cuanto se usan.
+     */
+    private static final class Sequence implements ImageFilter {
+        final List<ImageFilter> steps;
+
+        Sequence(List<ImageFilter> steps) {
+            this.steps = List.copyOf(steps);
+        }
+
+        @Override
+        public String name() {
+            List<String> names = new ArrayList<>();
+            for (ImageFilter step : steps) {
+                names.add(step.name());
+            }
+            return String.join(" > ", names);
+        }
+
+        @Override
+        public BufferedImage apply(BufferedImage src) {
+            return apply(src, RasterPool.shared());
+        }
+
+        @Override
+        public BufferedImage apply(BufferedImage src, RasterPool pool) {
+            TiledFilterExecutor executor = TiledFilterExecutor.shared();
+            BufferedImage img = src;
+            for (ImageFilter step : steps) {
+                BufferedImage next = executor.apply(step, img, pool);
+                if (img != src) {
+                    pool.release(img);
+                }
+                img = next;
+            }
+            return img;
+        }
+    }
+}
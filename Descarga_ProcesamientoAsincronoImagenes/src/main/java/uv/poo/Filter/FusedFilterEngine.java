@@ -0,0 +1,152 @@
+package uv.poo.Filter;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FusedFilterEngine: aplica varios filtros a la misma imagen en un solo recorrido.
+ *
+ * Cada fila de la fuente se lee una única vez (a un int[] reutilizable) y en ese mismo paso:
+ *  - cada {@link PixelFilter} transforma la fila y la escribe en su imagen de salida;
+ *  - cada {@link RowWindowFilter} recibe la ventana de filas que necesita, tomada de un búfer
+ *    circular de 2 * halo + 1 filas, y escribe la fila correspondiente en su salida.
+ * Con imágenes de 16 MP el coste lo domina el ancho de banda de memoria, así que leer la fuente
+ * una vez en lugar de una vez por filtro reduce mucho el tiempo total.
+ *
+ * La imagen se reparte además en bandas con {@link TiledFilterExecutor}. Los filtros que no son
+ * fusionables se aplican aparte, uno a uno.
+ */
+public class FusedFilterEngine {
+
+    private final TiledFilterExecutor executor;
+
+    /**
+     * @param executor ejecutor de bandas a usar
+     */
+    public FusedFilterEngine(TiledFilterExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Motor sobre el ejecutor de bandas compartido.
+     *
+     * @return instancia sobre {@link TiledFilterExecutor#shared()}
+     */
+    public static FusedFilterEngine shared() {
+        return new FusedFilterEngine(TiledFilterExecutor.shared());
+    }
+
+    /**
+     * Indica si el filtro puede procesarse dentro del recorrido fusionado.
+     */
+    public static boolean canFuse(ImageFilter filter) {
+        return filter instanceof PixelFilter || filter instanceof RowWindowFilter;
+    }
+
+    /**
+     * Aplica todos los filtros a src, con la reserva por defecto.
+     *
+     * @param filters filtros a aplicar
+     * @param src     imagen fuente (sólo lectura)
+     * @return imágenes filtradas, en el mismo orden que filters
+     */
+    public List<BufferedImage> apply(List<? extends ImageFilter> filters, BufferedImage src) {
+        return apply(filters, src, RasterPool.shared());
+    }
+
+    /**
+     * Aplica todos los filtros a src.
+     *
+     * @param filters filtros a aplicar
+     * @param src     imagen fuente (sólo lectura)
+     * @param pool    reserva de donde salen las imágenes filtradas
+     * @return imágenes filtradas, en el mismo orden que filters
+     */
+    public List<BufferedImage> apply(List<? extends ImageFilter> filters, BufferedImage src, RasterPool pool) {
+        BufferedImage[] outputs = new BufferedImage[filters.size()];
+        List<Integer> fused = new ArrayList<>();
+        int halo = 0;
+        for (int i = 0; i < filters.size(); i++) {
+            ImageFilter filter = filters.get(i);
+            if (canFuse(filter)) {
+                fused.add(i);
+                outputs[i] = ((TileFilter) filter).createDestination(src, pool);
+                halo = Math.max(halo, ((TileFilter) filter).haloRows());
+            }
+        }
+
+        if (!fused.isEmpty()) {
+            TileFilter[] stage = new TileFilter[fused.size()];
+            BufferedImage[] dsts = new BufferedImage[fused.size()];
+            for (int k = 0; k < stage.length; k++) {
+                stage[k] = (TileFilter) filters.get(fused.get(k));
+                dsts[k] = outputs[fused.get(k)];
+            }
+            int maxHalo = halo;
+            executor.forEachBand(src.getHeight(), maxHalo,
+                    (yStart, yEnd) -> applyBand(stage, dsts, src, yStart, yEnd, maxHalo));
+        }
+
+        // Filtros no fusionables: uno a uno
+        for (int i = 0; i < filters.size(); i++) {
+            if (outputs[i] == null) {
+                outputs[i] = executor.apply(filters.get(i), src, pool);
+            }
+        }
+        return List.of(outputs);
+    }
+
+    /**
+     * Recorre las filas [yStart, yEnd) una sola vez aplicando todos los filtros.
+     */
+    private static void applyBand(TileFilter[] filters, BufferedImage[] dsts, BufferedImage src,
+                                  int yStart, int yEnd, int halo) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+
+        // Búfer circular con las filas yStart - halo .. yStart + halo (índices limitados a la imagen)
+        int[][] ring = new int[2 * halo + 1][width];
+        for (int i = 0; i < ring.length; i++) {
+            Pixels.readRow(src, RowWindowFilter.clamp(yStart - halo + i, height), ring[i]);
+        }
+
+        // Una ventana (vista sobre el búfer) por filtro de vecindad, del tamaño que necesita
+        int[][][] windows = new int[filters.length][][];
+        for (int k = 0; k < filters.length; k++) {
+            windows[k] = new int[2 * filters[k].haloRows() + 1][];
+        }
+        int[] out = new int[width];
+
+        for (int y = yStart; y < yEnd; y++) {
+            if (y > yStart) {
+                // Avanzar una fila: la más antigua se reutiliza para leer la nueva
+                int[] recycled = ring[0];
+                System.arraycopy(ring, 1, ring, 0, ring.length - 1);
+                ring[ring.length - 1] = recycled;
+                Pixels.readRow(src, RowWindowFilter.clamp(y + halo, height), recycled);
+            }
+            int[] current = ring[halo];
+
+            for (int k = 0; k < filters.length; k++) {
+                TileFilter filter = filters[k];
+                if (filter instanceof PointFilter) {
+                    // Etapa a etapa sobre la fila entera: bucles sin ramas en lugar de una llamada por píxel
+                    System.arraycopy(current, 0, out, 0, width);
+                    ((PointFilter) filter).applyRow(out, 0, width);
+                } else if (filter instanceof PixelFilter) {
+                    PixelFilter pixel = (PixelFilter) filter;
+                    for (int x = 0; x < width; x++) {
+                        out[x] = pixel.filterPixel(current[x]);
+                    }
+                } else {
+                    int h = filter.haloRows();
+                    int[][] window = windows[k];
+                    System.arraycopy(ring, halo - h, window, 0, window.length);
+                    ((RowWindowFilter) filter).filterRow(window, y, height, out);
+                }
+                Pixels.writeRow(dsts[k], y, out);
+            }
+        }
+    }
+}
@@ -4,5 +4,26 @@ import java.awt.image.BufferedImage;
 
 public interface ImageFilter {
     BufferedImage apply(BufferedImage src);
+
+    /**
+     * Aplica el filtro tomando su imagen de destino de la reserva indicada. Por defecto la ignora
+     * (filtros que crean su propia imagen).
+     *
+     * @param src  imagen fuente
+     * @param pool reserva de donde sale la imagen filtrada
+     * @return imagen filtrada
+     */
+    default BufferedImage apply(BufferedImage src, RasterPool pool) {
+        return apply(src);
+    }
+
     String name();  // ej. "sepia", "bw", "sharpen"
+
+    /**
+     * Versión del algoritmo del filtro. Hay que cambiarla cuando cambie el resultado, para que el
+     * modo incremental vuelva a generar las salidas ya existentes.
+     */
+    default String version() {
+        return "1";
+    }
 }
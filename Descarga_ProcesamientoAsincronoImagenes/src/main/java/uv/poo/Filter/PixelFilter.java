@@ -0,0 +1,37 @@
+package uv.poo.Filter;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * PixelFilter: filtro punto a punto, en el que cada píxel de salida depende sólo del píxel
+ * de entrada en la misma posición (sepia, escala de grises...).
+ *
+ * {@link FusedFilterEngine} aprovecha esta propiedad para leer cada píxel de la fuente una sola
+ * vez y aplicar todos los filtros punto a punto en el mismo recorrido.
+ */
+public interface PixelFilter extends TileFilter {
+
+    /**
+     * Transforma un píxel empaquetado 0xAARRGGBB.
+     *
+     * @param argb píxel de entrada
+     * @return píxel de salida 0xAARRGGBB (en destinos grises se guarda su luminancia)
+     */
+    int filterPixel(int argb);
+
+    /**
+     * Recorrido genérico por filas; las implementaciones pueden sobrescribirlo con un camino más rápido.
+     */
+    @Override
+    default void applyBand(BufferedImage src, BufferedImage dst, int yStart, int yEnd) {
+        int width = src.getWidth();
+        int[] row = new int[width];
+        for (int y = yStart; y < yEnd; y++) {
+            Pixels.readRow(src, y, row);
+            for (int x = 0; x < width; x++) {
+                row[x] = filterPixel(row[x]);
+            }
+            Pixels.writeRow(dst, y, row);
+        }
+    }
+}
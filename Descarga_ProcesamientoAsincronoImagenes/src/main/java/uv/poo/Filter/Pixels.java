@@ -0,0 +1,161 @@
+package uv.poo.Filter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+
+/**
+ * Pixels: utilidades para leer y escribir filas completas de una imagen como píxeles
+ * empaquetados 0xAARRGGBB.
+ *
+ * Para los tipos habituales (INT_RGB, INT_ARGB, 3BYTE_BGR, 4BYTE_ABGR, BYTE_GRAY) accede
+ * directamente al arreglo de respaldo del raster; para el resto usa getRGB/setRGB por filas.
+ * En BYTE_GRAY el byte almacenado se interpreta como el valor visible (r = g = b = gris),
+ * igual que hacen los bucles de Java2D al dibujar sobre una imagen gris.
+ */
+public final class Pixels {
+
+    private Pixels() {
+    }
+
+    /**
+     * Tipo de imagen de destino "compatible" con la fuente: se conserva el tipo si tiene camino
+     * rápido; en otro caso se usa INT_ARGB o INT_RGB según la fuente tenga alfa.
+     *
+     * @param src imagen fuente
+     * @return constante TYPE_* de BufferedImage
+     */
+    public static int compatibleType(BufferedImage src) {
+        switch (src.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+            case BufferedImage.TYPE_BYTE_GRAY:
+                return src.getType();
+            default:
+                return src.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        }
+    }
+
+    /**
+     * Lee la fila y de la imagen en row (longitud mínima: ancho de la imagen).
+     */
+    public static void readRow(BufferedImage img, int y, int[] row) {
+        int w = img.getWidth();
+        if (isPlain(img.getRaster())) {
+            switch (img.getType()) {
+                case BufferedImage.TYPE_INT_RGB: {
+                    int[] data = ints(img);
+                    for (int x = 0, i = y * w; x < w; x++, i++) {
+                        row[x] = 0xff000000 | data[i];
+                    }
+                    return;
+                }
+                case BufferedImage.TYPE_INT_ARGB:
+                    System.arraycopy(ints(img), y * w, row, 0, w);
+                    return;
+                case BufferedImage.TYPE_3BYTE_BGR: {
+                    byte[] data = bytes(img);
+                    for (int x = 0, i = y * w * 3; x < w; x++, i += 3) {
+                        row[x] = 0xff000000 | (data[i + 2] & 0xff) << 16 | (data[i + 1] & 0xff) << 8 | (data[i] & 0xff);
+                    }
+                    return;
+                }
+                case BufferedImage.TYPE_4BYTE_ABGR: {
+                    byte[] data = bytes(img);
+                    for (int x = 0, i = y * w * 4; x < w; x++, i += 4) {
+                        row[x] = (data[i] & 0xff) << 24 | (data[i + 3] & 0xff) << 16 | (data[i + 2] & 0xff) << 8 | (data[i + 1] & 0xff);
+                    }
+                    return;
+                }
+                case BufferedImage.TYPE_BYTE_GRAY: {
+                    byte[] data = bytes(img);
+                    for (int x = 0, i = y * w; x < w; x++, i++) {
+                        int v = data[i] & 0xff;
+                        row[x] = 0xff000000 | v << 16 | v << 8 | v;
+                    }
+                    return;
+                }
+                default:
+                    break;
+            }
+        }
+        img.getRGB(0, y, w, 1, row, 0, w);
+    }
+
+    /**
+     * Escribe row en la fila y de la imagen. En imágenes grises se guarda la luminancia
+     * (77 r + 150 g + 29 b) / 256, que coincide con el gris si r = g = b.
+     */
+    public static void writeRow(BufferedImage img, int y, int[] row) {
+        int w = img.getWidth();
+        if (isPlain(img.getRaster())) {
+            switch (img.getType()) {
+                case BufferedImage.TYPE_INT_RGB:
+                case BufferedImage.TYPE_INT_ARGB:
+                    System.arraycopy(row, 0, ints(img), y * w, w);
+                    return;
+                case BufferedImage.TYPE_3BYTE_BGR: {
+                    byte[] data = bytes(img);
+                    for (int x = 0, i = y * w * 3; x < w; x++, i += 3) {
+                        int p = row[x];
+                        data[i] = (byte) p;
+                        data[i + 1] = (byte) (p >> 8);
+                        data[i + 2] = (byte) (p >> 16);
+                    }
+                    return;
+                }
+                case BufferedImage.TYPE_4BYTE_ABGR: {
+                    byte[] data = bytes(img);
+                    for (int x = 0, i = y * w * 4; x < w; x++, i += 4) {
+                        int p = row[x];
+                        data[i] = (byte) (p >>> 24);
+                        data[i + 1] = (byte) p;
+                        data[i + 2] = (byte) (p >> 8);
+                        data[i + 3] = (byte) (p >> 16);
+                    }
+                    return;
+                }
+                case BufferedImage.TYPE_BYTE_GRAY: {
+                    byte[] data = bytes(img);
+                    for (int x = 0, i = y * w; x < w; x++, i++) {
+                        data[i] = (byte) luma(row[x]);
+                    }
+                    return;
+                }
+                default:
+                    break;
+            }
+        }
+        img.setRGB(0, y, w, 1, row, 0, w);
+    }
+
+    /**
+     * Luminancia entera de un píxel 0xAARRGGBB, con redondeo (0..255).
+     */
+    public static int luma(int argb) {
+        return (77 * ((argb >> 16) & 0xff) + 150 * ((argb >> 8) & 0xff) + 29 * (argb & 0xff) + 128) >> 8;
+    }
+
+    /**
+     * Indica si el raster ocupa su DataBuffer completo y sin desplazamientos
+     * (no es una subimagen), de modo que se puede indexar el arreglo directamente.
+     */
+    public static boolean isPlain(WritableRaster raster) {
+        return raster.getParent() == null
+                && raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0
+                && raster.getDataBuffer().getNumBanks() == 1
+                && raster.getDataBuffer().getOffset() == 0;
+    }
+
+    static int[] ints(BufferedImage img) {
+        return ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+    }
+
+    static byte[] bytes(BufferedImage img) {
+        return ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+    }
+}
@@ -0,0 +1,369 @@
+package uv.poo.Filter;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * PointFilter: filtro punto a punto compilado a tablas de consulta (LUT) y matrices en punto fijo.
+ *
+ * Una operación por canal (brillo, contraste, gamma, inversión...) se precalcula una sola vez en
+ * tres tablas de 256 entradas; una mezcla de canales (escala de grises, sepia...) en una matriz 3x3
+ * con coeficientes enteros en escala 2^16. Al aplicar el filtro cada píxel pasa por esas etapas sin
+ * ramas ni coma flotante, y el canal alfa se conserva.
+ *
+ * Los filtros se encadenan con {@link #andThen(PointFilter)}: dos tablas seguidas se componen en
+ * una sola, así que una cadena de operaciones por canal cuesta lo mismo que una sola operación.
+ * Dos matrices seguidas no se fusionan porque el recorte a [0, 255] entre ellas cambiaría el resultado.
+ */
+public class PointFilter implements PixelFilter {
+
+    private static final int SHIFT = 16;
+    private static final int ROUND = 1 << (SHIFT - 1);
+
+    private final String name;
+    private final boolean grayOutput;
+    private final Stage[] stages;
+
+    /**
+     * @param name       nombre del filtro (sufijo del archivo de salida)
+     * @param grayOutput true si el resultado es gris (r = g = b) y puede guardarse en TYPE_BYTE_GRAY
+     * @param stages     etapas en orden de aplicación
+     */
+    protected PointFilter(String name, boolean grayOutput, Stage... stages) {
+        this.name = name;
+        this.grayOutput = grayOutput;
+        this.stages = merge(List.of(stages));
+    }
+
+    /**
+     * Filtro de una tabla: aplica la misma función a los canales rojo, verde y azul.
+     *
+     * @param name nombre del filtro
+     * @param f    función de [0, 255] en [0, 255] (el resultado se recorta a ese rango)
+     * @return filtro
+     */
+    public static PointFilter lut(String name, IntUnaryOperator f) {
+        return new PointFilter(name, false, Stage.lut(f, f, f));
+    }
+
+    /**
+     * Filtro de una matriz 3x3 que mezcla los canales: (r', g', b') = m · (r, g, b).
+     *
+     * @param name nombre del filtro
+     * @param m    coeficientes por filas: r' = m[0] r + m[1] g + m[2] b, etc.
+     * @return filtro
+     */
+    public static PointFilter matrix(String name, float... m) {
+        return new PointFilter(name, false, Stage.matrix(m));
+    }
+
+    /**
+     * Suma delta a cada canal.
+     */
+    public static PointFilter brightness(int delta) {
+        return lut("brightness", v -> v + delta);
+    }
+
+    /**
+     * Escala la distancia de cada canal al gris medio (factor &gt; 1 aumenta el contraste).
+     */
+    public static PointFilter contrast(double factor) {
+        return lut("contrast", v -> (int) Math.round((v - 128) * factor + 128));
+    }
+
+    /**
+     * Corrección gamma: v' = 255 (v / 255)^(1 / gamma); gamma &gt; 1 aclara los tonos medios.
+     */
+    public static PointFilter gamma(double gamma) {
+        return lut("gamma", v -> (int) Math.round(255 * Math.pow(v / 255.0, 1 / gamma)));
+    }
+
+    /**
+     * Negativo: v' = 255 - v.
+     */
+    public static PointFilter invert() {
+        return lut("invert", v -> 255 - v);
+    }
+
+    /**
+     * Encadena otro filtro punto a punto detrás de éste; el resultado es un único filtro
+     * que se aplica en una sola pasada.
+     *
+     * La salida compuesta es gris si lo es la de next, o si lo es la de éste y next deja gris lo
+     * que recibe gris; así el tipo de imagen es el mismo que al aplicar los dos por separado.
+     *
+     * @param next filtro a aplicar después
+     * @return filtro compuesto, de nombre "este+siguiente"
+     */
+    public PointFilter andThen(PointFilter next) {
+        Stage[] chained = new Stage[stages.length + next.stages.length];
+        System.arraycopy(stages, 0, chained, 0, stages.length);
+        System.arraycopy(next.stages, 0, chained, stages.length, next.stages.length);
+        return new PointFilter(name + "+" + next.name, next.grayOutput || (grayOutput && next.keepsGray()), chained);
+    }
+
+    /**
+     * @return true si un píxel gris (r = g = b) sigue siendo gris tras todas las etapas
+     */
+    boolean keepsGray() {
+        for (Stage stage : stages) {
+            if (!stage.keepsGray()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return número de etapas tras componer las tablas consecutivas
+     */
+    public int stageCount() {
+        return stages.length;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Las salidas grises se guardan en TYPE_BYTE_GRAY, igual que las de una fuente TYPE_BYTE_GRAY
+     * si el filtro deja gris lo que recibe gris (p.ej. contraste detrás de blanco y negro); las
+     * demás conservan el tipo de la fuente si tiene camino rápido y, si no, RGB (o ARGB si la
+     * fuente tiene alfa), ya que p.ej. una imagen gris no puede guardar un tono sepia. La imagen se
+     * toma de la reserva.
+     */
+    @Override
+    public BufferedImage createDestination(BufferedImage src, RasterPool pool) {
+        return pool.acquire(src.getWidth(), src.getHeight(), destinationType(src));
+    }
+
+    private int destinationType(BufferedImage src) {
+        if (grayOutput || (src.getType() == BufferedImage.TYPE_BYTE_GRAY && keepsGray())) {
+            return BufferedImage.TYPE_BYTE_GRAY;
+        }
+        switch (src.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                return src.getType();
+            default:
+                return src.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        }
+    }
+
+    @Override
+    public int filterPixel(int argb) {
+        int rgb = argb & 0xffffff;
+        for (Stage stage : stages) {
+            rgb = stage.apply(rgb);
+        }
+        return (argb & 0xff000000) | rgb;
+    }
+
+    /**
+     * Con rasters INT_RGB / INT_ARGB simples del mismo tipo, las etapas se aplican directamente sobre
+     * el arreglo de respaldo; en los demás casos se recorre la banda por filas (lectura y escritura
+     * con los caminos rápidos de {@link Pixels}). En ambos, cada etapa es un bucle sin ramas.
+     */
+    @Override
+    public void applyBand(BufferedImage src, BufferedImage dst, int yStart, int yEnd) {
+        int width = src.getWidth();
+        int type = src.getType();
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB) && dst.getType() == type
+                && Pixels.isPlain(src.getRaster()) && Pixels.isPlain(dst.getRaster())) {
+            int[] in = Pixels.ints(src);
+            int[] out = Pixels.ints(dst);
+            int from = yStart * width;
+            int to = yEnd * width;
+            for (int k = 0; k < stages.length; k++) {
+                // La primera etapa lee de la fuente; las siguientes trabajan sobre el destino
+                stages[k].apply(k == 0 ? in : out, out, from, to);
+            }
+            if (stages.length == 0) {
+                System.arraycopy(in, from, out, from, to - from);
+            }
+            return;
+        }
+
+        int[] row = new int[width];
+        for (int y = yStart; y < yEnd; y++) {
+            Pixels.readRow(src, y, row);
+            for (Stage stage : stages) {
+                stage.apply(row, row, 0, width);
+            }
+            Pixels.writeRow(dst, y, row);
+        }
+    }
+
+    /**
+     * Aplica las etapas, en el sitio, a los píxeles 0xAARRGGBB row[from, to). Permite encadenar el
+     * filtro detrás de otro que produce filas (ver FilterPlan) sin pasar por una imagen intermedia.
+     */
+    void applyRow(int[] row, int from, int to) {
+        for (Stage stage : stages) {
+            stage.apply(row, row, from, to);
+        }
+    }
+
+    /**
+     * Compone las tablas consecutivas en una sola.
+     */
+    private static Stage[] merge(List<Stage> stages) {
+        List<Stage> merged = new ArrayList<>();
+        for (Stage stage : stages) {
+            int last = merged.size() - 1;
+            if (last >= 0 && merged.get(last).isLut() && stage.isLut()) {
+                merged.set(last, merged.get(last).thenLut(stage));
+            } else {
+                merged.add(stage);
+            }
+        }
+        return merged.toArray(new Stage[0]);
+    }
+
+    /**
+     * Etapa de un PointFilter: tres tablas de 256 entradas o una matriz 3x3 en punto fijo.
+     * Trabaja sobre píxeles 0x00RRGGBB.
+     */
+    protected static final class Stage {
+        // Tablas con el valor ya desplazado a su posición (r << 16, g << 8, b)
+        private final int[] lutR;
+        private final int[] lutG;
+        private final int[] lutB;
+        // Matriz en escala 2^16
+        private final int[] m;
+        // Las tres filas de la matriz son iguales (escala de grises): basta con calcular una
+        private final boolean gray;
+
+        private Stage(int[] lutR, int[] lutG, int[] lutB, int[] m) {
+            this.lutR = lutR;
+            this.lutG = lutG;
+            this.lutB = lutB;
+            this.m = m;
+            this.gray = m != null && m[0] == m[3] && m[0] == m[6] && m[1] == m[4] && m[1] == m[7]
+                    && m[2] == m[5] && m[2] == m[8];
+        }
+
+        /**
+         * Etapa de tablas: una función por canal, evaluada una vez para cada valor 0..255.
+         */
+        public static Stage lut(IntUnaryOperator r, IntUnaryOperator g, IntUnaryOperator b) {
+            int[] lr = new int[256];
+            int[] lg = new int[256];
+            int[] lb = new int[256];
+            for (int v = 0; v < 256; v++) {
+                lr[v] = clamp(r.applyAsInt(v)) << 16;
+                lg[v] = clamp(g.applyAsInt(v)) << 8;
+                lb[v] = clamp(b.applyAsInt(v));
+            }
+            return new Stage(lr, lg, lb, null);
+        }
+
+        /**
+         * Etapa de matriz 3x3 (por filas); los coeficientes se redondean a la escala 2^16.
+         */
+        public static Stage matrix(float... coefficients) {
+            if (coefficients.length != 9) {
+                throw new IllegalArgumentException("La matriz debe tener 9 coeficientes");
+            }
+            int[] fixed = new int[9];
+            for (int i = 0; i < 9; i++) {
+                fixed[i] = Math.round(coefficients[i] * (1 << SHIFT));
+            }
+            return new Stage(null, null, null, fixed);
+        }
+
+        boolean isLut() {
+            return m == null;
+        }
+
+        /**
+         * Una tabla igual en los tres canales o una matriz de escala de grises dejan gris un píxel gris.
+         */
+        boolean keepsGray() {
+            if (m != null) {
+                return gray;
+            }
+            for (int v = 0; v < 256; v++) {
+                if (lutR[v] >>> 16 != lutG[v] >>> 8 || lutG[v] >>> 8 != lutB[v]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Tabla equivalente a aplicar esta tabla y después other.
+         */
+        Stage thenLut(Stage other) {
+            int[] lr = new int[256];
+            int[] lg = new int[256];
+            int[] lb = new int[256];
+            for (int v = 0; v < 256; v++) {
+                lr[v] = other.lutR[lutR[v] >>> 16];
+                lg[v] = other.lutG[lutG[v] >>> 8];
+                lb[v] = other.lutB[lutB[v]];
+            }
+            return new Stage(lr, lg, lb, null);
+        }
+
+        int apply(int rgb) {
+            int r = (rgb >> 16) & 0xff;
+            int g = (rgb >> 8) & 0xff;
+            int b = rgb & 0xff;
+            if (m == null) {
+                return lutR[r] | lutG[g] | lutB[b];
+            }
+            int tr = (m[0] * r + m[1] * g + m[2] * b + ROUND) >> SHIFT;
+            int tg = (m[3] * r + m[4] * g + m[5] * b + ROUND) >> SHIFT;
+            int tb = (m[6] * r + m[7] * g + m[8] * b + ROUND) >> SHIFT;
+            return clamp(tr) << 16 | clamp(tg) << 8 | clamp(tb);
+        }
+
+        /**
+         * Aplica la etapa a los píxeles 0xAARRGGBB in[from, to) y los escribe en out (puede ser el
+         * mismo arreglo), conservando el alfa. El tipo de etapa se comprueba una vez, no por píxel.
+         */
+        void apply(int[] in, int[] out, int from, int to) {
+            if (m == null) {
+                int[] lr = lutR;
+                int[] lg = lutG;
+                int[] lb = lutB;
+                for (int x = from; x < to; x++) {
+                    int p = in[x];
+                    out[x] = (p & 0xff000000) | lr[(p >> 16) & 0xff] | lg[(p >> 8) & 0xff] | lb[p & 0xff];
+                }
+                return;
+            }
+            int m0 = m[0], m1 = m[1], m2 = m[2];
+            if (gray) {
+                for (int x = from; x < to; x++) {
+                    int p = in[x];
+                    int v = clamp((m0 * ((p >> 16) & 0xff) + m1 * ((p >> 8) & 0xff) + m2 * (p & 0xff) + ROUND) >> SHIFT);
+                    out[x] = (p & 0xff000000) | v * 0x010101;
+                }
+                return;
+            }
+            int m3 = m[3], m4 = m[4], m5 = m[5];
+            int m6 = m[6], m7 = m[7], m8 = m[8];
+            for (int x = from; x < to; x++) {
+                int p = in[x];
+                int r = (p >> 16) & 0xff;
+                int g = (p >> 8) & 0xff;
+                int b = p & 0xff;
+                int tr = clamp((m0 * r + m1 * g + m2 * b + ROUND) >> SHIFT);
+                int tg = clamp((m3 * r + m4 * g + m5 * b + ROUND) >> SHIFT);
+                int tb = clamp((m6 * r + m7 * g + m8 * b + ROUND) >> SHIFT);
+                out[x] = (p & 0xff000000) | tr << 16 | tg << 8 | tb;
+            }
+        }
+
+        private static int clamp(int v) {
+            return Math.max(0, Math.min(255, v));
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package uv.poo.Filter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * PyramidGenerator: genera versiones reducidas de una imagen ya filtrada, sin volver a decodificar
+ * nada, para cada caja de tamaño máximo configurada (p.ej. 1024x1024, 512x512, 128x128).
+ *
+ * Cada nivel se obtiene del anterior (de mayor a menor) por divisiones sucesivas a la mitad con un
+ * promedio 2x2, que es rápido y no produce aliasing, y un último ajuste con un filtro de caja
+ * ponderado por área para el factor restante (entre 1 y 2). Así cada píxel de la imagen completa se
+ * lee una sola vez para toda la pirámide. Trabaja sobre las bandas del Raster, por lo que conserva
+ * el tipo de imagen (RGB, ARGB o gris) sin conversiones de color.
+ *
+ * Las imágenes intermedias y los niveles se toman de la {@link RasterPool} que se le pasa; quien
+ * recibe un nivel no debe conservarlo después de que {@link LevelConsumer#accept} vuelva.
+ */
+public class PyramidGenerator {
+
+    private final int[][] boxes;
+
+    /**
+     * @param boxes cajas de tamaño máximo {ancho, alto} de cada nivel
+     */
+    public PyramidGenerator(List<int[]> boxes) {
+        this.boxes = boxes.toArray(new int[0][]);
+    }
+
+    /**
+     * Crea el generador a partir de una lista "WxH,WxH,..." (p.ej. "1024x1024,256x256").
+     *
+     * @param spec lista de cajas; null o vacía no genera niveles
+     * @return generador
+     * @throws IllegalArgumentException si alguna caja no tiene el formato WxH
+     */
+    public static PyramidGenerator parse(String spec) {
+        List<int[]> boxes = new ArrayList<>();
+        if (spec != null) {
+            for (String part : spec.split(",")) {
+                String box = part.trim();
+                if (box.isEmpty()) {
+                    continue;
+                }
+                String[] wh = box.toLowerCase().split("x");
+                int w = -1;
+                int h = -1;
+                if (wh.length == 2) {
+                    try {
+                        w = Integer.parseInt(wh[0].trim());
+                        h = Integer.parseInt(wh[1].trim());
+                    } catch (NumberFormatException e) {
+                        // Se informa abajo
+                    }
+                }
+                if (w <= 0 || h <= 0) {
+                    throw new IllegalArgumentException("Nivel de pirámide inválido: '" + box + "' (se espera WxH)");
+                }
+                boxes.add(new int[]{w, h});
+            }
+        }
+        return new PyramidGenerator(boxes);
+    }
+
+    /**
+     * @return true si no hay niveles configurados
+     */
+    public boolean isEmpty() {
+        return boxes.length == 0;
+    }
+
+    /**
+     * Cajas configuradas en forma canónica ("1024x1024,256x256"), para saber si una salida se generó
+     * con los mismos niveles.
+     *
+     * @return lista de cajas; "" si no hay niveles
+     */
+    public String spec() {
+        StringBuilder sb = new StringBuilder();
+        for (int[] box : boxes) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(box[0]).append('x').append(box[1]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Tamaños de los niveles para una imagen: cada caja ajustada conservando la proporción, sin
+     * ampliar, sin repetir y de mayor a menor.
+     *
+     * @param width  ancho de la imagen completa
+     * @param height alto de la imagen completa
+     * @return lista de {ancho, alto}
+     */
+    public List<int[]> sizes(int width, int height) {
+        List<int[]> sizes = new ArrayList<>();
+        for (int[] box : boxes) {
+            double scale = Math.min((double) box[0] / width, (double) box[1] / height);
+            if (scale >= 1) {
+                continue;
+            }
+            int w = Math.max(1, (int) Math.round(width * scale));
+            int h = Math.max(1, (int) Math.round(height * scale));
+            boolean seen = false;
+            for (int[] s : sizes) {
+                seen |= s[0] == w && s[1] == h;
+            }
+            if (!seen) {
+                sizes.add(new int[]{w, h});
+            }
+        }
+        sizes.sort((a, b) -> Long.compare((long) b[0] * b[1], (long) a[0] * a[1]));
+        return sizes;
+    }
+
+    /**
+     * Genera los niveles de la imagen, de mayor a menor, y se los pasa al consumidor.
+     *
+     * @param full     imagen completa (no se modifica ni se devuelve a la reserva)
+     * @param pool     reserva de los niveles y las imágenes intermedias
+     * @param consumer recibe cada nivel
+     * @throws IOException lo que lance el consumidor (p.ej. al codificar un nivel)
+     */
+    public void generate(BufferedImage full, RasterPool pool, LevelConsumer consumer) throws IOException {
+        BufferedImage current = full;
+        try {
+            for (int[] size : sizes(full.getWidth(), full.getHeight())) {
+                // Paso 1: dividir a la mitad mientras no se pase del tamaño del nivel
+                while (current.getWidth() / 2 >= size[0] && current.getHeight() / 2 >= size[1]) {
+                    current = replace(current, halve(current, pool), full, pool);
+                }
+                // Paso 2: ajuste final por área hasta el tamaño exacto
+                if (current.getWidth() != size[0] || current.getHeight() != size[1]) {
+                    current = replace(current, resample(current, size[0], size[1], pool), full, pool);
+                }
+                consumer.accept(current);
+            }
+        } finally {
+            if (current != full) {
+                pool.release(current);
+            }
+        }
+    }
+
+    private static BufferedImage replace(BufferedImage old, BufferedImage next, BufferedImage full, RasterPool pool) {
+        if (old != full) {
+            pool.release(old);
+        }
+        return next;
+    }
+
+    /**
+     * Reduce a la mitad promediando bloques de 2x2 (con ancho o alto impar, la última fila o
+     * columna se promedia consigo misma).
+     *
+     * @param src  imagen fuente
+     * @param pool reserva de la imagen reducida
+     * @return imagen de (ancho/2, alto/2), del mismo tipo
+     */
+    public static BufferedImage halve(BufferedImage src, RasterPool pool) {
+        int w = Math.max(1, src.getWidth() / 2);
+        int h = Math.max(1, src.getHeight() / 2);
+        BufferedImage dst = createLike(src, w, h, pool);
+        Raster in = src.getRaster();
+        WritableRaster out = dst.getRaster();
+        int bands = in.getNumBands();
+        int srcW = src.getWidth();
+        int[] row0 = new int[srcW * bands];
+        int[] row1 = new int[srcW * bands];
+        int[] result = new int[w * bands];
+        for (int y = 0; y < h; y++) {
+            int y0 = Math.min(2 * y, src.getHeight() - 1);
+            int y1 = Math.min(2 * y + 1, src.getHeight() - 1);
+            in.getPixels(0, y0, srcW, 1, row0);
+            in.getPixels(0, y1, srcW, 1, row1);
+            for (int x = 0; x < w; x++) {
+                int a = 2 * x * bands;
+                int b = Math.min(2 * x + 1, srcW - 1) * bands;
+                for (int c = 0; c < bands; c++) {
+                    // +2: redondeo al entero más cercano
+                    result[x * bands + c] = (row0[a + c] + row0[b + c] + row1[a + c] + row1[b + c] + 2) >> 2;
+                }
+            }
+            out.setPixels(0, y, w, 1, result);
+        }
+        return dst;
+    }
+
+    /**
+     * Redimensiona con un filtro de caja ponderado por área: cada píxel destino es la media de los
+     * píxeles fuente que cubre, contando la fracción de los bordes. Pensado para reducciones de
+     * factor menor que 2 (para factores mayores, usar antes {@link #halve}).
+     *
+     * @param src    imagen fuente
+     * @param width  ancho destino
+     * @param height alto destino
+     * @param pool   reserva de la imagen redimensionada
+     * @return imagen redimensionada, del mismo tipo
+     */
+    public static BufferedImage resample(BufferedImage src, int width, int height, RasterPool pool) {
+        BufferedImage dst = createLike(src, width, height, pool);
+        Raster in = src.getRaster();
+        WritableRaster out = dst.getRaster();
+        int bands = in.getNumBands();
+        int srcW = src.getWidth();
+        int srcH = src.getHeight();
+        double sx = (double) srcW / width;
+        double sy = (double) srcH / height;
+
+        // Paso 1: pesos horizontales, iguales para todas las filas
+        int[] xStart = new int[width];
+        double[][] xWeights = new double[width][];
+        for (int x = 0; x < width; x++) {
+            xStart[x] = (int) Math.floor(x * sx);
+            xWeights[x] = coverage(x * sx, (x + 1) * sx, xStart[x], srcW);
+        }
+
+        int[] srcRow = new int[srcW * bands];
+        double[] acc = new double[width * bands];
+        int[] result = new int[width * bands];
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(acc, 0);
+            int yStart = (int) Math.floor(y * sy);
+            double[] yWeights = coverage(y * sy, (y + 1) * sy, yStart, srcH);
+            // Paso 2: cada fila fuente contribuye con su peso vertical por el horizontal de cada columna
+            for (int j = 0; j < yWeights.length; j++) {
+                in.getPixels(0, yStart + j, srcW, 1, srcRow);
+                for (int x = 0; x < width; x++) {
+                    double[] wx = xWeights[x];
+                    int base = xStart[x] * bands;
+                    for (int i = 0; i < wx.length; i++) {
+                        double weight = yWeights[j] * wx[i];
+                        int p = base + i * bands;
+                        for (int c = 0; c < bands; c++) {
+                            acc[x * bands + c] += weight * srcRow[p + c];
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (int) Math.round(acc[i]);
+            }
+            out.setPixels(0, y, width, 1, result);
+        }
+        return dst;
+    }
+
+    /**
+     * Fracción de cada píxel fuente desde {@code first} cubierta por [from, to), normalizada a suma 1.
+     */
+    private static double[] coverage(double from, double to, int first, int limit) {
+        int last = Math.min(limit - 1, (int) Math.ceil(to) - 1);
+        double[] weights = new double[Math.max(1, last - first + 1)];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            int p = first + i;
+            weights[i] = Math.max(0, Math.min(to, p + 1) - Math.max(from, p));
+            total += weights[i];
+        }
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = total > 0 ? weights[i] / total : 1.0 / weights.length;
+        }
+        return weights;
+    }
+
+    /**
+     * Imagen del mismo tipo (y modelo de color) que la fuente, de la reserva si el tipo es estándar.
+     */
+    private static BufferedImage createLike(BufferedImage src, int width, int height, RasterPool pool) {
+        if (src.getType() != BufferedImage.TYPE_CUSTOM) {
+            return pool.acquire(width, height, src.getType());
+        }
+        ColorModel cm = src.getColorModel();
+        return new BufferedImage(cm, cm.createCompatibleWritableRaster(width, height), cm.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * Recibe cada nivel de la pirámide.
+     */
+    @FunctionalInterface
+    public interface LevelConsumer {
+        void accept(BufferedImage level) throws IOException;
+    }
+}
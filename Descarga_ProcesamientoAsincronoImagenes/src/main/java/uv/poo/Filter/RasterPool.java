@@ -0,0 +1,147 @@
+package uv.poo.Filter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RasterPool: reserva de imágenes de destino reutilizables, agrupadas por (ancho, alto, tipo).
+ *
+ * Los filtros piden su imagen de salida con {@link #acquire(int, int, int)} en lugar de crear una
+ * nueva; quien la consume (la codificación en FilterTask) la devuelve con {@link #release(BufferedImage)}
+ * cuando ya no la necesita. Así, en una ejecución estable con imágenes del mismo tamaño, casi no se
+ * reservan rasters nuevos (una imagen INT_RGB de 16 MP ocupa 64 MB y en G1 es una reserva "humongous").
+ *
+ * Las imágenes devueltas conservan su contenido anterior: sólo sirven como destino de filtros que
+ * escriben todos los píxeles. El total de bytes retenidos está limitado; lo que no cabe se descarta
+ * y lo recoge el GC.
+ */
+public class RasterPool {
+
+    /** Límite por defecto de la reserva compartida. */
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final RasterPool SHARED = new RasterPool(DEFAULT_MAX_BYTES);
+
+    private final long maxBytes;
+    private final Map<Key, Deque<BufferedImage>> free = new ConcurrentHashMap<>();
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param maxBytes bytes máximos retenidos en la reserva (0 la desactiva)
+     */
+    public RasterPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Reserva por defecto de los filtros aplicados sueltos (p.ej. {@link ImageFilter#apply(BufferedImage)}).
+     * El pipeline no la usa: crea la suya, con el límite de settings.rasterPoolMaxBytes, y la pasa a
+     * cada etapa.
+     *
+     * @return reserva por defecto
+     */
+    public static RasterPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Devuelve una imagen del tamaño y tipo indicados: una de la reserva si la hay o una nueva.
+     *
+     * @param width  ancho
+     * @param height alto
+     * @param type   constante TYPE_* de BufferedImage (no TYPE_CUSTOM)
+     * @return imagen con contenido indeterminado
+     */
+    public BufferedImage acquire(int width, int height, int type) {
+        Deque<BufferedImage> images = free.get(new Key(width, height, type));
+        BufferedImage img = images != null ? images.pollFirst() : null;
+        if (img != null) {
+            pooledBytes.addAndGet(-sizeOf(img));
+            hits.increment();
+            return img;
+        }
+        misses.increment();
+        return new BufferedImage(width, height, type);
+    }
+
+    /**
+     * Devuelve una imagen a la reserva. Quien la devuelve no debe volver a usarla.
+     * Si no cabe en el límite de bytes, o no es de un tipo estándar, se descarta.
+     *
+     * @param img imagen que ya no se usa (null se ignora)
+     */
+    public void release(BufferedImage img) {
+        if (img == null || img.getType() == BufferedImage.TYPE_CUSTOM) {
+            return;
+        }
+        long size = sizeOf(img);
+        if (pooledBytes.addAndGet(size) > maxBytes) {
+            pooledBytes.addAndGet(-size);
+            dropped.increment();
+            return;
+        }
+        free.computeIfAbsent(new Key(img.getWidth(), img.getHeight(), img.getType()),
+                k -> new ConcurrentLinkedDeque<>()).offerFirst(img);
+    }
+
+    /**
+     * @return bytes retenidos ahora mismo en la reserva
+     */
+    public long pooledBytes() {
+        return pooledBytes.get();
+    }
+
+    /**
+     * @return resumen de aciertos, fallos y descartes
+     */
+    public String stats() {
+        return "Reserva de rasters: " + hits.sum() + " reutilizados, " + misses.sum() + " nuevos, "
+                + dropped.sum() + " descartados, " + pooledBytes.get() + " bytes retenidos";
+    }
+
+    /**
+     * Bytes del arreglo de respaldo de la imagen.
+     */
+    static long sizeOf(BufferedImage img) {
+        DataBuffer buffer = img.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    /**
+     * Clave de la reserva: imágenes intercambiables entre sí.
+     */
+    private static final class Key {
+        private final int width;
+        private final int height;
+        private final int type;
+
+        Key(int width, int height, int type) {
+            this.width = width;
+            this.height = height;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return width == k.width && height == k.height && type == k.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return (width * 31 + height) * 31 + type;
+        }
+    }
+}
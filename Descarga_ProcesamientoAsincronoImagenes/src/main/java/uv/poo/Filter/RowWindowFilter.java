@@ -0,0 +1,60 @@
+package uv.poo.Filter;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * RowWindowFilter: filtro de vecindad (convolución) que calcula cada fila de salida a partir de
+ * una ventana de 2 * haloRows() + 1 filas de la fuente centrada en esa fila.
+ *
+ * Así puede procesarse en streaming, fila a fila, junto con los filtros punto a punto en
+ * {@link FusedFilterEngine}, o por bandas en {@link TiledFilterExecutor}.
+ */
+public interface RowWindowFilter extends TileFilter {
+
+    /**
+     * Calcula la fila y de la salida.
+     *
+     * @param window filas y - halo .. y + halo de la fuente como píxeles 0xAARRGGBB;
+     *               las filas fuera de la imagen se sustituyen por la fila válida más cercana
+     * @param y      fila que se calcula
+     * @param height alto de la imagen (para tratar los bordes)
+     * @param out    fila de salida
+     */
+    void filterRow(int[][] window, int y, int height, int[] out);
+
+    /**
+     * Recorrido genérico: mantiene la ventana de filas y la desplaza una fila en cada paso,
+     * reutilizando los arreglos.
+     */
+    @Override
+    default void applyBand(BufferedImage src, BufferedImage dst, int yStart, int yEnd) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int halo = haloRows();
+        int[][] window = new int[2 * halo + 1][width];
+        int[] out = new int[width];
+
+        // Cargar la ventana inicial centrada en yStart
+        for (int i = 0; i < window.length; i++) {
+            Pixels.readRow(src, clamp(yStart - halo + i, height), window[i]);
+        }
+        for (int y = yStart; y < yEnd; y++) {
+            if (y > yStart) {
+                // Desplazar la ventana: la fila más antigua se reutiliza para la nueva
+                int[] recycled = window[0];
+                System.arraycopy(window, 1, window, 0, window.length - 1);
+                window[window.length - 1] = recycled;
+                Pixels.readRow(src, clamp(y + halo, height), recycled);
+            }
+            filterRow(window, y, height, out);
+            Pixels.writeRow(dst, y, out);
+        }
+    }
+
+    /**
+     * Limita el índice de fila al rango [0, height).
+     */
+    static int clamp(int y, int height) {
+        return Math.max(0, Math.min(height - 1, y));
+    }
+}
@@ -1,45 +1,28 @@
 package uv.poo.Filter;
 
-import java.awt.Color;
-import java.awt.image.BufferedImage;
-
 /**
  * Filtro que aplica un tono sepia a una imagen.
+ *
+ * Es un {@link PointFilter} con la matriz sepia clásica, que se aplica en punto fijo (escala 2^16)
+ * sin crear objetos por píxel:
+ * tr = 0.393 r + 0.769 g + 0.189 b
+ * tg = 0.349 r + 0.686 g + 0.168 b
+ * tb = 0.272 r + 0.534 g + 0.131 b
  */
-public class SepiaFilter implements ImageFilter {
+public class SepiaFilter extends PointFilter {
 
-    @Override
-    public String name() {
-        return "sepia";
-    }
-
-    @Override
-    public BufferedImage apply(BufferedImage src) {
-        int width = src.getWidth();
-        int height = src.getHeight();
-        BufferedImage sepia = new BufferedImage(width, height, src.getType());
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                Color c = new Color(src.getRGB(x, y));
-                int r = c.getRed();
-                int g = c.getGreen();
-                int b = c.getBlue();
-
-                int tr = clamp((int) (0.393 * r + 0.769 * g + 0.189 * b));
-                int tg = clamp((int) (0.349 * r + 0.686 * g + 0.168 * b));
-                int tb = clamp((int) (0.272 * r + 0.534 * g + 0.131 * b));
-
-                sepia.setRGB(x, y, new Color(tr, tg, tb).getRGB());
-            }
-        }
-        return sepia;
+    public SepiaFilter() {
+        super("sepia", false, Stage.matrix(
+                0.393f, 0.769f, 0.189f,
+                0.349f, 0.686f, 0.168f,
+                0.272f, 0.534f, 0.131f));
     }
 
     /**
-     * Asegura que el valor quede entre 0 y 255.
+     * Versión 2: el resultado se redondea en lugar de truncarse.
      */
-    private int clamp(int val) {
-        return Math.min(255, Math.max(0, val));
+    @Override
+    public String version() {
+        return "2";
     }
 }
@@ -1,29 +1,15 @@
 package uv.poo.Filter;
 
-import java.awt.image.BufferedImage;
-import java.awt.image.ConvolveOp;
-import java.awt.image.Kernel;
-
 /**
  * Filtro que aplica un efecto de 'sharpen' (enfoque) a una imagen.
+ *
+ * Convoluciona cada canal con el kernel 3x3 de {@link ConvolutionKernel#sharpen()} mediante
+ * {@link ConvolutionFilter}, así que cada banda sólo necesita una fila de halo arriba y abajo.
+ * Igual que ConvolveOp.EDGE_NO_OP, los píxeles del borde se copian sin cambios.
  */
-public class SharpenFilter implements ImageFilter {
-
-    @Override
-    public String name() {
-        return "sharpen";
-    }
+public class SharpenFilter extends ConvolutionFilter {
 
-    @Override
-    public BufferedImage apply(BufferedImage src) {
-        // Matríz de convolución para realzar bordes
-        float[] kernelData = {
-                0f, -1f, 0f,
-                -1f,  5f, -1f,
-                0f, -1f, 0f
-        };
-        Kernel kernel = new Kernel(3, 3, kernelData);
-        ConvolveOp op = new ConvolveOp(kernel, ConvolveOp.EDGE_NO_OP, null);
-        return op.filter(src, null);
+    public SharpenFilter() {
+        super("sharpen", ConvolutionKernel.sharpen(), EdgeMode.NO_OP);
     }
-}
\ No newline at end of file
+}
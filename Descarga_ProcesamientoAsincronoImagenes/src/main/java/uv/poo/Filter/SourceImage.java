@@ -0,0 +1,137 @@
+package uv.poo.Filter;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SourceImage: imagen decodificada, normalizada una sola vez a un formato canónico y compartida
+ * en sólo lectura por todas las tareas que la filtran.
+ *
+ * Formatos canónicos: los que {@link Pixels} lee accediendo directamente al arreglo del raster
+ * (INT_RGB, INT_ARGB, 3BYTE_BGR, 4BYTE_ABGR y BYTE_GRAY, con el raster completo y sin
+ * desplazamientos); se usan tal cual, sin copiarlos. Cualquier otro formato (paletas, 16 bits,
+ * alfa premultiplicado, subimágenes...) se lee con getRGB, que convierte cada píxel por el modelo
+ * de color, así que se convierte una sola vez a INT_RGB / INT_ARGB al decodificar en lugar de en
+ * cada banda y en cada filtro que lee la fuente; además los destinos de los filtros, que siguen
+ * el tipo de la fuente, salen también en un formato rápido. Convertir también los BGR de 3 bytes
+ * no compensa: ya tienen camino rápido y la copia cuesta más de lo que ahorra.
+ *
+ * La imagen tiene un contador de referencias: quien la crea tiene la primera, cada consumidor
+ * llama a {@link #retain()} y todos llaman a {@link #release()} al terminar. Cuando se suelta la
+ * última, el raster se devuelve a la {@link RasterPool} con la que se normalizó, donde lo
+ * reutilizan los filtrados siguientes. Nadie debe modificar {@link #image()} ni usarla después de su release().
+ */
+public final class SourceImage {
+
+    private static final LongAdder shared = new LongAdder();
+    private static final LongAdder converted = new LongAdder();
+
+    private final BufferedImage image;
+    private final RasterPool pool;
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    private SourceImage(BufferedImage image, RasterPool pool) {
+        this.image = image;
+        this.pool  = pool;
+    }
+
+    /**
+     * Normaliza una imagen recién decodificada. Si ya está en un formato canónico se usa sin copiarla.
+     *
+     * @param decoded imagen decodificada (pasa a pertenecer a la SourceImage)
+     * @param pool    reserva de la copia convertida, y adonde vuelve el raster con la última referencia
+     * @return fuente con una referencia, la de quien la crea
+     */
+    public static SourceImage normalize(BufferedImage decoded, RasterPool pool) {
+        if (isCanonical(decoded)) {
+            shared.increment();
+            return new SourceImage(decoded, pool);
+        }
+        // Una única conversión fila a fila a un raster de la reserva
+        int w = decoded.getWidth();
+        int h = decoded.getHeight();
+        BufferedImage canonical = pool.acquire(w, h,
+                decoded.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++) {
+            Pixels.readRow(decoded, y, row);
+            Pixels.writeRow(canonical, y, row);
+        }
+        converted.increment();
+        return new SourceImage(canonical, pool);
+    }
+
+    /**
+     * @param img imagen
+     * @return true si los filtros pueden leerla directamente sin convertirla
+     */
+    public static boolean isCanonical(BufferedImage img) {
+        return isCanonicalType(img.getType()) && Pixels.isPlain(img.getRaster());
+    }
+
+    /**
+     * @param type constante TYPE_* de BufferedImage
+     * @return true si las imágenes de ese tipo (con el raster completo) son canónicas
+     */
+    public static boolean isCanonicalType(int type) {
+        switch (type) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+            case BufferedImage.TYPE_BYTE_GRAY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return la imagen normalizada (sólo lectura)
+     */
+    public BufferedImage image() {
+        return image;
+    }
+
+    /**
+     * Añade una referencia para un nuevo consumidor.
+     *
+     * @return esta misma fuente
+     * @throws IllegalStateException si ya se soltó la última referencia
+     */
+    public SourceImage retain() {
+        if (refs.getAndUpdate(n -> n > 0 ? n + 1 : n) <= 0) {
+            throw new IllegalStateException("La imagen fuente ya fue liberada");
+        }
+        return this;
+    }
+
+    /**
+     * Suelta una referencia; con la última, el raster vuelve a la reserva.
+     *
+     * @throws IllegalStateException si se suelta más veces de las que se retuvo
+     */
+    public void release() {
+        int left = refs.decrementAndGet();
+        if (left == 0) {
+            pool.release(image);
+        } else if (left < 0) {
+            throw new IllegalStateException("La imagen fuente se liberó más veces de las retenidas");
+        }
+    }
+
+    /**
+     * @return referencias vivas
+     */
+    public int refCount() {
+        return Math.max(0, refs.get());
+    }
+
+    /**
+     * @return resumen de fuentes usadas sin copia y convertidas
+     */
+    public static String stats() {
+        return "Fuentes: " + shared.sum() + " compartidas sin copia, " + converted.sum() + " convertidas a formato canónico";
+    }
+}
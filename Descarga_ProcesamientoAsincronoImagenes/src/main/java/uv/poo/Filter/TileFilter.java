@@ -0,0 +1,62 @@
+package uv.poo.Filter;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * TileFilter: filtro que sabe procesar una banda de filas de forma independiente,
+ * de modo que {@link TiledFilterExecutor} pueda repartir una sola imagen entre varios núcleos.
+ *
+ * Todas las bandas escriben en la misma imagen destino (filas disjuntas), así que no hay
+ * que reensamblar ni copiar el resultado. La fuente se comparte en sólo lectura; un filtro de
+ * vecindad (convolución) lee además {@link #haloRows()} filas por encima y por debajo de su banda.
+ */
+public interface TileFilter extends ImageFilter {
+
+    /**
+     * Filas extra que el filtro necesita leer por encima y por debajo de cada banda
+     * (0 para filtros punto a punto, 1 para un kernel 3x3).
+     */
+    default int haloRows() {
+        return 0;
+    }
+
+    /**
+     * Crea la imagen destino con el tamaño y tipo que producirá el filtro. Puede tomarse de la
+     * reserva con contenido anterior, así que {@link #applyBand} debe escribir todos los píxeles
+     * de su banda.
+     *
+     * @param src  imagen fuente
+     * @param pool reserva de donde tomar la imagen
+     * @return imagen destino
+     */
+    BufferedImage createDestination(BufferedImage src, RasterPool pool);
+
+    /**
+     * Procesa las filas [yStart, yEnd) de src y escribe el resultado en las mismas filas de dst.
+     * Debe ser seguro llamarlo en paralelo para bandas disjuntas.
+     *
+     * @param src    imagen fuente (sólo lectura)
+     * @param dst    imagen destino creada con {@link #createDestination(BufferedImage, RasterPool)}
+     * @param yStart primera fila (incluida)
+     * @param yEnd   última fila (excluida)
+     */
+    void applyBand(BufferedImage src, BufferedImage dst, int yStart, int yEnd);
+
+    /**
+     * Aplicación secuencial: una sola banda con toda la imagen, con la reserva por defecto.
+     */
+    @Override
+    default BufferedImage apply(BufferedImage src) {
+        return apply(src, RasterPool.shared());
+    }
+
+    /**
+     * Aplicación secuencial: una sola banda con toda la imagen.
+     */
+    @Override
+    default BufferedImage apply(BufferedImage src, RasterPool pool) {
+        BufferedImage dst = createDestination(src, pool);
+        applyBand(src, dst, 0, src.getHeight());
+        return dst;
+    }
+}
@@ -0,0 +1,148 @@
+package uv.poo.Filter;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * TiledFilterExecutor: aplica un {@link TileFilter} a una imagen dividiéndola recursivamente en
+ * bandas de filas que se procesan en un ForkJoinPool.
+ *
+ * Así una sola imagen grande ocupa todos los núcleos aunque haya menos imágenes que núcleos.
+ * Los filtros que no implementan TileFilter se aplican de forma secuencial.
+ */
+public class TiledFilterExecutor {
+
+    /**
+     * Altura mínima de banda por defecto: por debajo de esto el coste de la tarea supera al trabajo.
+     */
+    public static final int DEFAULT_MIN_BAND_ROWS = 64;
+
+    private static volatile TiledFilterExecutor shared;
+
+    private final ForkJoinPool pool;
+    private final int minBandRows;
+
+    /**
+     * @param pool        pool donde se ejecutan las bandas
+     * @param minBandRows altura mínima de una banda antes de dejar de dividir
+     */
+    public TiledFilterExecutor(ForkJoinPool pool, int minBandRows) {
+        this.pool = pool;
+        this.minBandRows = Math.max(1, minBandRows);
+    }
+
+    /**
+     * Ejecutor compartido, con un ForkJoinPool de tantos hilos como núcleos disponibles.
+     *
+     * @return instancia compartida
+     */
+    public static TiledFilterExecutor shared() {
+        TiledFilterExecutor result = shared;
+        if (result == null) {
+            synchronized (TiledFilterExecutor.class) {
+                result = shared;
+                if (result == null) {
+                    ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+                    result = shared = new TiledFilterExecutor(pool, DEFAULT_MIN_BAND_ROWS);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Aplica el filtro con la reserva por defecto (ver {@link #apply(ImageFilter, BufferedImage, RasterPool)}).
+     *
+     * @param filter filtro a aplicar
+     * @param src    imagen fuente
+     * @return imagen filtrada
+     */
+    public BufferedImage apply(ImageFilter filter, BufferedImage src) {
+        return apply(filter, src, RasterPool.shared());
+    }
+
+    /**
+     * Aplica el filtro: en paralelo por bandas si es un TileFilter, secuencialmente si no.
+     *
+     * @param filter filtro a aplicar
+     * @param src    imagen fuente
+     * @param pool   reserva de donde sale la imagen filtrada
+     * @return imagen filtrada
+     */
+    public BufferedImage apply(ImageFilter filter, BufferedImage src, RasterPool pool) {
+        if (filter instanceof TileFilter) {
+            return apply((TileFilter) filter, src, pool);
+        }
+        return filter.apply(src, pool);
+    }
+
+    /**
+     * Aplica un TileFilter repartiendo las filas de la imagen entre los hilos del pool.
+     *
+     * @param filter filtro a aplicar
+     * @param src    imagen fuente
+     * @param pool   reserva de donde sale la imagen filtrada
+     * @return imagen filtrada
+     */
+    public BufferedImage apply(TileFilter filter, BufferedImage src, RasterPool pool) {
+        BufferedImage dst = filter.createDestination(src, pool);
+        forEachBand(src.getHeight(), filter.haloRows(),
+                (yStart, yEnd) -> filter.applyBand(src, dst, yStart, yEnd));
+        return dst;
+    }
+
+    /**
+     * Divide las filas [0, height) en bandas y ejecuta la acción sobre cada una en el pool,
+     * esperando a que terminen todas.
+     *
+     * @param height alto de la imagen
+     * @param halo   filas de halo que lee cada banda (aumenta la altura mínima de banda)
+     * @param action trabajo a realizar para cada banda
+     */
+    public void forEachBand(int height, int halo, BandAction action) {
+        // Con halo, cada banda lee 2 * halo filas extra: se exige que la banda sea bastante mayor
+        int threshold = Math.max(minBandRows, 4 * halo);
+        pool.invoke(new BandTask(action, 0, height, threshold));
+    }
+
+    /**
+     * Trabajo sobre una banda de filas [yStart, yEnd).
+     */
+    @FunctionalInterface
+    public interface BandAction {
+        void run(int yStart, int yEnd);
+    }
+
+    /**
+     * Tarea recursiva: si la banda es mayor que el umbral, se divide en dos mitades;
+     * en caso contrario, se procesa directamente.
+     */
+    private static class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient BandAction action;
+        private final int yStart;
+        private final int yEnd;
+        private final int threshold;
+
+        BandTask(BandAction action, int yStart, int yEnd, int threshold) {
+            this.action = action;
+            this.yStart = yStart;
+            this.yEnd = yEnd;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            int rows = yEnd - yStart;
+            if (rows <= threshold) {
+                action.run(yStart, yEnd);
+                return;
+            }
+            int mid = yStart + rows / 2;
+            invokeAll(new BandTask(action, yStart, mid, threshold),
+                    new BandTask(action, mid, yEnd, threshold));
+        }
+    }
+}
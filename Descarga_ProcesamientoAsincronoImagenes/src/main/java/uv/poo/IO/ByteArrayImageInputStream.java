@@ -0,0 +1,65 @@
+package uv.poo.IO;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.io.IOException;
+
+/**
+ * ByteArrayImageInputStream: ImageInputStream de sólo lectura directamente sobre un byte[].
+ *
+ * ImageIO.createImageInputStream envuelve un InputStream en un flujo con caché (en un archivo
+ * temporal si ImageIO.getUseCache() es true, o en memoria), que copia los bytes a medida que el
+ * lector los pide. Aquí los bytes ya están en memoria completos, así que basta con leerlos en su
+ * posición: sin copias, sin archivos temporales y con acceso aleatorio inmediato.
+ */
+public class ByteArrayImageInputStream extends ImageInputStreamImpl {
+
+    private final byte[] data;
+
+    /**
+     * @param data bytes codificados (no se copian ni se modifican)
+     */
+    public ByteArrayImageInputStream(byte[] data) {
+        this.data = data;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        return streamPos < data.length ? data[(int) streamPos++] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        if (streamPos >= data.length) {
+            return -1;
+        }
+        int n = (int) Math.min(len, data.length - streamPos);
+        System.arraycopy(data, (int) streamPos, b, off, n);
+        streamPos += n;
+        return n;
+    }
+
+    @Override
+    public long length() {
+        return data.length;
+    }
+
+    @Override
+    public boolean isCached() {
+        return true;
+    }
+
+    @Override
+    public boolean isCachedMemory() {
+        return true;
+    }
+}
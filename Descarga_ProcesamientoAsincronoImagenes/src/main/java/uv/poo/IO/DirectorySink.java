@@ -0,0 +1,75 @@
+package uv.poo.IO;
+
+import uv.poo.Metrics.Metrics;
+import uv.poo.Metrics.Stage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * DirectorySink: un archivo por salida dentro de un directorio (el comportamiento de siempre).
+ *
+ * El directorio se crea una sola vez al abrir el destino, no en cada escritura. La escritura es
+ * síncrona: el futuro devuelto ya está completo.
+ */
+public class DirectorySink implements OutputSink {
+
+    private final Path dir;
+
+    /**
+     * @param dir directorio de salida (se crea si no existe)
+     * @throws IOException si no se puede crear el directorio
+     */
+    public DirectorySink(Path dir) throws IOException {
+        this.dir = Files.createDirectories(dir);
+    }
+
+    @Override
+    public Path dir() {
+        return dir;
+    }
+
+    @Override
+    public CompletableFuture<Void> write(String name, byte[] data) {
+        Path outFile = dir.resolve(name);
+        long start = System.nanoTime();
+        try {
+            Files.write(outFile, data);
+        } catch (IOException e) {
+            Metrics.get().recordError(Stage.WRITE);
+            return CompletableFuture.failedFuture(e);
+        }
+        Metrics.get().recordLatency(Stage.WRITE, System.nanoTime() - start);
+        Metrics.get().addBytesOut(data.length);
+        System.out.println("Guardado: " + outFile);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Mueve el archivo temporal a su nombre final (en el mismo directorio, un simple renombrado).
+     */
+    @Override
+    public CompletableFuture<Void> write(String name, Path file) {
+        Path outFile = dir.resolve(name);
+        long start = System.nanoTime();
+        long size;
+        try {
+            size = Files.size(file);
+            Files.move(file, outFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Metrics.get().recordError(Stage.WRITE);
+            return CompletableFuture.failedFuture(e);
+        }
+        Metrics.get().recordLatency(Stage.WRITE, System.nanoTime() - start);
+        Metrics.get().addBytesOut(size);
+        System.out.println("Guardado: " + outFile);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void close() {
+    }
+}
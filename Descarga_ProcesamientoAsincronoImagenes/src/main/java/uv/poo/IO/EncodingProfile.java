@@ -0,0 +1,117 @@
+package uv.poo.IO;
+
+import java.util.Locale;
+
+/**
+ * EncodingProfile: formato y parámetros de codificación de las imágenes de salida.
+ *
+ * Los perfiles PNG usan {@link PngEncoder} con el nivel de Deflate y el filtro de filas indicados;
+ * "png-imageio" conserva el codificador PNG de ImageIO (con su nivel de compresión) como referencia;
+ * los perfiles JPEG usan ImageIO con la calidad indicada. El JDK no incluye un codificador WebP,
+ * por lo que la única alternativa con pérdida disponible es JPEG.
+ *
+ * Se elige por nombre con -Dpipeline.encoding=png-fast (ver {@link #named(String)}).
+ */
+public class EncodingProfile {
+
+    /**
+     * Codificador a usar.
+     */
+    public enum Format {
+        /** PNG con el codificador propio (PngEncoder). */
+        PNG,
+        /** PNG con el codificador de ImageIO. */
+        PNG_IMAGEIO,
+        /** JPEG con el codificador de ImageIO. */
+        JPEG
+    }
+
+    /** PNG rápido: Deflate nivel 1 y filtro SUB. */
+    public static final EncodingProfile PNG_FAST =
+            new EncodingProfile("png-fast", Format.PNG, 1, PngEncoder.RowFilter.SUB, 0f);
+    /** PNG equilibrado: Deflate nivel 4 (el de ImageIO) y filtro SUB, más barato que el adaptativo. */
+    public static final EncodingProfile PNG =
+            new EncodingProfile("png", Format.PNG, 4, PngEncoder.RowFilter.SUB, 0f);
+    /** PNG pequeño: Deflate nivel 9 y filtro adaptativo. */
+    public static final EncodingProfile PNG_SMALL =
+            new EncodingProfile("png-small", Format.PNG, 9, PngEncoder.RowFilter.ADAPTIVE, 0f);
+    /** PNG con el codificador de ImageIO y su configuración por defecto. */
+    public static final EncodingProfile PNG_IMAGEIO =
+            new EncodingProfile("png-imageio", Format.PNG_IMAGEIO, 4, PngEncoder.RowFilter.ADAPTIVE, 0f);
+    /** JPEG de alta calidad. */
+    public static final EncodingProfile JPEG =
+            new EncodingProfile("jpeg", Format.JPEG, 0, PngEncoder.RowFilter.NONE, 0.9f);
+    /** JPEG rápido y pequeño. */
+    public static final EncodingProfile JPEG_FAST =
+            new EncodingProfile("jpeg-fast", Format.JPEG, 0, PngEncoder.RowFilter.NONE, 0.75f);
+
+    private static final EncodingProfile[] PROFILES = {PNG_FAST, PNG, PNG_SMALL, PNG_IMAGEIO, JPEG, JPEG_FAST};
+
+    /** Nombre del perfil (p.ej. "png-fast"). */
+    public final String name;
+    /** Codificador. */
+    public final Format format;
+    /** Nivel de Deflate 0..9 (sólo PNG). */
+    public final int compressionLevel;
+    /** Filtro de filas PNG (sólo PNG con el codificador propio). */
+    public final PngEncoder.RowFilter rowFilter;
+    /** Calidad 0..1 (sólo JPEG). */
+    public final float quality;
+
+    /**
+     * @param name             nombre del perfil
+     * @param format           codificador
+     * @param compressionLevel nivel de Deflate 0..9 (PNG)
+     * @param rowFilter        filtro de filas (PNG)
+     * @param quality          calidad 0..1 (JPEG)
+     */
+    public EncodingProfile(String name,
+                           Format format,
+                           int compressionLevel,
+                           PngEncoder.RowFilter rowFilter,
+                           float quality) {
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("Nivel de compresión fuera de rango: " + compressionLevel);
+        }
+        if (quality < 0f || quality > 1f) {
+            throw new IllegalArgumentException("Calidad fuera de rango: " + quality);
+        }
+        this.name             = name;
+        this.format           = format;
+        this.compressionLevel = compressionLevel;
+        this.rowFilter        = rowFilter;
+        this.quality          = quality;
+    }
+
+    /**
+     * Busca un perfil predefinido por nombre: png-fast, png, png-small, png-imageio, jpeg o jpeg-fast.
+     *
+     * @param name nombre del perfil (sin distinguir mayúsculas)
+     * @return perfil
+     * @throws IllegalArgumentException si no existe
+     */
+    public static EncodingProfile named(String name) {
+        String key = name.trim().toLowerCase(Locale.ROOT);
+        if (key.equals("jpg")) {
+            return JPEG;
+        }
+        for (EncodingProfile profile : PROFILES) {
+            if (profile.name.equals(key)) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException("Perfil de codificación desconocido: " + name);
+    }
+
+    /**
+     * Extensión de los archivos de salida ("png" o "jpg").
+     */
+    public String extension() {
+        return format == Format.JPEG ? "jpg" : "png";
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,80 @@
+package uv.poo.IO;
+
+import uv.poo.Filter.RasterPool;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.ServiceLoader;
+
+/**
+ * ImageDecoder: convierte los bytes descargados (JPEG, PNG...) en una BufferedImage.
+ *
+ * La etapa de decodificación usa el decodificador elegido con -Dpipeline.decoder (ver
+ * {@link #named(String)}); por defecto, {@link ImageIODecoder} con lectores reutilizados por hilo
+ * y destinos de la reserva de rasters. Se pueden añadir otros decodificadores (p.ej. uno JPEG en
+ * Java puro) sin tocar el pipeline: basta con implementar esta interfaz y declararla en
+ * META-INF/services/uv.poo.IO.ImageDecoder, y elegirla por su {@link #name()}.
+ *
+ * Las implementaciones deben poder usarse desde varios hilos a la vez.
+ */
+public interface ImageDecoder {
+
+    /**
+     * @return nombre con el que se elige el decodificador (p.ej. "imageio")
+     */
+    String name();
+
+    /**
+     * Decodifica una imagen. Con una caja de tamaño máximo, el decodificador puede entregar la
+     * imagen ya reducida (p.ej. submuestreando la fuente) siempre que no quede más pequeña que su
+     * ajuste a la caja; el ajuste exacto lo hace quien llama.
+     *
+     * @param data      bytes codificados de la imagen
+     * @param maxWidth  ancho máximo; 0 para no limitar el tamaño
+     * @param maxHeight alto máximo; 0 para no limitar el tamaño
+     * @return imagen decodificada; puede venir de {@link uv.poo.Filter.RasterPool}
+     * @throws IOException si los bytes no corresponden a un formato soportado o están dañados
+     */
+    BufferedImage decode(byte[] data, int maxWidth, int maxHeight) throws IOException;
+
+    /**
+     * Busca un decodificador por nombre, con la reserva de rasters por defecto (ver
+     * {@link #named(String, RasterPool)}).
+     *
+     * @param name nombre del decodificador
+     * @return decodificador
+     * @throws IllegalArgumentException si no existe
+     */
+    static ImageDecoder named(String name) {
+        return named(name, RasterPool.shared());
+    }
+
+    /**
+     * Busca un decodificador por nombre: primero los incluidos ("imageio", con lectores
+     * reutilizados y destinos de la reserva, e "imageio-basic", un lector nuevo y una imagen nueva
+     * por cada decodificación) y después los registrados con ServiceLoader.
+     *
+     * @param name nombre del decodificador
+     * @param pool reserva de donde "imageio" toma sus destinos
+     * @return decodificador
+     * @throws IllegalArgumentException si no existe
+     */
+    static ImageDecoder named(String name, RasterPool pool) {
+        String key = name.trim().toLowerCase(Locale.ROOT);
+        switch (key) {
+            case "imageio":
+                return ImageIODecoder.tuned(pool);
+            case "imageio-basic":
+                return ImageIODecoder.BASIC;
+            default:
+                break;
+        }
+        for (ImageDecoder decoder : ServiceLoader.load(ImageDecoder.class)) {
+            if (decoder.name().equalsIgnoreCase(key)) {
+                return decoder;
+            }
+        }
+        throw new IllegalArgumentException("Decodificador desconocido: " + name);
+    }
+}
@@ -0,0 +1,226 @@
+package uv.poo.IO;
+
+import uv.poo.Filter.RasterPool;
+import uv.poo.Filter.SourceImage;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ImageIODecoder: decodificador basado en los lectores de ImageIO.
+ *
+ * La variante ajustada ({@link #TUNED}, "imageio") evita el trabajo que ImageIO.read repite en
+ * cada imagen:
+ *  - lee los bytes directamente con {@link ByteArrayImageInputStream}, sin el flujo con caché
+ *    (a veces en un archivo temporal) que crea ImageIO.createImageInputStream;
+ *  - elige el lector preguntando a los proveedores ya registrados si reconocen la cabecera, y
+ *    reutiliza un lector por formato y por hilo (crear un JPEGImageReader reserva estructuras
+ *    nativas) en lugar de crear y destruir uno por imagen;
+ *  - si el tipo de imagen que produce el lector es canónico (ver {@link SourceImage}), decodifica
+ *    directamente en una imagen de su {@link RasterPool} con ImageReadParam.setDestination, de
+ *    modo que en una ejecución estable la decodificación no reserva rasters nuevos. Esa imagen
+ *    vuelve a la reserva cuando se libera la SourceImage. {@link #TUNED} usa la reserva por
+ *    defecto; el pipeline crea la suya con {@link #tuned(RasterPool)}.
+ *
+ * La variante básica ({@link #BASIC}, "imageio-basic") hace lo mismo que hacía el pipeline antes:
+ * un flujo, un lector y una imagen nuevos por decodificación. Sirve de referencia en
+ * DecoderBenchmark.
+ *
+ * Ambas submuestrean la fuente cuando se pide una caja de tamaño máximo (ver {@link #subsampling}).
+ */
+public class ImageIODecoder implements ImageDecoder {
+
+    /** Lectores reutilizados por hilo, flujo sin copias y destinos de la reserva. */
+    public static final ImageIODecoder TUNED = new ImageIODecoder("imageio", true, RasterPool.shared());
+    /** Un lector y una imagen nuevos por decodificación. */
+    public static final ImageIODecoder BASIC = new ImageIODecoder("imageio-basic", false, null);
+
+    private static volatile List<ImageReaderSpi> providers;
+
+    private final String name;
+    private final boolean tuned;
+    private final RasterPool pool;
+    private final ThreadLocal<Map<ImageReaderSpi, ImageReader>> readers = ThreadLocal.withInitial(HashMap::new);
+
+    private ImageIODecoder(String name, boolean tuned, RasterPool pool) {
+        this.name  = name;
+        this.tuned = tuned;
+        this.pool  = pool;
+    }
+
+    /**
+     * Variante ajustada que decodifica en imágenes de la reserva indicada.
+     *
+     * @param pool reserva de los destinos
+     * @return decodificador "imageio" sobre esa reserva
+     */
+    public static ImageIODecoder tuned(RasterPool pool) {
+        return pool == RasterPool.shared() ? TUNED : new ImageIODecoder("imageio", true, pool);
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public BufferedImage decode(byte[] data, int maxWidth, int maxHeight) throws IOException {
+        if (!tuned) {
+            return decodeBasic(data, maxWidth, maxHeight);
+        }
+        try (ImageInputStream in = new ByteArrayImageInputStream(data)) {
+            ImageReader reader = reader(in);
+            try {
+                reader.setInput(in, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = subsampling(reader.getWidth(0), reader.getHeight(0), maxWidth, maxHeight);
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                BufferedImage destination = pooledDestination(reader, step);
+                param.setDestination(destination);
+                try {
+                    return reader.read(0, param);
+                } catch (IOException | RuntimeException e) {
+                    pool.release(destination);
+                    throw e;
+                }
+            } finally {
+                // Suelta la entrada y deja el lector listo para la siguiente imagen de este hilo
+                reader.reset();
+            }
+        }
+    }
+
+    /**
+     * Píxeles de la imagen según su cabecera, sin decodificarla (con el lector de este hilo).
+     *
+     * @param data bytes codificados
+     * @return ancho por alto
+     * @throws IOException si el formato no está soportado o la cabecera está dañada
+     */
+    public static long pixelCount(byte[] data) throws IOException {
+        try (ImageInputStream in = new ByteArrayImageInputStream(data)) {
+            ImageReader reader = TUNED.reader(in);
+            try {
+                reader.setInput(in, true, true);
+                return (long) reader.getWidth(0) * reader.getHeight(0);
+            } finally {
+                reader.reset();
+            }
+        }
+    }
+
+    /**
+     * El camino de siempre: flujo de ImageIO, lector nuevo e imagen nueva.
+     */
+    private static BufferedImage decodeBasic(byte[] data, int maxWidth, int maxHeight) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Formato de imagen no soportado");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = subsampling(reader.getWidth(0), reader.getHeight(0), maxWidth, maxHeight);
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Lector de este hilo para el formato de la entrada.
+     */
+    private ImageReader reader(ImageInputStream in) throws IOException {
+        for (ImageReaderSpi provider : providers()) {
+            if (provider.canDecodeInput(in)) {
+                try {
+                    return readers.get().computeIfAbsent(provider, p -> {
+                        try {
+                            return p.createReaderInstance();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+        }
+        throw new IOException("Formato de imagen no soportado");
+    }
+
+    /**
+     * Proveedores de lectores registrados, en el orden de preferencia de ImageIO.
+     */
+    private static List<ImageReaderSpi> providers() {
+        List<ImageReaderSpi> list = providers;
+        if (list == null) {
+            list = new ArrayList<>();
+            Iterator<ImageReaderSpi> it = IIORegistry.getDefaultInstance().getServiceProviders(ImageReaderSpi.class, true);
+            while (it.hasNext()) {
+                list.add(it.next());
+            }
+            providers = list;
+        }
+        return list;
+    }
+
+    /**
+     * Imagen de la reserva donde decodificar, si el lector produce un tipo canónico; si no, null
+     * (el lector crea la suya).
+     */
+    private BufferedImage pooledDestination(ImageReader reader, int step) throws IOException {
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        if (!types.hasNext()) {
+            return null;
+        }
+        // El lector usa el primer tipo de la lista si no se le indica otro
+        int type = types.next().getBufferedImageType();
+        if (!SourceImage.isCanonicalType(type)) {
+            return null;
+        }
+        int width = (reader.getWidth(0) + step - 1) / step;
+        int height = (reader.getHeight(0) + step - 1) / step;
+        return pool.acquire(width, height, type);
+    }
+
+    /**
+     * Mayor paso de submuestreo que deja la imagen igual o mayor que su tamaño final dentro de la
+     * caja pedida (así el ajuste final sólo reduce, y como mucho a la mitad). El tamaño final lo
+     * fija el lado más restrictivo, por eso se usa el mayor de los dos cocientes.
+     *
+     * @param width     ancho de la fuente
+     * @param height    alto de la fuente
+     * @param maxWidth  ancho máximo (0 sin límite)
+     * @param maxHeight alto máximo (0 sin límite)
+     * @return paso de submuestreo (1 = sin submuestreo)
+     */
+    public static int subsampling(int width, int height, int maxWidth, int maxHeight) {
+        if (maxWidth <= 0 || maxHeight <= 0) {
+            return 1;
+        }
+        return Math.max(1, Math.max(width / maxWidth, height / maxHeight));
+    }
+}
@@ -1,50 +1,149 @@
 package uv.poo.IO;
 
+import uv.poo.Filter.Pixels;
+import uv.poo.Metrics.Metrics;
+import uv.poo.Metrics.Stage;
+
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
- * Clase responsable de guardar imágenes filtradas en disco,
- * asegurando que el directorio de salida exista.
+ * Clase responsable de codificar las imágenes filtradas y de nombrar sus archivos en el
+ * directorio de salida; la escritura en disco la hace el {@link OutputSink} del pipeline.
  */
 public class ImageWriter {
-    // Directorio donde se guardarán las imágenes procesadas
+    // Directorio donde se guardan por defecto las imágenes procesadas
     private static final Path OUTPUT_DIR = Path.of("imagenes_filtradas");
 
+    // Codificadores de ImageIO reutilizados por hilo (buscarlos y crearlos en cada imagen es costoso)
+    private static final ThreadLocal<Map<String, javax.imageio.ImageWriter>> WRITERS =
+            ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * Directorio de salida por defecto de las imágenes filtradas; el que usa cada ejecución es el
+     * de su {@link OutputSink}.
+     */
+    public static Path outputDir() {
+        return OUTPUT_DIR;
+    }
+
     /**
-     * Escribe la imagen en el directorio OUTPUT_DIR con el nombre compuesto.
-     * Crea el directorio si no existe.
+     * Nombre de la salida de una imagen filtrada: baseName_filterName.ext
      *
-     * @param img        BufferedImage a guardar
      * @param baseName   nombre base extraído de la URL
      * @param filterName sufijo del filtro (bw, sepia, sharpen)
      * @param ext        extensión del archivo ("png")
-     * @throws IOException si falla la creación de directorio o escritura de la imagen
+     * @return nombre de la salida, sin directorio
+     */
+    public static String fileName(String baseName, String filterName, String ext) {
+        return baseName + "_" + filterName + "." + ext;
+    }
+
+    /**
+     * Codifica la imagen en memoria en el formato indicado, sin tocar el disco.
+     * Permite liberar la imagen (varios MB a resolución completa) antes de la escritura.
+     *
+     * @param img imagen a codificar
+     * @param ext formato de salida ("png" o "jpg")
+     * @return bytes codificados
+     * @throws IOException si no hay un codificador para el formato o falla la codificación
+     */
+    public static byte[] encode(BufferedImage img, String ext) throws IOException {
+        return encode(img, EncodingProfile.named(ext));
+    }
+
+    /**
+     * Codifica la imagen en memoria con el perfil indicado (formato, nivel de compresión,
+     * filtro de filas PNG o calidad JPEG).
+     *
+     * @param img     imagen a codificar
+     * @param profile perfil de codificación
+     * @return bytes codificados
+     * @throws IOException si no hay un codificador para el formato o falla la codificación
      */
-    public static void write(BufferedImage img,
-                             String baseName,
-                             String filterName,
-                             String ext) throws IOException {
-        // Asegurarse de que exista el directorio de salida
-        if (Files.notExists(OUTPUT_DIR)) {
-            // Crea directorios padres si es necesario
-            Files.createDirectories(OUTPUT_DIR);
+    public static byte[] encode(BufferedImage img, EncodingProfile profile) throws IOException {
+        long start = System.nanoTime();
+        try {
+            byte[] data = encodeWith(img, profile);
+            Metrics.get().recordLatency(Stage.ENCODE, System.nanoTime() - start);
+            return data;
+        } catch (IOException | RuntimeException e) {
+            Metrics.get().recordError(Stage.ENCODE);
+            throw e;
         }
+    }
 
-        // Construir el nombre completo del archivo: baseName_filterName.ext
-        // Ejemplo: id3_5000x3333_sepia.png
-        Path outFile = OUTPUT_DIR.resolve(baseName + "_" + filterName + "." + ext);
+    private static byte[] encodeWith(BufferedImage img, EncodingProfile profile) throws IOException {
+        // Reservar de entrada un tamaño razonable evita copiar el búfer varias veces al crecer
+        int estimate = Math.max(1024, img.getWidth() * img.getHeight() / 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(estimate);
+        switch (profile.format) {
+            case PNG:
+                PngEncoder.encode(img, out, profile.compressionLevel, profile.rowFilter);
+                break;
+            case PNG_IMAGEIO:
+                encodeWithImageIO(img, "png", profile.compressionLevel / 9f, out);
+                break;
+            default:
+                // JPEG no admite alfa: se descarta antes de codificar
+                encodeWithImageIO(img.getColorModel().hasAlpha() ? dropAlpha(img) : img,
+                        "jpeg", profile.quality, out);
+                break;
+        }
+        return out.toByteArray();
+    }
 
-        // Escribir la imagen en disco:
-        // - img: objeto BufferedImage filtrado
-        // - ext: formato de salida (png)
-        // - outFile.toFile(): representa el archivo destino
-        ImageIO.write(img, ext, outFile.toFile());
+    /**
+     * Codifica con el ImageWriter de ImageIO del hilo actual. En PNG la "calidad" selecciona el
+     * nivel de Deflate (1 = nivel 0, 0 = nivel 9); en JPEG es la calidad de cuantización.
+     */
+    private static void encodeWithImageIO(BufferedImage img, String format, float quality,
+                                          ByteArrayOutputStream out) throws IOException {
+        javax.imageio.ImageWriter writer = WRITERS.get().computeIfAbsent(format, ImageWriter::newWriter);
+        if (writer == null) {
+            WRITERS.get().remove(format);
+            throw new IOException("No hay codificador para el formato " + format);
+        }
 
-        // Confirmación por consola para saber que se guardó correctamente
-        System.out.println("Guardado: " + outFile);
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(format.equals("png") ? 1f - quality : quality);
+        }
+        try (ImageOutputStream ios = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            // reset() deja el writer listo para la siguiente imagen sin retener la anterior
+            writer.reset();
+        }
+    }
+
+    private static javax.imageio.ImageWriter newWriter(String format) {
+        Iterator<javax.imageio.ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        return writers.hasNext() ? writers.next() : null;
+    }
+
+    /**
+     * Copia la imagen a INT_RGB descartando el canal alfa.
+     */
+    private static BufferedImage dropAlpha(BufferedImage img) {
+        BufferedImage rgb = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_RGB);
+        int[] row = new int[img.getWidth()];
+        for (int y = 0; y < img.getHeight(); y++) {
+            Pixels.readRow(img, y, row);
+            Pixels.writeRow(rgb, y, row);
+        }
+        return rgb;
     }
 }
@@ -0,0 +1,419 @@
+package uv.poo.IO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * JobJournal: cola de trabajos persistente para reanudar una ejecución interrumpida y repartir la
+ * lista de URLs entre varios procesos de la misma máquina.
+ *
+ * Es un diario de sólo añadir ("trabajos.log") con una línea por cambio de estado, separada por
+ * tabuladores y terminada con su CRC32 (así una línea a medio escribir por un proceso que murió
+ * se descarta al leerla):
+ *   H  proceso  ms                       latido del proceso
+ *   L  proceso  ms  url                  el proceso toma la URL
+ *   O  proceso  ms  url  salida          una salida de la URL quedó escrita
+ *   D  proceso  ms  url  OK|FAILED       la URL terminó
+ *   R  proceso  ms  url                  el proceso suelta la URL sin terminarla
+ *
+ * Cada escritura se hace con un bloqueo exclusivo del archivo (FileLock), después de leer las
+ * líneas que hayan añadido los demás procesos desde la última vez; así todos ven el mismo estado
+ * y dos procesos nunca toman la misma URL. Una URL tomada por otro proceso se respeta mientras
+ * ese proceso siga vivo (se comprueba su pid) y haya dado señales en los últimos leaseMillis;
+ * si no, se recupera. Una URL terminada bien no se vuelve a procesar; una que falla se reintenta
+ * en ejecuciones posteriores hasta maxAttempts veces. De las URLs a medio hacer se recuerdan las
+ * salidas ya escritas, para generar sólo las que faltan.
+ *
+ * Para empezar de cero basta con borrar el directorio del diario.
+ */
+public class JobJournal implements Closeable {
+
+    /** Nombre del archivo del diario dentro de su directorio. */
+    static final String FILE_NAME = "trabajos.log";
+
+    private final FileChannel channel;
+    private final String worker;
+    private final long leaseMillis;
+    private final int maxAttempts;
+    private final ScheduledExecutorService heartbeat;
+
+    // Estado leído del diario; protegido por "this"
+    private final LongHashSet done = new LongHashSet(1024);
+    private final Map<String, String> leases = new HashMap<>();
+    private final Map<String, Long> lastSeen = new HashMap<>();
+    private final Map<String, Set<String>> written = new HashMap<>();
+    private final Map<String, Integer> failures = new HashMap<>();
+    private final Set<String> mine = new HashSet<>();
+    private long readPosition;
+    private boolean closed;
+
+    // Contadores de esta ejecución
+    private long taken;
+    private long reclaimed;
+    private long skippedDone;
+    private long skippedLeased;
+    private long skippedFailed;
+
+    private JobJournal(FileChannel channel, long leaseMillis, int maxAttempts, String worker) {
+        this.channel     = channel;
+        this.leaseMillis = Math.max(1000, leaseMillis);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.worker      = worker;
+        this.heartbeat   = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Abre (o crea) el diario de un directorio y lee su estado.
+     *
+     * @param dir         directorio del diario (se crea si no existe)
+     * @param leaseMillis tiempo sin señales tras el cual una URL tomada por otro proceso se recupera
+     * @param maxAttempts ejecuciones que puede fallar una URL antes de dejar de intentarla
+     * @return diario abierto; debe cerrarse al terminar
+     * @throws IOException si no se puede abrir o leer el diario
+     */
+    public static JobJournal open(Path dir, long leaseMillis, int maxAttempts) throws IOException {
+        ProcessHandle self = ProcessHandle.current();
+        return open(dir, leaseMillis, maxAttempts,
+                self.pid() + "@" + self.info().startInstant().map(i -> i.toEpochMilli()).orElse(0L));
+    }
+
+    /**
+     * Abre el diario con un identificador de proceso dado (en las pruebas, para simular varios
+     * procesos dentro de la misma JVM; sin "pid@inicio" sólo cuenta el tiempo sin señales).
+     */
+    static JobJournal open(Path dir, long leaseMillis, int maxAttempts, String worker) throws IOException {
+        Files.createDirectories(dir);
+        FileChannel channel = FileChannel.open(dir.resolve(FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        JobJournal journal = new JobJournal(channel, leaseMillis, maxAttempts, worker);
+        try {
+            journal.append("H");
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        long period = journal.leaseMillis / 3;
+        journal.heartbeat.scheduleAtFixedRate(journal::beat, period, period, TimeUnit.MILLISECONDS);
+        return journal;
+    }
+
+    /**
+     * @return identificador de este proceso en el diario ("pid@inicio")
+     */
+    public String workerId() {
+        return worker;
+    }
+
+    /**
+     * Intenta tomar una URL para procesarla en este proceso.
+     *
+     * @param url URL de la lista
+     * @return true si hay que procesarla; false si ya terminó, si la tiene otro proceso vivo o si
+     *         agotó sus intentos
+     * @throws IOException si no se puede escribir en el diario
+     */
+    public synchronized boolean tryLease(String url) throws IOException {
+        if (!isValid(url)) {
+            // No cabe en una línea del diario: se procesa sin registrarla
+            return true;
+        }
+        FileLock lock = channel.lock();
+        try {
+            catchUp();
+            if (done.contains(UrlSource.hash64(url))) {
+                skippedDone++;
+                return false;
+            }
+            if (failures.getOrDefault(url, 0) >= maxAttempts) {
+                skippedFailed++;
+                return false;
+            }
+            String holder = leases.get(url);
+            if (holder != null && !holder.equals(worker)) {
+                if (isAlive(holder)) {
+                    skippedLeased++;
+                    return false;
+                }
+                reclaimed++;
+            }
+            write("L", url);
+        } finally {
+            lock.release();
+        }
+        taken++;
+        return true;
+    }
+
+    /**
+     * @param url    URL tomada
+     * @param output nombre de una salida de la URL
+     * @return true si esa salida ya quedó escrita en una ejecución anterior
+     */
+    public synchronized boolean isWritten(String url, String output) {
+        Set<String> outputs = written.get(url);
+        return outputs != null && outputs.contains(output);
+    }
+
+    /**
+     * Registra que una salida de la URL quedó escrita.
+     */
+    public void outputWritten(String url, String output) {
+        if (isValid(url) && isValid(output)) {
+            appendQuietly("O", url, output);
+        }
+    }
+
+    /**
+     * Registra que la URL terminó (y deja de estar tomada).
+     *
+     * @param url     URL tomada
+     * @param success true si todas sus salidas quedaron escritas
+     */
+    public void finished(String url, boolean success) {
+        if (isValid(url)) {
+            appendQuietly("D", url, success ? "OK" : "FAILED");
+        }
+    }
+
+    /**
+     * Latido periódico: mantiene vivas las URLs tomadas por este proceso.
+     */
+    private void beat() {
+        appendQuietly("H");
+    }
+
+    /**
+     * @return resumen de las URLs tomadas y omitidas en esta ejecución
+     */
+    public synchronized String stats() {
+        return "Cola de trabajos: " + taken + " URLs tomadas (" + reclaimed + " recuperadas de procesos caídos), "
+                + skippedDone + " ya terminadas, " + skippedLeased + " en otro proceso, "
+                + skippedFailed + " sin más intentos";
+    }
+
+    /**
+     * Suelta las URLs tomadas que no llegaron a terminar, para que otro proceso las recoja sin
+     * esperar, y cierra el diario.
+     */
+    @Override
+    public void close() throws IOException {
+        heartbeat.shutdownNow();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                FileLock lock = channel.lock();
+                try {
+                    catchUp();
+                    for (String url : new ArrayList<>(mine)) {
+                        write("R", url);
+                    }
+                    channel.force(false);
+                } finally {
+                    lock.release();
+                }
+            } finally {
+                closed = true;
+                channel.close();
+            }
+        }
+    }
+
+    private void appendQuietly(String type, String... args) {
+        try {
+            append(type, args);
+        } catch (IOException e) {
+            // Perder una línea sólo hace repetir trabajo al reanudar
+            System.err.println("Aviso: no se pudo escribir en la cola de trabajos: " + e.getMessage());
+        }
+    }
+
+    private synchronized void append(String type, String... args) throws IOException {
+        if (closed) {
+            return;
+        }
+        FileLock lock = channel.lock();
+        try {
+            catchUp();
+            write(type, args);
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Añade una línea al final del diario y la aplica al estado. Requiere el bloqueo del archivo.
+     */
+    private void write(String type, String... args) throws IOException {
+        StringBuilder payload = new StringBuilder(type).append('\t').append(worker)
+                .append('\t').append(System.currentTimeMillis());
+        for (String arg : args) {
+            payload.append('\t').append(arg);
+        }
+        String line = payload + "\t" + crc(payload.toString()) + "\n";
+
+        long end = channel.size();
+        // Si quedó una línea a medias de un proceso que murió, terminarla: se descartará por su CRC
+        byte[] bytes = ((end > readPosition ? "\n" : "") + line).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long at = end;
+        while (buffer.hasRemaining()) {
+            at += channel.write(buffer, at);
+        }
+        readPosition = at;
+        apply(line.substring(0, line.length() - 1));
+    }
+
+    /**
+     * Lee las líneas completas añadidas desde la última lectura (por otros procesos). Requiere el
+     * bloqueo del archivo.
+     */
+    private void catchUp() throws IOException {
+        long size = channel.size();
+        long pos = readPosition;
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (pos < size) {
+            buffer.clear();
+            int n = channel.read(buffer, pos);
+            if (n <= 0) {
+                break;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                pos++;
+                if (b == '\n') {
+                    apply(line.toString(StandardCharsets.UTF_8));
+                    line.reset();
+                    readPosition = pos;
+                } else {
+                    line.write(b);
+                }
+            }
+        }
+    }
+
+    /**
+     * Aplica una línea al estado; las líneas dañadas o desconocidas se ignoran.
+     */
+    private void apply(String line) {
+        int lastTab = line.lastIndexOf('\t');
+        if (lastTab < 0 || !line.substring(lastTab + 1).equals(crc(line.substring(0, lastTab)))) {
+            return;
+        }
+        String[] f = line.substring(0, lastTab).split("\t", -1);
+        if (f.length < 3) {
+            return;
+        }
+        String type = f[0];
+        String who = f[1];
+        long millis;
+        try {
+            millis = Long.parseLong(f[2]);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        lastSeen.merge(who, millis, Math::max);
+        if (f.length < 4) {
+            return;
+        }
+        String url = f[3];
+        switch (type) {
+            case "L":
+                leases.put(url, who);
+                if (who.equals(worker)) {
+                    mine.add(url);
+                }
+                break;
+            case "O":
+                if (f.length == 5 && !done.contains(UrlSource.hash64(url))) {
+                    written.computeIfAbsent(url, k -> new HashSet<>()).add(f[4]);
+                }
+                break;
+            case "D":
+                release(url, who);
+                if (f.length == 5 && f[4].equals("OK")) {
+                    done.add(UrlSource.hash64(url));
+                    written.remove(url);
+                    failures.remove(url);
+                } else {
+                    failures.merge(url, 1, Integer::sum);
+                }
+                break;
+            case "R":
+                release(url, who);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void release(String url, String who) {
+        if (who.equals(leases.get(url))) {
+            leases.remove(url);
+        }
+        if (who.equals(worker)) {
+            mine.remove(url);
+        }
+    }
+
+    /**
+     * Un proceso está vivo si ha dado señales hace menos de leaseMillis y, como todos están en la
+     * misma máquina, su pid sigue existiendo con el mismo instante de inicio (así un proceso que
+     * murió no retiene sus URLs hasta que caduquen).
+     */
+    private boolean isAlive(String holder) {
+        Long seen = lastSeen.get(holder);
+        if (seen == null || System.currentTimeMillis() - seen >= leaseMillis) {
+            return false;
+        }
+        int at = holder.indexOf('@');
+        if (at < 0) {
+            return true;
+        }
+        try {
+            long pid = Long.parseLong(holder.substring(0, at));
+            long start = Long.parseLong(holder.substring(at + 1));
+            Optional<ProcessHandle> process = ProcessHandle.of(pid);
+            return process.isPresent() && process.get().isAlive()
+                    && (start == 0 || process.get().info().startInstant().map(i -> i.toEpochMilli() == start).orElse(true));
+        } catch (NumberFormatException e) {
+            // Identificador de otro formato: sólo cuenta el tiempo
+            return true;
+        }
+    }
+
+    private static boolean isValid(String field) {
+        return field.indexOf('\t') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0;
+    }
+
+    private static String crc(String payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+}
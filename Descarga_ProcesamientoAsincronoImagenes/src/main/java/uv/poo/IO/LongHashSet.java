@@ -0,0 +1,103 @@
+package uv.poo.IO;
+
+/**
+ * LongHashSet: conjunto de long con direccionamiento abierto (sondeo lineal) sobre un long[].
+ *
+ * Ocupa unos 8-16 bytes por elemento, frente a los ~50 de un HashSet&lt;Long&gt;, y no crea
+ * objetos al insertar. El 0 se guarda aparte porque marca las posiciones libres.
+ */
+class LongHashSet {
+
+    private static final float MAX_LOAD = 0.6f;
+
+    private long[] slots;
+    private int size;
+    private boolean hasZero;
+
+    /**
+     * @param expected número de elementos esperado (se amplía solo si se supera)
+     */
+    LongHashSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expected / MAX_LOAD)) * 2 - 1);
+        slots = new long[capacity];
+    }
+
+    /**
+     * Añade un valor.
+     *
+     * @param value valor a añadir
+     * @return true si no estaba
+     */
+    boolean add(long value) {
+        if (value == 0) {
+            boolean added = !hasZero;
+            hasZero = true;
+            return added;
+        }
+        if (size + 1 > slots.length * MAX_LOAD) {
+            grow();
+        }
+        if (insert(slots, value)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param value valor a buscar
+     * @return true si está en el conjunto
+     */
+    boolean contains(long value) {
+        if (value == 0) {
+            return hasZero;
+        }
+        int mask = slots.length - 1;
+        int i = mix(value) & mask;
+        while (slots[i] != 0) {
+            if (slots[i] == value) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return número de elementos
+     */
+    int size() {
+        return size + (hasZero ? 1 : 0);
+    }
+
+    private static boolean insert(long[] table, long value) {
+        int mask = table.length - 1;
+        int i = mix(value) & mask;
+        while (table[i] != 0) {
+            if (table[i] == value) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = value;
+        return true;
+    }
+
+    private void grow() {
+        long[] bigger = new long[slots.length * 2];
+        for (long value : slots) {
+            if (value != 0) {
+                insert(bigger, value);
+            }
+        }
+        slots = bigger;
+    }
+
+    /**
+     * Mezcla los bits altos en los bajos, que son los que elige la máscara.
+     */
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
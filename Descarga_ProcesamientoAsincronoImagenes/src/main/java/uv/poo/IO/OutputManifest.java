@@ -0,0 +1,284 @@
+package uv.poo.IO;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * OutputManifest: registro de las salidas generadas, para el modo incremental.
+ *
+ * Por cada archivo de salida guarda la URL de origen, la huella (SHA-256) de los bytes de origen,
+ * el nombre y versión del filtro que lo produjo y los niveles de pirámide configurados. Los niveles
+ * generados se registran también, cada uno con la salida de la que salió. Una salida está "al día"
+ * si el archivo y sus niveles existen y coincide todo lo anterior; en ese caso no hace falta
+ * decodificar ni filtrar de nuevo.
+ *
+ * El archivo es de texto, una línea por salida separada por tabuladores, y se escribe en modo
+ * append (la última línea de cada salida manda; la línea de una salida va seguida de las de sus
+ * niveles, que sustituyen a los anteriores). Al cerrar se compacta dejando una línea por archivo.
+ */
+public class OutputManifest {
+
+    /**
+     * Una línea del manifiesto.
+     */
+    public static class Record {
+        public final String output;
+        public final String url;
+        public final String sourceFingerprint;
+        public final String filterName;
+        public final String filterVersion;
+        /** Niveles de pirámide configurados al generarla ("" si ninguno, ver PyramidGenerator#spec()). */
+        public final String pyramid;
+        /** Salida de la que es un nivel de pirámide, o "" si es una salida. */
+        public final String parent;
+
+        public Record(String output, String url, String sourceFingerprint, String filterName, String filterVersion) {
+            this(output, url, sourceFingerprint, filterName, filterVersion, "", "");
+        }
+
+        public Record(String output, String url, String sourceFingerprint, String filterName, String filterVersion,
+                      String pyramid, String parent) {
+            this.output = output;
+            this.url = url;
+            this.sourceFingerprint = sourceFingerprint;
+            this.filterName = filterName;
+            this.filterVersion = filterVersion;
+            this.pyramid = pyramid;
+            this.parent = parent;
+        }
+
+        /**
+         * Registro de un nivel de pirámide de esta salida.
+         */
+        Record level(String name) {
+            return new Record(name, url, sourceFingerprint, filterName, filterVersion, pyramid, output);
+        }
+
+        boolean isLevel() {
+            return !parent.isEmpty();
+        }
+
+        String toLine() {
+            return String.join("\t", output, url, sourceFingerprint, filterName, filterVersion, pyramid, parent);
+        }
+    }
+
+    private final Path file;
+    private final Path outputDir;
+    private final Map<String, Record> records = new ConcurrentHashMap<>();
+    /** Niveles registrados de cada salida. */
+    private final Map<String, Set<String>> levels = new ConcurrentHashMap<>();
+    private final Set<String> expected = ConcurrentHashMap.newKeySet();
+    private BufferedWriter appender;
+
+    private OutputManifest(Path outputDir) {
+        this.outputDir = outputDir;
+        this.file = outputDir.resolve(".manifest");
+    }
+
+    /**
+     * Abre el manifiesto del directorio de salida (lo crea si no existe).
+     *
+     * @param outputDir directorio de las imágenes filtradas
+     * @return manifiesto cargado
+     * @throws IOException si no se puede leer o crear
+     */
+    public static OutputManifest open(Path outputDir) throws IOException {
+        OutputManifest manifest = new OutputManifest(outputDir);
+        Files.createDirectories(outputDir);
+        if (Files.exists(manifest.file)) {
+            try (BufferedReader in = Files.newBufferedReader(manifest.file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String[] f = line.split("\t", -1);
+                    if (f.length == 5) {
+                        // Formato anterior, sin pirámide
+                        manifest.apply(new Record(f[0], f[1], f[2], f[3], f[4]));
+                    } else if (f.length == 7) {
+                        manifest.apply(new Record(f[0], f[1], f[2], f[3], f[4], f[5], f[6]));
+                    }
+                }
+            }
+        }
+        manifest.appender = Files.newBufferedWriter(manifest.file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return manifest;
+    }
+
+    /**
+     * Aplica un registro al estado en memoria: el de una salida olvida sus niveles anteriores (los
+     * suyos vienen detrás) y el de un nivel se añade a los de su salida.
+     */
+    private void apply(Record record) {
+        if (record.isLevel()) {
+            records.put(record.output, record);
+            levels.computeIfAbsent(record.parent, k -> ConcurrentHashMap.newKeySet()).add(record.output);
+            return;
+        }
+        Set<String> old = levels.remove(record.output);
+        if (old != null) {
+            old.forEach(records::remove);
+        }
+        records.put(record.output, record);
+    }
+
+    /**
+     * Marca una salida como parte de esta ejecución (no es huérfana aunque no se regenere).
+     *
+     * @param output nombre del archivo de salida
+     */
+    public void expect(String output) {
+        expected.add(output);
+    }
+
+    /**
+     * Indica si la salida existe y fue generada a partir de la misma fuente con la misma versión
+     * del filtro, sin niveles de pirámide.
+     */
+    public boolean isUpToDate(String output, String sourceFingerprint, String filterName, String filterVersion) {
+        return isUpToDate(output, sourceFingerprint, filterName, filterVersion, "");
+    }
+
+    /**
+     * Indica si la salida y todos sus niveles existen y fueron generados a partir de la misma
+     * fuente, con la misma versión del filtro y los mismos niveles de pirámide configurados.
+     *
+     * @param output            nombre del archivo de salida
+     * @param sourceFingerprint huella actual de la fuente
+     * @param filterName        nombre del filtro
+     * @param filterVersion     versión actual del filtro
+     * @param pyramid           niveles de pirámide configurados ahora ("" si ninguno)
+     * @return true si no hace falta regenerarla
+     */
+    public boolean isUpToDate(String output, String sourceFingerprint, String filterName, String filterVersion,
+                              String pyramid) {
+        Record r = records.get(output);
+        if (r == null
+                || r.isLevel()
+                || !r.sourceFingerprint.equals(sourceFingerprint)
+                || !r.filterName.equals(filterName)
+                || !r.filterVersion.equals(filterVersion)
+                || !r.pyramid.equals(pyramid)
+                || !Files.exists(outputDir.resolve(output))) {
+            return false;
+        }
+        for (String level : levels.getOrDefault(output, Set.of())) {
+            if (!Files.exists(outputDir.resolve(level))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Registra una salida recién escrita en disco, sin niveles de pirámide.
+     *
+     * @param record datos de la salida
+     */
+    public void record(Record record) {
+        record(record, List.of());
+    }
+
+    /**
+     * Registra una salida recién escrita en disco junto con sus niveles de pirámide. Los niveles
+     * que tenía antes y ya no tiene (p.ej. porque cambiaron los configurados) se borran del disco.
+     *
+     * @param record     datos de la salida
+     * @param levelFiles nombres de los archivos de sus niveles
+     */
+    public synchronized void record(Record record, List<String> levelFiles) {
+        Set<String> stale = new HashSet<>(levels.getOrDefault(record.output, Set.of()));
+        stale.removeAll(levelFiles);
+        apply(record);
+        append(record);
+        for (String level : levelFiles) {
+            Record r = record.level(level);
+            apply(r);
+            append(r);
+        }
+        for (String level : stale) {
+            delete(level);
+        }
+    }
+
+    private void append(Record record) {
+        try {
+            appender.write(record.toLine());
+            appender.newLine();
+            appender.flush();
+        } catch (IOException e) {
+            System.err.println("Aviso: no se pudo actualizar el manifiesto: " + e.getMessage());
+        }
+    }
+
+    private void delete(String output) {
+        try {
+            Files.deleteIfExists(outputDir.resolve(output));
+        } catch (IOException e) {
+            System.err.println("Aviso: no se pudo borrar la salida " + output + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Borra del disco y del manifiesto las salidas que no corresponden a ninguna URL/filtro de
+     * esta ejecución (URL eliminada de la lista o filtro retirado), con sus niveles de pirámide.
+     *
+     * @return archivos eliminados (salidas y niveles)
+     */
+    public synchronized List<String> removeOrphans() {
+        List<String> removed = new ArrayList<>();
+        for (Record record : new ArrayList<>(records.values())) {
+            String owner = record.isLevel() ? record.parent : record.output;
+            if (!expected.contains(owner)) {
+                try {
+                    Files.deleteIfExists(outputDir.resolve(record.output));
+                    records.remove(record.output);
+                    removed.add(record.output);
+                } catch (IOException e) {
+                    System.err.println("Aviso: no se pudo borrar la salida huérfana " + record.output + ": " + e.getMessage());
+                }
+            }
+        }
+        levels.keySet().removeIf(output -> !records.containsKey(output));
+        return removed;
+    }
+
+    /**
+     * Reescribe el manifiesto con una línea por salida y lo cierra.
+     *
+     * @throws IOException si falla la escritura
+     */
+    public synchronized void close() throws IOException {
+        appender.close();
+        Path tmp = Files.createTempFile(outputDir, ".manifest", ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            // Cada salida antes que sus niveles: al recargar, su línea reinicia la lista de niveles
+            for (Record r : records.values()) {
+                if (!r.isLevel()) {
+                    out.write(r.toLine());
+                    out.newLine();
+                    for (String level : levels.getOrDefault(r.output, Set.of())) {
+                        Record l = records.get(level);
+                        if (l != null) {
+                            out.write(l.toLine());
+                            out.newLine();
+                        }
+                    }
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
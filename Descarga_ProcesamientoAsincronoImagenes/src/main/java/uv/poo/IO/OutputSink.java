@@ -0,0 +1,60 @@
+package uv.poo.IO;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * OutputSink: destino de las imágenes ya codificadas.
+ *
+ * {@link #write(String, byte[])} devuelve un futuro que se completa cuando la salida es durable
+ * según el destino: un archivo escrito ({@link DirectorySink}) o un lote sincronizado con el disco
+ * ({@link SegmentArchiveSink}). Así el pipeline sólo da una salida por terminada cuando de verdad
+ * lo está, aunque el destino agrupe escrituras.
+ */
+public interface OutputSink extends Closeable {
+
+    /**
+     * @return directorio donde quedan las salidas (y sus archivos temporales)
+     */
+    Path dir();
+
+    /**
+     * Escribe una salida.
+     *
+     * @param name nombre de la salida (p.ej. "id3_5000x3333_sepia.png")
+     * @param data bytes codificados
+     * @return futuro que se completa al quedar escrita, o con el error de escritura
+     */
+    CompletableFuture<Void> write(String name, byte[] data);
+
+    /**
+     * Escribe una salida ya codificada en un archivo temporal (el modo por franjas no la tiene
+     * entera en memoria). Por defecto lee el archivo, lo borra y escribe sus bytes; un destino que
+     * guarda archivos sueltos puede moverlo sin leerlo.
+     *
+     * @param name nombre de la salida
+     * @param file archivo temporal con los bytes codificados; el destino se queda con él
+     * @return futuro que se completa al quedar escrita, o con el error de escritura
+     */
+    default CompletableFuture<Void> write(String name, Path file) {
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file);
+            Files.delete(file);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return write(name, data);
+    }
+
+    /**
+     * Escribe lo pendiente y libera los recursos del destino.
+     *
+     * @throws IOException si falla la última escritura
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,286 @@
+package uv.poo.IO;
+
+import uv.poo.Filter.Pixels;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * PngEncoder: codificador PNG propio, fila a fila, con nivel de compresión y estrategia de
+ * filtrado de filas configurables.
+ *
+ * A diferencia de ImageIO, permite elegir el nivel de Deflate (1 = rápido, 9 = más pequeño) y el
+ * filtro PNG de cada fila, y escribe las filas a medida que llegan: no necesita la imagen completa
+ * en memoria. El Deflater se reutiliza por hilo.
+ */
+public class PngEncoder {
+
+    /**
+     * Filtro PNG aplicado a cada fila antes de comprimir.
+     * ADAPTIVE prueba los cinco y elige el de menor suma de valores absolutos (heurística estándar).
+     */
+    public enum RowFilter {
+        NONE, SUB, UP, AVERAGE, PAETH, ADAPTIVE
+    }
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int IDAT_CHUNK = 64 * 1024;
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(Deflater::new);
+
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+    private final int channels;
+    private final RowFilter rowFilter;
+    private final Deflater deflater;
+
+    private byte[] previous;
+    private byte[] current;
+    private final byte[][] candidates;
+    private final byte[] deflated = new byte[IDAT_CHUNK];
+    private final ByteArrayOutputStream idat = new ByteArrayOutputStream(IDAT_CHUNK + 1024);
+    private int rowsWritten;
+
+    /**
+     * Empieza un PNG: escribe la firma y la cabecera IHDR.
+     *
+     * @param out       destino
+     * @param width     ancho en píxeles
+     * @param height    alto en píxeles
+     * @param gray      true para escala de grises de 8 bits
+     * @param alpha     true para incluir canal alfa (ignorado si gray)
+     * @param level     nivel de Deflate 0..9
+     * @param rowFilter filtro de filas
+     * @throws IOException si falla la escritura
+     */
+    public PngEncoder(OutputStream out, int width, int height, boolean gray, boolean alpha,
+                      int level, RowFilter rowFilter) throws IOException {
+        this(out, width, height, gray, alpha, level, rowFilter, DEFLATERS.get());
+    }
+
+    /**
+     * Empieza un PNG con un Deflater propio: necesario si el mismo hilo codifica varios PNG a la
+     * vez, intercalando filas (el Deflater por hilo sólo sirve para uno cada vez).
+     *
+     * @param deflater compresor a usar (se reinicia; quien lo pasa lo libera con end())
+     * @throws IOException si falla la escritura
+     */
+    public PngEncoder(OutputStream out, int width, int height, boolean gray, boolean alpha,
+                      int level, RowFilter rowFilter, Deflater deflater) throws IOException {
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        this.channels = gray ? 1 : alpha ? 4 : 3;
+        this.rowFilter = rowFilter;
+        this.deflater = deflater;
+        this.deflater.reset();
+        this.deflater.setLevel(level);
+
+        int rowBytes = width * channels;
+        this.previous = new byte[rowBytes];
+        this.current = new byte[rowBytes];
+        this.candidates = new byte[5][rowBytes + 1];
+
+        out.write(SIGNATURE);
+        ByteArrayOutputStream ihdr = new ByteArrayOutputStream(13);
+        writeInt(ihdr, width);
+        writeInt(ihdr, height);
+        ihdr.write(8);                                   // bits por canal
+        ihdr.write(gray ? 0 : alpha ? 6 : 2);            // tipo de color
+        ihdr.write(0);                                   // compresión deflate
+        ihdr.write(0);                                   // filtrado estándar
+        ihdr.write(0);                                   // sin entrelazado
+        writeChunk("IHDR", ihdr.toByteArray(), ihdr.size());
+    }
+
+    /**
+     * Codifica una imagen completa.
+     *
+     * @param img       imagen a codificar
+     * @param out       destino
+     * @param level     nivel de Deflate 0..9
+     * @param rowFilter filtro de filas
+     * @throws IOException si falla la escritura
+     */
+    public static void encode(BufferedImage img, OutputStream out, int level, RowFilter rowFilter) throws IOException {
+        PngEncoder encoder = new PngEncoder(out, img.getWidth(), img.getHeight(),
+                img.getType() == BufferedImage.TYPE_BYTE_GRAY, img.getColorModel().hasAlpha(), level, rowFilter);
+        int[] row = new int[img.getWidth()];
+        for (int y = 0; y < img.getHeight(); y++) {
+            Pixels.readRow(img, y, row);
+            encoder.writeRow(row);
+        }
+        encoder.finish();
+    }
+
+    /**
+     * Añade la siguiente fila (píxeles 0xAARRGGBB; en gris se guarda el canal azul, que coincide
+     * con el gris cuando r = g = b).
+     *
+     * @param argb fila de al menos width píxeles
+     * @throws IOException si falla la escritura
+     */
+    public void writeRow(int[] argb) throws IOException {
+        if (rowsWritten >= height) {
+            throw new IllegalStateException("Se escribieron más filas que el alto de la imagen");
+        }
+        byte[] raw = current;
+        int i = 0;
+        for (int x = 0; x < width; x++) {
+            int p = argb[x];
+            if (channels == 1) {
+                raw[i++] = (byte) p;
+            } else {
+                raw[i++] = (byte) (p >> 16);
+                raw[i++] = (byte) (p >> 8);
+                raw[i++] = (byte) p;
+                if (channels == 4) {
+                    raw[i++] = (byte) (p >>> 24);
+                }
+            }
+        }
+
+        byte[] filtered = filterRow(raw);
+        deflater.setInput(filtered, 0, raw.length + 1);
+        drain(false);
+
+        // La fila actual pasa a ser la anterior (la usan UP, AVERAGE y PAETH)
+        current = previous;
+        previous = raw;
+        rowsWritten++;
+    }
+
+    /**
+     * Termina el PNG: vacía el compresor y escribe IEND.
+     *
+     * @throws IOException si falla la escritura o faltan filas
+     */
+    public void finish() throws IOException {
+        if (rowsWritten != height) {
+            throw new IllegalStateException("Faltan filas: " + rowsWritten + " de " + height);
+        }
+        deflater.finish();
+        drain(true);
+        flushIdat();
+        writeChunk("IEND", new byte[0], 0);
+        out.flush();
+    }
+
+    private byte[] filterRow(byte[] raw) {
+        int bpp = channels;
+        int n = raw.length;
+        RowFilter chosen = rowFilter;
+        if (chosen == RowFilter.ADAPTIVE) {
+            long best = Long.MAX_VALUE;
+            byte[] bestRow = null;
+            for (int type = 0; type < 5; type++) {
+                byte[] c = candidates[type];
+                applyFilter(type, raw, previous, c, bpp, n);
+                // Se deja de sumar en cuanto el candidato ya no puede ganar
+                long sum = 0;
+                for (int k = 1; k <= n && sum < best; k++) {
+                    sum += Math.abs((int) c[k]);
+                }
+                if (sum < best) {
+                    best = sum;
+                    bestRow = c;
+                }
+            }
+            return bestRow;
+        }
+        byte[] c = candidates[chosen.ordinal()];
+        applyFilter(chosen.ordinal(), raw, previous, c, bpp, n);
+        return c;
+    }
+
+    /**
+     * Escribe en dst[0] el tipo de filtro y en dst[1..n] la fila filtrada.
+     */
+    private static void applyFilter(int type, byte[] raw, byte[] prior, byte[] dst, int bpp, int n) {
+        dst[0] = (byte) type;
+        switch (type) {
+            case 0:
+                System.arraycopy(raw, 0, dst, 1, n);
+                break;
+            case 1:
+                for (int k = 0; k < n; k++) {
+                    int left = k >= bpp ? raw[k - bpp] & 0xff : 0;
+                    dst[k + 1] = (byte) (raw[k] - left);
+                }
+                break;
+            case 2:
+                for (int k = 0; k < n; k++) {
+                    dst[k + 1] = (byte) (raw[k] - prior[k]);
+                }
+                break;
+            case 3:
+                for (int k = 0; k < n; k++) {
+                    int left = k >= bpp ? raw[k - bpp] & 0xff : 0;
+                    dst[k + 1] = (byte) (raw[k] - ((left + (prior[k] & 0xff)) >> 1));
+                }
+                break;
+            default:
+                for (int k = 0; k < n; k++) {
+                    int a = k >= bpp ? raw[k - bpp] & 0xff : 0;
+                    int b = prior[k] & 0xff;
+                    int c = k >= bpp ? prior[k - bpp] & 0xff : 0;
+                    dst[k + 1] = (byte) (raw[k] - paeth(a, b, c));
+                }
+                break;
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    /**
+     * Saca del Deflater todo lo comprimido hasta ahora y lo acumula en chunks IDAT de 64 KB.
+     */
+    private void drain(boolean finishing) throws IOException {
+        while (finishing ? !deflater.finished() : !deflater.needsInput()) {
+            int len = deflater.deflate(deflated);
+            idat.write(deflated, 0, len);
+            if (idat.size() >= IDAT_CHUNK) {
+                flushIdat();
+            }
+        }
+    }
+
+    private void flushIdat() throws IOException {
+        if (idat.size() > 0) {
+            writeChunk("IDAT", idat.toByteArray(), idat.size());
+            idat.reset();
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int len) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, len);
+        writeInt(out, len);
+        out.write(typeBytes);
+        out.write(data, 0, len);
+        writeInt(out, (int) crc.getValue());
+    }
+
+    private static void writeInt(OutputStream out, int v) throws IOException {
+        out.write(v >>> 24);
+        out.write(v >>> 16);
+        out.write(v >>> 8);
+        out.write(v);
+    }
+}
@@ -0,0 +1,430 @@
+package uv.poo.IO;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * PngRowDecoder: decodificador PNG propio, fila a fila, complemento de {@link PngEncoder}.
+ *
+ * Descomprime los bloques IDAT a medida que se piden filas y sólo guarda la fila actual y la
+ * anterior (la necesitan los filtros UP, AVERAGE y PAETH), así que la memoria depende del ancho de
+ * la imagen y no de su alto. El lector PNG de ImageIO, en cambio, vuelve a descomprimir desde el
+ * principio en cada lectura de una región.
+ *
+ * Admite todos los tipos de color y profundidades de PNG sin entrelazar, con paleta y con
+ * transparencia (tRNS). Las muestras de 16 bits se reducen a 8 tomando el byte alto; los
+ * fragmentos de gamma y perfil de color se ignoran, como hace ImageIO.
+ */
+public class PngRowDecoder implements RowSource {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    private final int width;
+    private final int height;
+    private final int depth;
+    private final int colorType;
+    private final int channels;
+    /** Bytes por píxel completo para los filtros de fila (1 si el píxel ocupa menos de un byte). */
+    private final int bpp;
+    /** Paleta como píxeles 0xAARRGGBB (tipo de color 3), o null. */
+    private final int[] palette;
+    /** Muestra transparente (tRNS de gris o RGB con las muestras originales), o -1. */
+    private final long transparent;
+    private final InflaterInputStream in;
+
+    private byte[] previous;
+    private byte[] current;
+    private int rowsRead;
+
+    /**
+     * @param data PNG completo en memoria (no se copia)
+     * @throws IOException si no es un PNG válido o está entrelazado
+     */
+    public PngRowDecoder(byte[] data) throws IOException {
+        if (!isPng(data)) {
+            throw new IOException("No es un PNG");
+        }
+        int w = 0;
+        int h = 0;
+        int bits = 0;
+        int type = -1;
+        int[] plte = null;
+        byte[] trns = null;
+        List<int[]> idat = new ArrayList<>();
+        int pos = SIGNATURE.length;
+        while (true) {
+            if (pos + 12 > data.length) {
+                throw new IOException("PNG truncado");
+            }
+            int length = readInt(data, pos);
+            String chunk = new String(data, pos + 4, 4, StandardCharsets.US_ASCII);
+            int body = pos + 8;
+            if (length < 0 || body + length + 4 > data.length) {
+                throw new IOException("PNG truncado en el fragmento " + chunk);
+            }
+            switch (chunk) {
+                case "IHDR":
+                    w = readInt(data, body);
+                    h = readInt(data, body + 4);
+                    bits = data[body + 8];
+                    type = data[body + 9];
+                    if (data[body + 12] != 0) {
+                        throw new IOException("PNG entrelazado: no se puede decodificar por filas");
+                    }
+                    break;
+                case "PLTE":
+                    plte = new int[length / 3];
+                    for (int i = 0; i < plte.length; i++) {
+                        int p = body + 3 * i;
+                        plte[i] = 0xff000000 | (data[p] & 0xff) << 16 | (data[p + 1] & 0xff) << 8 | (data[p + 2] & 0xff);
+                    }
+                    break;
+                case "tRNS":
+                    trns = new byte[length];
+                    System.arraycopy(data, body, trns, 0, length);
+                    break;
+                case "IDAT":
+                    idat.add(new int[]{body, length});
+                    break;
+                default:
+                    break;
+            }
+            pos = body + length + 4;
+            if (chunk.equals("IEND")) {
+                break;
+            }
+        }
+
+        int samples = channels(type);
+        if (w <= 0 || h <= 0 || samples == 0 || !validDepth(type, bits)) {
+            throw new IOException("Cabecera PNG no soportada: tipo " + type + ", " + bits + " bits");
+        }
+        long rowBytes = ((long) w * samples * bits + 7) / 8;
+        if (rowBytes > Integer.MAX_VALUE - 1) {
+            throw new IOException("Fila PNG demasiado ancha: " + w + " píxeles");
+        }
+        if (type == 3 && plte == null) {
+            throw new IOException("PNG con paleta sin fragmento PLTE");
+        }
+        long key = -1;
+        if (trns != null) {
+            if (type == 3) {
+                for (int i = 0; i < Math.min(trns.length, plte.length); i++) {
+                    plte[i] = (trns[i] & 0xff) << 24 | (plte[i] & 0xffffff);
+                }
+            } else if (type == 0 && trns.length >= 2) {
+                key = readShort(trns, 0);
+            } else if (type == 2 && trns.length >= 6) {
+                key = (long) readShort(trns, 0) << 32 | (long) readShort(trns, 2) << 16 | readShort(trns, 4);
+            }
+        }
+
+        this.width       = w;
+        this.height      = h;
+        this.depth       = bits;
+        this.colorType   = type;
+        this.channels    = samples;
+        this.bpp         = Math.max(1, samples * bits / 8);
+        this.palette     = plte;
+        this.transparent = key;
+        this.previous    = new byte[(int) rowBytes];
+        this.current     = new byte[(int) rowBytes];
+        this.in          = new InflaterInputStream(new IdatStream(data, idat), new Inflater(), 64 * 1024);
+    }
+
+    /**
+     * Indica si los bytes son un PNG sin entrelazar (el único caso que decodifica esta clase).
+     */
+    public static boolean canDecode(byte[] data) {
+        // Firma (8) + longitud (4) + "IHDR" (4) + ancho, alto, bits, color, compresión, filtro (13) + entrelazado
+        return isPng(data) && data.length > 28 && data[12] == 'I' && data[13] == 'H' && data[14] == 'D'
+                && data[15] == 'R' && data[28] == 0;
+    }
+
+    private static boolean isPng(byte[] data) {
+        if (data.length < SIGNATURE.length) {
+            return false;
+        }
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if (data[i] != SIGNATURE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    @Override
+    public boolean hasAlpha() {
+        return colorType == 4 || colorType == 6 || transparent >= 0
+                || (palette != null && hasTransparentEntry(palette));
+    }
+
+    @Override
+    public void readRow(int[] argb, int offset) throws IOException {
+        if (rowsRead >= height) {
+            throw new IOException("No quedan filas: la imagen tiene " + height);
+        }
+        int filter = in.read();
+        if (filter < 0) {
+            throw new EOFException("Faltan datos de imagen en la fila " + rowsRead);
+        }
+        readFully(current);
+        unfilter(filter, current, previous, bpp);
+        convert(current, argb, offset);
+
+        byte[] done = current;
+        current = previous;
+        previous = done;
+        rowsRead++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readFully(byte[] row) throws IOException {
+        int n = 0;
+        while (n < row.length) {
+            int read = in.read(row, n, row.length - n);
+            if (read < 0) {
+                throw new EOFException("Faltan datos de imagen en la fila " + rowsRead);
+            }
+            n += read;
+        }
+    }
+
+    /**
+     * Deshace el filtro PNG de la fila, en el sitio.
+     */
+    private static void unfilter(int type, byte[] row, byte[] prior, int bpp) throws IOException {
+        int n = row.length;
+        switch (type) {
+            case 0:
+                break;
+            case 1:
+                for (int k = bpp; k < n; k++) {
+                    row[k] += row[k - bpp];
+                }
+                break;
+            case 2:
+                for (int k = 0; k < n; k++) {
+                    row[k] += prior[k];
+                }
+                break;
+            case 3:
+                for (int k = 0; k < n; k++) {
+                    int left = k >= bpp ? row[k - bpp] & 0xff : 0;
+                    row[k] += (byte) ((left + (prior[k] & 0xff)) >>> 1);
+                }
+                break;
+            case 4:
+                for (int k = 0; k < n; k++) {
+                    int a = k >= bpp ? row[k - bpp] & 0xff : 0;
+                    int b = prior[k] & 0xff;
+                    int c = k >= bpp ? prior[k - bpp] & 0xff : 0;
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a);
+                    int pb = Math.abs(p - b);
+                    int pc = Math.abs(p - c);
+                    row[k] += (byte) (pa <= pb && pa <= pc ? a : pb <= pc ? b : c);
+                }
+                break;
+            default:
+                throw new IOException("Filtro de fila PNG desconocido: " + type);
+        }
+    }
+
+    /**
+     * Convierte una fila ya sin filtro a píxeles 0xAARRGGBB.
+     */
+    private void convert(byte[] row, int[] argb, int offset) {
+        if (depth == 8 && colorType == 2 && transparent < 0) {
+            for (int x = 0, i = 0; x < width; x++, i += 3) {
+                argb[offset + x] = 0xff000000 | (row[i] & 0xff) << 16 | (row[i + 1] & 0xff) << 8 | (row[i + 2] & 0xff);
+            }
+            return;
+        }
+        if (depth == 8 && colorType == 6) {
+            for (int x = 0, i = 0; x < width; x++, i += 4) {
+                argb[offset + x] = (row[i + 3] & 0xff) << 24 | (row[i] & 0xff) << 16 | (row[i + 1] & 0xff) << 8 | (row[i + 2] & 0xff);
+            }
+            return;
+        }
+        for (int x = 0; x < width; x++) {
+            argb[offset + x] = pixel(row, x);
+        }
+    }
+
+    /**
+     * Píxel x de la fila, para cualquier tipo de color y profundidad.
+     */
+    private int pixel(byte[] row, int x) {
+        int i = x * channels;
+        switch (colorType) {
+            case 0: {
+                int raw = sample(row, i);
+                int alpha = raw == transparent ? 0 : 0xff000000;
+                return alpha | to8(raw) * 0x010101;
+            }
+            case 2: {
+                int r = sample(row, i);
+                int g = sample(row, i + 1);
+                int b = sample(row, i + 2);
+                long key = (long) r << 32 | (long) g << 16 | b;
+                int alpha = key == transparent ? 0 : 0xff000000;
+                return alpha | to8(r) << 16 | to8(g) << 8 | to8(b);
+            }
+            case 3: {
+                int index = sample(row, i);
+                return index < palette.length ? palette[index] : 0xff000000;
+            }
+            case 4:
+                return to8(sample(row, i + 1)) << 24 | to8(sample(row, i)) * 0x010101;
+            default:
+                return to8(sample(row, i + 3)) << 24 | to8(sample(row, i)) << 16
+                        | to8(sample(row, i + 1)) << 8 | to8(sample(row, i + 2));
+        }
+    }
+
+    /**
+     * Muestra i de la fila con su valor original (de 1 a 16 bits).
+     */
+    private int sample(byte[] row, int i) {
+        switch (depth) {
+            case 8:
+                return row[i] & 0xff;
+            case 16:
+                return (row[2 * i] & 0xff) << 8 | (row[2 * i + 1] & 0xff);
+            default:
+                int bit = i * depth;
+                return (row[bit >> 3] >> (8 - depth - (bit & 7))) & ((1 << depth) - 1);
+        }
+    }
+
+    /**
+     * Escala una muestra a 8 bits (en paleta el valor es un índice y no se escala).
+     */
+    private int to8(int sample) {
+        switch (depth) {
+            case 8:
+                return sample;
+            case 16:
+                return sample >> 8;
+            default:
+                return sample * 255 / ((1 << depth) - 1);
+        }
+    }
+
+    private static boolean hasTransparentEntry(int[] palette) {
+        for (int p : palette) {
+            if (p >>> 24 != 0xff) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int channels(int colorType) {
+        switch (colorType) {
+            case 0:
+            case 3:
+                return 1;
+            case 2:
+                return 3;
+            case 4:
+                return 2;
+            case 6:
+                return 4;
+            default:
+                return 0;
+        }
+    }
+
+    private static boolean validDepth(int colorType, int depth) {
+        switch (colorType) {
+            case 0:
+                return depth == 1 || depth == 2 || depth == 4 || depth == 8 || depth == 16;
+            case 3:
+                return depth == 1 || depth == 2 || depth == 4 || depth == 8;
+            default:
+                return depth == 8 || depth == 16;
+        }
+    }
+
+    private static int readInt(byte[] b, int pos) {
+        return (b[pos] & 0xff) << 24 | (b[pos + 1] & 0xff) << 16 | (b[pos + 2] & 0xff) << 8 | (b[pos + 3] & 0xff);
+    }
+
+    private static int readShort(byte[] b, int pos) {
+        return (b[pos] & 0xff) << 8 | (b[pos + 1] & 0xff);
+    }
+
+    /**
+     * Contenido de los fragmentos IDAT, uno tras otro, leído directamente del arreglo.
+     */
+    private static final class IdatStream extends InputStream {
+        private final byte[] data;
+        private final List<int[]> chunks;
+        private int chunk = -1;
+        private int pos;
+        private int end;
+
+        IdatStream(byte[] data, List<int[]> chunks) {
+            this.data = data;
+            this.chunks = chunks;
+        }
+
+        @Override
+        public int read() {
+            if (!advance()) {
+                return -1;
+            }
+            return data[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!advance()) {
+                return -1;
+            }
+            int n = Math.min(len, end - pos);
+            System.arraycopy(data, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        /**
+         * Pasa al siguiente fragmento con datos si el actual se agotó.
+         */
+        private boolean advance() {
+            while (pos == end) {
+                if (++chunk >= chunks.size()) {
+                    return false;
+                }
+                pos = chunks.get(chunk)[0];
+                end = pos + chunks.get(chunk)[1];
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package uv.poo.IO;
+
+import uv.poo.Filter.Pixels;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * RegionRowSource: filas de cualquier formato de ImageIO, leídas por bloques con
+ * ImageReadParam.setSourceRegion. Sólo el bloque actual (chunkRows filas) está decodificado.
+ *
+ * El coste depende del lector: el de TIFF lee únicamente las tiras o teselas del bloque, así que
+ * recorrer la imagen es lineal; los de JPEG y PNG vuelven a decodificar desde el principio en cada
+ * lectura y sólo ahorran memoria (para PNG se usa {@link PngRowDecoder}). Conviene un chunkRows
+ * grande para que sean pocas lecturas.
+ */
+public class RegionRowSource implements RowSource {
+
+    private final ImageInputStream in;
+    private final ImageReader reader;
+    private final ImageReadParam param;
+    private final int width;
+    private final int height;
+    private final int chunkRows;
+    private final boolean alpha;
+    private final int[] row;
+
+    private BufferedImage chunk;
+    private int chunkStart;
+    private int next;
+
+    private RegionRowSource(ImageInputStream in, ImageReader reader, int width, int height,
+                            boolean alpha, int chunkRows) {
+        this.in        = in;
+        this.reader    = reader;
+        this.param     = reader.getDefaultReadParam();
+        this.width     = width;
+        this.height    = height;
+        this.alpha     = alpha;
+        this.chunkRows = chunkRows;
+        this.row       = new int[width];
+    }
+
+    /**
+     * Abre la fuente leyendo sólo la cabecera.
+     *
+     * @param data      bytes codificados (no se copian)
+     * @param chunkRows filas por lectura
+     * @return fuente posicionada en la primera fila
+     * @throws IOException si el formato no está soportado o la cabecera está dañada
+     */
+    public static RegionRowSource open(byte[] data, int chunkRows) throws IOException {
+        if (chunkRows <= 0) {
+            throw new IllegalArgumentException("chunkRows debe ser positivo: " + chunkRows);
+        }
+        ImageInputStream in = new ByteArrayImageInputStream(data);
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            in.close();
+            throw new IOException("Formato de imagen no soportado");
+        }
+        ImageReader reader = readers.next();
+        try {
+            // Sin seekForwardOnly: cada bloque vuelve a buscar su región desde el principio
+            reader.setInput(in, false, true);
+            int width  = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+            boolean alpha = types.hasNext() && types.next().getColorModel().hasAlpha();
+            return new RegionRowSource(in, reader, width, height, alpha, chunkRows);
+        } catch (IOException | RuntimeException e) {
+            reader.dispose();
+            in.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    @Override
+    public boolean hasAlpha() {
+        return alpha;
+    }
+
+    @Override
+    public void readRow(int[] argb, int offset) throws IOException {
+        if (next >= height) {
+            throw new IOException("No quedan filas: la imagen tiene " + height);
+        }
+        if (chunk == null || next >= chunkStart + chunk.getHeight()) {
+            int rows = Math.min(chunkRows, height - next);
+            param.setSourceRegion(new Rectangle(0, next, width, rows));
+            chunk = null;
+            chunk = reader.read(0, param);
+            chunkStart = next;
+        }
+        Pixels.readRow(chunk, next - chunkStart, row);
+        System.arraycopy(row, 0, argb, offset, width);
+        next++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        chunk = null;
+        reader.dispose();
+        in.close();
+    }
+}
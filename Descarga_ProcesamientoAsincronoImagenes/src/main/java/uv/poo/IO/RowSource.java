@@ -0,0 +1,56 @@
+package uv.poo.IO;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * RowSource: decodificación de una imagen fila a fila, de arriba abajo, sin tenerla entera en
+ * memoria. La usa el modo por franjas (ver uv.poo.Task.StripTask) con imágenes demasiado grandes
+ * para decodificarlas en una BufferedImage.
+ *
+ * {@link #open(byte[], int)} elige la implementación:
+ *  - PNG sin entrelazar: {@link PngRowDecoder}, que descomprime sólo lo necesario para cada fila;
+ *  - cualquier otro formato: {@link RegionRowSource}, que lee bloques de filas con
+ *    ImageReadParam.setSourceRegion.
+ */
+public interface RowSource extends Closeable {
+
+    /**
+     * @return ancho en píxeles
+     */
+    int width();
+
+    /**
+     * @return alto en píxeles
+     */
+    int height();
+
+    /**
+     * @return true si la imagen tiene transparencia
+     */
+    boolean hasAlpha();
+
+    /**
+     * Decodifica la siguiente fila.
+     *
+     * @param argb   destino de los píxeles 0xAARRGGBB (alfa 0xff si la imagen es opaca)
+     * @param offset posición de argb donde escribir el primer píxel
+     * @throws IOException si los datos están dañados o ya se leyeron todas las filas
+     */
+    void readRow(int[] argb, int offset) throws IOException;
+
+    /**
+     * Abre la fuente más adecuada para los bytes.
+     *
+     * @param data      bytes codificados
+     * @param chunkRows filas por lectura con ImageReader (sólo formatos distintos de PNG)
+     * @return fuente de filas
+     * @throws IOException si el formato no está soportado o la cabecera está dañada
+     */
+    static RowSource open(byte[] data, int chunkRows) throws IOException {
+        if (PngRowDecoder.canDecode(data)) {
+            return new PngRowDecoder(data);
+        }
+        return RegionRowSource.open(data, chunkRows);
+    }
+}
@@ -0,0 +1,214 @@
+package uv.poo.IO;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * SegmentArchiveReader: extrae por nombre las salidas escritas por {@link SegmentArchiveSink}.
+ *
+ * Al abrirse lee los índices de todos los segmentos del directorio (en orden, de modo que si una
+ * salida se escribió varias veces gana la última). Si un segmento no tiene índice, o el índice
+ * apunta más allá del final del segmento, recorre los registros del segmento para reconstruirlo.
+ * Cada lectura comprueba el CRC32 de los datos.
+ */
+public class SegmentArchiveReader implements Closeable {
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final List<FileChannel> channels = new ArrayList<>();
+
+    private SegmentArchiveReader() {
+    }
+
+    /**
+     * Abre los segmentos de un directorio.
+     *
+     * @param dir directorio con los archivos salidas-NNNNN.seg / .idx
+     * @return lector
+     * @throws IOException si no se pueden leer los segmentos
+     */
+    public static SegmentArchiveReader open(Path dir) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir,
+                SegmentArchiveSink.PREFIX + "*" + SegmentArchiveSink.SEGMENT_EXT)) {
+            files.forEach(segments::add);
+        }
+        Collections.sort(segments);
+
+        SegmentArchiveReader reader = new SegmentArchiveReader();
+        try {
+            for (Path segment : segments) {
+                FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ);
+                reader.channels.add(channel);
+                if (!reader.loadIndex(segment, channel)) {
+                    reader.scan(channel);
+                }
+            }
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+        return reader;
+    }
+
+    /**
+     * Carga el índice de un segmento.
+     *
+     * @return false si no hay índice o no es coherente con el segmento
+     */
+    private boolean loadIndex(Path segment, FileChannel channel) throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(SegmentArchiveSink.indexFile(segment), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        Map<String, Entry> loaded = new HashMap<>();
+        long size = channel.size();
+        for (String line : lines) {
+            String[] parts = line.split("\t");
+            if (parts.length != 4) {
+                return false;
+            }
+            Entry entry = new Entry(channel, Long.parseLong(parts[1]), Integer.parseInt(parts[2]),
+                    Integer.parseUnsignedInt(parts[3], 16));
+            if (entry.offset + entry.length > size) {
+                return false;
+            }
+            loaded.put(parts[0], entry);
+        }
+        entries.putAll(loaded);
+        return true;
+    }
+
+    /**
+     * Reconstruye las entradas recorriendo las cabeceras de los registros; se detiene en el primer
+     * registro incompleto (p.ej. un lote que no llegó a escribirse entero).
+     */
+    private void scan(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long pos = 0;
+        ByteBuffer header = ByteBuffer.allocate(6);
+        while (pos + 6 <= size) {
+            header.clear();
+            readFully(channel, header, pos);
+            header.flip();
+            if (header.getInt() != SegmentArchiveSink.MAGIC) {
+                break;
+            }
+            int nameLength = header.getShort() & 0xffff;
+            if (pos + 6 + nameLength + 8 > size) {
+                break;
+            }
+            ByteBuffer rest = ByteBuffer.allocate(nameLength + 8);
+            readFully(channel, rest, pos + 6);
+            rest.flip();
+            byte[] name = new byte[nameLength];
+            rest.get(name);
+            int length = rest.getInt();
+            int crc = rest.getInt();
+            long offset = pos + 6 + nameLength + 8;
+            if (offset + length > size) {
+                break;
+            }
+            entries.put(new String(name, StandardCharsets.UTF_8), new Entry(channel, offset, length, crc));
+            pos = offset + length;
+        }
+    }
+
+    /**
+     * @return nombres de todas las salidas
+     */
+    public Set<String> names() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * @param name nombre de la salida
+     * @return true si existe
+     */
+    public boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * Lee una salida.
+     *
+     * @param name nombre de la salida (p.ej. "id3_5000x3333_sepia.png")
+     * @return bytes codificados, o null si no existe
+     * @throws IOException si falla la lectura o el CRC no coincide
+     */
+    public byte[] read(String name) throws IOException {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        ByteBuffer data = ByteBuffer.allocate(entry.length);
+        readFully(entry.channel, data, entry.offset);
+        CRC32 crc = new CRC32();
+        crc.update(data.array());
+        if ((int) crc.getValue() != entry.crc) {
+            throw new IOException("CRC incorrecto en la salida " + name);
+        }
+        return data.array();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long at = position;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, at);
+            if (n < 0) {
+                throw new IOException("Fin inesperado del segmento");
+            }
+            at += n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException first = null;
+        for (FileChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                if (first == null) {
+                    first = e;
+                }
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+
+    /**
+     * Posición de una salida dentro de un segmento.
+     */
+    private static class Entry {
+        final FileChannel channel;
+        final long offset;
+        final int length;
+        final int crc;
+
+        Entry(FileChannel channel, long offset, int length, int crc) {
+            this.channel = channel;
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package uv.poo.IO;
+
+import uv.poo.Metrics.Metrics;
+import uv.poo.Metrics.Stage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * SegmentArchiveSink: agrupa las salidas en archivos de segmento grandes en lugar de crear un
+ * archivo por imagen, para no castigar con millones de archivos pequeños (inodos, metadatos,
+ * llamadas al sistema) a los sistemas de archivos en red.
+ *
+ * Cada segmento ("salidas-00000.seg") es una sucesión de registros:
+ *   MAGIC (int) | longitud del nombre (short) | nombre UTF-8 | longitud de los datos (int) | CRC32 (int) | datos
+ * y va acompañado de un índice ("salidas-00000.idx") con una línea por registro:
+ *   nombre \t posición de los datos \t longitud \t CRC32 en hexadecimal
+ *
+ * Las escrituras se acumulan en un lote que un único hilo escribe de una vez con
+ * AsynchronousFileChannel, sincroniza con el disco (force) y añade al índice; sólo entonces se
+ * completan los futuros de sus salidas. Un lote se escribe al llegar a batchBytes o, como mucho,
+ * lingerMillis después de su primera salida. Si se acumulan más de 4 lotes sin escribir, quien
+ * escribe espera (backpressure). Cada segmento se cierra al superar segmentMaxBytes, y cada
+ * ejecución empieza un segmento nuevo después de los que ya existan.
+ *
+ * Los registros se describen a sí mismos: si un índice se pierde, {@link SegmentArchiveReader}
+ * reconstruye las entradas recorriendo el segmento.
+ */
+public class SegmentArchiveSink implements OutputSink {
+
+    /** Marca de inicio de cada registro ("SEG1"). */
+    static final int MAGIC = 0x53454731;
+    /** Prefijo de los archivos de segmento e índice. */
+    static final String PREFIX = "salidas-";
+    static final String SEGMENT_EXT = ".seg";
+    static final String INDEX_EXT = ".idx";
+
+    private final Path dir;
+    private final long batchBytes;
+    private final long lingerMillis;
+    private final long segmentMaxBytes;
+    private final long maxPendingBytes;
+    private final ScheduledExecutorService writer;
+
+    // Lote en preparación; protegido por "this"
+    private List<Pending> batch = new ArrayList<>();
+    private long batchSize;
+    private long pendingBytes;
+    private boolean closed;
+
+    // Segmento actual; sólo lo usa el hilo escritor
+    private int segmentNumber;
+    private AsynchronousFileChannel segment;
+    private FileChannel index;
+    private long position;
+
+    /**
+     * @param dir             directorio de los segmentos (se crea si no existe)
+     * @param batchBytes      bytes que disparan la escritura de un lote
+     * @param lingerMillis    espera máxima de una salida antes de escribir su lote
+     * @param segmentMaxBytes tamaño a partir del cual se empieza un segmento nuevo
+     * @throws IOException si no se puede crear el directorio o listar los segmentos existentes
+     */
+    public SegmentArchiveSink(Path dir, long batchBytes, long lingerMillis, long segmentMaxBytes) throws IOException {
+        this.dir             = Files.createDirectories(dir);
+        this.batchBytes      = Math.max(1, batchBytes);
+        this.lingerMillis    = Math.max(0, lingerMillis);
+        this.segmentMaxBytes = Math.max(1, segmentMaxBytes);
+        this.maxPendingBytes = 4 * this.batchBytes;
+        this.segmentNumber   = nextSegmentNumber(dir);
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "segment-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public Path dir() {
+        return dir;
+    }
+
+    /**
+     * Número siguiente al mayor segmento existente en el directorio.
+     */
+    private static int nextSegmentNumber(Path dir) throws IOException {
+        int next = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + SEGMENT_EXT)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    int n = Integer.parseInt(name.substring(PREFIX.length(), name.length() - SEGMENT_EXT.length()));
+                    next = Math.max(next, n + 1);
+                } catch (NumberFormatException e) {
+                    // No es uno de nuestros segmentos
+                }
+            }
+        }
+        return next;
+    }
+
+    static Path segmentFile(Path dir, int number) {
+        return dir.resolve(String.format("%s%05d%s", PREFIX, number, SEGMENT_EXT));
+    }
+
+    static Path indexFile(Path segment) {
+        String name = segment.getFileName().toString();
+        return segment.resolveSibling(name.substring(0, name.length() - SEGMENT_EXT.length()) + INDEX_EXT);
+    }
+
+    @Override
+    public CompletableFuture<Void> write(String name, byte[] data) {
+        if (name.indexOf('\t') >= 0 || name.indexOf('\n') >= 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Nombre de salida inválido: " + name));
+        }
+        Pending pending = new Pending(name, data);
+        synchronized (this) {
+            // Backpressure: no acumular más de unos pocos lotes sin escribir
+            while (pendingBytes >= maxPendingBytes && !closed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return CompletableFuture.failedFuture(new InterruptedIOException("Interrumpido esperando al escritor"));
+                }
+            }
+            if (closed) {
+                return CompletableFuture.failedFuture(new IOException("El archivo de salidas está cerrado"));
+            }
+            batch.add(pending);
+            batchSize += pending.recordSize();
+            pendingBytes += pending.recordSize();
+            if (batchSize >= batchBytes) {
+                writer.execute(this::flush);
+            } else if (batch.size() == 1) {
+                // Primera salida del lote: escribirlo como tarde dentro de lingerMillis
+                writer.schedule(this::flush, lingerMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        return pending.done;
+    }
+
+    /**
+     * Escribe el lote acumulado (en el hilo escritor): registros, force del segmento, índice y
+     * force del índice; después completa los futuros.
+     */
+    private void flush() {
+        List<Pending> toWrite;
+        long size;
+        synchronized (this) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            toWrite = batch;
+            size = batchSize;
+            batch = new ArrayList<>();
+            batchSize = 0;
+        }
+        try {
+            writeBatch(toWrite, size);
+            long now = System.nanoTime();
+            for (Pending p : toWrite) {
+                Metrics.get().recordLatency(Stage.WRITE, now - p.enqueuedNanos);
+                Metrics.get().addBytesOut(p.data.length);
+                p.done.complete(null);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Pending p : toWrite) {
+                Metrics.get().recordError(Stage.WRITE);
+                p.done.completeExceptionally(e);
+            }
+        } finally {
+            synchronized (this) {
+                pendingBytes -= size;
+                notifyAll();
+            }
+        }
+    }
+
+    private void writeBatch(List<Pending> toWrite, long size) throws IOException {
+        if (segment == null || (position > 0 && position + size > segmentMaxBytes)) {
+            openNextSegment();
+        }
+
+        // Paso 1: un único búfer con todos los registros del lote
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size));
+        StringBuilder entries = new StringBuilder();
+        for (Pending p : toWrite) {
+            buffer.putInt(MAGIC);
+            buffer.putShort((short) p.nameBytes.length);
+            buffer.put(p.nameBytes);
+            buffer.putInt(p.data.length);
+            buffer.putInt(p.crc);
+            long dataOffset = position + buffer.position();
+            buffer.put(p.data);
+            entries.append(p.name).append('\t').append(dataOffset).append('\t')
+                    .append(p.data.length).append('\t').append(Integer.toHexString(p.crc)).append('\n');
+        }
+        buffer.flip();
+
+        // Paso 2: escribir el lote en su posición y sincronizar el segmento con el disco
+        try {
+            long at = position;
+            while (buffer.hasRemaining()) {
+                at += segment.write(buffer, at).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Escritura del lote interrumpida");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+        segment.force(false);
+        position += size;
+
+        // Paso 3: el índice sólo apunta a datos que ya están en disco
+        ByteBuffer indexBytes = StandardCharsets.UTF_8.encode(entries.toString());
+        while (indexBytes.hasRemaining()) {
+            index.write(indexBytes);
+        }
+        index.force(false);
+    }
+
+    private void openNextSegment() throws IOException {
+        closeSegment();
+        Path file = segmentFile(dir, segmentNumber++);
+        segment = AsynchronousFileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        index = FileChannel.open(indexFile(file), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        position = 0;
+        System.out.println("Segmento de salidas: " + file);
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment != null) {
+            segment.close();
+            index.close();
+            segment = null;
+            index = null;
+        }
+    }
+
+    /**
+     * Escribe el último lote, espera a que termine y cierra el segmento actual.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        writer.execute(this::flush);
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(60, TimeUnit.SECONDS)) {
+                throw new IOException("El escritor de segmentos no terminó");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido cerrando el archivo de salidas");
+        }
+        closeSegment();
+    }
+
+    /**
+     * Salida esperando a que se escriba su lote.
+     */
+    private static class Pending {
+        final String name;
+        final byte[] nameBytes;
+        final byte[] data;
+        final int crc;
+        final long enqueuedNanos = System.nanoTime();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Pending(String name, byte[] data) {
+            this.name = name;
+            this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            this.data = data;
+            CRC32 crc32 = new CRC32();
+            crc32.update(data);
+            this.crc = (int) crc32.getValue();
+        }
+
+        long recordSize() {
+            return 4 + 2 + nameBytes.length + 4 + 4 + data.length;
+        }
+    }
+}
@@ -4,12 +4,14 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * UrlReader: clase responsable de leer un archivo de texto que contiene URLs de imágenes
  * (una URL por línea) y devolverlas como una lista.
  *
  * Esta clase facilita la separación de la lógica de I/ de la lógica de procesamiento.
+ * Para listas grandes conviene {@link UrlSource}, que lee el archivo de forma perezosa.
  */
 public class UrlReader {
 
@@ -23,12 +25,14 @@ public class UrlReader {
      */
     public static List<String> readUrls(Path file) throws IOException {
         // Files.lines abre un Stream<String> que lee el contenido del archivo línea a línea.
-        // El Stream se cierra automáticamente al terminar la operación.
-        return Files.lines(file)
-                // Eliminar líneas en blanco o que solo contengan espacios
-                // devuelve true si la línea NO está en blanco (tiene algún carácter distinto de espacio).
-                .filter(line -> !line.isBlank())
-                // Recolectar el Stream en una List de Strings
-                .toList();
+        // El Stream mantiene el archivo abierto: try-with-resources lo cierra al terminar.
+        try (Stream<String> lines = Files.lines(file)) {
+            return lines
+                    // Eliminar líneas en blanco o que solo contengan espacios
+                    // devuelve true si la línea NO está en blanco (tiene algún carácter distinto de espacio).
+                    .filter(line -> !line.isBlank())
+                    // Recolectar el Stream en una List de Strings
+                    .toList();
+        }
     }
 }
\ No newline at end of file
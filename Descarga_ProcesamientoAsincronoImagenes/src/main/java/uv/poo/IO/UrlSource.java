@@ -0,0 +1,126 @@
+package uv.poo.IO;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * UrlSource: lee las URLs de un archivo (una por línea) de forma perezosa.
+ *
+ * A diferencia de {@link UrlReader#readUrls(Path)}, no carga el archivo en memoria: cada llamada a
+ * {@link #next()} lee sólo hasta la siguiente URL, así que la primera descarga puede empezar en
+ * cuanto se lee la primera línea y quien consume marca el ritmo de lectura (si la etapa de
+ * descargas está llena, el consumidor se bloquea y el archivo deja de leerse).
+ *
+ * Las líneas en blanco se ignoran y, opcionalmente, también las URLs repetidas. Para detectar
+ * repeticiones se guarda sólo un hash de 64 bits por URL distinta (ver {@link LongHashSet}),
+ * no el texto; con millones de URLs la probabilidad de que dos distintas coincidan es despreciable.
+ */
+public class UrlSource implements Iterator<String>, Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BufferedReader reader;
+    private final LongHashSet seen;
+    private String nextUrl;
+    private long duplicates;
+
+    private UrlSource(BufferedReader reader, boolean dedup) {
+        this.reader = reader;
+        this.seen = dedup ? new LongHashSet(1024) : null;
+    }
+
+    /**
+     * Abre el archivo descartando URLs repetidas.
+     *
+     * @param file archivo de texto con una URL por línea
+     * @return fuente de URLs; debe cerrarse al terminar
+     * @throws IOException si no se puede abrir el archivo
+     */
+    public static UrlSource open(Path file) throws IOException {
+        return open(file, true);
+    }
+
+    /**
+     * Abre el archivo.
+     *
+     * @param file  archivo de texto con una URL por línea
+     * @param dedup true para descartar las URLs ya vistas
+     * @return fuente de URLs; debe cerrarse al terminar
+     * @throws IOException si no se puede abrir el archivo
+     */
+    public static UrlSource open(Path file, boolean dedup) throws IOException {
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+        return new UrlSource(reader, dedup);
+    }
+
+    /**
+     * @throws UncheckedIOException si falla la lectura del archivo
+     */
+    @Override
+    public boolean hasNext() {
+        if (nextUrl != null) {
+            return true;
+        }
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String url = line.strip();
+                if (url.isEmpty()) {
+                    continue;
+                }
+                if (seen != null && !seen.add(hash64(url))) {
+                    duplicates++;
+                    continue;
+                }
+                nextUrl = url;
+                return true;
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String url = nextUrl;
+        nextUrl = null;
+        return url;
+    }
+
+    /**
+     * @return URLs repetidas descartadas hasta ahora
+     */
+    public long duplicates() {
+        return duplicates;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Hash FNV-1a de 64 bits de los caracteres de la URL.
+     */
+    static long hash64(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,100 @@
+package uv.poo.Metrics;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * InMemoryMetrics: implementación de {@link PipelineMetrics} que acumula en memoria un
+ * histograma de latencias y un contador de errores por etapa, los bytes de entrada y salida y
+ * las imágenes terminadas, para resumirlos con {@link #summary(long)}.
+ */
+public class InMemoryMetrics implements PipelineMetrics {
+
+    private final Map<Stage, LatencyHistogram> latencies = new EnumMap<>(Stage.class);
+    private final Map<Stage, LongAdder> errors = new EnumMap<>(Stage.class);
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder images = new LongAdder();
+
+    public InMemoryMetrics() {
+        // Se crean todas las entradas de antemano: después los mapas sólo se leen
+        for (Stage stage : Stage.values()) {
+            latencies.put(stage, new LatencyHistogram());
+            errors.put(stage, new LongAdder());
+        }
+    }
+
+    @Override
+    public void recordLatency(Stage stage, long nanos) {
+        latencies.get(stage).record(nanos);
+    }
+
+    @Override
+    public void recordError(Stage stage) {
+        errors.get(stage).increment();
+    }
+
+    @Override
+    public void addBytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    @Override
+    public void addBytesOut(long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    @Override
+    public void imageCompleted() {
+        images.increment();
+    }
+
+    /**
+     * @param stage etapa
+     * @return histograma de latencias de la etapa
+     */
+    public LatencyHistogram latency(Stage stage) {
+        return latencies.get(stage);
+    }
+
+    /**
+     * @param stage etapa
+     * @return errores registrados en la etapa
+     */
+    public long errors(Stage stage) {
+        return errors.get(stage).sum();
+    }
+
+    /**
+     * @return imágenes de origen terminadas
+     */
+    public long images() {
+        return images.sum();
+    }
+
+    /**
+     * Resumen legible: una línea por etapa con número de operaciones, errores y latencias
+     * (media, p50, p99, máx.) y una línea de totales con el rendimiento.
+     *
+     * @param elapsedNanos tiempo transcurrido desde el inicio, para calcular imágenes/s y MB/s
+     * @return resumen en varias líneas
+     */
+    public String summary(long elapsedNanos) {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram h = latencies.get(stage);
+            sb.append(String.format(Locale.ROOT,
+                    "  %-8s %6d ops %4d errores  media %8.1f ms  p50 %8.1f ms  p99 %8.1f ms  máx %8.1f ms%n",
+                    stage, h.count(), errors.get(stage).sum(), h.meanMillis(),
+                    h.percentileMillis(0.50), h.percentileMillis(0.99), h.maxMillis()));
+        }
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        sb.append(String.format(Locale.ROOT,
+                "  %d imágenes en %.1f s (%.2f imágenes/s), %.1f MB descargados, %.1f MB escritos (%.1f MB/s)",
+                images.sum(), seconds, images.sum() / seconds,
+                bytesIn.sum() / 1e6, bytesOut.sum() / 1e6, bytesOut.sum() / 1e6 / seconds));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package uv.poo.Metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram: histograma de latencias con cubetas de potencias de 2 microsegundos.
+ *
+ * Registrar una muestra es un incremento atómico sin bloqueos, por lo que puede usarse desde
+ * todos los hilos del pipeline a la vez. Los percentiles se estiman con el límite superior de la
+ * cubeta, es decir, con un error de como mucho el doble.
+ */
+public class LatencyHistogram {
+
+    /** Cubeta i: latencias en [2^(i-1), 2^i) µs; la última acumula todo lo que pase de ~36 min. */
+    private static final int BUCKETS = 32;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Registra una muestra.
+     *
+     * @param nanos duración en nanosegundos
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        counts.incrementAndGet(bucket);
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * @return número de muestras
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return latencia media en milisegundos (0 si no hay muestras)
+     */
+    public double meanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / 1e6 / n;
+    }
+
+    /**
+     * @return latencia máxima en milisegundos
+     */
+    public double maxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    /**
+     * Estima un percentil.
+     *
+     * @param p percentil entre 0 y 1 (p.ej. 0.99)
+     * @return límite superior, en milisegundos, de la cubeta que contiene el percentil
+     */
+    public double percentileMillis(double p) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(p * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                // No se informa más que el máximo observado
+                return Math.min((1L << i) / 1000.0, maxMillis());
+            }
+        }
+        return maxMillis();
+    }
+}
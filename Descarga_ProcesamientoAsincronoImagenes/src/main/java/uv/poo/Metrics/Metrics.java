@@ -0,0 +1,32 @@
+package uv.poo.Metrics;
+
+/**
+ * Metrics: punto de acceso a la implementación de {@link PipelineMetrics} en uso.
+ *
+ * Las etapas llaman a {@link #get()} en cada medición; por defecto se usa
+ * {@link PipelineMetrics#NOOP}, y {@link #set(PipelineMetrics)} permite conectar otra
+ * (p.ej. {@link InMemoryMetrics} o un adaptador hacia un sistema externo).
+ */
+public final class Metrics {
+
+    private static volatile PipelineMetrics current = PipelineMetrics.NOOP;
+
+    private Metrics() {
+    }
+
+    /**
+     * @return implementación en uso
+     */
+    public static PipelineMetrics get() {
+        return current;
+    }
+
+    /**
+     * Sustituye la implementación en uso.
+     *
+     * @param metrics nueva implementación; null vuelve a {@link PipelineMetrics#NOOP}
+     */
+    public static void set(PipelineMetrics metrics) {
+        current = metrics != null ? metrics : PipelineMetrics.NOOP;
+    }
+}
@@ -0,0 +1,98 @@
+package uv.poo.Metrics;
+
+import uv.poo.Config.BoundedVirtualExecutor;
+import uv.poo.Config.ExecutorConfig;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MetricsReporter: imprime por consola el resumen de un {@link InMemoryMetrics} junto con el
+ * estado de los pools de cada etapa (tareas en cola e hilos activos).
+ *
+ * Con un intervalo mayor que 0 informa periódicamente durante la ejecución (útil en ejecuciones
+ * largas para ver qué etapa se está atrasando); {@link #close()} imprime siempre el resumen final.
+ */
+public class MetricsReporter implements AutoCloseable {
+
+    private final InMemoryMetrics metrics;
+    private final ExecutorConfig executors;
+    private final long startNanos = System.nanoTime();
+    private final ScheduledExecutorService timer;
+
+    private MetricsReporter(InMemoryMetrics metrics, ExecutorConfig executors, ScheduledExecutorService timer) {
+        this.metrics = metrics;
+        this.executors = executors;
+        this.timer = timer;
+    }
+
+    /**
+     * Crea el reporter y, si hay intervalo, programa los informes periódicos.
+     *
+     * @param metrics         métricas a resumir
+     * @param executors       pools cuyo estado se informa
+     * @param intervalSeconds segundos entre informes periódicos; 0 sólo informa al cerrar
+     * @return reporter en marcha; hay que cerrarlo para el resumen final
+     */
+    public static MetricsReporter start(InMemoryMetrics metrics, ExecutorConfig executors, long intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            return new MetricsReporter(metrics, executors, null);
+        }
+        // Hilo daemon: no impide que la JVM termine si alguien olvida cerrar el reporter
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        MetricsReporter reporter = new MetricsReporter(metrics, executors, timer);
+        timer.scheduleAtFixedRate(() -> System.out.println(reporter.report("Métricas (en curso)")),
+                intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        return reporter;
+    }
+
+    /**
+     * Construye el informe: estado de los pools, latencias por etapa y totales.
+     *
+     * @param title título del informe
+     * @return informe en varias líneas
+     */
+    public String report(String title) {
+        StringBuilder sb = new StringBuilder(title).append(":\n");
+        sb.append("  pools: ")
+                .append(poolStatus("download", executors.downloadPool)).append(", ")
+                .append(poolStatus("decode", executors.decodePool)).append(", ")
+                .append(poolStatus("filter", executors.filterPool)).append(", ")
+                .append(poolStatus("encode", executors.encodePool)).append(", ")
+                .append(poolStatus("io", executors.ioPool)).append('\n');
+        sb.append(metrics.summary(System.nanoTime() - startNanos));
+        return sb.toString();
+    }
+
+    /**
+     * "nombre activos/cola" de un pool; las descargas no tienen cola, sólo tareas en curso.
+     */
+    private static String poolStatus(String name, ExecutorService pool) {
+        if (pool instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor tpe = (ThreadPoolExecutor) pool;
+            return name + " " + tpe.getActiveCount() + " activos/" + tpe.getQueue().size() + " en cola";
+        }
+        if (pool instanceof BoundedVirtualExecutor) {
+            return name + " " + ((BoundedVirtualExecutor) pool).inFlight() + " en curso";
+        }
+        return name + " ?";
+    }
+
+    /**
+     * Detiene los informes periódicos e imprime el resumen final.
+     */
+    @Override
+    public void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+        System.out.println(report("Métricas"));
+    }
+}
@@ -0,0 +1,70 @@
+package uv.poo.Metrics;
+
+/**
+ * PipelineMetrics: interfaz de instrumentación del pipeline.
+ *
+ * Las etapas informan de cuánto tardó cada operación, de los errores y de los bytes que entran
+ * (descargados) y salen (escritos). La implementación en uso se obtiene con {@link Metrics#get()};
+ * por defecto es {@link #NOOP}, que no hace nada, de modo que medir es opcional.
+ */
+public interface PipelineMetrics {
+
+    /**
+     * Implementación vacía: descarta todas las mediciones.
+     */
+    PipelineMetrics NOOP = new PipelineMetrics() {
+        @Override
+        public void recordLatency(Stage stage, long nanos) {
+        }
+
+        @Override
+        public void recordError(Stage stage) {
+        }
+
+        @Override
+        public void addBytesIn(long bytes) {
+        }
+
+        @Override
+        public void addBytesOut(long bytes) {
+        }
+
+        @Override
+        public void imageCompleted() {
+        }
+    };
+
+    /**
+     * Registra la duración de una operación de una etapa.
+     *
+     * @param stage etapa
+     * @param nanos duración en nanosegundos
+     */
+    void recordLatency(Stage stage, long nanos);
+
+    /**
+     * Registra una operación fallida de una etapa.
+     *
+     * @param stage etapa
+     */
+    void recordError(Stage stage);
+
+    /**
+     * Suma bytes descargados (de red o de caché).
+     *
+     * @param bytes número de bytes
+     */
+    void addBytesIn(long bytes);
+
+    /**
+     * Suma bytes escritos en disco.
+     *
+     * @param bytes número de bytes
+     */
+    void addBytesOut(long bytes);
+
+    /**
+     * Indica que una imagen de origen terminó de filtrarse y codificarse.
+     */
+    void imageCompleted();
+}
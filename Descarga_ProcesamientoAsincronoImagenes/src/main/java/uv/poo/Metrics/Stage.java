@@ -0,0 +1,19 @@
+package uv.poo.Metrics;
+
+/**
+ * Etapas del pipeline que se miden por separado.
+ */
+public enum Stage {
+    /** Descarga de los bytes codificados (red o caché). */
+    DOWNLOAD,
+    /** Decodificación a BufferedImage. */
+    DECODE,
+    /** Aplicación de todos los filtros a una imagen. */
+    FILTER,
+    /** Generación de los niveles reducidos de una salida filtrada (pirámide). */
+    PYRAMID,
+    /** Codificación de una salida filtrada. */
+    ENCODE,
+    /** Escritura de una salida en disco. */
+    WRITE
+}
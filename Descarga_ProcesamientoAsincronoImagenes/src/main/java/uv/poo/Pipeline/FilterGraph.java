@@ -0,0 +1,301 @@
+package uv.poo.Pipeline;
+
+import uv.poo.Filter.BlackAndWhiteFilter;
+import uv.poo.Filter.BlurFilter;
+import uv.poo.Filter.EdgeDetectFilter;
+import uv.poo.Filter.FilterChain;
+import uv.poo.Filter.ImageFilter;
+import uv.poo.Filter.PointFilter;
+import uv.poo.Filter.SepiaFilter;
+import uv.poo.Filter.SharpenFilter;
+import uv.poo.IO.EncodingProfile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * FilterGraph: salidas del pipeline descritas en un archivo de texto (por defecto filtros.conf),
+ * para cambiarlas sin recompilar.
+ *
+ * Cada línea define una salida como una cadena de pasos separados por "|", con un formato propio
+ * opcional tras "->":
+ * <pre>
+ * # comentario
+ * sepia     = sepia
+ * miniatura = resize(640x480) | sharpen | sepia -> jpeg
+ * let nitido = resize(1280x1280) | sharpen
+ * nitido_bw = nitido | bw
+ * nitido_sp = nitido | sepia | contrast(1.2) -> jpeg-fast
+ * </pre>
+ * Las líneas "let" definen cadenas auxiliares que no generan salida; el nombre de una cadena
+ * anterior (auxiliar o no) puede usarse como paso y equivale a sus pasos. Los pasos disponibles son
+ * sepia, bw, sharpen, edges, blur, blur(radio), blur(radio, sigma), brightness(delta),
+ * contrast(factor), gamma(gamma), invert y resize(ANCHOxALTO); resize sólo puede ir al principio y
+ * se resuelve al decodificar (ver {@link OutputSpec#fit}). El formato es el nombre de un
+ * {@link EncodingProfile}; sin él, la salida usa el del pipeline.
+ *
+ * El mismo paso con los mismos argumentos es una única instancia compartida por todas las
+ * cadenas, así que {@link uv.poo.Filter.FilterPlan} reconoce los prefijos comunes (en el ejemplo,
+ * resize + sharpen se calcula una vez para nitido_bw y nitido_sp).
+ */
+public class FilterGraph {
+
+    /** Salidas de siempre: sepia, blanco y negro y enfoque a tamaño completo. */
+    public static final String DEFAULT = "sepia   = sepia\nbw      = bw\nsharpen = sharpen\n";
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]+");
+    private static final Pattern STEP = Pattern.compile("([A-Za-z][A-Za-z0-9_-]*)\\s*(?:\\((.*)\\))?");
+    private static final Pattern BOX = Pattern.compile("(\\d+)\\s*x\\s*(\\d+)");
+
+    private final List<OutputSpec> outputs;
+
+    private FilterGraph(List<OutputSpec> outputs) {
+        this.outputs = outputs;
+    }
+
+    /**
+     * @return salidas definidas, en el orden del archivo
+     */
+    public OutputSpec[] outputs() {
+        return outputs.toArray(new OutputSpec[0]);
+    }
+
+    /**
+     * @return grafo con las salidas de {@link #DEFAULT}
+     */
+    public static FilterGraph defaults() {
+        return parse(DEFAULT, "predeterminado");
+    }
+
+    /**
+     * Lee un grafo de un archivo UTF-8.
+     *
+     * @param file archivo con la definición
+     * @return grafo
+     * @throws IOException              si no se puede leer
+     * @throws IllegalArgumentException si la definición no es válida (con el número de línea)
+     */
+    public static FilterGraph load(Path file) throws IOException {
+        return parse(Files.readString(file, StandardCharsets.UTF_8), file.getFileName().toString());
+    }
+
+    /**
+     * Interpreta una definición.
+     *
+     * @param text   definición, una salida por línea
+     * @param source nombre con el que se citan los errores (p.ej. el del archivo)
+     * @return grafo
+     * @throws IllegalArgumentException si la definición no es válida (con el número de línea)
+     */
+    public static FilterGraph parse(String text, String source) {
+        Parser parser = new Parser();
+        String[] lines = text.split("\r?\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            try {
+                parser.line(lines[i]);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(source + ":" + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        if (parser.outputs.isEmpty()) {
+            throw new IllegalArgumentException(source + ": no define ninguna salida");
+        }
+        return new FilterGraph(parser.outputs);
+    }
+
+    /**
+     * Estado de la lectura: cadenas ya definidas e instancias de cada paso.
+     */
+    private static final class Parser {
+        final List<OutputSpec> outputs = new ArrayList<>();
+        final Map<String, Chain> chains = new HashMap<>();
+        final Map<String, ImageFilter> instances = new LinkedHashMap<>();
+
+        void line(String raw) {
+            int comment = raw.indexOf('#');
+            String line = (comment >= 0 ? raw.substring(0, comment) : raw).trim();
+            if (line.isEmpty()) {
+                return;
+            }
+            boolean auxiliary = line.startsWith("let ");
+            if (auxiliary) {
+                line = line.substring(4).trim();
+            }
+            int eq = line.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("se esperaba 'nombre = pasos'");
+            }
+            String name = line.substring(0, eq).trim();
+            if (!NAME.matcher(name).matches()) {
+                throw new IllegalArgumentException("nombre inválido '" + name + "' (sólo letras, dígitos, '_' y '-')");
+            }
+            if (chains.containsKey(name)) {
+                throw new IllegalArgumentException("'" + name + "' ya está definido");
+            }
+
+            String body = line.substring(eq + 1);
+            EncodingProfile profile = null;
+            int arrow = body.lastIndexOf("->");
+            if (arrow >= 0) {
+                if (auxiliary) {
+                    throw new IllegalArgumentException("una definición 'let' no tiene formato");
+                }
+                profile = EncodingProfile.named(body.substring(arrow + 2));
+                body = body.substring(0, arrow);
+            }
+
+            Chain chain = new Chain();
+            for (String step : body.split("\\|", -1)) {
+                step(chain, step.trim());
+            }
+            chains.put(name, chain);
+            if (!auxiliary) {
+                FilterChain filter = new FilterChain(name, chain.version(), chain.steps);
+                OutputSpec spec = chain.box == null ? OutputSpec.full(filter)
+                        : OutputSpec.fit(filter, chain.box[0], chain.box[1]);
+                outputs.add(spec.withProfile(profile));
+            }
+        }
+
+        /**
+         * Añade un paso a la cadena: una cadena anterior, resize o un filtro.
+         */
+        void step(Chain chain, String text) {
+            if (text.isEmpty()) {
+                throw new IllegalArgumentException("paso vacío");
+            }
+            Matcher m = STEP.matcher(text);
+            if (!m.matches()) {
+                throw new IllegalArgumentException("paso inválido '" + text + "'");
+            }
+            String id = m.group(1);
+            String[] args = m.group(2) == null ? new String[0] : m.group(2).split(",", -1);
+            for (int i = 0; i < args.length; i++) {
+                args[i] = args[i].trim();
+            }
+
+            Chain named = chains.get(id);
+            if (named != null && m.group(2) == null) {
+                if (named.box != null) {
+                    resize(chain, named.box, id);
+                }
+                chain.steps.addAll(named.steps);
+                chain.keys.addAll(named.keys);
+                return;
+            }
+
+            String key = id.toLowerCase(Locale.ROOT);
+            if (key.equals("resize")) {
+                expect(key, args, 1, 1);
+                Matcher box = BOX.matcher(args[0]);
+                if (!box.matches() || Integer.parseInt(box.group(1)) == 0 || Integer.parseInt(box.group(2)) == 0) {
+                    throw new IllegalArgumentException("tamaño inválido en resize: '" + args[0] + "'");
+                }
+                resize(chain, new int[]{Integer.parseInt(box.group(1)), Integer.parseInt(box.group(2))}, text);
+                return;
+            }
+            String canonical = args.length == 0 ? key : key + "(" + String.join(",", args) + ")";
+            ImageFilter filter = instances.get(canonical);
+            if (filter == null) {
+                filter = create(key, args);
+                instances.put(canonical, filter);
+            }
+            chain.steps.add(filter);
+            chain.keys.add(canonical);
+        }
+
+        static void resize(Chain chain, int[] box, String text) {
+            if (chain.box != null || !chain.steps.isEmpty()) {
+                throw new IllegalArgumentException("'" + text + "' cambia el tamaño: sólo puede ir al principio de la cadena");
+            }
+            chain.box = box;
+        }
+
+        /**
+         * Crea el filtro de un paso.
+         */
+        static ImageFilter create(String key, String[] args) {
+            try {
+                switch (key) {
+                    case "sepia":
+                        expect(key, args, 0, 0);
+                        return new SepiaFilter();
+                    case "bw":
+                        expect(key, args, 0, 0);
+                        return new BlackAndWhiteFilter();
+                    case "sharpen":
+                        expect(key, args, 0, 0);
+                        return new SharpenFilter();
+                    case "edges":
+                        expect(key, args, 0, 0);
+                        return new EdgeDetectFilter();
+                    case "invert":
+                        expect(key, args, 0, 0);
+                        return PointFilter.invert();
+                    case "blur":
+                        expect(key, args, 0, 2);
+                        if (args.length == 0) {
+                            return new BlurFilter();
+                        }
+                        int radius = Integer.parseInt(args[0]);
+                        return new BlurFilter(radius, args.length == 2 ? Double.parseDouble(args[1]) : radius / 2.0);
+                    case "brightness":
+                        expect(key, args, 1, 1);
+                        return PointFilter.brightness(Integer.parseInt(args[0]));
+                    case "contrast":
+                        expect(key, args, 1, 1);
+                        return PointFilter.contrast(Double.parseDouble(args[0]));
+                    case "gamma":
+                        expect(key, args, 1, 1);
+                        return PointFilter.gamma(Double.parseDouble(args[0]));
+                    default:
+                        throw new IllegalArgumentException("filtro o cadena desconocida '" + key + "'");
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("argumento no numérico en " + key + ": " + e.getMessage());
+            }
+        }
+
+        static void expect(String key, String[] args, int min, int max) {
+            if (args.length < min || args.length > max) {
+                String count = min == max ? String.valueOf(min) : min + " a " + max;
+                throw new IllegalArgumentException(key + " espera " + count + " argumentos, no " + args.length);
+            }
+        }
+    }
+
+    /**
+     * Cadena en construcción: caja de resize (o null), pasos y su forma canónica.
+     */
+    private static final class Chain {
+        int[] box;
+        final List<ImageFilter> steps = new ArrayList<>();
+        final List<String> keys = new ArrayList<>();
+
+        /**
+         * Versión de la salida para el modo incremental: cambia si cambia cualquier paso o sus
+         * argumentos. Una cadena de un solo filtro sin argumentos conserva la versión del filtro, así
+         * que las salidas de siempre siguen al día.
+         */
+        String version() {
+            if (steps.size() == 1 && keys.get(0).equals(steps.get(0).name())) {
+                return steps.get(0).version();
+            }
+            List<String> parts = new ArrayList<>();
+            for (int i = 0; i < steps.size(); i++) {
+                parts.add(keys.get(i) + "@" + steps.get(i).version());
+            }
+            return parts.isEmpty() ? "1" : String.join("|", parts);
+        }
+    }
+}
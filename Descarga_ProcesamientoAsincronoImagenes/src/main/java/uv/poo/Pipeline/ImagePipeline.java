@@ -0,0 +1,743 @@
+package uv.poo.Pipeline;
+
+import uv.poo.Config.ExecutorConfig;
+import uv.poo.Config.PipelineSettings;
+import uv.poo.Download.DownloadCache;
+import uv.poo.Download.DownloadPolicy;
+import uv.poo.Download.HttpDownloader;
+import uv.poo.Download.ImageDownloader;
+import uv.poo.Filter.FilterPlan;
+import uv.poo.Filter.ImageFilter;
+import uv.poo.Filter.PyramidGenerator;
+import uv.poo.Filter.RasterPool;
+import uv.poo.Filter.SourceImage;
+import uv.poo.IO.EncodingProfile;
+import uv.poo.IO.DirectorySink;
+import uv.poo.IO.ImageDecoder;
+import uv.poo.IO.ImageIODecoder;
+import uv.poo.IO.ImageWriter;
+import uv.poo.IO.JobJournal;
+import uv.poo.IO.OutputManifest;
+import uv.poo.IO.OutputSink;
+import uv.poo.IO.SegmentArchiveSink;
+import uv.poo.Metrics.Metrics;
+import uv.poo.Task.FilterTask;
+import uv.poo.Task.ImageJob;
+import uv.poo.Task.StripTask;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ImagePipeline: encadena las etapas descarga → decodificación → filtrado → codificación → escritura
+ * sobre los pools acotados de {@link ExecutorConfig}.
+ *
+ * Cada etapa sólo envía trabajo a la siguiente, por lo que una etapa lenta llena su cola y
+ * frena a la anterior (backpressure) hasta llegar al hilo que llama a {@link #submit(String)}.
+ * Además, un semáforo limita el número de imágenes decodificadas a resolución completa que
+ * están en memoria: el permiso se toma antes de decodificar y se devuelve cuando todas las
+ * salidas filtradas de esa imagen ya fueron codificadas.
+ *
+ * Cada salida es un {@link OutputSpec}: un filtro (o una cadena de filtros, ver {@link FilterGraph}),
+ * opcionalmente un tamaño máximo y un formato propio. Las salidas reducidas se filtran sobre una
+ * decodificación submuestreada, sin pasar por la resolución completa. Las salidas del mismo tamaño
+ * se ejecutan con un {@link FilterPlan}, compilado una sola vez y compartido entre imágenes.
+ *
+ * Las etapas se encadenan con CompletableFuture: {@link #submit(String)} devuelve un futuro que se
+ * completa con el {@link ImageResult} de la URL cuando todas sus salidas quedaron escritas (o
+ * fallaron), y {@link #drain()} espera a que terminen todas las URLs enviadas. Así los pools se
+ * apagan cuando ya no queda trabajo, sin perder salidas ni depender de tiempos de espera.
+ *
+ * En modo incremental (settings.incremental) un {@link OutputManifest} permite saltarse la
+ * decodificación y el filtrado de las salidas que ya están al día. Los niveles de pirámide
+ * (settings.pyramid) cuentan como parte de su salida: se registran con ella en el manifiesto y en
+ * la cola de trabajos, y si faltan o cambian los configurados la salida se regenera.
+ */
+public class ImagePipeline {
+
+    private final ExecutorConfig executors;
+    private final List<OutputSpec> outputs;
+    private final EncodingProfile profile;
+    private final HttpDownloader downloader;
+    private final ImageDownloader images;
+    private final RasterPool rasterPool;
+    private final OutputSink sink;
+    private final PyramidGenerator pyramid;
+
+    /**
+     * Plan compilado de cada conjunto de salidas de un mismo tamaño. Normalmente hay uno por
+     * tamaño; en modo incremental o con cola de trabajos, también los de las salidas que quedan
+     * pendientes en alguna URL.
+     */
+    private final Map<List<ImageFilter>, FilterPlan> plans = new ConcurrentHashMap<>();
+
+    /**
+     * Manifiesto de salidas del modo incremental, o null si está desactivado.
+     */
+    private final OutputManifest manifest;
+
+    /**
+     * Cola de trabajos persistente, o null si está desactivada.
+     */
+    private final JobJournal journal;
+
+    /**
+     * Permisos de imágenes residentes en memoria (settings.maxImagesInFlight).
+     */
+    private final Semaphore imageSlots;
+
+    /**
+     * Resultado de cada URL terminada.
+     */
+    private final RunReport report;
+
+    /**
+     * URLs enviadas que todavía no han terminado; {@link #drain()} espera a que llegue a 0.
+     */
+    private final AtomicLong inFlight = new AtomicLong();
+    private final Object drained = new Object();
+
+    /**
+     * Crea el pipeline.
+     *
+     * @param executors pools de cada etapa
+     * @param filters   filtros a aplicar a cada imagen a tamaño completo (instancias compartidas, sin estado)
+     * @param profile   perfil de codificación de las salidas
+     * @throws IOException si no se puede abrir el manifiesto (modo incremental), el informe o el destino
+     */
+    public ImagePipeline(ExecutorConfig executors, ImageFilter[] filters, EncodingProfile profile) throws IOException {
+        this(executors, fullSize(filters), profile);
+    }
+
+    /**
+     * Crea el pipeline con un destino propio para las salidas.
+     *
+     * @param executors pools de cada etapa
+     * @param filters   filtros a aplicar a cada imagen a tamaño completo (instancias compartidas, sin estado)
+     * @param profile   perfil de codificación de las salidas
+     * @param sink      destino de las salidas; el pipeline lo cierra en {@link #finish()}
+     * @throws IOException si no se puede abrir el manifiesto (modo incremental) o el informe
+     */
+    public ImagePipeline(ExecutorConfig executors, ImageFilter[] filters, EncodingProfile profile, OutputSink sink)
+            throws IOException {
+        this(executors, fullSize(filters), profile, sink);
+    }
+
+    /**
+     * Crea el pipeline con una salida por cada especificación (filtro y tamaño máximo).
+     *
+     * @param executors pools de cada etapa
+     * @param outputs   salidas a generar por cada imagen
+     * @param profile   perfil de codificación de las salidas
+     * @throws IOException si no se puede abrir el manifiesto (modo incremental), el informe o el destino
+     */
+    public ImagePipeline(ExecutorConfig executors, OutputSpec[] outputs, EncodingProfile profile) throws IOException {
+        this(executors, outputs, profile, openSink(executors.settings));
+    }
+
+    /**
+     * Crea el pipeline con una salida por cada especificación y un destino propio para las salidas.
+     * El manifiesto del modo incremental y los temporales del modo por franjas van al directorio
+     * del destino.
+     *
+     * @param executors pools de cada etapa
+     * @param outputs   salidas a generar por cada imagen
+     * @param profile   perfil de codificación de las salidas
+     * @param sink      destino de las salidas; el pipeline lo cierra en {@link #finish()}
+     * @throws IOException si no se puede abrir el manifiesto (modo incremental) o el informe
+     */
+    public ImagePipeline(ExecutorConfig executors, OutputSpec[] outputs, EncodingProfile profile, OutputSink sink)
+            throws IOException {
+        this.executors  = executors;
+        this.outputs    = List.of(outputs);
+        this.profile    = profile;
+        this.imageSlots = new Semaphore(executors.settings.maxImagesInFlight);
+        this.downloader = new HttpDownloader(executors.settings.downloadPerHost, downloadPolicy(executors.settings));
+        this.downloader.setCache(openCache(executors.settings));
+        this.rasterPool = new RasterPool(executors.settings.rasterPoolMaxBytes);
+        this.images     = new ImageDownloader(downloader, ImageDecoder.named(executors.settings.decoder, rasterPool),
+                rasterPool);
+        this.sink       = sink;
+        this.manifest   = executors.settings.incremental ? OutputManifest.open(sink.dir()) : null;
+        this.pyramid    = PyramidGenerator.parse(executors.settings.pyramid);
+        String journalDir = executors.settings.journalDir;
+        this.journal    = journalDir == null || journalDir.isBlank() ? null : JobJournal.open(Path.of(journalDir),
+                executors.settings.journalLeaseMillis, executors.settings.journalAttempts);
+        String reportFile = executors.settings.reportFile;
+        this.report     = new RunReport(reportFile == null || reportFile.isBlank() ? null : Path.of(reportFile));
+        for (List<OutputSpec> group : groupBySize(this.outputs)) {
+            plan(group);
+        }
+    }
+
+    private static OutputSpec[] fullSize(ImageFilter[] filters) {
+        OutputSpec[] specs = new OutputSpec[filters.length];
+        for (int i = 0; i < filters.length; i++) {
+            specs[i] = OutputSpec.full(filters[i]);
+        }
+        return specs;
+    }
+
+    /**
+     * Política de tiempos límite, reintentos, respaldo y cortocircuito de las descargas.
+     */
+    private static DownloadPolicy downloadPolicy(PipelineSettings settings) {
+        DownloadPolicy policy = new DownloadPolicy();
+        policy.requestTimeoutMillis = settings.downloadTimeoutMillis;
+        policy.connectTimeoutMillis = settings.downloadConnectTimeoutMillis;
+        policy.maxAttempts          = settings.downloadAttempts;
+        policy.hedgeDelayMillis     = settings.downloadHedgeMillis;
+        policy.breakerFailures      = settings.downloadBreakerFailures;
+        return policy;
+    }
+
+    /**
+     * Abre el destino de las salidas en el directorio por defecto: un archivo por salida o
+     * segmentos agrupados por lotes.
+     */
+    private static OutputSink openSink(PipelineSettings settings) throws IOException {
+        if ("archive".equalsIgnoreCase(settings.output)) {
+            if (settings.incremental) {
+                System.err.println("Aviso: el modo incremental no ve las salidas de los segmentos; se regenerarán todas");
+            }
+            return new SegmentArchiveSink(ImageWriter.outputDir(), settings.archiveBatchBytes,
+                    settings.archiveLingerMillis, settings.archiveSegmentBytes);
+        }
+        return new DirectorySink(ImageWriter.outputDir());
+    }
+
+    /**
+     * Abre la caché de descargas configurada; si está desactivada o no se puede abrir,
+     * se continúa sin caché.
+     */
+    private static DownloadCache openCache(PipelineSettings settings) {
+        if (settings.cacheDir == null || settings.cacheDir.isBlank()) {
+            return null;
+        }
+        try {
+            return new DownloadCache(Path.of(settings.cacheDir), settings.cacheMaxBytes, settings.cacheMinFreshSeconds);
+        } catch (IOException e) {
+            System.err.println("Aviso: caché de descargas desactivada: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Motor de descargas (para consultar sus estadísticas).
+     */
+    public HttpDownloader downloader() {
+        return downloader;
+    }
+
+    /**
+     * Reserva de rasters de este pipeline (para consultar sus estadísticas).
+     */
+    public RasterPool rasterPool() {
+        return rasterPool;
+    }
+
+    /**
+     * Caché de descargas en uso, o null si está desactivada.
+     */
+    public DownloadCache cache() {
+        return downloader.cache();
+    }
+
+    /**
+     * Cola de trabajos persistente, o null si está desactivada.
+     */
+    public JobJournal journal() {
+        return journal;
+    }
+
+    /**
+     * Describe el plan de filtros compilado para cada tamaño de salida (ver {@link FilterPlan#describe()}).
+     */
+    public String describePlan() {
+        StringBuilder sb = new StringBuilder("Plan de filtros:\n");
+        for (List<OutputSpec> group : groupBySize(outputs)) {
+            OutputSpec first = group.get(0);
+            sb.append(first.isFullSize() ? "tamaño completo" : first.maxWidth + "x" + first.maxHeight).append(":\n");
+            for (String line : plan(group).describe().split("\n")) {
+                sb.append("  ").append(line).append('\n');
+            }
+        }
+        return sb.toString().stripTrailing();
+    }
+
+    /**
+     * Plan de un grupo de salidas del mismo tamaño; se compila la primera vez que se pide.
+     */
+    private FilterPlan plan(List<OutputSpec> group) {
+        List<ImageFilter> filters = new ArrayList<>(group.size());
+        for (OutputSpec output : group) {
+            filters.add(output.filter);
+        }
+        return plans.computeIfAbsent(filters, FilterPlan::compile);
+    }
+
+    /**
+     * Perfil de codificación de una salida: el suyo o el del pipeline.
+     */
+    private EncodingProfile profileOf(OutputSpec output) {
+        return output.profile != null ? output.profile : profile;
+    }
+
+    /**
+     * Marca las salidas de una URL como parte de esta ejecución, para que el modo incremental no
+     * las borre como huérfanas al terminar. {@link #submit(String)} ya lo hace; hay que llamarlo
+     * además con las URLs de la lista que no se envían (p.ej. ya terminadas según la cola de
+     * trabajos o tomadas por otro proceso).
+     *
+     * @param url URL de la imagen
+     */
+    public void expect(String url) {
+        if (manifest == null) {
+            return;
+        }
+        String baseName = ImageDownloader.extractBaseName(url);
+        for (OutputSpec output : outputs) {
+            manifest.expect(outputName(baseName, output));
+        }
+    }
+
+    /**
+     * Envía una URL a la etapa de descarga. Si la cola de descargas está llena,
+     * bloquea al llamador (o ejecuta la descarga en su hilo) según la política de backpressure.
+     *
+     * @param url URL de la imagen
+     * @return futuro que se completa con el resultado de la URL cuando todas sus salidas terminaron
+     */
+    public CompletableFuture<ImageResult> submit(String url) {
+        // Las salidas de esta URL forman parte de la ejecución aunque luego falle la descarga
+        expect(url);
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+
+        // Salidas que de verdad quedan por hacer: las que fallan si falla una etapa entera
+        List<OutputSpec> todo = unwritten(url);
+        AtomicInteger pending = new AtomicInteger(todo.size());
+        CompletableFuture<Outcome> outcome;
+        try {
+            // Etapa 1 en downloadPool; las siguientes se encadenan al terminar cada una
+            outcome = CompletableFuture
+                    .supplyAsync(() -> download(url, todo), executors.downloadPool)
+                    .thenCompose(downloaded -> {
+                        pending.set(downloaded.pending.size());
+                        return downloaded.pending.isEmpty()
+                                ? CompletableFuture.completedFuture(Outcome.UP_TO_DATE)
+                                : CompletableFuture.supplyAsync(() -> decodeAndFilter(url, downloaded), executors.decodePool)
+                                        .thenCompose(written -> written);
+                    });
+        } catch (RejectedExecutionException e) {
+            outcome = CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<ImageResult> result = outcome
+                .exceptionally(e -> new Outcome(0, pending.get(), List.of(describe(e)), false))
+                .thenApply(o -> new ImageResult(url, o.written, o.failed, o.errors, o.upToDate, System.nanoTime() - start));
+        result.whenComplete((r, e) -> {
+            if (journal != null) {
+                journal.finished(url, r.isSuccess());
+            }
+            report.add(r);
+            if (inFlight.decrementAndGet() == 0) {
+                synchronized (drained) {
+                    drained.notifyAll();
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Espera a que terminen todas las URLs enviadas: cuando vuelve, cada salida está escrita en
+     * disco o ha fallado, y los pools ya no tienen trabajo. Después pueden apagarse sin perder nada.
+     *
+     * @return informe de la ejecución
+     */
+    public RunReport drain() {
+        synchronized (drained) {
+            while (inFlight.get() > 0) {
+                try {
+                    drained.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        report.finish();
+        return report;
+    }
+
+    /**
+     * @return imágenes que ocupan ahora un hueco de memoria (settings.maxImagesInFlight como máximo)
+     */
+    int imagesInMemory() {
+        return executors.settings.maxImagesInFlight - imageSlots.availablePermits();
+    }
+
+    /**
+     * Termina la ejecución: cierra el destino de las salidas, la cola de trabajos y el informe y, en modo incremental, borra las
+     * salidas huérfanas y compacta el manifiesto. Debe llamarse después de {@link #drain()} y de apagar los pools.
+     */
+    public void finish() {
+        try {
+            sink.close();
+        } catch (IOException e) {
+            System.err.println("Aviso: no se pudo cerrar el destino de las salidas: " + e.getMessage());
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("Aviso: no se pudo cerrar la cola de trabajos: " + e.getMessage());
+            }
+        }
+        try {
+            report.close();
+        } catch (IOException e) {
+            System.err.println("Aviso: no se pudo cerrar el informe: " + e.getMessage());
+        }
+        if (manifest == null) {
+            return;
+        }
+        for (String orphan : manifest.removeOrphans()) {
+            System.out.println("Eliminada salida huérfana: " + orphan);
+        }
+        try {
+            manifest.close();
+        } catch (IOException e) {
+            System.err.println("Aviso: no se pudo compactar el manifiesto: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Salidas de la URL por hacer: todas o, con cola de trabajos, las que una ejecución anterior
+     * no dejó escritas.
+     */
+    private List<OutputSpec> unwritten(String url) {
+        if (journal == null) {
+            return outputs;
+        }
+        List<OutputSpec> todo = new ArrayList<>();
+        for (OutputSpec output : outputs) {
+            if (!journal.isWritten(url, journalName(output))) {
+                todo.add(output);
+            }
+        }
+        return todo;
+    }
+
+    /**
+     * Etapa 1: descargar los bytes codificados de las salidas por hacer (si no falta ninguna, ni
+     * se descarga); en modo incremental, sólo quedan pendientes las que no están al día. Si no
+     * queda ninguna, la imagen ni siquiera se decodifica.
+     */
+    private Downloaded download(String url, List<OutputSpec> todo) {
+        if (todo.isEmpty()) {
+            return new Downloaded(null, null, todo);
+        }
+
+        byte[] data;
+        try {
+            data = images.fetch(url);
+        } catch (Exception e) {
+            System.err.println("Error descargando URL " + url + ": " + e.getMessage());
+            throw new CompletionException("descarga: " + e.getMessage(), e);
+        }
+
+        String fingerprint = manifest != null ? ImageDownloader.fingerprint(data) : null;
+        List<OutputSpec> pending = todo;
+        if (manifest != null) {
+            String baseName = ImageDownloader.extractBaseName(url);
+            pending = new ArrayList<>();
+            for (OutputSpec output : todo) {
+                ImageFilter filter = output.filter;
+                if (!manifest.isUpToDate(outputName(baseName, output), fingerprint, filter.name(), filter.version(),
+                        pyramid.spec())) {
+                    pending.add(output);
+                }
+            }
+            if (pending.isEmpty()) {
+                System.out.println("Al día: " + url);
+            }
+        }
+        return new Downloaded(data, fingerprint, pending);
+    }
+
+    /**
+     * Nombre del archivo de una salida (tal como lo registra el manifiesto).
+     */
+    private String outputName(String baseName, OutputSpec output) {
+        return ImageWriter.fileName(baseName, output.outputName(), profileOf(output).extension());
+    }
+
+    /**
+     * Nombre de una salida en la cola de trabajos: con niveles de pirámide, incluye los configurados,
+     * para que al reanudar con otros niveles la salida no cuente como escrita.
+     */
+    private String journalName(OutputSpec output) {
+        return pyramid.isEmpty() ? output.outputName() : output.outputName() + "[" + pyramid.spec() + "]";
+    }
+
+    /**
+     * Registra una salida recién escrita, con sus niveles de pirámide, en la cola de trabajos y en el manifiesto.
+     */
+    private void recordOutput(String url, String baseName, String fingerprint, OutputSpec output, List<String> levels) {
+        if (journal != null) {
+            for (String level : levels) {
+                journal.outputWritten(url, level);
+            }
+            journal.outputWritten(url, journalName(output));
+        }
+        if (manifest != null) {
+            manifest.record(new OutputManifest.Record(outputName(baseName, output), url, fingerprint,
+                    output.filter.name(), output.filter.version(), pyramid.spec(), ""), levels);
+        }
+    }
+
+    /**
+     * Etapa 2: reservar un hueco de imagen en memoria, decodificar y lanzar el filtrado. Las
+     * salidas se agrupan por tamaño: cada grupo se decodifica una sola vez, al tamaño del grupo
+     * (submuestreando la fuente si es reducido), y se filtra con su plan en su propia FilterTask. Cada
+     * FilterTask avisa al terminar de codificar cada salida; cuando avisa la última de todas, se
+     * libera el hueco. Las imágenes a tamaño completo de más de settings.streamingPixels píxeles no
+     * se decodifican enteras: se procesan por franjas con una {@link StripTask}.
+     *
+     * @return futuro que se completa cuando todas las salidas pendientes terminaron
+     */
+    private CompletableFuture<Outcome> decodeAndFilter(String url, Downloaded downloaded) {
+        List<OutputSpec> todo = downloaded.pending;
+        try {
+            imageSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException("interrumpido esperando memoria", e);
+        }
+
+        String baseName = ImageDownloader.extractBaseName(url);
+        AtomicInteger pending = new AtomicInteger(todo.size());
+        Runnable onEncoded = () -> {
+            if (pending.decrementAndGet() == 0) {
+                Metrics.get().imageCompleted();
+                imageSlots.release();
+            }
+        };
+
+        // Futuro de escritura de cada salida lanzada, y errores de las que ni siquiera se lanzaron
+        List<String> names = new ArrayList<>();
+        List<CompletableFuture<Void>> written = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        for (List<OutputSpec> group : groupBySize(todo)) {
+            OutputSpec first = group.get(0);
+            if (first.isFullSize() && streams(url, downloaded.data, group)) {
+                stream(url, baseName, downloaded, group, onEncoded, names, written, errors);
+                continue;
+            }
+            SourceImage source;
+            try {
+                // Decodificar y normalizar una sola vez; las tareas la comparten en sólo lectura
+                source = SourceImage.normalize(images.decode(downloaded.data, first.maxWidth, first.maxHeight), rasterPool);
+            } catch (Exception e) {
+                System.err.println("Error decodificando URL " + url + ": " + e.getMessage());
+                for (OutputSpec output : group) {
+                    onEncoded.run();
+                    errors.add(output.outputName() + ": decodificación: " + e.getMessage());
+                }
+                continue;
+            }
+
+            ImageJob job = newJob(url, baseName, downloaded, group, onEncoded);
+            try {
+                written.addAll(new FilterTask(source, job, plan(group), executors).start());
+                group.forEach(output -> names.add(output.outputName()));
+            } catch (RejectedExecutionException e) {
+                System.err.println("Filtrado rechazado para " + url + ": " + e.getMessage());
+                for (OutputSpec output : group) {
+                    onEncoded.run();
+                    errors.add(output.outputName() + ": filtrado rechazado");
+                }
+            } finally {
+                // La referencia de la decodificación; la fuente vuelve a la reserva con la última
+                source.release();
+            }
+        }
+
+        return CompletableFuture.allOf(written.toArray(new CompletableFuture<?>[0])).handle((v, e) -> {
+            int ok = 0;
+            for (int i = 0; i < written.size(); i++) {
+                CompletableFuture<Void> output = written.get(i);
+                if (output.isCompletedExceptionally()) {
+                    errors.add(names.get(i) + ": " + describe(output.exceptionNow()));
+                } else {
+                    ok++;
+                }
+            }
+            return new Outcome(ok, errors.size(), errors, false);
+        });
+    }
+
+    /**
+     * Datos y avisos de un grupo de salidas del mismo tamaño.
+     */
+    private ImageJob newJob(String url, String baseName, Downloaded downloaded, List<OutputSpec> group, Runnable onEncoded) {
+        Map<ImageFilter, EncodingProfile> profiles = new HashMap<>();
+        for (OutputSpec output : group) {
+            if (output.profile != null) {
+                profiles.put(output.filter, output.profile);
+            }
+        }
+        return new ImageJob(url, baseName, profile, profiles, sink, group.get(0).variant(), pyramid, rasterPool,
+                downloaded.fingerprint, onEncoded,
+                (filter, levels) -> recordOutput(url, baseName, downloaded.fingerprint, specFor(group, filter), levels));
+    }
+
+    /**
+     * Indica si el grupo (a tamaño completo) debe procesarse por franjas: la cabecera declara más
+     * píxeles que settings.streamingPixels y el plan lo admite. Si la cabecera no se puede leer se
+     * deja el camino normal, que informará del error al decodificar.
+     */
+    private boolean streams(String url, byte[] data, List<OutputSpec> group) {
+        long limit = executors.settings.streamingPixels;
+        if (limit <= 0) {
+            return false;
+        }
+        try {
+            if (ImageIODecoder.pixelCount(data) <= limit) {
+                return false;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        if (!plan(group).supportsStrips()) {
+            System.err.println("Aviso: " + url + " supera pipeline.streaming.pixels, pero sus filtros no se pueden"
+                    + " aplicar por franjas; se decodifica entera");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lanza el procesamiento por franjas de un grupo a tamaño completo. Las salidas JPEG fallan
+     * (el modo por franjas sólo codifica PNG) y no se generan niveles de pirámide.
+     */
+    private void stream(String url, String baseName, Downloaded downloaded, List<OutputSpec> group, Runnable onEncoded,
+                        List<String> names, List<CompletableFuture<Void>> written, List<String> errors) {
+        List<OutputSpec> png = new ArrayList<>();
+        for (OutputSpec output : group) {
+            if (profileOf(output).format == EncodingProfile.Format.JPEG) {
+                onEncoded.run();
+                errors.add(output.outputName() + ": el modo por franjas sólo genera PNG");
+            } else {
+                png.add(output);
+            }
+        }
+        if (png.isEmpty()) {
+            return;
+        }
+        System.out.println("Procesando por franjas: " + url);
+        if (!pyramid.isEmpty()) {
+            System.out.println("Aviso: " + url + " se procesa por franjas, sin niveles de pirámide");
+        }
+
+        ImageJob job = newJob(url, baseName, downloaded, png, onEncoded);
+        try {
+            written.addAll(new StripTask(downloaded.data, job, plan(png), executors.settings.streamingStripRows,
+                    executors).start());
+            png.forEach(output -> names.add(output.outputName()));
+        } catch (RejectedExecutionException e) {
+            System.err.println("Filtrado rechazado para " + url + ": " + e.getMessage());
+            for (OutputSpec output : png) {
+                onEncoded.run();
+                errors.add(output.outputName() + ": filtrado rechazado");
+            }
+        }
+    }
+
+    /**
+     * Mensaje de un error de la cadena: el de la CompletionException si lo pusimos nosotros
+     * (p.ej. "descarga: ..."), o el de la causa original.
+     */
+    private static String describe(Throwable e) {
+        Throwable cause = e;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            if (cause.getMessage() != null && !cause.getMessage().equals(cause.getCause().toString())) {
+                return cause.getMessage();
+            }
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+
+    /**
+     * Bytes descargados de una URL y salidas que quedan por generar.
+     */
+    private static class Downloaded {
+        final byte[] data;
+        final String fingerprint;
+        final List<OutputSpec> pending;
+
+        Downloaded(byte[] data, String fingerprint, List<OutputSpec> pending) {
+            this.data = data;
+            this.fingerprint = fingerprint;
+            this.pending = pending;
+        }
+    }
+
+    /**
+     * Recuento de salidas de una URL, antes de convertirlo en {@link ImageResult}.
+     */
+    private static class Outcome {
+        static final Outcome UP_TO_DATE = new Outcome(0, 0, List.of(), true);
+
+        final int written;
+        final int failed;
+        final List<String> errors;
+        final boolean upToDate;
+
+        Outcome(int written, int failed, List<String> errors, boolean upToDate) {
+            this.written = written;
+            this.failed = failed;
+            this.errors = errors;
+            this.upToDate = upToDate;
+        }
+    }
+
+    /**
+     * Agrupa las salidas con el mismo tamaño máximo, conservando el orden de aparición.
+     */
+    private static Collection<List<OutputSpec>> groupBySize(List<OutputSpec> outputs) {
+        Map<String, List<OutputSpec>> groups = new LinkedHashMap<>();
+        for (OutputSpec output : outputs) {
+            groups.computeIfAbsent(output.variant(), k -> new ArrayList<>()).add(output);
+        }
+        return groups.values();
+    }
+
+    /**
+     * Especificación de un grupo que corresponde a un filtro.
+     */
+    private static OutputSpec specFor(List<OutputSpec> group, ImageFilter filter) {
+        for (OutputSpec output : group) {
+            if (output.filter == filter) {
+                return output;
+            }
+        }
+        throw new IllegalArgumentException("Filtro ajeno al grupo: " + filter.name());
+    }
+}
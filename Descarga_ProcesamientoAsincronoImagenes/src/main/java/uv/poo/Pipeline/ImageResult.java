@@ -0,0 +1,91 @@
+package uv.poo.Pipeline;
+
+import java.util.List;
+
+/**
+ * ImageResult: resultado final de una URL en el pipeline, cuando todas sus salidas ya quedaron
+ * escritas en disco o fallaron.
+ */
+public class ImageResult {
+
+    /**
+     * Estado de la URL.
+     */
+    public enum Status {
+        /** Todas las salidas se escribieron. */
+        OK,
+        /** Algunas salidas se escribieron y otras fallaron. */
+        PARTIAL,
+        /** No se escribió ninguna salida (falló la descarga, la decodificación...). */
+        FAILED,
+        /** Modo incremental: todas las salidas ya estaban al día. */
+        UP_TO_DATE
+    }
+
+    /**
+     * URL de origen.
+     */
+    public final String url;
+    /**
+     * Estado final.
+     */
+    public final Status status;
+    /**
+     * Salidas escritas.
+     */
+    public final int written;
+    /**
+     * Salidas que fallaron.
+     */
+    public final int failed;
+    /**
+     * Mensajes de error, uno por fallo (vacío si todo fue bien).
+     */
+    public final List<String> errors;
+    /**
+     * Tiempo desde que se envió la URL hasta que terminó su última salida.
+     */
+    public final long elapsedNanos;
+
+    /**
+     * @param url          URL de origen
+     * @param written      salidas escritas
+     * @param failed       salidas que fallaron
+     * @param errors       mensajes de las salidas (o de la etapa) que fallaron
+     * @param upToDate     true si no hubo nada que hacer (modo incremental)
+     * @param elapsedNanos tiempo total de la URL en el pipeline
+     */
+    public ImageResult(String url, int written, int failed, List<String> errors, boolean upToDate, long elapsedNanos) {
+        this.url          = url;
+        this.written      = written;
+        this.failed       = failed;
+        this.errors       = List.copyOf(errors);
+        this.elapsedNanos = elapsedNanos;
+        if (upToDate) {
+            this.status = Status.UP_TO_DATE;
+        } else if (failed == 0) {
+            this.status = Status.OK;
+        } else {
+            this.status = written > 0 ? Status.PARTIAL : Status.FAILED;
+        }
+    }
+
+    /**
+     * @return true si la URL terminó sin errores (incluido "al día")
+     */
+    public boolean isSuccess() {
+        return status == Status.OK || status == Status.UP_TO_DATE;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder()
+                .append(status).append(' ').append(url)
+                .append(" (").append(written).append(" escritas, ").append(failed).append(" fallidas, ")
+                .append(elapsedNanos / 1_000_000).append(" ms)");
+        for (String error : errors) {
+            sb.append("\n    ").append(error);
+        }
+        return sb.toString();
+    }
+}
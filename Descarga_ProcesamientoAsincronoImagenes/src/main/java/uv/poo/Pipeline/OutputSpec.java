@@ -0,0 +1,100 @@
+package uv.poo.Pipeline;
+
+import uv.poo.Filter.ImageFilter;
+import uv.poo.IO.EncodingProfile;
+
+/**
+ * OutputSpec: una salida del pipeline, es decir, un filtro y el tamaño máximo de su imagen.
+ *
+ * Las salidas a tamaño completo se filtran sobre la imagen original; las de tamaño reducido
+ * (miniaturas) se filtran sobre una decodificación submuestreada de la fuente, por lo que nunca
+ * necesitan la imagen a resolución completa en memoria. Las salidas con el mismo tamaño comparten
+ * una única decodificación.
+ *
+ * Cada salida puede tener además su propio formato ({@link #withProfile(EncodingProfile)}); si no,
+ * usa el perfil del pipeline.
+ */
+public class OutputSpec {
+
+    /**
+     * Filtro a aplicar.
+     */
+    public final ImageFilter filter;
+    /**
+     * Ancho máximo de la salida; 0 para tamaño completo.
+     */
+    public final int maxWidth;
+    /**
+     * Alto máximo de la salida; 0 para tamaño completo.
+     */
+    public final int maxHeight;
+    /**
+     * Perfil de codificación propio de la salida, o null para usar el del pipeline.
+     */
+    public final EncodingProfile profile;
+
+    private OutputSpec(ImageFilter filter, int maxWidth, int maxHeight, EncodingProfile profile) {
+        this.filter    = filter;
+        this.maxWidth  = maxWidth;
+        this.maxHeight = maxHeight;
+        this.profile   = profile;
+    }
+
+    /**
+     * Salida a tamaño completo.
+     *
+     * @param filter filtro a aplicar
+     * @return especificación de la salida
+     */
+    public static OutputSpec full(ImageFilter filter) {
+        return new OutputSpec(filter, 0, 0, null);
+    }
+
+    /**
+     * Salida reducida para caber en maxWidth x maxHeight, conservando la proporción
+     * (las fuentes más pequeñas no se amplían).
+     *
+     * @param filter    filtro a aplicar
+     * @param maxWidth  ancho máximo (mayor que 0)
+     * @param maxHeight alto máximo (mayor que 0)
+     * @return especificación de la salida
+     */
+    public static OutputSpec fit(ImageFilter filter, int maxWidth, int maxHeight) {
+        if (maxWidth <= 0 || maxHeight <= 0) {
+            throw new IllegalArgumentException("Tamaño máximo inválido: " + maxWidth + "x" + maxHeight);
+        }
+        return new OutputSpec(filter, maxWidth, maxHeight, null);
+    }
+
+    /**
+     * La misma salida codificada con otro perfil (p.ej. JPEG en una rama y PNG en las demás).
+     *
+     * @param profile perfil de la salida, o null para usar el del pipeline
+     * @return especificación de la salida
+     */
+    public OutputSpec withProfile(EncodingProfile profile) {
+        return new OutputSpec(filter, maxWidth, maxHeight, profile);
+    }
+
+    /**
+     * @return true si la salida es a tamaño completo
+     */
+    public boolean isFullSize() {
+        return maxWidth == 0;
+    }
+
+    /**
+     * Sufijo que distingue en el nombre de archivo las salidas reducidas: "" a tamaño completo,
+     * "_640x480" para una caja de 640x480.
+     */
+    public String variant() {
+        return isFullSize() ? "" : "_" + maxWidth + "x" + maxHeight;
+    }
+
+    /**
+     * Nombre de la salida sin nombre base ni extensión (p.ej. "sepia_640x480").
+     */
+    public String outputName() {
+        return filter.name() + variant();
+    }
+}
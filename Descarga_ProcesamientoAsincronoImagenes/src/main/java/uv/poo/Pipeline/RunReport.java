@@ -0,0 +1,124 @@
+package uv.poo.Pipeline;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * RunReport: informe de una ejecución del pipeline con el resultado de cada URL.
+ *
+ * Cuenta las URLs por estado, guarda las que no terminaron bien para listarlas al final y, si se
+ * indica un archivo, escribe en él una línea por URL a medida que terminan (separada por
+ * tabuladores: estado, URL, salidas escritas, salidas fallidas, milisegundos y errores), así el
+ * informe completo no se queda en memoria aunque la lista de URLs sea enorme.
+ */
+public class RunReport implements Closeable {
+
+    private final long startNanos = System.nanoTime();
+    private final Map<ImageResult.Status, Integer> counts = new EnumMap<>(ImageResult.Status.class);
+    private final List<ImageResult> failures = new ArrayList<>();
+    private final BufferedWriter tsv;
+    private long wallNanos = -1;
+
+    /**
+     * @param tsvFile archivo donde escribir una línea por URL, o null para no escribirlo
+     * @throws IOException si no se puede crear el archivo
+     */
+    public RunReport(Path tsvFile) throws IOException {
+        this.tsv = tsvFile != null ? Files.newBufferedWriter(tsvFile, StandardCharsets.UTF_8) : null;
+        if (tsv != null) {
+            tsv.write("estado\turl\tescritas\tfallidas\tms\terrores\n");
+        }
+    }
+
+    /**
+     * Registra el resultado de una URL (puede llamarse desde cualquier hilo).
+     *
+     * @param result resultado de la URL
+     */
+    public synchronized void add(ImageResult result) {
+        counts.merge(result.status, 1, Integer::sum);
+        if (!result.isSuccess()) {
+            failures.add(result);
+        }
+        if (tsv != null) {
+            try {
+                tsv.write(result.status + "\t" + result.url + "\t" + result.written + "\t" + result.failed
+                        + "\t" + result.elapsedNanos / 1_000_000 + "\t"
+                        + String.join(" | ", result.errors).replace('\t', ' ').replace('\n', ' ') + "\n");
+            } catch (IOException e) {
+                System.err.println("Aviso: no se pudo escribir el informe: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Marca el final de la ejecución (todas las salidas terminadas).
+     */
+    public synchronized void finish() {
+        if (wallNanos < 0) {
+            wallNanos = System.nanoTime() - startNanos;
+        }
+    }
+
+    /**
+     * @param status estado
+     * @return número de URLs con ese estado
+     */
+    public synchronized int count(ImageResult.Status status) {
+        return counts.getOrDefault(status, 0);
+    }
+
+    /**
+     * @return URLs que fallaron total o parcialmente, en el orden en que terminaron
+     */
+    public synchronized List<ImageResult> failures() {
+        return List.copyOf(failures);
+    }
+
+    /**
+     * @return tiempo total de la ejecución (hasta {@link #finish()}, o hasta ahora si no ha terminado)
+     */
+    public synchronized long wallNanos() {
+        return wallNanos >= 0 ? wallNanos : System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Resumen: totales por estado, tiempo total y cada URL que falló con sus errores.
+     *
+     * @return resumen en varias líneas
+     */
+    public synchronized String summary() {
+        int total = 0;
+        for (int n : counts.values()) {
+            total += n;
+        }
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                "Resultado: %d URLs en %.1f s: %d correctas, %d al día, %d parciales, %d fallidas",
+                total, wallNanos() / 1e9,
+                count(ImageResult.Status.OK), count(ImageResult.Status.UP_TO_DATE),
+                count(ImageResult.Status.PARTIAL), count(ImageResult.Status.FAILED)));
+        for (ImageResult failure : failures) {
+            sb.append("\n  ").append(failure);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Cierra el archivo del informe, si lo hay.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (tsv != null) {
+            tsv.close();
+        }
+    }
+}
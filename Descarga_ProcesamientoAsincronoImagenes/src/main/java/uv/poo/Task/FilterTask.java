@@ -1,79 +1,199 @@
 package uv.poo.Task;
 
+import uv.poo.Config.ExecutorConfig;
+import uv.poo.Filter.FilterPlan;
+import uv.poo.Filter.FusedFilterEngine;
 import uv.poo.Filter.ImageFilter;
+import uv.poo.Filter.RasterPool;
+import uv.poo.Filter.SourceImage;
+import uv.poo.IO.EncodingProfile;
 import uv.poo.IO.ImageWriter;
+import uv.poo.Metrics.Metrics;
+import uv.poo.Metrics.Stage;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.util.concurrent.ExecutorService;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
- * FilterTask: Runnable que aplica un filtro a una imagen en memoria y luego
- * delega la escritura en disco a un pool de I/O.
+ * FilterTask: encadena, con CompletableFuture, el trabajo de una imagen en memoria: ejecuta el
+ * {@link FilterPlan} de sus salidas (las ramas de cada nodo en un solo recorrido, ver
+ * {@link FusedFilterEngine}) en el pool de filtrado, codifica cada resultado en el pool de
+ * codificación, con el perfil de su salida, y escribe los bytes en el pool de I/O, en el
+ * {@link uv.poo.IO.OutputSink} de la imagen.
+ *
+ * {@link #start()} devuelve un futuro por filtro que se completa cuando su salida quedó escrita en
+ * el destino (en un archivo de segmentos, cuando su lote se sincronizó con el disco), o con la
+ * excepción de la etapa que falló. Así el pipeline sabe exactamente cuándo ha
+ * terminado cada salida, sin depender de cuánto tarden en vaciarse los pools.
+ *
+ * Cada vez que una imagen filtrada queda codificada se avisa con {@link ImageJob#outputEncoded()}
+ * (una vez por filtro, también si falla), para que el pipeline sepa que esa salida ya no retiene
+ * memoria, y al quedar escrita con {@link ImageJob#outputWritten(ImageFilter, List)}.
+ *
+ * Si la imagen tiene niveles de pirámide configurados ({@link ImageJob#pyramid}), cada imagen
+ * filtrada se reduce en memoria a esos tamaños justo antes de liberarla, y cada nivel se codifica y
+ * se escribe como una salida más ("<base>_<filtro>_<ancho>x<alto>"); la salida del filtro se da por
+ * escrita cuando lo están ella y todos sus niveles. Así la imagen completa se decodifica una vez y
+ * nunca se vuelve a leer para generar las versiones pequeñas.
+ *
+ * La fuente se comparte en sólo lectura ({@link SourceImage}): la tarea retiene una referencia al
+ * crearse y la suelta en cuanto termina el filtrado, de modo que la imagen original no sigue en
+ * memoria mientras se codifican las salidas. Las imágenes filtradas pertenecen a la tarea hasta
+ * que se codifican; después se devuelven a la {@link RasterPool} del pipeline ({@link ImageJob#pool})
+ * para que los siguientes filtrados reutilicen sus rasters.
  */
-public class FilterTask implements Runnable {
+public class FilterTask {
     /**
-     * Imagen original a procesar (antes de filtrar).
+     * Imagen original a procesar (antes de filtrar), compartida en sólo lectura.
      */
-    private final BufferedImage src;
+    private final SourceImage src;
     /**
-     * Nombre base extraído de la URL (p.ej. "id3_5000x3333").
+     * Imagen de origen: nombre base, formato de salida y avisos al pipeline.
      */
-    private final String baseName;
+    private final ImageJob job;
     /**
-     * Extensión del archivo de salida (p.ej. "png").
+     * Plan compilado de las salidas (compartido entre imágenes).
      */
-    private final String ext;
+    private final FilterPlan plan;
     /**
-     * Filtro a aplicar (implementación de ImageFilter: sepia, bw, sharpen).
+     * Filtro de cada salida, en el orden del plan.
      */
-    private final ImageFilter filter;
+    private final List<ImageFilter> filters;
     /**
-     * Pool de ExecutorService para operaciones de escritura en disco.
+     * Pools de las etapas (filtrado, codificación y escritura en disco).
      */
-    private final ExecutorService ioPool;
+    private final ExecutorConfig executors;
 
     /**
      * Constructor de FilterTask.
      *
-     * @param src       BufferedImage original
-     * @param baseName  nombre base para el archivo de salida
-     * @param ext       extensión del archivo (sin punto)
-     * @param filter    filtro a aplicar
-     * @param ioPool    pool de hilos para escritura en disco
+     * @param src       imagen original normalizada (la tarea retiene su propia referencia)
+     * @param job       imagen de origen (nombre base, extensión y avisos)
+     * @param plan      plan compilado de las salidas a generar
+     * @param executors pools de filtrado, codificación y escritura en disco
      */
-    public FilterTask(BufferedImage src,
-                      String baseName,
-                      String ext,
-                      ImageFilter filter,
-                      ExecutorService ioPool) {
-        this.src      = src;
-        this.baseName = baseName;
-        this.ext      = ext;
-        this.filter   = filter;
-        this.ioPool   = ioPool;
+    public FilterTask(SourceImage src,
+                      ImageJob job,
+                      FilterPlan plan,
+                      ExecutorConfig executors) {
+        this.src       = src.retain();
+        this.job       = job;
+        this.plan      = plan;
+        this.filters   = plan.outputs();
+        this.executors = executors;
     }
 
     /**
-     * Método que se ejecuta al lanzar la tarea:
-     * 1. Aplica el filtro a la imagen (operación CPU-bound).
-     * 2. Crea un Runnable que escribe el resultado usando ImageWriter,
-     *    y lo envía al pool de I/O para no bloquear el hilo de filtrado.
+     * Lanza la cadena de etapas:
+     * 1. Ejecuta el plan de filtros sobre la imagen (operación CPU-bound), repartido en bandas
+     *    entre todos los núcleos.
+     * 2. Codifica cada resultado (y genera y codifica sus niveles de pirámide) en el pool de
+     *    codificación; la cola acotada frena el filtrado si la codificación se atrasa.
+     * 3. Tras codificar, escribe los bytes en el pool de I/O para no bloquear los hilos de CPU.
+     *
+     * @return un futuro por filtro (en el mismo orden) que se completa al quedar escrita su salida
      */
-    @Override
-    public void run() {
-        // Paso 1: aplicar el filtro
-        BufferedImage out = filter.apply(src);
+    public List<CompletableFuture<Void>> start() {
+        // Paso 1: aplicar los filtros
+        CompletableFuture<List<BufferedImage>> filtered;
+        try {
+            filtered = CompletableFuture.supplyAsync(this::applyFilters, executors.filterPool);
+        } catch (RejectedExecutionException e) {
+            // El filtrado no llegará a ejecutarse: soltar aquí la fuente
+            src.release();
+            throw e;
+        }
+
+        List<CompletableFuture<Void>> written = new ArrayList<>(filters.size());
+        for (int i = 0; i < filters.size(); i++) {
+            int index = i;
+            ImageFilter filter = filters.get(i);
+            // Paso 2: codificar en otro hilo
+            CompletableFuture<List<Encoded>> encoded = filtered
+                    .thenApplyAsync(outputs -> encode(filter, outputs.get(index)), executors.encodePool);
+            // La salida deja de ocupar memoria al codificarse, o al fallar cualquier etapa anterior
+            encoded.whenComplete((data, error) -> job.outputEncoded());
+            // Paso 3: delegar la escritura en disco a otro hilo
+            written.add(encoded.thenComposeAsync(files -> write(filter, files), executors.ioPool));
+        }
+        return written;
+    }
 
-        // Paso 2: delegar la escritura en disco a otro hilo
-        ioPool.submit(() -> {
-            try {
-                // ImageWriter escribe la imagen filtrada en el directorio configurado
-                ImageWriter.write(out,
-                        baseName,
-                        filter.name(),
-                        ext);
-            } catch (IOException e) {
+    /**
+     * Ejecuta el plan sobre la imagen fuente y suelta la referencia de la tarea a ella.
+     */
+    private List<BufferedImage> applyFilters() {
+        long start = System.nanoTime();
+        try {
+            List<BufferedImage> outputs = plan.apply(src.image(), job.pool);
+            Metrics.get().recordLatency(Stage.FILTER, System.nanoTime() - start);
+            return outputs;
+        } catch (RuntimeException e) {
+            Metrics.get().recordError(Stage.FILTER);
+            System.err.println("Error aplicando filtros a " + job.baseName + ": " + e.getMessage());
+            throw e;
+        } finally {
+            src.release();
+        }
+    }
+
+    /**
+     * Codifica la imagen filtrada y sus niveles de pirámide, y la devuelve a la reserva de rasters.
+     *
+     * @param filter filtro que produjo la imagen
+     * @param out    imagen filtrada
+     * @return archivos codificados: primero la salida completa, después sus niveles de mayor a menor
+     */
+    private List<Encoded> encode(ImageFilter filter, BufferedImage out) {
+        try {
+            List<Encoded> files = new ArrayList<>();
+            EncodingProfile profile = job.profile(filter);
+            files.add(new Encoded(job.fileName(filter), ImageWriter.encode(out, profile)));
+            if (!job.pyramid.isEmpty()) {
+                long start = System.nanoTime();
+                job.pyramid.generate(out, job.pool, level -> files.add(new Encoded(
+                        job.levelFileName(filter, level.getWidth(), level.getHeight()),
+                        ImageWriter.encode(level, profile))));
+                Metrics.get().recordLatency(Stage.PYRAMID, System.nanoTime() - start);
+            }
+            return files;
+        } catch (IOException e) {
+            System.err.println("Error codificando " + filter.name() + ": " + e.getMessage());
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            System.err.println("Error codificando " + filter.name() + ": " + e.getMessage());
+            throw e;
+        } finally {
+            // La imagen filtrada ya no hace falta: devolver su raster
+            job.pool.release(out);
+        }
+    }
+
+    /**
+     * Entrega los archivos codificados de un filtro al destino de salida.
+     *
+     * @param filter filtro que produjo la imagen
+     * @param files  salida completa y niveles codificados
+     * @return futuro que se completa cuando todos quedaron escritos
+     */
+    private CompletableFuture<Void> write(ImageFilter filter, List<Encoded> files) {
+        CompletableFuture<?>[] writes = new CompletableFuture<?>[files.size()];
+        for (int i = 0; i < writes.length; i++) {
+            writes[i] = job.sink.write(files.get(i).name, files.get(i).data);
+        }
+        return CompletableFuture.allOf(writes).whenComplete((v, e) -> {
+            if (e == null) {
+                List<String> levels = new ArrayList<>(files.size() - 1);
+                for (int i = 1; i < files.size(); i++) {
+                    levels.add(files.get(i).name);
+                }
+                job.outputWritten(filter, levels);
+            } else {
                 // En caso de error al escribir, informar por consola de error
                 System.err.println("Error guardando "
                         + filter.name()
@@ -82,4 +202,17 @@ public class FilterTask implements Runnable {
             }
         });
     }
+
+    /**
+     * Archivo codificado listo para escribir.
+     */
+    private static class Encoded {
+        final String name;
+        final byte[] data;
+
+        Encoded(String name, byte[] data) {
+            this.name = name;
+            this.data = data;
+        }
+    }
 }
@@ -0,0 +1,145 @@
+package uv.poo.Task;
+
+import uv.poo.Filter.ImageFilter;
+import uv.poo.Filter.PyramidGenerator;
+import uv.poo.Filter.RasterPool;
+import uv.poo.IO.EncodingProfile;
+import uv.poo.IO.ImageWriter;
+import uv.poo.IO.OutputSink;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * ImageJob: datos y avisos de una imagen que recorre el pipeline.
+ *
+ * Agrupa lo que las etapas de filtrado, codificación y escritura necesitan saber de la imagen
+ * de origen (URL, nombre base, formato, huella de la fuente) y las acciones con las que avisan
+ * al pipeline de su progreso.
+ */
+public class ImageJob {
+    /**
+     * URL de origen.
+     */
+    public final String url;
+    /**
+     * Nombre base extraído de la URL (p.ej. "id3_5000x3333").
+     */
+    public final String baseName;
+    /**
+     * Perfil de codificación de las salidas que no tienen uno propio.
+     */
+    public final EncodingProfile profile;
+    /**
+     * Perfil propio de algunas salidas, por filtro (p.ej. una rama en JPEG).
+     */
+    public final Map<ImageFilter, EncodingProfile> profiles;
+    /**
+     * Destino de las salidas codificadas (directorio o archivo de segmentos).
+     */
+    public final OutputSink sink;
+    /**
+     * Sufijo del tamaño de las salidas ("" a tamaño completo, p.ej. "_640x480" en miniaturas).
+     */
+    public final String variant;
+    /**
+     * Niveles reducidos a generar de cada salida (vacío si no se generan).
+     */
+    public final PyramidGenerator pyramid;
+    /**
+     * Reserva de rasters del pipeline: de ella salen las imágenes filtradas y a ella vuelven.
+     */
+    public final RasterPool pool;
+    /**
+     * Huella (SHA-256) de los bytes de la imagen de origen.
+     */
+    public final String sourceFingerprint;
+
+    private final Runnable onEncoded;
+    private final BiConsumer<ImageFilter, List<String>> onWritten;
+
+    /**
+     * @param url               URL de origen
+     * @param baseName          nombre base para los archivos de salida
+     * @param profile           perfil de codificación de las salidas
+     * @param profiles          perfil propio de las salidas que no usan el anterior, por filtro
+     * @param sink              destino de las salidas codificadas
+     * @param variant           sufijo del tamaño de las salidas ("" a tamaño completo)
+     * @param pyramid           niveles reducidos a generar de cada salida
+     * @param pool              reserva de rasters del pipeline
+     * @param sourceFingerprint huella de los bytes de origen
+     * @param onEncoded         se ejecuta una vez por salida cuando ya no retiene imágenes en memoria
+     * @param onWritten         se ejecuta cuando la salida de un filtro y sus niveles quedaron escritos en
+     *                          disco, con los nombres de los archivos de los niveles
+     */
+    public ImageJob(String url,
+                    String baseName,
+                    EncodingProfile profile,
+                    Map<ImageFilter, EncodingProfile> profiles,
+                    OutputSink sink,
+                    String variant,
+                    PyramidGenerator pyramid,
+                    RasterPool pool,
+                    String sourceFingerprint,
+                    Runnable onEncoded,
+                    BiConsumer<ImageFilter, List<String>> onWritten) {
+        this.url               = url;
+        this.baseName          = baseName;
+        this.profile           = profile;
+        this.profiles          = profiles;
+        this.sink              = sink;
+        this.variant           = variant;
+        this.pyramid           = pyramid;
+        this.pool              = pool;
+        this.sourceFingerprint = sourceFingerprint;
+        this.onEncoded         = onEncoded;
+        this.onWritten         = onWritten;
+    }
+
+    /**
+     * Nombre de la salida de un filtro, sin nombre base ni extensión (p.ej. "sepia" o "sepia_640x480").
+     */
+    public String outputName(ImageFilter filter) {
+        return filter.name() + variant;
+    }
+
+    /**
+     * Perfil de codificación de la salida de un filtro.
+     */
+    public EncodingProfile profile(ImageFilter filter) {
+        return profiles.getOrDefault(filter, profile);
+    }
+
+    /**
+     * Nombre completo de la salida de un filtro (p.ej. "id3_5000x3333_sepia.png").
+     */
+    public String fileName(ImageFilter filter) {
+        return ImageWriter.fileName(baseName, outputName(filter), profile(filter).extension());
+    }
+
+    /**
+     * Nombre completo de un nivel reducido de la salida de un filtro (p.ej. "id3_5000x3333_sepia_1024x683.png").
+     */
+    public String levelFileName(ImageFilter filter, int width, int height) {
+        return ImageWriter.fileName(baseName, outputName(filter) + "_" + width + "x" + height,
+                profile(filter).extension());
+    }
+
+    /**
+     * Avisa de que una salida ya fue codificada (o falló antes de hacerlo).
+     */
+    public void outputEncoded() {
+        onEncoded.run();
+    }
+
+    /**
+     * Avisa de que la salida del filtro quedó escrita en disco junto con sus niveles de pirámide.
+     *
+     * @param filter     filtro de la salida
+     * @param levelFiles nombres de los archivos de sus niveles (vacío si no se generaron)
+     */
+    public void outputWritten(ImageFilter filter, List<String> levelFiles) {
+        onWritten.accept(filter, levelFiles);
+    }
+}
@@ -0,0 +1,279 @@
+package uv.poo.Task;
+
+import uv.poo.Config.ExecutorConfig;
+import uv.poo.Filter.FilterPlan;
+import uv.poo.Filter.ImageFilter;
+import uv.poo.Filter.Pixels;
+import uv.poo.Filter.RasterPool;
+import uv.poo.IO.EncodingProfile;
+import uv.poo.IO.PngEncoder;
+import uv.poo.IO.RowSource;
+import uv.poo.Metrics.Metrics;
+import uv.poo.Metrics.Stage;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.Deflater;
+
+/**
+ * StripTask: procesa por franjas horizontales una imagen demasiado grande para decodificarla
+ * entera. La memoria depende del ancho de la imagen, no de su área.
+ *
+ * La imagen se recorre de arriba abajo en franjas de stripRows filas. Cada franja se decodifica
+ * con una {@link RowSource} junto con {@link FilterPlan#haloRows()} filas de contexto por encima y
+ * por debajo (las compartidas con la franja anterior se copian, no se vuelven a decodificar), se
+ * filtra con el mismo {@link FilterPlan} que usa {@link FilterTask} y sus filas centrales se
+ * añaden a un {@link PngEncoder} por salida, que escribe en un archivo temporal. Como el borde de
+ * la franja sólo altera las filas que están a menos de un halo de él, el resultado es idéntico al
+ * de filtrar la imagen completa.
+ *
+ * Limitaciones: el plan sólo puede tener {@link uv.poo.Filter.TileFilter}
+ * ({@link FilterPlan#supportsStrips()}), las salidas son PNG (el codificador JPEG de ImageIO
+ * necesita la imagen entera) y no se generan niveles de pirámide.
+ *
+ * Todo el recorrido ocurre en un hilo del pool de filtrado (cada franja se reparte además en
+ * bandas); después cada archivo se entrega al destino en el pool de I/O con
+ * {@link uv.poo.IO.OutputSink#write(String, Path)}.
+ */
+public class StripTask {
+    /**
+     * Bytes codificados de la imagen de origen.
+     */
+    private final byte[] data;
+    /**
+     * Imagen de origen: nombre base, perfiles y avisos al pipeline.
+     */
+    private final ImageJob job;
+    /**
+     * Plan compilado de las salidas (compartido entre imágenes).
+     */
+    private final FilterPlan plan;
+    /**
+     * Filas por franja (sin contar el halo).
+     */
+    private final int stripRows;
+    /**
+     * Pools de las etapas (filtrado y escritura).
+     */
+    private final ExecutorConfig executors;
+
+    /**
+     * @param data      bytes codificados de la imagen
+     * @param job       imagen de origen (nombre base, perfiles y avisos)
+     * @param plan      plan compilado de las salidas; debe admitir franjas
+     * @param stripRows filas por franja
+     * @param executors pools de filtrado y escritura en disco
+     */
+    public StripTask(byte[] data, ImageJob job, FilterPlan plan, int stripRows, ExecutorConfig executors) {
+        if (!plan.supportsStrips()) {
+            throw new IllegalArgumentException("El plan tiene filtros que no se pueden aplicar por franjas");
+        }
+        if (stripRows <= 0) {
+            throw new IllegalArgumentException("stripRows debe ser positivo: " + stripRows);
+        }
+        this.data      = data;
+        this.job       = job;
+        this.plan      = plan;
+        this.stripRows = stripRows;
+        this.executors = executors;
+    }
+
+    /**
+     * Lanza el recorrido por franjas en el pool de filtrado y la escritura de cada salida en el de
+     * I/O. Cuando termina el recorrido (bien o mal) se avisa con {@link ImageJob#outputEncoded()}
+     * una vez por salida.
+     *
+     * @return un futuro por salida (en el orden del plan) que se completa al quedar escrita
+     */
+    public List<CompletableFuture<Void>> start() {
+        List<ImageFilter> filters = plan.outputs();
+        // Paso 1: decodificar, filtrar y codificar, franja a franja
+        CompletableFuture<List<Path>> encoded = CompletableFuture.supplyAsync(this::run, executors.filterPool);
+        encoded.whenComplete((files, e) -> filters.forEach(f -> job.outputEncoded()));
+
+        List<CompletableFuture<Void>> written = new ArrayList<>(filters.size());
+        for (int i = 0; i < filters.size(); i++) {
+            int index = i;
+            ImageFilter filter = filters.get(i);
+            // Paso 2: entregar cada archivo al destino
+            written.add(encoded.thenComposeAsync(files -> write(filter, files.get(index)), executors.ioPool));
+        }
+        return written;
+    }
+
+    /**
+     * Recorre la imagen y deja cada salida en un archivo temporal del directorio de salida.
+     */
+    private List<Path> run() {
+        List<ImageFilter> filters = plan.outputs();
+        List<EncodingProfile> profiles = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (ImageFilter filter : filters) {
+            profiles.add(job.profile(filter));
+            names.add(job.fileName(filter));
+        }
+        try (RowSource source = RowSource.open(data, stripRows)) {
+            return encode(source, plan, stripRows, profiles, job.sink.dir(), names, job.pool);
+        } catch (IOException e) {
+            Metrics.get().recordError(Stage.FILTER);
+            System.err.println("Error procesando por franjas " + job.baseName + ": " + e.getMessage());
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            Metrics.get().recordError(Stage.FILTER);
+            System.err.println("Error procesando por franjas " + job.baseName + ": " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Recorrido por franjas.
+     *
+     * @param source    filas de la imagen de origen
+     * @param plan      plan de las salidas
+     * @param stripRows filas por franja
+     * @param profiles  perfil PNG de cada salida, en el orden del plan
+     * @param dir       directorio de los archivos temporales
+     * @param names     nombre de cada salida (prefijo del archivo temporal)
+     * @param pool      reserva de las franjas y de sus imágenes filtradas
+     * @return un archivo PNG por salida, en el orden del plan
+     * @throws IOException si falla la decodificación o la escritura (los temporales se borran)
+     */
+    static List<Path> encode(RowSource source, FilterPlan plan, int stripRows, List<EncodingProfile> profiles,
+                             Path dir, List<String> names, RasterPool pool) throws IOException {
+        for (EncodingProfile profile : profiles) {
+            if (profile.format == EncodingProfile.Format.JPEG) {
+                throw new IllegalArgumentException("El modo por franjas sólo genera PNG: " + profile);
+            }
+        }
+        int width = source.width();
+        int height = source.height();
+        int halo = plan.haloRows();
+        int type = source.hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        int outputs = profiles.size();
+
+        Files.createDirectories(dir);
+        List<Path> files = new ArrayList<>(outputs);
+        OutputStream[] streams = new OutputStream[outputs];
+        PngEncoder[] encoders = new PngEncoder[outputs];
+        // Las salidas se codifican intercaladas en este hilo: un compresor para cada una
+        Deflater[] deflaters = new Deflater[outputs];
+        int[] row = new int[width];
+        long decodeNanos = 0;
+        long filterNanos = 0;
+        long encodeNanos = 0;
+
+        BufferedImage previous = null;
+        int previousTop = 0;
+        int next = 0;
+        boolean done = false;
+        try {
+            for (int y0 = 0; y0 < height; y0 += stripRows) {
+                int y1 = Math.min(height, y0 + stripRows);
+                int top = Math.max(0, y0 - halo);
+                int bottom = Math.min(height, y1 + halo);
+
+                // Paso 1: filas [top, bottom); las que ya tenía la franja anterior se copian
+                long start = System.nanoTime();
+                BufferedImage strip = pool.acquire(width, bottom - top, type);
+                int[] pixels = ((DataBufferInt) strip.getRaster().getDataBuffer()).getData();
+                if (previous != null) {
+                    int[] old = ((DataBufferInt) previous.getRaster().getDataBuffer()).getData();
+                    System.arraycopy(old, (top - previousTop) * width, pixels, 0, (next - top) * width);
+                    pool.release(previous);
+                }
+                previous = strip;
+                previousTop = top;
+                for (; next < bottom; next++) {
+                    source.readRow(pixels, (next - top) * width);
+                }
+                long filterStart = System.nanoTime();
+                decodeNanos += filterStart - start;
+
+                // Paso 2: filtrar la franja con su contexto
+                List<BufferedImage> results = plan.apply(strip, pool);
+                long encodeStart = System.nanoTime();
+                filterNanos += encodeStart - filterStart;
+
+                // Paso 3: codificar sólo las filas propias de la franja
+                try {
+                    for (int i = 0; i < outputs; i++) {
+                        BufferedImage out = results.get(i);
+                        if (encoders[i] == null) {
+                            Path file = Files.createTempFile(dir, names.get(i) + ".", ".part");
+                            files.add(file);
+                            streams[i] = new BufferedOutputStream(Files.newOutputStream(file), 256 * 1024);
+                            encoders[i] = new PngEncoder(streams[i], width, height,
+                                    out.getType() == BufferedImage.TYPE_BYTE_GRAY, out.getColorModel().hasAlpha(),
+                                    profiles.get(i).compressionLevel, profiles.get(i).rowFilter,
+                                    deflaters[i] = new Deflater());
+                        }
+                        for (int y = y0; y < y1; y++) {
+                            Pixels.readRow(out, y - top, row);
+                            encoders[i].writeRow(row);
+                        }
+                    }
+                } finally {
+                    results.forEach(pool::release);
+                }
+                encodeNanos += System.nanoTime() - encodeStart;
+            }
+
+            for (int i = 0; i < outputs; i++) {
+                encoders[i].finish();
+                streams[i].close();
+            }
+            done = true;
+        } finally {
+            pool.release(previous);
+            for (Deflater deflater : deflaters) {
+                if (deflater != null) {
+                    deflater.end();
+                }
+            }
+            if (!done) {
+                for (int i = 0; i < files.size(); i++) {
+                    try {
+                        if (streams[i] != null) {
+                            streams[i].close();
+                        }
+                    } catch (IOException ignored) {
+                        // El archivo se borra de todos modos
+                    }
+                    Files.deleteIfExists(files.get(i));
+                }
+            }
+        }
+
+        Metrics.get().recordLatency(Stage.DECODE, decodeNanos);
+        Metrics.get().recordLatency(Stage.FILTER, filterNanos);
+        Metrics.get().recordLatency(Stage.ENCODE, encodeNanos);
+        return files;
+    }
+
+    /**
+     * Entrega el archivo de una salida al destino; si falla, lo borra.
+     */
+    private CompletableFuture<Void> write(ImageFilter filter, Path file) {
+        return job.sink.write(job.fileName(filter), file).whenComplete((v, e) -> {
+            if (e == null) {
+                job.outputWritten(filter, List.of());
+            } else {
+                System.err.println("Error guardando " + filter.name() + ": " + e.getMessage());
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ignored) {
+                    // Queda un .part huérfano en el directorio de salida
+                }
+            }
+        });
+    }
+}
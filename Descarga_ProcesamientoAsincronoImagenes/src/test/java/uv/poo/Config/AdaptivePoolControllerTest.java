@@ -0,0 +1,51 @@
+package uv.poo.Config;
+
+import junit.framework.TestCase;
+
+/**
+ * Comprueba las decisiones de tamaño de AdaptivePoolController.Limit con muestras sintéticas.
+ */
+public class AdaptivePoolControllerTest extends TestCase {
+
+    public void testSaturatedStageGrowsWhileThroughputImproves() {
+        AdaptivePoolController.Limit limit = new AdaptivePoolController.Limit("filter", 2, 1, 8);
+        // 2 hilos ocupados con cola: prueba con 3
+        assertEquals(3, limit.update(10.0, 2.0, 5));
+        // Con 3 hilos el rendimiento sube casi en proporción: se conserva y se prueba con 4
+        assertEquals(4, limit.update(14.5, 3.0, 5));
+    }
+
+    public void testProbeWithoutGainIsUndoneAndHeld() {
+        AdaptivePoolController.Limit limit = new AdaptivePoolController.Limit("encode", 2, 1, 8);
+        assertEquals(3, limit.update(10.0, 2.0, 5));
+        // Un hilo más no mejora (compiten por el mismo núcleo): se vuelve a 2
+        assertEquals(2, limit.update(10.2, 3.0, 5));
+        assertTrue(limit.reason(), limit.reason().startsWith("sin mejora"));
+        // Aunque siga saturada, no se vuelve a probar hasta pasados HOLD_TICKS intervalos
+        for (int i = 1; i < AdaptivePoolController.HOLD_TICKS; i++) {
+            assertEquals(2, limit.update(10.0, 2.0, 5));
+        }
+        assertEquals(3, limit.update(10.0, 2.0, 5));
+    }
+
+    public void testIdleStageShrinksTowardsLittlesLaw() {
+        AdaptivePoolController.Limit limit = new AdaptivePoolController.Limit("io", 6, 1, 8);
+        // Media de 1 tarea en ejecución con 6 hilos y sin cola: sobran hilos, pero tras IDLE_TICKS
+        assertEquals(6, limit.update(50.0, 1.0, 0));
+        assertEquals(5, limit.update(50.0, 1.0, 0));
+        assertEquals(5, limit.update(50.0, 1.0, 0));
+        assertEquals(4, limit.update(50.0, 1.0, 0));
+        // Nunca por debajo de lo que pide la ley de Little (ceil(1.0 * 1.25) = 2)
+        for (int i = 0; i < 10; i++) {
+            limit.update(50.0, 1.0, 0);
+        }
+        assertEquals(2, limit.current());
+    }
+
+    public void testRespectsMaximum() {
+        AdaptivePoolController.Limit limit = new AdaptivePoolController.Limit("decode", 2, 1, 3);
+        assertEquals(3, limit.update(10.0, 2.0, 5));
+        assertEquals(3, limit.update(15.0, 3.0, 5));
+        assertEquals(3, limit.update(15.0, 3.0, 5));
+    }
+}
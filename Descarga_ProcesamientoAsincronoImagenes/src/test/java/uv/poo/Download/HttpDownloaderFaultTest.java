@@ -0,0 +1,333 @@
+package uv.poo.Download;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prueba la política de descargas contra un servidor HTTP local que inyecta fallos: errores 5xx
+ * transitorios, respuestas que se cuelgan, una primera respuesta lenta y un host caído.
+ */
+public class HttpDownloaderFaultTest extends TestCase {
+
+    private static final byte[] BODY = "imagen".getBytes();
+
+    private HttpServer server;
+    /** Peticiones recibidas por ruta. */
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+
+    @Override
+    protected void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        // Falla con 503 las dos primeras veces y luego responde
+        server.createContext("/flaky", exchange -> {
+            respond(exchange, hit(exchange) <= 2 ? 503 : 200, 0);
+        });
+        // La primera petición tarda 3 s; las siguientes responden al momento
+        server.createContext("/slow-first", exchange -> {
+            respond(exchange, 200, hit(exchange) == 1 ? 3000 : 0);
+        });
+        // Nunca responde a tiempo
+        server.createContext("/hang", exchange -> {
+            hit(exchange);
+            respond(exchange, 200, 10_000);
+        });
+        // Host caído: siempre 500
+        server.createContext("/down", exchange -> {
+            hit(exchange);
+            respond(exchange, 500, 0);
+        });
+        // Siempre responde
+        server.createContext("/ok", exchange -> {
+            hit(exchange);
+            respond(exchange, 200, 0);
+        });
+        server.createContext("/missing", exchange -> {
+            hit(exchange);
+            respond(exchange, 404, 0);
+        });
+        server.start();
+    }
+
+    @Override
+    protected void tearDown() {
+        server.stop(0);
+    }
+
+    private int hit(HttpExchange exchange) {
+        return hits.computeIfAbsent(exchange.getRequestURI().getPath(), k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private int hits(String path) {
+        AtomicInteger n = hits.get(path);
+        return n == null ? 0 : n.get();
+    }
+
+    private static void respond(HttpExchange exchange, int status, long delayMillis) throws IOException {
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (status == 200) {
+                exchange.sendResponseHeaders(200, BODY.length);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    body.write(BODY);
+                }
+            } else {
+                exchange.sendResponseHeaders(status, -1);
+            }
+        } catch (IOException e) {
+            // El cliente ya canceló la petición (tiempo agotado o respaldo ganador)
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private static DownloadPolicy policy() {
+        DownloadPolicy policy = new DownloadPolicy();
+        policy.backoffBaseMillis = 10;
+        policy.hedgeDelayMillis = 0;
+        return policy;
+    }
+
+    public void testTransientServerErrorsAreRetried() throws IOException {
+        HttpDownloader downloader = new HttpDownloader(4, policy());
+        assertEquals(BODY.length, downloader.fetch(url("/flaky")).length);
+        assertEquals(3, hits("/flaky"));
+    }
+
+    public void testStreamingDownloadFollowsPolicy() {
+        HttpDownloader downloader = new HttpDownloader(4, policy());
+        try {
+            downloader.download(url("/flaky"));
+            fail("se esperaba IOException");
+        } catch (IOException expected) {
+            // Tras los dos 503 llega el cuerpo, que no es una imagen
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith("Formato de imagen no soportado"));
+        }
+        assertEquals(3, hits("/flaky"));
+        try {
+            downloader.download(url("/missing"));
+            fail("se esperaba IOException");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("404"));
+        }
+    }
+
+    public void testClientErrorsAreNotRetried() {
+        try {
+            new HttpDownloader(4, policy()).fetch(url("/missing"));
+            fail("se esperaba IOException");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("404"));
+        }
+        assertEquals(1, hits("/missing"));
+    }
+
+    public void testHangingHostTimesOutWithinBudget() {
+        DownloadPolicy policy = policy();
+        policy.requestTimeoutMillis = 300;
+        policy.maxAttempts = 2;
+        long start = System.nanoTime();
+        try {
+            new HttpDownloader(4, policy).fetch(url("/hang"));
+            fail("se esperaba HttpTimeoutException");
+        } catch (IOException expected) {
+            assertTrue(expected.toString(), expected instanceof HttpTimeoutException);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        // 2 intentos de 300 ms más una espera corta: muy lejos de los 10 s del servidor
+        assertTrue("tardó " + millis + " ms", millis < 2_000);
+        assertEquals(2, hits("/hang"));
+    }
+
+    public void testHedgedRequestCutsSlowTail() throws IOException {
+        DownloadPolicy policy = policy();
+        policy.hedgeDelayMillis = 100;
+        policy.hedgeBudget = 1.0;
+        HttpDownloader downloader = new HttpDownloader(4, policy);
+        long start = System.nanoTime();
+        assertEquals(BODY.length, downloader.fetch(url("/slow-first")).length);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue("tardó " + millis + " ms", millis < 2_000);
+        assertEquals(2, hits("/slow-first"));
+        assertTrue(downloader.stats(), downloader.stats().contains("1 respaldos (1 ganaron)"));
+    }
+
+    public void testCircuitOpensAfterConsecutiveFailures() {
+        DownloadPolicy policy = policy();
+        policy.maxAttempts = 1;
+        policy.breakerFailures = 3;
+        HttpDownloader downloader = new HttpDownloader(4, policy);
+        for (int i = 0; i < 5; i++) {
+            try {
+                downloader.fetch(url("/down"));
+                fail("se esperaba IOException");
+            } catch (CircuitOpenException expected) {
+                assertTrue("circuito abierto antes de tiempo en el intento " + i, i >= 3);
+            } catch (IOException expected) {
+                assertTrue(expected.getMessage().contains("500"));
+            }
+        }
+        // Los dos últimos se rechazaron sin llegar al servidor
+        assertEquals(3, hits("/down"));
+        assertEquals(CircuitBreaker.State.OPEN,
+                downloader.circuitState("127.0.0.1:" + server.getAddress().getPort()));
+    }
+
+    public void testProbeFailingWithRuntimeExceptionReopensCircuit() throws Exception {
+        DownloadPolicy policy = policy();
+        policy.maxAttempts = 1;
+        policy.breakerFailures = 1;
+        policy.breakerOpenMillis = 50;
+        BrokenClient client = new BrokenClient(HttpClient.newHttpClient());
+        HttpDownloader downloader = new HttpDownloader(client, new HostLimiter(4), policy);
+        String host = "127.0.0.1:" + server.getAddress().getPort();
+        try {
+            downloader.fetch(url("/down"));
+            fail("se esperaba IOException");
+        } catch (IOException expected) {
+            assertEquals(CircuitBreaker.State.OPEN, downloader.circuitState(host));
+        }
+
+        // La petición de prueba falla sin IOException: el circuito debe volver a abrirse, no quedar semiabierto
+        Thread.sleep(60);
+        client.broken = true;
+        try {
+            downloader.fetch(url("/flaky"));
+            fail("se esperaba IllegalStateException");
+        } catch (IllegalStateException expected) {
+            assertEquals(CircuitBreaker.State.OPEN, downloader.circuitState(host));
+        }
+
+        // Pasado el tiempo, otra prueba llega al servidor y lo cierra
+        Thread.sleep(60);
+        client.broken = false;
+        assertEquals(BODY.length, downloader.fetch(url("/ok")).length);
+        assertEquals(CircuitBreaker.State.CLOSED, downloader.circuitState(host));
+    }
+
+    public void testHalfOpenCircuitClosesAfterSuccessfulProbe() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(2, 50);
+        breaker.onFailure();
+        assertTrue(breaker.allow());
+        breaker.onFailure();
+        assertFalse(breaker.allow());
+        Thread.sleep(60);
+        // Una sola petición de prueba
+        assertTrue(breaker.allow());
+        assertFalse(breaker.allow());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.allow());
+    }
+
+    /**
+     * Cliente que delega en uno real y, mientras broken es true, falla al enviar con una excepción
+     * no comprobada (como haría un error de programación o una cancelación).
+     */
+    private static class BrokenClient extends HttpClient {
+        final HttpClient delegate;
+        volatile boolean broken;
+
+        BrokenClient(HttpClient delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Optional<CookieHandler> cookieHandler() {
+            return delegate.cookieHandler();
+        }
+
+        @Override
+        public Optional<Duration> connectTimeout() {
+            return delegate.connectTimeout();
+        }
+
+        @Override
+        public Redirect followRedirects() {
+            return delegate.followRedirects();
+        }
+
+        @Override
+        public Optional<ProxySelector> proxy() {
+            return delegate.proxy();
+        }
+
+        @Override
+        public SSLContext sslContext() {
+            return delegate.sslContext();
+        }
+
+        @Override
+        public SSLParameters sslParameters() {
+            return delegate.sslParameters();
+        }
+
+        @Override
+        public Optional<Authenticator> authenticator() {
+            return delegate.authenticator();
+        }
+
+        @Override
+        public Version version() {
+            return delegate.version();
+        }
+
+        @Override
+        public Optional<Executor> executor() {
+            return delegate.executor();
+        }
+
+        @Override
+        public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+                throws IOException, InterruptedException {
+            return delegate.send(request, handler);
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+            if (broken) {
+                throw new IllegalStateException("cliente roto");
+            }
+            return delegate.sendAsync(request, handler);
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                                                HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+            if (broken) {
+                throw new IllegalStateException("cliente roto");
+            }
+            return delegate.sendAsync(request, handler, pushPromiseHandler);
+        }
+    }
+}
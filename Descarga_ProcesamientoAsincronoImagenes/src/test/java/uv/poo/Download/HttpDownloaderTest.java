@@ -0,0 +1,201 @@
+package uv.poo.Download;
+
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prueba el HttpDownloader contra un servidor HTTP local que sirve una imagen de prueba.
+ */
+public class HttpDownloaderTest extends TestCase {
+
+    private HttpServer server;
+    private byte[] fixture;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    @Override
+    protected void setUp() throws Exception {
+        BufferedImage img = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        img.setRGB(10, 10, 0xff3366);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(img, "png", out);
+        fixture = out.toByteArray();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/id/", exchange -> {
+            int now = active.incrementAndGet();
+            maxActive.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(20);
+                exchange.sendResponseHeaders(200, fixture.length);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    body.write(fixture);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+        server.createContext("/etag/", exchange -> {
+            exchange.getResponseHeaders().set("ETag", "\"v1\"");
+            if (exchange.getRequestURI().getPath().endsWith("/fresh")) {
+                exchange.getResponseHeaders().set("Cache-Control", "public, max-age=3600");
+            }
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            fullResponses.incrementAndGet();
+            exchange.sendResponseHeaders(200, fixture.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(fixture);
+            }
+        });
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @Override
+    protected void tearDown() {
+        server.stop(0);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    public void testFetchReturnsBody() throws IOException {
+        byte[] data = new HttpDownloader(4).fetch(url("/id/1/64/48"));
+        assertEquals(fixture.length, data.length);
+    }
+
+    public void testDownloadDecodesStream() throws IOException {
+        BufferedImage img = new HttpDownloader(4).download(url("/id/1/64/48"));
+        assertEquals(64, img.getWidth());
+        assertEquals(0xff3366, img.getRGB(10, 10) & 0xffffff);
+    }
+
+    public void testNon2xxFails() {
+        try {
+            new HttpDownloader(4).fetch(url("/missing"));
+            fail("se esperaba IOException");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("404"));
+        }
+    }
+
+    public void testPerHostLimitOnVirtualThreads() throws Exception {
+        HttpDownloader downloader = new HttpDownloader(3);
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String u = url("/id/" + i + "/64/48");
+                results.add(threads.submit(() -> downloader.fetch(u)));
+            }
+            for (Future<byte[]> result : results) {
+                assertEquals(fixture.length, result.get().length);
+            }
+        }
+        assertTrue("máximo observado " + maxActive.get(), maxActive.get() <= 3);
+    }
+
+    public void testCacheRevalidatesAndServesFreshEntries() throws IOException {
+        Path dir = Files.createTempDirectory("cache");
+        HttpDownloader downloader = new HttpDownloader(4);
+        downloader.setCache(new DownloadCache(dir, 1 << 20, 0));
+
+        // Sin max-age: la segunda vez se revalida y el servidor responde 304
+        downloader.fetch(url("/etag/a"));
+        assertEquals(fixture.length, downloader.fetch(url("/etag/a")).length);
+        assertEquals(1, notModified.get());
+
+        // Con max-age: la segunda vez no se toca la red
+        downloader.fetch(url("/etag/fresh"));
+        downloader.fetch(url("/etag/fresh"));
+        assertEquals(2, fullResponses.get());
+        assertEquals(1, notModified.get());
+
+        // Una caché nueva sobre el mismo directorio conserva las entradas
+        DownloadCache reopened = new DownloadCache(dir, 1 << 20, 0);
+        downloader.setCache(reopened);
+        downloader.fetch(url("/etag/fresh"));
+        assertEquals(1, reopened.hits());
+        assertEquals(0, reopened.misses());
+    }
+
+    public void testCacheEvictsLeastRecentlyUsed() throws IOException {
+        DownloadCache cache = new DownloadCache(Files.createTempDirectory("cache"), 25, 3600);
+        cache.store("http://h/a", new byte[10], null, null, 0);
+        cache.store("http://h/b", new byte[10], null, null, 0);
+        assertNotNull(cache.read(cache.lookup("http://h/a"), false));
+        cache.store("http://h/c", new byte[10], null, null, 0);
+        assertNotNull(cache.lookup("http://h/a"));
+        assertNull(cache.lookup("http://h/b"));
+        assertEquals(20, cache.sizeBytes());
+    }
+
+    public void testRefreshDoesNotResurrectEvictedEntry() throws IOException {
+        Path dir = Files.createTempDirectory("cache");
+        DownloadCache cache = new DownloadCache(dir, 25, 0);
+        cache.store("http://h/a", new byte[10], "\"a\"", null, 0);
+        DownloadCache.Entry stale = cache.lookup("http://h/a");
+        // a se expulsa mientras su petición condicional está en vuelo
+        cache.store("http://h/b", new byte[10], null, null, 0);
+        cache.store("http://h/c", new byte[10], null, null, 0);
+        assertNull(cache.lookup("http://h/a"));
+
+        assertNull(cache.refresh(stale, 60));
+        assertNull(cache.lookup("http://h/a"));
+        assertEquals(20, cache.sizeBytes());
+        assertEquals(20, new DownloadCache(dir, 25, 0).sizeBytes());
+
+        // Una entrada que sigue en la caché sí se renueva
+        DownloadCache.Entry c = cache.lookup("http://h/c");
+        assertNotNull(cache.refresh(c, 60));
+        assertTrue(cache.isFresh(cache.lookup("http://h/c")));
+    }
+
+    public void testFailedReadKeepsNewerEntry() throws IOException {
+        Path dir = Files.createTempDirectory("cache");
+        DownloadCache cache = new DownloadCache(dir, 100, 0);
+        cache.store("http://h/a", new byte[10], "\"v1\"", null, 0);
+        DownloadCache.Entry stale = cache.lookup("http://h/a");
+        // Otro hilo guarda una versión nueva mientras éste aún tiene la entrada anterior
+        byte[] newer = new byte[12];
+        newer[0] = 7;
+        cache.store("http://h/a", newer, "\"v2\"", null, 0);
+
+        // El cuerpo en disco ya no coincide con la entrada vieja: falla la lectura, pero la nueva se conserva
+        assertNull(cache.read(stale, false));
+        DownloadCache.Entry current = cache.lookup("http://h/a");
+        assertNotNull(current);
+        assertEquals("\"v2\"", current.etag());
+        assertEquals(12, cache.read(current, false).length);
+        assertEquals(12, cache.sizeBytes());
+        assertEquals(12, new DownloadCache(dir, 100, 0).sizeBytes());
+    }
+}
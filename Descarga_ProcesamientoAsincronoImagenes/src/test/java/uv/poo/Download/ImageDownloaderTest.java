@@ -0,0 +1,65 @@
+package uv.poo.Download;
+
+import junit.framework.TestCase;
+import uv.poo.Filter.RasterPool;
+import uv.poo.IO.EncodingProfile;
+import uv.poo.IO.ImageDecoder;
+import uv.poo.IO.ImageWriter;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Comprueba la decodificación reducida (submuestreo + ajuste) de ImageDownloader.
+ */
+public class ImageDownloaderTest extends TestCase {
+
+    private final RasterPool pool = new RasterPool(1 << 24);
+    private final ImageDownloader images = new ImageDownloader(new HttpDownloader(1), ImageDecoder.named("imageio", pool), pool);
+
+    public void testSubsamplingStepKeepsImageAtLeastAsLargeAsBox() {
+        assertEquals(1, ImageDownloader.subsampling(5000, 3333, 0, 0));
+        assertEquals(7, ImageDownloader.subsampling(5000, 3333, 640, 480));
+        assertEquals(1, ImageDownloader.subsampling(400, 300, 640, 480));
+    }
+
+    public void testDecodeFitsBoxAndKeepsAspect() throws IOException {
+        byte[] png = ImageWriter.encode(gradient(800, 600), EncodingProfile.PNG_FAST);
+
+        BufferedImage full = images.decode(png);
+        assertEquals(800, full.getWidth());
+        assertEquals(600, full.getHeight());
+
+        BufferedImage thumb = images.decode(png, 150, 150);
+        assertEquals(150, thumb.getWidth());
+        assertEquals(113, thumb.getHeight());
+
+        // El paso 4 deja justo 200x150: no hace falta ajuste
+        BufferedImage exact = images.decode(png, 200, 200);
+        assertEquals(200, exact.getWidth());
+        assertEquals(150, exact.getHeight());
+
+        // Una fuente más pequeña que la caja no se amplía
+        BufferedImage small = images.decode(png, 2000, 2000);
+        assertEquals(800, small.getWidth());
+    }
+
+    public void testUnsupportedBytesFail() {
+        try {
+            images.decode(new byte[]{1, 2, 3}, 10, 10);
+            fail("Se esperaba IOException");
+        } catch (IOException expected) {
+            // correcto
+        }
+    }
+
+    private static BufferedImage gradient(int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, ((x * 255 / width) << 16) | ((y * 255 / height) << 8) | 0x40);
+            }
+        }
+        return img;
+    }
+}
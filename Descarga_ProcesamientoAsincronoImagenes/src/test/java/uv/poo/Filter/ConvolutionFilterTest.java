@@ -0,0 +1,103 @@
+package uv.poo.Filter;
+
+import junit.framework.TestCase;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.util.Random;
+
+/**
+ * Compara el motor de convolución con ConvolveOp (separable y general) y comprueba los bordes.
+ */
+public class ConvolutionFilterTest extends TestCase {
+
+    public void testSeparableDetection() {
+        assertTrue(ConvolutionKernel.gaussian(2, 1.0).isSeparable());
+        assertTrue(ConvolutionKernel.box(1).isSeparable());
+        assertTrue(new ConvolutionKernel(3, 3, -1, 0, 1, -2, 0, 2, -1, 0, 1).isSeparable()); // Sobel
+        assertFalse(ConvolutionKernel.sharpen().isSeparable());
+        assertFalse(ConvolutionKernel.laplacian().isSeparable());
+    }
+
+    public void testSeparableBlurMatchesConvolveOp() {
+        ConvolutionKernel kernel = ConvolutionKernel.gaussian(2, 1.0);
+        assertMatchesConvolveOp(kernel, randomImage(BufferedImage.TYPE_INT_RGB));
+        assertMatchesConvolveOp(kernel, randomImage(BufferedImage.TYPE_3BYTE_BGR));
+    }
+
+    public void testGeneralKernelMatchesConvolveOp() {
+        // 3x5 no separable y no normalizado (el alfa no se toca en INT_RGB)
+        ConvolutionKernel kernel = new ConvolutionKernel(5, 3,
+                0f, 0.1f, -0.2f, 0.1f, 0f,
+                0.3f, -0.5f, 1.2f, -0.5f, 0.3f,
+                0f, 0.1f, 0.2f, 0.1f, 0.05f);
+        assertFalse(kernel.isSeparable());
+        assertMatchesConvolveOp(kernel, randomImage(BufferedImage.TYPE_INT_RGB));
+    }
+
+    public void testZeroFillAndClampEdges() {
+        BufferedImage src = randomImage(BufferedImage.TYPE_INT_RGB);
+        BufferedImage zero = new ConvolutionFilter("z", ConvolutionKernel.box(1), EdgeMode.ZERO_FILL).apply(src);
+        assertEquals(0, zero.getRGB(0, 5) & 0xffffff);
+        assertEquals(0, zero.getRGB(7, 0) & 0xffffff);
+
+        // Con CLAMP una imagen uniforme sigue uniforme también en los bordes
+        BufferedImage flat = new BufferedImage(9, 7, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 7; y++) {
+            for (int x = 0; x < 9; x++) {
+                flat.setRGB(x, y, 0x336699);
+            }
+        }
+        BufferedImage blurred = new BlurFilter().apply(flat);
+        assertEquals(0x336699, blurred.getRGB(0, 0) & 0xffffff);
+        assertEquals(0x336699, blurred.getRGB(8, 6) & 0xffffff);
+        assertEquals(0, new EdgeDetectFilter().apply(flat).getRGB(4, 3) & 0xffffff);
+    }
+
+    public void testEdgeDetectKeepsAlpha() {
+        BufferedImage src = randomImage(BufferedImage.TYPE_INT_ARGB);
+        src.setRGB(10, 10, 0x40808080);
+        BufferedImage out = new EdgeDetectFilter().apply(src);
+        assertEquals(0x40, out.getRGB(10, 10) >>> 24);
+    }
+
+    private static void assertMatchesConvolveOp(ConvolutionKernel kernel, BufferedImage src) {
+        float[] data = new float[kernel.width() * kernel.height()];
+        for (int r = 0; r < kernel.height(); r++) {
+            for (int c = 0; c < kernel.width(); c++) {
+                data[r * kernel.width() + c] = kernel.weight(r, c);
+            }
+        }
+        // ConvolveOp recorre el kernel invertido (convolución matemática): se invierte para comparar
+        float[] flipped = new float[data.length];
+        for (int i = 0; i < data.length; i++) {
+            flipped[i] = data[data.length - 1 - i];
+        }
+        BufferedImage expected = new ConvolveOp(new Kernel(kernel.width(), kernel.height(), flipped),
+                ConvolveOp.EDGE_NO_OP, null).filter(src, null);
+        BufferedImage actual = new ConvolutionFilter("test", kernel, EdgeMode.NO_OP).apply(src);
+        for (int y = 0; y < src.getHeight(); y++) {
+            for (int x = 0; x < src.getWidth(); x++) {
+                int e = expected.getRGB(x, y);
+                int a = actual.getRGB(x, y);
+                for (int shift = 0; shift < 24; shift += 8) {
+                    int diff = Math.abs(((e >> shift) & 0xff) - ((a >> shift) & 0xff));
+                    assertTrue("(" + x + "," + y + ") " + Integer.toHexString(e) + " vs " + Integer.toHexString(a),
+                            diff <= 1);
+                }
+            }
+        }
+    }
+
+    private static BufferedImage randomImage(int type) {
+        Random random = new Random(11);
+        BufferedImage img = new BufferedImage(33, 29, type);
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                img.setRGB(x, y, (random.nextInt(256) << 24) | random.nextInt(0x1000000));
+            }
+        }
+        return img;
+    }
+}
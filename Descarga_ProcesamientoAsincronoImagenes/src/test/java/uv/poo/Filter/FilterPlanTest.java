@@ -0,0 +1,89 @@
+package uv.poo.Filter;
+
+import junit.framework.TestCase;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Verifica que el plan compilado comparta los prefijos, fusione los filtros punto a punto y dé
+ * exactamente lo mismo que aplicar cada cadena paso a paso.
+ */
+public class FilterPlanTest extends TestCase {
+
+    private final ImageFilter sharpen = new SharpenFilter();
+    private final ImageFilter sepia = new SepiaFilter();
+    private final ImageFilter bw = new BlackAndWhiteFilter();
+    private final ImageFilter contrast = PointFilter.contrast(1.3);
+
+    public void testPlanMatchesStepByStepApplication() {
+        List<ImageFilter> outputs = List.of(
+                new FilterChain("sepia", "1", List.of(sepia)),
+                new FilterChain("nitido_sepia", "1", List.of(sharpen, sepia, contrast)),
+                new FilterChain("nitido_bw", "1", List.of(sharpen, bw)),
+                new FilterChain("tono", "1", List.of(sepia, bw)),
+                new FilterChain("original", "1", List.of()));
+        FilterPlan plan = FilterPlan.compile(outputs);
+        for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR}) {
+            BufferedImage src = randomImage(type);
+            List<BufferedImage> results = plan.apply(src);
+            for (int i = 0; i < outputs.size(); i++) {
+                BufferedImage expected = stepByStep(((FilterChain) outputs.get(i)).steps(), src);
+                BufferedImage actual = results.get(i);
+                assertNotSame(src, actual);
+                for (int y = 0; y < src.getHeight(); y++) {
+                    for (int x = 0; x < src.getWidth(); x++) {
+                        assertEquals(outputs.get(i).name() + " (" + x + "," + y + ")",
+                                expected.getRGB(x, y), actual.getRGB(x, y));
+                    }
+                }
+            }
+        }
+    }
+
+    public void testSharesPrefixesAndFusesPointFilters() {
+        FilterPlan plan = FilterPlan.compile(List.of(
+                new FilterChain("a", "1", List.of(sharpen, sepia, contrast)),
+                new FilterChain("b", "1", List.of(sharpen, bw)),
+                new FilterChain("c", "1", List.of(sepia, contrast)),
+                new FilterChain("d", "1", List.of(sepia, contrast))));
+        // sharpen una vez con sus dos ramas; las cadenas punto a punto, en una sola etapa
+        assertEquals("sharpen\n"
+                + "  sepia+contrast => a\n"
+                + "  bw => b\n"
+                + "sepia+contrast => c, d\n", plan.describe());
+
+        // Sin bifurcación, la convolución absorbe el punto a punto siguiente
+        assertEquals("sharpen+sepia+contrast => a\n",
+                FilterPlan.compile(List.of(new FilterChain("a", "1", List.of(sharpen, sepia, contrast)))).describe());
+    }
+
+    public void testIdenticalOutputsGetTheirOwnImages() {
+        FilterPlan plan = FilterPlan.compile(List.of(
+                new FilterChain("png", "1", List.of(sepia)),
+                new FilterChain("jpg", "1", List.of(sepia))));
+        List<BufferedImage> results = plan.apply(randomImage(BufferedImage.TYPE_INT_RGB));
+        assertNotSame(results.get(0), results.get(1));
+        assertEquals(results.get(0).getRGB(5, 7), results.get(1).getRGB(5, 7));
+    }
+
+    private static BufferedImage stepByStep(List<ImageFilter> steps, BufferedImage src) {
+        BufferedImage img = src;
+        for (ImageFilter step : steps) {
+            img = step.apply(img);
+        }
+        return img;
+    }
+
+    private static BufferedImage randomImage(int type) {
+        Random random = new Random(5);
+        BufferedImage img = new BufferedImage(29, 41, type);
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                img.setRGB(x, y, 0xff000000 | random.nextInt(0x1000000));
+            }
+        }
+        return img;
+    }
+}
@@ -0,0 +1,45 @@
+package uv.poo.Filter;
+
+import junit.framework.TestCase;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Verifica que el recorrido fusionado produzca exactamente lo mismo que cada filtro por separado.
+ */
+public class FusedFilterEngineTest extends TestCase {
+
+    public void testFusedMatchesIndividualFilters() {
+        FusedFilterEngine engine = new FusedFilterEngine(new TiledFilterExecutor(new ForkJoinPool(3), 5));
+        List<ImageFilter> filters = List.of(new SepiaFilter(), new BlackAndWhiteFilter(), new SharpenFilter());
+        for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR}) {
+            BufferedImage src = randomImage(type);
+            List<BufferedImage> fused = engine.apply(filters, src);
+            for (int i = 0; i < filters.size(); i++) {
+                BufferedImage expected = filters.get(i).apply(src);
+                BufferedImage actual = fused.get(i);
+                assertEquals(expected.getType(), actual.getType());
+                for (int y = 0; y < src.getHeight(); y++) {
+                    for (int x = 0; x < src.getWidth(); x++) {
+                        assertEquals(filters.get(i).name() + " (" + x + "," + y + ")",
+                                expected.getRGB(x, y), actual.getRGB(x, y));
+                    }
+                }
+            }
+        }
+    }
+
+    private static BufferedImage randomImage(int type) {
+        Random random = new Random(11);
+        BufferedImage img = new BufferedImage(33, 47, type);
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                img.setRGB(x, y, 0xff000000 | random.nextInt(0x1000000));
+            }
+        }
+        return img;
+    }
+}
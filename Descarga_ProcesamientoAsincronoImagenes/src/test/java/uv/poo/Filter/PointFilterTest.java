@@ -0,0 +1,92 @@
+package uv.poo.Filter;
+
+import junit.framework.TestCase;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Comprueba la composición de tablas y matrices de PointFilter y que la escala de grises
+ * coincida exactamente con Pixels.luma.
+ */
+public class PointFilterTest extends TestCase {
+
+    public void testConsecutiveLutsComposeIntoOne() {
+        PointFilter chain = PointFilter.brightness(20)
+                .andThen(PointFilter.contrast(1.3))
+                .andThen(PointFilter.gamma(0.8));
+        assertEquals(1, chain.stageCount());
+        assertEquals("brightness+contrast+gamma", chain.name());
+
+        PointFilter withMatrix = chain.andThen(new SepiaFilter()).andThen(PointFilter.invert());
+        assertEquals(3, withMatrix.stageCount());
+    }
+
+    public void testChainMatchesSequentialApplication() {
+        PointFilter brightness = PointFilter.brightness(-15);
+        PointFilter contrast = PointFilter.contrast(1.5);
+        SepiaFilter sepia = new SepiaFilter();
+        PointFilter chain = brightness.andThen(contrast).andThen(sepia);
+
+        BufferedImage src = randomImage(BufferedImage.TYPE_INT_ARGB);
+        BufferedImage expected = sepia.apply(contrast.apply(brightness.apply(src)));
+        BufferedImage actual = chain.apply(src);
+        for (int y = 0; y < src.getHeight(); y++) {
+            for (int x = 0; x < src.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    public void testGrayscaleMatchesLuma() {
+        BlackAndWhiteFilter bw = new BlackAndWhiteFilter();
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            int argb = random.nextInt();
+            int l = Pixels.luma(argb);
+            assertEquals((argb & 0xff000000) | l << 16 | l << 8 | l, bw.filterPixel(argb));
+        }
+        BufferedImage out = bw.apply(randomImage(BufferedImage.TYPE_3BYTE_BGR));
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, out.getType());
+    }
+
+    public void testFusedGrayChainKeepsOutputType() {
+        BlackAndWhiteFilter bw = new BlackAndWhiteFilter();
+        PointFilter contrast = PointFilter.contrast(1.2);
+        BufferedImage src = randomImage(BufferedImage.TYPE_INT_RGB);
+
+        BufferedImage separate = contrast.apply(bw.apply(src));
+        BufferedImage fused = bw.andThen(contrast).apply(src);
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, separate.getType());
+        assertEquals(separate.getType(), fused.getType());
+        for (int y = 0; y < src.getHeight(); y++) {
+            for (int x = 0; x < src.getWidth(); x++) {
+                assertEquals(separate.getRGB(x, y), fused.getRGB(x, y));
+            }
+        }
+
+        // Una tabla distinta por canal o una matriz de color sacan la imagen del gris
+        PointFilter tint = new PointFilter("tinte", false, PointFilter.Stage.lut(v -> v, v -> v / 2, v -> v));
+        assertEquals(BufferedImage.TYPE_INT_RGB, bw.andThen(tint).apply(src).getType());
+        assertEquals(BufferedImage.TYPE_INT_RGB, tint.apply(bw.apply(src)).getType());
+        assertEquals(BufferedImage.TYPE_INT_RGB, bw.andThen(new SepiaFilter()).apply(src).getType());
+    }
+
+    public void testLutEndpointsAndClamping() {
+        assertEquals(0xff000000, PointFilter.gamma(2.2).filterPixel(0xff000000));
+        assertEquals(0xffffffff, PointFilter.gamma(2.2).filterPixel(0xffffffff));
+        assertEquals(0x80ffff64, PointFilter.brightness(100).filterPixel(0x80c0d000));
+        assertEquals(0x00ff00ff, PointFilter.invert().filterPixel(0x0000ff00));
+    }
+
+    private static BufferedImage randomImage(int type) {
+        Random random = new Random(5);
+        BufferedImage img = new BufferedImage(31, 17, type);
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                img.setRGB(x, y, random.nextInt());
+            }
+        }
+        return img;
+    }
+}
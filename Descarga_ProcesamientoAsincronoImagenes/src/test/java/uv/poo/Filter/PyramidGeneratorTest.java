@@ -0,0 +1,83 @@
+package uv.poo.Filter;
+
+import junit.framework.TestCase;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Comprueba los tamaños de los niveles y que las reducciones conservan los valores medios y el tipo.
+ */
+public class PyramidGeneratorTest extends TestCase {
+
+    public void testSizesFitBoxesWithoutUpscalingOrDuplicates() {
+        PyramidGenerator pyramid = PyramidGenerator.parse("256x256, 1024x1024 ,4000x4000,256x300");
+        List<int[]> sizes = pyramid.sizes(2000, 1000);
+        assertEquals(2, sizes.size());
+        assertEquals(1024, sizes.get(0)[0]);
+        assertEquals(512, sizes.get(0)[1]);
+        assertEquals(256, sizes.get(1)[0]);
+        assertEquals(128, sizes.get(1)[1]);
+
+        assertTrue(PyramidGenerator.parse("").isEmpty());
+        try {
+            PyramidGenerator.parse("100");
+            fail("se esperaba un nivel inválido");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("100"));
+        }
+    }
+
+    public void testHalveAveragesBlocks() {
+        BufferedImage src = new BufferedImage(4, 2, BufferedImage.TYPE_BYTE_GRAY);
+        int[] values = {0, 100, 200, 200,
+                        40, 60, 200, 200};
+        src.getRaster().setPixels(0, 0, 4, 2, values);
+
+        BufferedImage half = PyramidGenerator.halve(src, new RasterPool(1 << 20));
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, half.getType());
+        assertEquals(2, half.getWidth());
+        assertEquals(1, half.getHeight());
+        assertEquals(50, half.getRaster().getSample(0, 0, 0));
+        assertEquals(200, half.getRaster().getSample(1, 0, 0));
+    }
+
+    public void testResampleKeepsMeanOfUniformAndStripedImages() {
+        BufferedImage src = new BufferedImage(300, 150, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 150; y++) {
+            for (int x = 0; x < 300; x++) {
+                src.setRGB(x, y, x % 2 == 0 ? 0x204060 : 0x6080a0);
+            }
+        }
+        BufferedImage small = PyramidGenerator.resample(src, 200, 100, new RasterPool(1 << 20));
+        assertEquals(200, small.getWidth());
+        assertEquals(100, small.getHeight());
+        long sum = 0;
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < 200; x++) {
+                sum += (small.getRGB(x, y) >> 16) & 0xff;
+            }
+        }
+        // Media del rojo de la fuente: (0x20 + 0x60) / 2 = 64
+        assertEquals(64.0, sum / 20000.0, 0.5);
+    }
+
+    public void testGenerateEmitsLevelsLargestFirstAndLeavesSourceIntact() throws Exception {
+        BufferedImage src = new BufferedImage(1000, 600, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 600; y++) {
+            for (int x = 0; x < 1000; x++) {
+                src.setRGB(x, y, 0x80336699);
+            }
+        }
+        List<String> levels = new ArrayList<>();
+        PyramidGenerator.parse("100x100,300x300").generate(src, new RasterPool(1 << 24), level -> {
+            levels.add(level.getWidth() + "x" + level.getHeight());
+            assertEquals(BufferedImage.TYPE_INT_ARGB, level.getType());
+            assertEquals(0x80336699, level.getRGB(level.getWidth() / 2, level.getHeight() / 2));
+        });
+        assertEquals(List.of("300x180", "100x60"), levels);
+        assertEquals(1000, src.getWidth());
+        assertEquals(0x80336699, src.getRGB(0, 0));
+    }
+}
@@ -0,0 +1,55 @@
+package uv.poo.Filter;
+
+import junit.framework.TestCase;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Comprueba la reutilización por (ancho, alto, tipo) y el límite de bytes de RasterPool.
+ */
+public class RasterPoolTest extends TestCase {
+
+    public void testReusesReleasedImageOfSameShape() {
+        RasterPool pool = new RasterPool(1 << 20);
+        BufferedImage img = pool.acquire(64, 32, BufferedImage.TYPE_INT_RGB);
+        pool.release(img);
+        assertEquals(64 * 32 * 4, pool.pooledBytes());
+
+        assertNotSame(img, pool.acquire(64, 32, BufferedImage.TYPE_INT_ARGB));
+        assertNotSame(img, pool.acquire(32, 64, BufferedImage.TYPE_INT_RGB));
+        assertSame(img, pool.acquire(64, 32, BufferedImage.TYPE_INT_RGB));
+        assertEquals(0, pool.pooledBytes());
+    }
+
+    public void testDropsImagesOverByteCap() {
+        RasterPool pool = new RasterPool(100 * 100 * 3);
+        BufferedImage a = pool.acquire(100, 100, BufferedImage.TYPE_3BYTE_BGR);
+        BufferedImage b = pool.acquire(100, 100, BufferedImage.TYPE_3BYTE_BGR);
+        pool.release(a);
+        pool.release(b);
+        assertEquals(100 * 100 * 3, pool.pooledBytes());
+        assertTrue(pool.stats(), pool.stats().contains("1 descartados"));
+    }
+
+    public void testPooledDestinationIsFullyOverwritten() {
+        RasterPool pool = new RasterPool(1 << 24);
+        BufferedImage src = new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB);
+        BufferedImage dirty = pool.acquire(20, 10, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 20; x++) {
+                dirty.setRGB(x, y, 0xffffff);
+            }
+        }
+        pool.release(dirty);
+        for (TileFilter filter : new TileFilter[]{new SepiaFilter(), new SharpenFilter(), new BlurFilter()}) {
+            BufferedImage out = filter.apply(src, pool);
+            assertSame(dirty, out);
+            for (int y = 0; y < 10; y++) {
+                for (int x = 0; x < 20; x++) {
+                    assertEquals(filter.name(), 0, out.getRGB(x, y) & 0xffffff);
+                }
+            }
+            pool.release(out);
+        }
+    }
+}
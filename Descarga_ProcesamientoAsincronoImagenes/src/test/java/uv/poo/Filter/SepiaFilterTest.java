@@ -0,0 +1,80 @@
+package uv.poo.Filter;
+
+import junit.framework.TestCase;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Compara el SepiaFilter en punto fijo con la fórmula original en coma flotante
+ * para los tipos con camino rápido y para el camino alternativo.
+ */
+public class SepiaFilterTest extends TestCase {
+
+    public void testIntRgb() {
+        assertMatchesReference(randomImage(BufferedImage.TYPE_INT_RGB));
+    }
+
+    public void testIntArgbKeepsAlpha() {
+        BufferedImage src = randomImage(BufferedImage.TYPE_INT_ARGB);
+        src.setRGB(0, 0, 0x80ff8040);
+        BufferedImage out = new SepiaFilter().apply(src);
+        assertEquals(0x80, out.getRGB(0, 0) >>> 24);
+        assertMatchesReference(src);
+    }
+
+    public void testThreeByteBgr() {
+        assertMatchesReference(randomImage(BufferedImage.TYPE_3BYTE_BGR));
+    }
+
+    public void testFourByteAbgr() {
+        assertMatchesReference(randomImage(BufferedImage.TYPE_4BYTE_ABGR));
+    }
+
+    public void testFallbackForIndexed() {
+        BufferedImage src = randomImage(BufferedImage.TYPE_BYTE_INDEXED);
+        BufferedImage out = new SepiaFilter().apply(src);
+        assertEquals(BufferedImage.TYPE_INT_RGB, out.getType());
+        assertMatchesReference(src);
+    }
+
+    public void testSubimageUsesFallback() {
+        BufferedImage src = randomImage(BufferedImage.TYPE_INT_RGB).getSubimage(3, 5, 20, 10);
+        assertMatchesReference(src);
+    }
+
+    private static void assertMatchesReference(BufferedImage src) {
+        BufferedImage out = new SepiaFilter().apply(src);
+        assertEquals(src.getWidth(), out.getWidth());
+        assertEquals(src.getHeight(), out.getHeight());
+        for (int y = 0; y < src.getHeight(); y++) {
+            for (int x = 0; x < src.getWidth(); x++) {
+                Color c = new Color(src.getRGB(x, y));
+                Color o = new Color(out.getRGB(x, y));
+                assertClose(reference(0.393, 0.769, 0.189, c), o.getRed());
+                assertClose(reference(0.349, 0.686, 0.168, c), o.getGreen());
+                assertClose(reference(0.272, 0.534, 0.131, c), o.getBlue());
+            }
+        }
+    }
+
+    private static int reference(double kr, double kg, double kb, Color c) {
+        return Math.min(255, (int) (kr * c.getRed() + kg * c.getGreen() + kb * c.getBlue()));
+    }
+
+    private static void assertClose(int expected, int actual) {
+        assertTrue("esperado " + expected + " pero fue " + actual, Math.abs(expected - actual) <= 1);
+    }
+
+    private static BufferedImage randomImage(int type) {
+        Random random = new Random(42);
+        BufferedImage img = new BufferedImage(37, 23, type);
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                img.setRGB(x, y, 0xff000000 | random.nextInt(0x1000000));
+            }
+        }
+        return img;
+    }
+}
@@ -0,0 +1,65 @@
+package uv.poo.Filter;
+
+import junit.framework.TestCase;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Comprueba la normalización sin copia o con una conversión, y el contador de referencias de SourceImage.
+ */
+public class SourceImageTest extends TestCase {
+
+    private final RasterPool pool = new RasterPool(1 << 24);
+
+    public void testFastTypesAreSharedWithoutCopy() {
+        BufferedImage decoded = new BufferedImage(8, 4, BufferedImage.TYPE_3BYTE_BGR);
+        SourceImage source = SourceImage.normalize(decoded, pool);
+        assertSame(decoded, source.image());
+
+        BufferedImage sub = new BufferedImage(8, 4, BufferedImage.TYPE_INT_RGB).getSubimage(1, 1, 4, 2);
+        assertFalse(SourceImage.isCanonical(sub));
+    }
+
+    public void testIndexedImageIsConvertedOnceToPackedInt() {
+        BufferedImage decoded = new BufferedImage(5, 3, BufferedImage.TYPE_BYTE_INDEXED);
+        decoded.setRGB(2, 1, 0xffff0000);
+        decoded.setRGB(4, 2, 0xff0000ff);
+
+        SourceImage source = SourceImage.normalize(decoded, pool);
+        BufferedImage image = source.image();
+        assertEquals(BufferedImage.TYPE_INT_RGB, image.getType());
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 5; x++) {
+                assertEquals(decoded.getRGB(x, y), image.getRGB(x, y));
+            }
+        }
+    }
+
+    public void testLastReleaseReturnsRasterToPool() {
+        BufferedImage decoded = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        SourceImage source = SourceImage.normalize(decoded, pool);
+        source.retain();
+        source.retain();
+        assertEquals(3, source.refCount());
+
+        source.release();
+        source.release();
+        assertEquals(0, pool.pooledBytes());
+        source.release();
+        assertEquals(0, source.refCount());
+        assertSame(decoded, pool.acquire(16, 16, BufferedImage.TYPE_INT_RGB));
+
+        try {
+            source.retain();
+            fail("no se debe poder retener una fuente liberada");
+        } catch (IllegalStateException e) {
+            // esperado
+        }
+        try {
+            source.release();
+            fail("no se debe poder liberar de más");
+        } catch (IllegalStateException e) {
+            // esperado
+        }
+    }
+}
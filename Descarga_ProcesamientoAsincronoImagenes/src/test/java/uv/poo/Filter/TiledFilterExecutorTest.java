@@ -0,0 +1,51 @@
+package uv.poo.Filter;
+
+import junit.framework.TestCase;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Verifica que el resultado por bandas (con halo) sea idéntico al secuencial.
+ */
+public class TiledFilterExecutorTest extends TestCase {
+
+    private final TiledFilterExecutor executor = new TiledFilterExecutor(new ForkJoinPool(4), 3);
+
+    public void testSharpenBandsMatchConvolveOp() {
+        BufferedImage src = randomImage(BufferedImage.TYPE_INT_RGB);
+        Kernel kernel = new Kernel(3, 3, new float[]{0f, -1f, 0f, -1f, 5f, -1f, 0f, -1f, 0f});
+        BufferedImage expected = new ConvolveOp(kernel, ConvolveOp.EDGE_NO_OP, null).filter(src, null);
+        assertSamePixels(expected, executor.apply(new SharpenFilter(), src));
+    }
+
+    public void testPointFiltersBandsMatchSequential() {
+        BufferedImage src = randomImage(BufferedImage.TYPE_3BYTE_BGR);
+        for (TileFilter filter : new TileFilter[]{new SepiaFilter(), new BlackAndWhiteFilter()}) {
+            assertSamePixels(filter.apply(src), executor.apply(filter, src));
+        }
+    }
+
+    private static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getType(), actual.getType());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals("(" + x + "," + y + ")", expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    private static BufferedImage randomImage(int type) {
+        Random random = new Random(7);
+        BufferedImage img = new BufferedImage(41, 57, type);
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                img.setRGB(x, y, 0xff000000 | random.nextInt(0x1000000));
+            }
+        }
+        return img;
+    }
+}
@@ -0,0 +1,91 @@
+package uv.poo.IO;
+
+import junit.framework.TestCase;
+import uv.poo.Filter.RasterPool;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Comprueba que el decodificador ajustado da los mismos píxeles que el básico, que decodifica en
+ * rasters de la reserva y que el flujo sobre byte[] se comporta como un ImageInputStream.
+ */
+public class ImageIODecoderTest extends TestCase {
+
+    private final RasterPool pool = new RasterPool(1 << 26);
+    private final ImageIODecoder decoder = ImageIODecoder.tuned(pool);
+
+    public void testTunedMatchesBasicForJpegAndPng() throws IOException {
+        for (String format : new String[]{"jpg", "png"}) {
+            byte[] data = encode(sample(), format);
+            for (int box : new int[]{0, 90}) {
+                BufferedImage basic = ImageIODecoder.BASIC.decode(data, box, box);
+                BufferedImage tuned = decoder.decode(data, box, box);
+                assertEquals(basic.getType(), tuned.getType());
+                assertEquals(basic.getWidth(), tuned.getWidth());
+                assertEquals(basic.getHeight(), tuned.getHeight());
+                for (int y = 0; y < basic.getHeight(); y++) {
+                    for (int x = 0; x < basic.getWidth(); x++) {
+                        assertEquals(format + " " + box + " (" + x + "," + y + ")", basic.getRGB(x, y), tuned.getRGB(x, y));
+                    }
+                }
+            }
+        }
+    }
+
+    public void testDecodesIntoPooledRaster() throws IOException {
+        byte[] data = encode(sample(), "jpg");
+        BufferedImage first = decoder.decode(data, 0, 0);
+        pool.release(first);
+        BufferedImage second = decoder.decode(data, 0, 0);
+        assertSame(first, second);
+    }
+
+    public void testRejectsUnknownFormatAndName() {
+        try {
+            ImageIODecoder.TUNED.decode(new byte[]{1, 2, 3, 4}, 0, 0);
+            fail("se esperaba un formato no soportado");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("no soportado"));
+        }
+        assertSame(ImageIODecoder.TUNED, ImageDecoder.named(" ImageIO "));
+        try {
+            ImageDecoder.named("webp-nativo");
+            fail("se esperaba un decodificador desconocido");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("webp-nativo"));
+        }
+    }
+
+    public void testByteArrayStreamSeeksAndReads() throws IOException {
+        try (ByteArrayImageInputStream in = new ByteArrayImageInputStream(new byte[]{0, 1, 2, 3, 4, 5})) {
+            assertEquals(6, in.length());
+            in.seek(4);
+            assertEquals(4, in.read());
+            byte[] buf = new byte[4];
+            assertEquals(1, in.read(buf, 0, 4));
+            assertEquals(5, buf[0]);
+            assertEquals(-1, in.read());
+            in.seek(0);
+            assertEquals(0x0001, in.readShort());
+        }
+    }
+
+    private static BufferedImage sample() {
+        BufferedImage img = new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                img.setRGB(x, y, (x * 255 / 300) << 16 | (y * 255 / 200) << 8 | ((x + y) & 0xff));
+            }
+        }
+        return img;
+    }
+
+    private static byte[] encode(BufferedImage img, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(img, format, out));
+        return out.toByteArray();
+    }
+}
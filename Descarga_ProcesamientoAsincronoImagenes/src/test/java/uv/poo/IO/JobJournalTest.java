@@ -0,0 +1,83 @@
+package uv.poo.IO;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Comprueba la reanudación, el reparto entre procesos y la recuperación de URLs de procesos caídos
+ * de JobJournal (los procesos se simulan con varios diarios sobre el mismo directorio).
+ */
+public class JobJournalTest extends TestCase {
+
+    private Path dir;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("cola");
+    }
+
+    public void testResumesFinishedAndPartialUrls() throws IOException {
+        try (JobJournal first = JobJournal.open(dir, 60_000, 3, "w1")) {
+            assertTrue(first.tryLease("http://a/1"));
+            assertTrue(first.tryLease("http://a/2"));
+            first.outputWritten("http://a/1", "sepia");
+            first.outputWritten("http://a/1", "bw");
+            first.finished("http://a/1", true);
+            first.outputWritten("http://a/2", "sepia");
+            // El proceso termina sin acabar a/2: al cerrar la suelta
+        }
+
+        try (JobJournal second = JobJournal.open(dir, 60_000, 3, "w2")) {
+            assertFalse(second.tryLease("http://a/1"));
+            assertTrue(second.tryLease("http://a/2"));
+            assertTrue(second.isWritten("http://a/2", "sepia"));
+            assertFalse(second.isWritten("http://a/2", "bw"));
+            assertTrue(second.stats(), second.stats().contains("1 ya terminadas"));
+        }
+    }
+
+    public void testLiveWorkerKeepsItsLeaseAndFailuresAreRetriedUpToLimit() throws IOException {
+        try (JobJournal w1 = JobJournal.open(dir, 60_000, 2, "w1");
+             JobJournal w2 = JobJournal.open(dir, 60_000, 2, "w2")) {
+            assertTrue(w1.tryLease("http://a/1"));
+            assertFalse(w2.tryLease("http://a/1"));
+            assertTrue(w2.tryLease("http://a/2"));
+
+            w1.finished("http://a/1", false);
+            assertTrue(w2.tryLease("http://a/1"));
+            w2.finished("http://a/1", false);
+            assertFalse(w1.tryLease("http://a/1"));
+            assertTrue(w1.stats(), w1.stats().contains("1 sin más intentos"));
+        }
+    }
+
+    public void testReclaimsLeaseOfDeadProcessAndSkipsTornLine() throws IOException {
+        // Un proceso que ya no existe tomó la URL y murió a mitad de escribir la línea siguiente
+        String dead = "2147483646@1";
+        Path log = dir.resolve(JobJournal.FILE_NAME);
+        String lease = "L\t" + dead + "\t" + System.currentTimeMillis() + "\thttp://a/1";
+        Files.write(log, (lease + "\t" + crc(lease) + "\nO\t" + dead + "\t1").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        try (JobJournal journal = JobJournal.open(dir, 60_000, 3, "w1")) {
+            assertTrue(journal.tryLease("http://a/1"));
+            assertTrue(journal.stats(), journal.stats().contains("1 recuperadas"));
+            journal.finished("http://a/1", true);
+        }
+        try (JobJournal journal = JobJournal.open(dir, 60_000, 3, "w2")) {
+            assertFalse(journal.tryLease("http://a/1"));
+        }
+    }
+
+    private static String crc(String payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+}
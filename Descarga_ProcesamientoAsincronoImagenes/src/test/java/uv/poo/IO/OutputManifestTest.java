@@ -0,0 +1,155 @@
+package uv.poo.IO;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Comprueba el manifiesto del modo incremental: cuándo una salida está al día, que se recarga al
+ * reabrirlo (la última línea manda), que sólo borra las salidas no esperadas y que se compacta al cerrar.
+ */
+public class OutputManifestTest extends TestCase {
+
+    private Path dir;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("manifiesto");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    public void testUpToDateNeedsSameSourceVersionAndFile() throws IOException {
+        OutputManifest manifest = OutputManifest.open(dir);
+        writeOutput("a_bw.png");
+        manifest.record(new OutputManifest.Record("a_bw.png", "http://x/a", "h1", "bw", "1"));
+
+        assertTrue(manifest.isUpToDate("a_bw.png", "h1", "bw", "1"));
+        assertFalse("otra fuente", manifest.isUpToDate("a_bw.png", "h2", "bw", "1"));
+        assertFalse("otra versión", manifest.isUpToDate("a_bw.png", "h1", "bw", "2"));
+        assertFalse("otro filtro", manifest.isUpToDate("a_bw.png", "h1", "sepia", "1"));
+        assertFalse("sin registro", manifest.isUpToDate("b_bw.png", "h1", "bw", "1"));
+
+        Files.delete(dir.resolve("a_bw.png"));
+        assertFalse("sin archivo", manifest.isUpToDate("a_bw.png", "h1", "bw", "1"));
+        manifest.close();
+    }
+
+    public void testReopenKeepsLastRecordOfEachOutput() throws IOException {
+        writeOutput("a_bw.png");
+        writeOutput("b_bw.png");
+        OutputManifest manifest = OutputManifest.open(dir);
+        manifest.record(new OutputManifest.Record("a_bw.png", "http://x/a", "h1", "bw", "1"));
+        manifest.record(new OutputManifest.Record("b_bw.png", "http://x/b", "h1", "bw", "1"));
+        manifest.record(new OutputManifest.Record("a_bw.png", "http://x/a", "h2", "bw", "2"));
+        // Sin cerrar: el archivo tiene las tres líneas, como tras una ejecución interrumpida
+        assertEquals(3, lines().size());
+
+        OutputManifest reopened = OutputManifest.open(dir);
+        assertTrue(reopened.isUpToDate("a_bw.png", "h2", "bw", "2"));
+        assertFalse(reopened.isUpToDate("a_bw.png", "h1", "bw", "1"));
+        assertTrue(reopened.isUpToDate("b_bw.png", "h1", "bw", "1"));
+        manifest.close();
+        reopened.close();
+    }
+
+    public void testRemovesOnlyOutputsNotExpected() throws IOException {
+        writeOutput("a_bw.png");
+        writeOutput("b_bw.png");
+        writeOutput("otro.png");
+        OutputManifest manifest = OutputManifest.open(dir);
+        manifest.record(new OutputManifest.Record("a_bw.png", "http://x/a", "h1", "bw", "1"));
+        manifest.record(new OutputManifest.Record("b_bw.png", "http://x/b", "h1", "bw", "1"));
+
+        // "a" está en la lista aunque no se haya regenerado; "b" ya no
+        manifest.expect("a_bw.png");
+        assertEquals(List.of("b_bw.png"), manifest.removeOrphans());
+        assertTrue(Files.exists(dir.resolve("a_bw.png")));
+        assertFalse(Files.exists(dir.resolve("b_bw.png")));
+        assertTrue("archivo ajeno al manifiesto", Files.exists(dir.resolve("otro.png")));
+        assertTrue(manifest.isUpToDate("a_bw.png", "h1", "bw", "1"));
+
+        manifest.close();
+        // En la siguiente ejecución nadie la espera
+        OutputManifest next = OutputManifest.open(dir);
+        assertEquals(List.of("a_bw.png"), next.removeOrphans());
+        next.close();
+    }
+
+    public void testPyramidLevelsArePartOfTheirOutput() throws IOException {
+        writeOutput("a_bw.png");
+        writeOutput("a_bw_64x48.png");
+        writeOutput("a_bw_16x12.png");
+        OutputManifest manifest = OutputManifest.open(dir);
+        OutputManifest.Record a = new OutputManifest.Record("a_bw.png", "http://x/a", "h1", "bw", "1", "64x64,16x16", "");
+        manifest.record(a, List.of("a_bw_64x48.png", "a_bw_16x12.png"));
+        assertTrue(manifest.isUpToDate("a_bw.png", "h1", "bw", "1", "64x64,16x16"));
+        assertFalse("otros niveles", manifest.isUpToDate("a_bw.png", "h1", "bw", "1", "64x64"));
+        assertFalse("sin niveles", manifest.isUpToDate("a_bw.png", "h1", "bw", "1"));
+        manifest.close();
+
+        // Al recargar se conservan los niveles; si falta uno, la salida no está al día
+        manifest = OutputManifest.open(dir);
+        Files.delete(dir.resolve("a_bw_16x12.png"));
+        assertFalse(manifest.isUpToDate("a_bw.png", "h1", "bw", "1", "64x64,16x16"));
+
+        // Regenerada con otros niveles: los que ya no tiene se borran
+        writeOutput("a_bw_32x24.png");
+        a = new OutputManifest.Record("a_bw.png", "http://x/a", "h1", "bw", "1", "32x32", "");
+        manifest.record(a, List.of("a_bw_32x24.png"));
+        assertFalse(Files.exists(dir.resolve("a_bw_64x48.png")));
+        assertTrue(manifest.isUpToDate("a_bw.png", "h1", "bw", "1", "32x32"));
+
+        // Sin cerrar, la última línea de la salida manda también sobre sus niveles
+        OutputManifest reopened = OutputManifest.open(dir);
+        assertTrue(reopened.isUpToDate("a_bw.png", "h1", "bw", "1", "32x32"));
+        // Nadie la espera: se borran la salida y sus niveles
+        assertEquals(List.of("a_bw.png", "a_bw_32x24.png"), sorted(reopened.removeOrphans()));
+        assertFalse(Files.exists(dir.resolve("a_bw_32x24.png")));
+        manifest.close();
+        reopened.close();
+    }
+
+    public void testCloseCompactsToOneLinePerOutput() throws IOException {
+        writeOutput("a_bw.png");
+        OutputManifest manifest = OutputManifest.open(dir);
+        for (int version = 1; version <= 4; version++) {
+            manifest.record(new OutputManifest.Record("a_bw.png", "http://x/a", "h1", "bw", String.valueOf(version)));
+        }
+        manifest.record(new OutputManifest.Record("b_bw.png", "http://x/b", "h1", "bw", "1"));
+        manifest.close();
+
+        List<String> lines = lines();
+        assertEquals(2, lines.size());
+        assertTrue(lines.contains(String.join("\t", "a_bw.png", "http://x/a", "h1", "bw", "4", "", "")));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertFalse("quedó un temporal", files.anyMatch(p -> p.getFileName().toString().endsWith(".tmp")));
+        }
+        OutputManifest reopened = OutputManifest.open(dir);
+        assertTrue(reopened.isUpToDate("a_bw.png", "h1", "bw", "4"));
+        reopened.close();
+    }
+
+    private static List<String> sorted(List<String> names) {
+        return names.stream().sorted().toList();
+    }
+
+    private void writeOutput(String name) throws IOException {
+        Files.write(dir.resolve(name), new byte[]{1, 2, 3});
+    }
+
+    private List<String> lines() throws IOException {
+        return Files.readAllLines(dir.resolve(".manifest"), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,90 @@
+package uv.poo.IO;
+
+import junit.framework.TestCase;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Comprueba que los PNG del PngEncoder se decodifican con ImageIO sin pérdida,
+ * con cada filtro de filas y cada tipo de color.
+ */
+public class PngEncoderTest extends TestCase {
+
+    public void testEveryRowFilterRoundTrips() throws IOException {
+        BufferedImage src = randomImage(BufferedImage.TYPE_INT_RGB);
+        for (PngEncoder.RowFilter filter : PngEncoder.RowFilter.values()) {
+            assertSamePixels(src, roundTrip(src, 6, filter));
+        }
+    }
+
+    public void testAlphaRoundTrips() throws IOException {
+        BufferedImage src = randomImage(BufferedImage.TYPE_INT_ARGB);
+        BufferedImage back = roundTrip(src, 1, PngEncoder.RowFilter.PAETH);
+        assertTrue(back.getColorModel().hasAlpha());
+        assertSamePixels(src, back);
+    }
+
+    public void testGrayKeepsRawBytes() throws IOException {
+        BufferedImage src = randomImage(BufferedImage.TYPE_BYTE_GRAY);
+        BufferedImage back = roundTrip(src, 9, PngEncoder.RowFilter.ADAPTIVE);
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, back.getType());
+        for (int y = 0; y < src.getHeight(); y++) {
+            for (int x = 0; x < src.getWidth(); x++) {
+                assertEquals(src.getRaster().getSample(x, y, 0), back.getRaster().getSample(x, y, 0));
+            }
+        }
+    }
+
+    public void testJpegProfileDropsAlpha() throws IOException {
+        byte[] data = ImageWriter.encode(randomImage(BufferedImage.TYPE_INT_ARGB), EncodingProfile.JPEG);
+        BufferedImage back = ImageIO.read(new ByteArrayInputStream(data));
+        assertEquals(37, back.getWidth());
+        assertFalse(back.getColorModel().hasAlpha());
+    }
+
+    private static BufferedImage roundTrip(BufferedImage src, int level, PngEncoder.RowFilter filter) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PngEncoder.encode(src, out, level, filter);
+        return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    /**
+     * Degradado con ruido: tiene zonas suaves (donde los filtros ayudan) y bordes.
+     */
+    private static BufferedImage randomImage(int type) {
+        Random random = new Random(42);
+        BufferedImage img = new BufferedImage(37, 23, type);
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                int r = (x * 7 + random.nextInt(8)) & 0xff;
+                int g = (y * 11 + random.nextInt(8)) & 0xff;
+                int b = random.nextInt(256);
+                int a = 64 + random.nextInt(192);
+                img.setRGB(x, y, (a << 24) | (r << 16) | (g << 8) | b);
+            }
+        }
+        if (type == BufferedImage.TYPE_BYTE_GRAY) {
+            for (int y = 0; y < img.getHeight(); y++) {
+                for (int x = 0; x < img.getWidth(); x++) {
+                    img.getRaster().setSample(x, y, 0, (x * 5 + y * 3 + random.nextInt(4)) & 0xff);
+                }
+            }
+        }
+        return img;
+    }
+}
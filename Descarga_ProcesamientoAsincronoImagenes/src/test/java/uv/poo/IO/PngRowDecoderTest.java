@@ -0,0 +1,144 @@
+package uv.poo.IO;
+
+import junit.framework.TestCase;
+import uv.poo.Filter.Pixels;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Comprueba que el decodificador por filas da los mismos píxeles que ImageIO con los PNG de
+ * ImageIO (todos los tipos de color habituales) y con los de {@link PngEncoder} (todos los
+ * filtros de fila, con varios fragmentos IDAT).
+ */
+public class PngRowDecoderTest extends TestCase {
+
+    public void testMatchesImageIOForEveryColorType() throws IOException {
+        int[] types = {
+                BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_BYTE_GRAY,
+                BufferedImage.TYPE_BYTE_BINARY, BufferedImage.TYPE_USHORT_GRAY
+        };
+        for (int type : types) {
+            BufferedImage img = randomImage(new BufferedImage(37, 23, type));
+            assertDecodesLike(encodeWithImageIO(img, false), "tipo " + type);
+        }
+
+        // Paleta de 4 bits con una entrada transparente (tRNS)
+        byte[] r = new byte[16];
+        byte[] g = new byte[16];
+        byte[] b = new byte[16];
+        byte[] a = new byte[16];
+        for (int i = 0; i < 16; i++) {
+            r[i] = (byte) (i * 16);
+            g[i] = (byte) (255 - i * 16);
+            b[i] = (byte) (i * 7);
+            a[i] = (byte) (i == 3 ? 0 : 255);
+        }
+        BufferedImage indexed = new BufferedImage(41, 19, BufferedImage.TYPE_BYTE_BINARY,
+                new IndexColorModel(4, 16, r, g, b, a));
+        randomImage(indexed);
+        assertDecodesLike(encodeWithImageIO(indexed, false), "paleta");
+    }
+
+    public void testMatchesPngEncoderForEveryRowFilter() throws IOException {
+        // Ruido: más de 64 KB comprimidos, así que hay varios fragmentos IDAT
+        BufferedImage rgb = randomImage(new BufferedImage(180, 150, BufferedImage.TYPE_INT_RGB));
+        BufferedImage argb = randomImage(new BufferedImage(61, 40, BufferedImage.TYPE_INT_ARGB));
+        BufferedImage gray = randomImage(new BufferedImage(53, 31, BufferedImage.TYPE_BYTE_GRAY));
+        for (PngEncoder.RowFilter filter : PngEncoder.RowFilter.values()) {
+            for (BufferedImage img : new BufferedImage[]{rgb, argb, gray}) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                PngEncoder.encode(img, out, 6, filter);
+                assertDecodesLike(out.toByteArray(), filter + " tipo " + img.getType());
+            }
+        }
+    }
+
+    public void testRejectsInterlacedAndExtraRows() throws IOException {
+        BufferedImage img = randomImage(new BufferedImage(16, 9, BufferedImage.TYPE_INT_RGB));
+        byte[] interlaced = encodeWithImageIO(img, true);
+        assertFalse(PngRowDecoder.canDecode(interlaced));
+        assertFalse(PngRowDecoder.canDecode(new byte[]{1, 2, 3}));
+
+        byte[] plain = encodeWithImageIO(img, false);
+        assertTrue(PngRowDecoder.canDecode(plain));
+        try (PngRowDecoder decoder = new PngRowDecoder(plain)) {
+            int[] row = new int[16];
+            for (int y = 0; y < 9; y++) {
+                decoder.readRow(row, 0);
+            }
+            decoder.readRow(row, 0);
+            fail("se esperaba un error al leer más filas que el alto");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("No quedan filas"));
+        }
+    }
+
+    private static void assertDecodesLike(byte[] png, String label) throws IOException {
+        BufferedImage expected = ImageIO.read(new ByteArrayInputStream(png));
+        int w = expected.getWidth();
+        int[] row = new int[w + 3];
+        int[] want = new int[w];
+        try (PngRowDecoder decoder = new PngRowDecoder(png)) {
+            assertEquals(label, w, decoder.width());
+            assertEquals(label, expected.getHeight(), decoder.height());
+            assertEquals(label, expected.getColorModel().hasAlpha(), decoder.hasAlpha());
+            for (int y = 0; y < expected.getHeight(); y++) {
+                decoder.readRow(row, 3);
+                expectedRow(expected, y, want);
+                for (int x = 0; x < w; x++) {
+                    assertEquals(label + " (" + x + "," + y + ")", want[x], row[3 + x]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fila de referencia; en gris de 16 bits, el byte alto de la muestra (como el decodificador).
+     */
+    private static void expectedRow(BufferedImage img, int y, int[] row) {
+        if (img.getType() == BufferedImage.TYPE_USHORT_GRAY) {
+            for (int x = 0; x < row.length; x++) {
+                row[x] = 0xff000000 | (img.getRaster().getSample(x, y, 0) >> 8) * 0x010101;
+            }
+        } else {
+            Pixels.readRow(img, y, row);
+        }
+    }
+
+    private static byte[] encodeWithImageIO(BufferedImage img, boolean interlaced) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setProgressiveMode(interlaced ? ImageWriteParam.MODE_DEFAULT : ImageWriteParam.MODE_DISABLED);
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static BufferedImage randomImage(BufferedImage img) {
+        Random random = new Random(img.getWidth() * 31L + img.getType());
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                for (int band = 0; band < img.getRaster().getNumBands(); band++) {
+                    int max = (1 << img.getSampleModel().getSampleSize(band)) - 1;
+                    img.getRaster().setSample(x, y, band, random.nextInt(max + 1));
+                }
+            }
+        }
+        return img;
+    }
+}
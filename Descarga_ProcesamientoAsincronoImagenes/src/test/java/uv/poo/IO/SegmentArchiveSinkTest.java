@@ -0,0 +1,94 @@
+package uv.poo.IO;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Comprueba que las salidas escritas en segmentos se leen igual por nombre, también sin índice y
+ * tras varias ejecuciones sobre el mismo directorio.
+ */
+public class SegmentArchiveSinkTest extends TestCase {
+
+    private Path dir;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("segmentos");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static byte[] payload(int i) {
+        byte[] data = new byte[100 + i * 37];
+        for (int j = 0; j < data.length; j++) {
+            data[j] = (byte) (i * 31 + j);
+        }
+        return data;
+    }
+
+    /**
+     * Escribe n salidas con lotes de 1 KB y segmentos de 4 KB, y espera a que sean durables.
+     */
+    private void writeOutputs(int n, String suffix) throws Exception {
+        try (SegmentArchiveSink sink = new SegmentArchiveSink(dir, 1024, 20, 4096)) {
+            List<CompletableFuture<Void>> written = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                written.add(sink.write("img" + i + suffix, payload(i)));
+            }
+            CompletableFuture.allOf(written.toArray(new CompletableFuture[0])).get();
+        }
+    }
+
+    public void testRoundTripAcrossBatchesAndSegments() throws Exception {
+        writeOutputs(40, ".png");
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.filter(p -> p.toString().endsWith(".seg")).count() > 1);
+        }
+        try (SegmentArchiveReader reader = SegmentArchiveReader.open(dir)) {
+            assertEquals(40, reader.names().size());
+            for (int i = 0; i < 40; i++) {
+                assertTrue(Arrays.equals(payload(i), reader.read("img" + i + ".png")));
+            }
+            assertNull(reader.read("no-existe.png"));
+        }
+    }
+
+    public void testRebuildsMissingIndexByScanningRecords() throws Exception {
+        writeOutputs(10, ".png");
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path idx : files.filter(p -> p.toString().endsWith(".idx")).toList()) {
+                Files.delete(idx);
+            }
+        }
+        try (SegmentArchiveReader reader = SegmentArchiveReader.open(dir)) {
+            assertEquals(10, reader.names().size());
+            assertTrue(Arrays.equals(payload(7), reader.read("img7.png")));
+        }
+    }
+
+    public void testLaterRunsAppendNewSegmentsAndWin() throws Exception {
+        writeOutputs(3, ".png");
+        try (SegmentArchiveSink sink = new SegmentArchiveSink(dir, 1 << 20, 10, 1 << 20)) {
+            sink.write("img1.png", payload(99)).get();
+        }
+        try (SegmentArchiveReader reader = SegmentArchiveReader.open(dir)) {
+            assertEquals(3, reader.names().size());
+            assertTrue(Arrays.equals(payload(99), reader.read("img1.png")));
+            assertTrue(Arrays.equals(payload(2), reader.read("img2.png")));
+        }
+    }
+}
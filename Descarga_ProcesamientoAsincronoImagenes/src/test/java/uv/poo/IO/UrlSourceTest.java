@@ -0,0 +1,51 @@
+package uv.poo.IO;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Comprueba la lectura perezosa de URLs, el descarte de repetidas y el conjunto de hashes.
+ */
+public class UrlSourceTest extends TestCase {
+
+    public void testSkipsBlankLinesAndDuplicates() throws IOException {
+        Path file = Files.createTempFile("urls", ".txt");
+        try {
+            Files.writeString(file, "http://a/1\n\n  http://a/2  \nhttp://a/1\n   \nhttp://a/3", StandardCharsets.UTF_8);
+            List<String> urls = new ArrayList<>();
+            try (UrlSource source = UrlSource.open(file)) {
+                source.forEachRemaining(urls::add);
+                assertEquals(1, source.duplicates());
+            }
+            assertEquals(List.of("http://a/1", "http://a/2", "http://a/3"), urls);
+
+            try (UrlSource source = UrlSource.open(file, false)) {
+                int count = 0;
+                while (source.hasNext()) {
+                    source.next();
+                    count++;
+                }
+                assertEquals(4, count);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testLongHashSetGrowsAndHandlesZero() {
+        LongHashSet set = new LongHashSet(4);
+        for (long i = 0; i < 100_000; i++) {
+            assertTrue(set.add(i * 31));
+        }
+        for (long i = 0; i < 100_000; i++) {
+            assertFalse(set.add(i * 31));
+        }
+        assertEquals(100_000, set.size());
+    }
+}
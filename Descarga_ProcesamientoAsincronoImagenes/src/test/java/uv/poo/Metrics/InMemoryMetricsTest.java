@@ -0,0 +1,45 @@
+package uv.poo.Metrics;
+
+import junit.framework.TestCase;
+
+/**
+ * Comprueba los percentiles del histograma y los contadores de InMemoryMetrics.
+ */
+public class InMemoryMetricsTest extends TestCase {
+
+    public void testPercentilesWithinBucket() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            h.record(i * 1_000_000L); // 1..100 ms
+        }
+        assertEquals(100, h.count());
+        assertEquals(50.5, h.meanMillis(), 0.01);
+        assertEquals(100.0, h.maxMillis(), 0.01);
+        // Las cubetas son potencias de 2: el percentil se sobreestima como mucho al doble
+        double p50 = h.percentileMillis(0.50);
+        assertTrue("p50 = " + p50, p50 >= 50 && p50 <= 100);
+        assertEquals(100.0, h.percentileMillis(0.99), 0.01);
+    }
+
+    public void testEmptyHistogram() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0.0, h.percentileMillis(0.99), 0.0);
+        assertEquals(0.0, h.meanMillis(), 0.0);
+    }
+
+    public void testCountersAndSummary() {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        metrics.recordLatency(Stage.DOWNLOAD, 2_000_000L);
+        metrics.recordError(Stage.DOWNLOAD);
+        metrics.addBytesIn(1000);
+        metrics.addBytesOut(500);
+        metrics.imageCompleted();
+        assertEquals(1, metrics.latency(Stage.DOWNLOAD).count());
+        assertEquals(1, metrics.errors(Stage.DOWNLOAD));
+        assertEquals(0, metrics.errors(Stage.WRITE));
+        assertEquals(1, metrics.images());
+        String summary = metrics.summary(1_000_000_000L);
+        assertTrue(summary, summary.contains("DOWNLOAD"));
+        assertTrue(summary, summary.contains("1 imágenes en 1.0 s"));
+    }
+}
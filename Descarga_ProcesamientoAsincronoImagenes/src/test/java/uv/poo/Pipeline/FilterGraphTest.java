@@ -0,0 +1,66 @@
+package uv.poo.Pipeline;
+
+import junit.framework.TestCase;
+import uv.poo.Filter.FilterChain;
+import uv.poo.IO.EncodingProfile;
+
+/**
+ * Comprueba la lectura del grafo de filtros: cadenas, definiciones auxiliares, tamaños, formatos
+ * propios, instancias compartidas y errores con su número de línea.
+ */
+public class FilterGraphTest extends TestCase {
+
+    public void testParsesChainsDefinitionsSizesAndFormats() {
+        OutputSpec[] outputs = FilterGraph.parse(
+                "# salidas\n"
+                        + "sepia = sepia\n"
+                        + "let mini = resize(640x480) | sharpen   # auxiliar\n"
+                        + "mini_sepia = mini | sepia | contrast(1.2) -> jpeg\n"
+                        + "mini_bw    = mini | bw\n", "prueba").outputs();
+        assertEquals(3, outputs.length);
+
+        assertEquals("sepia", outputs[0].outputName());
+        assertTrue(outputs[0].isFullSize());
+        assertNull(outputs[0].profile);
+        // Una cadena de un filtro conserva la versión del filtro: las salidas de siempre siguen al día
+        assertEquals("2", outputs[0].filter.version());
+
+        assertEquals("mini_sepia_640x480", outputs[1].outputName());
+        assertSame(EncodingProfile.JPEG, outputs[1].profile);
+        FilterChain sepia = (FilterChain) outputs[1].filter;
+        FilterChain bw = (FilterChain) outputs[2].filter;
+        assertEquals(3, sepia.steps().size());
+        assertEquals("sharpen@1|sepia@2|contrast(1.2)@1", sepia.version());
+        // El mismo paso es la misma instancia en todas las cadenas
+        assertSame(sepia.steps().get(0), bw.steps().get(0));
+        assertSame(((FilterChain) outputs[0].filter).steps().get(0), sepia.steps().get(1));
+        assertEquals(640, outputs[2].maxWidth);
+        assertNull(outputs[2].profile);
+    }
+
+    public void testDefaultsAreTheClassicOutputs() {
+        OutputSpec[] outputs = FilterGraph.defaults().outputs();
+        assertEquals(3, outputs.length);
+        assertEquals("sepia", outputs[0].outputName());
+        assertEquals("bw", outputs[1].outputName());
+        assertEquals("sharpen", outputs[2].outputName());
+    }
+
+    public void testReportsErrorsWithLineNumbers() {
+        assertError("a = sepia\nb = sepia | nada\n", "prueba:2: filtro o cadena desconocida 'nada'");
+        assertError("a = sepia | resize(10x10)\n", "prueba:1: 'resize(10x10)' cambia el tamaño");
+        assertError("a = sepia\na = bw\n", "prueba:2: 'a' ya está definido");
+        assertError("a = blur(2, x)\n", "prueba:1: argumento no numérico en blur");
+        assertError("a = sepia -> webp\n", "prueba:1: Perfil de codificación desconocido");
+        assertError("let a = sepia\n", "prueba: no define ninguna salida");
+    }
+
+    private static void assertError(String text, String expected) {
+        try {
+            FilterGraph.parse(text, "prueba");
+            fail("se esperaba un error: " + expected);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(expected));
+        }
+    }
+}
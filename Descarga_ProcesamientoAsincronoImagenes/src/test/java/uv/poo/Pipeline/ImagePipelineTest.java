@@ -0,0 +1,382 @@
+package uv.poo.Pipeline;
+
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import uv.poo.Config.Backpressure;
+import uv.poo.Config.ExecutorConfig;
+import uv.poo.Config.PipelineSettings;
+import uv.poo.Filter.ImageFilter;
+import uv.poo.IO.DirectorySink;
+import uv.poo.IO.EncodingProfile;
+import uv.poo.IO.OutputSink;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Prueba el pipeline completo contra un servidor HTTP local, con pools y colas diminutos y una
+ * etapa de filtrado lenta: backpressure al enviar, huecos de memoria y recuento de salidas.
+ */
+public class ImagePipelineTest extends TestCase {
+
+    private HttpServer server;
+    private byte[] fixture;
+    private Path dir;
+    /** Peticiones retenidas hasta que se abra su cerrojo, por id. */
+    private final Map<String, CountDownLatch> gates = new ConcurrentHashMap<>();
+    /** Ids que responden 404. */
+    private final Set<String> missing = ConcurrentHashMap.newKeySet();
+    /** Peticiones servidas, por id. */
+    private final Map<String, AtomicInteger> served = new ConcurrentHashMap<>();
+    private final CountDownLatch gateReached = new CountDownLatch(1);
+
+    @Override
+    protected void setUp() throws Exception {
+        BufferedImage img = new BufferedImage(32, 24, BufferedImage.TYPE_INT_RGB);
+        img.setRGB(5, 5, 0x336699);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(img, "png", out);
+        fixture = out.toByteArray();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/id/", exchange -> {
+            String id = exchange.getRequestURI().getPath().split("/")[2];
+            try {
+                CountDownLatch gate = gates.get(id);
+                if (gate != null) {
+                    gateReached.countDown();
+                    gate.await(10, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (missing.contains(id)) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            served.computeIfAbsent(id, k -> new AtomicInteger()).incrementAndGet();
+            exchange.sendResponseHeaders(200, fixture.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(fixture);
+            }
+        });
+        server.start();
+
+        dir = Files.createTempDirectory("pipeline");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        server.stop(0);
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    public void testSubmitBlocksWhileDownloadsAreFull() throws Exception {
+        PipelineSettings settings = settings(Backpressure.BLOCK);
+        ExecutorConfig executors = ExecutorConfig.createExecutors(settings);
+        ImagePipeline pipeline = new ImagePipeline(executors, new ImageFilter[]{new SlowFilter(0)}, EncodingProfile.PNG_FAST, sink());
+        gates.put("1", new CountDownLatch(1));
+
+        pipeline.submit(url(1));
+        assertTrue(gateReached.await(5, TimeUnit.SECONDS));
+        // La única descarga permitida está retenida: el siguiente envío debe esperar
+        Thread sender = new Thread(() -> pipeline.submit(url(2)));
+        sender.start();
+        sender.join(300);
+        assertTrue("submit debería estar bloqueado", sender.isAlive());
+        assertNull(served.get("2"));
+
+        gates.get("1").countDown();
+        sender.join(5000);
+        assertFalse(sender.isAlive());
+        RunReport report = finish(pipeline, executors);
+        assertEquals(2, report.count(ImageResult.Status.OK));
+        assertEquals(1, served.get("2").get());
+    }
+
+    public void testSubmitRunsOnCallerWhileDownloadsAreFull() throws Exception {
+        PipelineSettings settings = settings(Backpressure.CALLER_RUNS);
+        ExecutorConfig executors = ExecutorConfig.createExecutors(settings);
+        ImagePipeline pipeline = new ImagePipeline(executors, new ImageFilter[]{new SlowFilter(0)}, EncodingProfile.PNG_FAST, sink());
+        gates.put("1", new CountDownLatch(1));
+
+        pipeline.submit(url(1));
+        assertTrue(gateReached.await(5, TimeUnit.SECONDS));
+        // Sin hueco en las descargas, la segunda se hace en este hilo mientras la primera sigue retenida
+        pipeline.submit(url(2));
+        assertEquals(1, served.get("2").get());
+        assertEquals(1, gates.get("1").getCount());
+
+        gates.get("1").countDown();
+        RunReport report = finish(pipeline, executors);
+        assertEquals(2, report.count(ImageResult.Status.OK));
+    }
+
+    public void testFullStageQueueBlocksOrRunsOnCaller() throws Exception {
+        for (Backpressure policy : Backpressure.values()) {
+            PipelineSettings settings = settings(policy);
+            ExecutorConfig executors = ExecutorConfig.createExecutors(settings);
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch started = new CountDownLatch(1);
+            // Un hilo ocupado y la cola (capacidad 1) llena
+            executors.filterPool.execute(() -> {
+                started.countDown();
+                await(release);
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            executors.filterPool.execute(() -> { });
+
+            AtomicReference<Thread> ranOn = new AtomicReference<>();
+            Thread sender = new Thread(() -> executors.filterPool.execute(() -> ranOn.set(Thread.currentThread())));
+            sender.start();
+            sender.join(300);
+            if (policy == Backpressure.BLOCK) {
+                assertTrue("execute debería esperar hueco en la cola", sender.isAlive());
+                assertNull(ranOn.get());
+                release.countDown();
+                sender.join(5000);
+                assertFalse(sender.isAlive());
+            } else {
+                assertFalse(sender.isAlive());
+                assertSame(sender, ranOn.get());
+                release.countDown();
+            }
+            ExecutorConfig.shutdownAll(executors);
+            assertNotNull(ranOn.get());
+        }
+    }
+
+    public void testNeverHoldsMoreImagesThanSlots() throws Exception {
+        PipelineSettings settings = settings(Backpressure.BLOCK);
+        settings.downloadConcurrency = 8;
+        settings.decodeThreads       = 4;
+        settings.filterThreads       = 4;
+        settings.maxImagesInFlight   = 2;
+        ExecutorConfig executors = ExecutorConfig.createExecutors(settings);
+        SlowFilter slow = new SlowFilter(30);
+        ImagePipeline pipeline = new ImagePipeline(executors, new ImageFilter[]{slow}, EncodingProfile.PNG_FAST, sink());
+        slow.pipeline = pipeline;
+
+        List<CompletableFuture<ImageResult>> results = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            results.add(pipeline.submit(url(i)));
+        }
+        finish(pipeline, executors);
+        for (CompletableFuture<ImageResult> result : results) {
+            assertEquals(ImageResult.Status.OK, result.get().status);
+        }
+        assertTrue("huecos ocupados: " + slow.maxInMemory.get(), slow.maxInMemory.get() <= 2);
+        assertTrue(slow.maxInMemory.get() >= 1);
+        // Hay 4 hilos de filtrado, pero sólo 2 imágenes pueden estar decodificadas a la vez
+        assertTrue("filtrados simultáneos: " + slow.maxRunning.get(), slow.maxRunning.get() <= 2);
+        assertEquals(0, pipeline.imagesInMemory());
+    }
+
+    public void testFailedDownloadCountsOnlyPendingOutputs() throws Exception {
+        PipelineSettings settings = settings(Backpressure.BLOCK);
+        settings.journalDir = dir.resolve("cola").toString();
+        SlowFilter b = new SlowFilter(0, "b");
+        OutputSpec[] outputs = {OutputSpec.full(new SlowFilter(0, "a")), OutputSpec.fit(b, 16, 12)};
+
+        // Primera ejecución: "a" se escribe y "b" falla
+        b.fail = true;
+        ExecutorConfig executors = ExecutorConfig.createExecutors(settings);
+        ImagePipeline pipeline = new ImagePipeline(executors, outputs, EncodingProfile.PNG_FAST, sink());
+        assertTrue(pipeline.journal().tryLease(url(1)));
+        assertEquals(ImageResult.Status.PARTIAL, pipeline.submit(url(1)).get().status);
+        finish(pipeline, executors);
+
+        // Segunda: "a" ya está escrita según la cola, así que al fallar la descarga sólo falla "b"
+        b.fail = false;
+        missing.add("1");
+        executors = ExecutorConfig.createExecutors(settings);
+        pipeline = new ImagePipeline(executors, outputs, EncodingProfile.PNG_FAST, sink());
+        assertTrue(pipeline.journal().tryLease(url(1)));
+        ImageResult result = pipeline.submit(url(1)).get();
+        finish(pipeline, executors);
+        assertEquals(ImageResult.Status.FAILED, result.status);
+        assertEquals(0, result.written);
+        assertEquals(1, result.failed);
+    }
+
+    public void testJournalSkipsDoNotRemoveIncrementalOutputs() throws Exception {
+        PipelineSettings settings = settings(Backpressure.BLOCK);
+        settings.journalDir  = dir.resolve("cola").toString();
+        settings.incremental = true;
+        ImageFilter[] filters = {new SlowFilter(0, "a")};
+        Path out1 = dir.resolve("salidas").resolve("id1_32x24_a.png");
+        Path out2 = dir.resolve("salidas").resolve("id2_32x24_a.png");
+
+        ExecutorConfig executors = ExecutorConfig.createExecutors(settings);
+        ImagePipeline pipeline = new ImagePipeline(executors, filters, EncodingProfile.PNG_FAST, sink());
+        for (int id = 1; id <= 2; id++) {
+            pipeline.expect(url(id));
+            assertTrue(pipeline.journal().tryLease(url(id)));
+            pipeline.submit(url(id));
+        }
+        assertEquals(2, finish(pipeline, executors).count(ImageResult.Status.OK));
+        assertTrue(Files.exists(out1));
+        assertTrue(Files.exists(out2));
+
+        // Segunda ejecución, como en App: la cola ya las tiene terminadas y no se envían, pero
+        // siguen en la lista; la URL 2 ya no está, así que su salida sí es huérfana
+        executors = ExecutorConfig.createExecutors(settings);
+        pipeline = new ImagePipeline(executors, filters, EncodingProfile.PNG_FAST, sink());
+        pipeline.expect(url(1));
+        assertFalse(pipeline.journal().tryLease(url(1)));
+        finish(pipeline, executors);
+        assertTrue("salida borrada como huérfana", Files.exists(out1));
+        assertFalse(Files.exists(out2));
+        assertEquals(1, served.get("1").get());
+    }
+
+    public void testIncrementalTracksPyramidLevels() throws Exception {
+        PipelineSettings settings = settings(Backpressure.BLOCK);
+        settings.incremental = true;
+        settings.pyramid     = "16x16";
+        ImageFilter[] filters = {new SlowFilter(0, "a")};
+        Path out = dir.resolve("salidas").resolve("id1_32x24_a.png");
+        Path level16 = dir.resolve("salidas").resolve("id1_32x24_a_16x12.png");
+        Path level8 = dir.resolve("salidas").resolve("id1_32x24_a_8x6.png");
+
+        assertEquals(ImageResult.Status.OK, run(settings, filters));
+        assertTrue(Files.exists(out));
+        assertTrue(Files.exists(level16));
+        assertEquals(ImageResult.Status.UP_TO_DATE, run(settings, filters));
+
+        // Falta un nivel: la salida se regenera
+        Files.delete(level16);
+        assertEquals(ImageResult.Status.OK, run(settings, filters));
+        assertTrue(Files.exists(level16));
+
+        // Otros niveles: se regenera y el nivel anterior se borra
+        settings.pyramid = "8x8";
+        assertEquals(ImageResult.Status.OK, run(settings, filters));
+        assertTrue(Files.exists(level8));
+        assertFalse(Files.exists(level16));
+        assertEquals(ImageResult.Status.UP_TO_DATE, run(settings, filters));
+    }
+
+    /**
+     * Una ejecución completa con la URL 1.
+     */
+    private ImageResult.Status run(PipelineSettings settings, ImageFilter[] filters) throws Exception {
+        ExecutorConfig executors = ExecutorConfig.createExecutors(settings);
+        ImagePipeline pipeline = new ImagePipeline(executors, filters, EncodingProfile.PNG_FAST, sink());
+        CompletableFuture<ImageResult> result = pipeline.submit(url(1));
+        finish(pipeline, executors);
+        return result.get().status;
+    }
+
+    /**
+     * Destino en el directorio temporal de la prueba.
+     */
+    private OutputSink sink() throws IOException {
+        return new DirectorySink(dir.resolve("salidas"));
+    }
+
+    private PipelineSettings settings(Backpressure backpressure) {
+        PipelineSettings s = PipelineSettings.forProcessors(1);
+        s.adaptive            = false;
+        s.metrics             = false;
+        s.reportFile          = "";
+        s.cacheDir            = "";
+        s.downloadAttempts    = 1;
+        s.downloadConcurrency = 1;
+        s.decodeThreads       = 1;
+        s.filterThreads       = 1;
+        s.encodeThreads       = 1;
+        s.ioThreads           = 1;
+        s.queueCapacity       = 1;
+        s.backpressure        = backpressure;
+        return s;
+    }
+
+    private String url(int id) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/id/" + id + "/32/24";
+    }
+
+    private static RunReport finish(ImagePipeline pipeline, ExecutorConfig executors) {
+        RunReport report = pipeline.drain();
+        ExecutorConfig.shutdownAll(executors);
+        pipeline.finish();
+        return report;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Etapa de filtrado lenta que anota cuántos filtrados y huecos de memoria hay a la vez.
+     */
+    private static class SlowFilter implements ImageFilter {
+        final long millis;
+        final String name;
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final AtomicInteger maxInMemory = new AtomicInteger();
+        volatile ImagePipeline pipeline;
+        volatile boolean fail;
+
+        SlowFilter(long millis) {
+            this(millis, "lento");
+        }
+
+        SlowFilter(long millis, String name) {
+            this.millis = millis;
+            this.name = name;
+        }
+
+        @Override
+        public BufferedImage apply(BufferedImage src) {
+            if (fail) {
+                throw new IllegalStateException("fallo de prueba");
+            }
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            if (pipeline != null) {
+                maxInMemory.accumulateAndGet(pipeline.imagesInMemory(), Math::max);
+            }
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            return new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_RGB);
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package uv.poo.Pipeline;
+
+import junit.framework.TestCase;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Comprueba el estado de cada ImageResult y el recuento e informe por URL de RunReport.
+ */
+public class RunReportTest extends TestCase {
+
+    public void testStatusFromOutputCounts() {
+        assertEquals(ImageResult.Status.OK, new ImageResult("u", 3, 0, List.of(), false, 0).status);
+        assertEquals(ImageResult.Status.PARTIAL, new ImageResult("u", 2, 1, List.of("bw: disco lleno"), false, 0).status);
+        assertEquals(ImageResult.Status.FAILED, new ImageResult("u", 0, 3, List.of("descarga: 404"), false, 0).status);
+        assertEquals(ImageResult.Status.UP_TO_DATE, new ImageResult("u", 0, 0, List.of(), true, 0).status);
+    }
+
+    public void testCountsFailuresAndWritesOneLinePerUrl() throws Exception {
+        Path tsv = Files.createTempFile("informe", ".tsv");
+        try {
+            RunReport report = new RunReport(tsv);
+            report.add(new ImageResult("http://a/1", 3, 0, List.of(), false, 5_000_000));
+            report.add(new ImageResult("http://a/2", 0, 3, List.of("descarga: HTTP 404"), false, 1_000_000));
+            report.finish();
+            report.close();
+
+            assertEquals(1, report.count(ImageResult.Status.OK));
+            assertEquals(1, report.count(ImageResult.Status.FAILED));
+            assertEquals(1, report.failures().size());
+            assertTrue(report.summary(), report.summary().contains("descarga: HTTP 404"));
+
+            List<String> lines = Files.readAllLines(tsv);
+            assertEquals(3, lines.size());
+            assertEquals("OK\thttp://a/1\t3\t0\t5\t", lines.get(1));
+            assertEquals("FAILED\thttp://a/2\t0\t3\t1\tdescarga: HTTP 404", lines.get(2));
+        } finally {
+            Files.deleteIfExists(tsv);
+        }
+    }
+}
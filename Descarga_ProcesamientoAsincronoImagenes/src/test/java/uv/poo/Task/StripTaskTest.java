@@ -0,0 +1,115 @@
+package uv.poo.Task;
+
+import junit.framework.TestCase;
+import uv.poo.Filter.BlackAndWhiteFilter;
+import uv.poo.Filter.BlurFilter;
+import uv.poo.Filter.FilterChain;
+import uv.poo.Filter.FilterPlan;
+import uv.poo.Filter.ImageFilter;
+import uv.poo.Filter.Pixels;
+import uv.poo.Filter.PointFilter;
+import uv.poo.Filter.RasterPool;
+import uv.poo.Filter.SepiaFilter;
+import uv.poo.Filter.SharpenFilter;
+import uv.poo.IO.EncodingProfile;
+import uv.poo.IO.PngEncoder;
+import uv.poo.IO.RowSource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Comprueba que procesar por franjas (con sus filas de halo) da exactamente lo mismo que aplicar el
+ * plan a la imagen entera, tanto con el decodificador PNG por filas como con lecturas por regiones.
+ */
+public class StripTaskTest extends TestCase {
+
+    private final ImageFilter sharpen = new SharpenFilter();
+    private final FilterPlan plan = FilterPlan.compile(List.of(
+            new FilterChain("suave", "1", List.of(sharpen, new BlurFilter(2, 1.0))),
+            new FilterChain("nitido_bw", "1", List.of(sharpen, new BlackAndWhiteFilter())),
+            new FilterChain("tono", "1", List.of(new SepiaFilter(), PointFilter.contrast(1.2)))));
+    private Path dir;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("franjas");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    public void testHaloIsTheLongestChain() {
+        assertTrue(plan.supportsStrips());
+        // sharpen (1) + blur de radio 2
+        assertEquals(3, plan.haloRows());
+    }
+
+    public void testStripsMatchWholeImageFromPng() throws IOException {
+        BufferedImage img = randomImage(45, 61);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        PngEncoder.encode(img, png, 1, PngEncoder.RowFilter.SUB);
+        for (int stripRows : new int[]{1, 7, 61, 100}) {
+            assertStripsMatch(png.toByteArray(), stripRows);
+        }
+    }
+
+    public void testStripsMatchWholeImageFromRegionReads() throws IOException {
+        ByteArrayOutputStream bmp = new ByteArrayOutputStream();
+        ImageIO.write(randomImage(38, 52), "bmp", bmp);
+        assertStripsMatch(bmp.toByteArray(), 7);
+    }
+
+    private void assertStripsMatch(byte[] data, int stripRows) throws IOException {
+        List<String> names = List.of("suave", "nitido_bw", "tono");
+        List<Path> files;
+        try (RowSource source = RowSource.open(data, stripRows)) {
+            files = StripTask.encode(source, plan, stripRows,
+                    List.of(EncodingProfile.PNG, EncodingProfile.PNG_FAST, EncodingProfile.PNG_IMAGEIO), dir, names,
+                    new RasterPool(1 << 24));
+        }
+        assertEquals(3, files.size());
+
+        List<BufferedImage> expected = plan.apply(ImageIO.read(new ByteArrayInputStream(data)));
+        for (int i = 0; i < files.size(); i++) {
+            BufferedImage want = expected.get(i);
+            BufferedImage got = ImageIO.read(files.get(i).toFile());
+            assertEquals(want.getWidth(), got.getWidth());
+            assertEquals(want.getHeight(), got.getHeight());
+            int[] a = new int[want.getWidth()];
+            int[] b = new int[want.getWidth()];
+            for (int y = 0; y < want.getHeight(); y++) {
+                Pixels.readRow(want, y, a);
+                Pixels.readRow(got, y, b);
+                for (int x = 0; x < a.length; x++) {
+                    assertEquals(names.get(i) + " franjas de " + stripRows + " (" + x + "," + y + ")", a[x], b[x]);
+                }
+            }
+            Files.delete(files.get(i));
+        }
+    }
+
+    private static BufferedImage randomImage(int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(width * 31L + height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return img;
+    }
+}